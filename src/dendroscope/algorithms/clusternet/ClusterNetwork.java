@@ -18,6 +18,7 @@
  */
 package dendroscope.algorithms.clusternet;
 
+import dendroscope.algorithms.utils.HasseDiagram;
 import dendroscope.consensus.*;
 import dendroscope.util.RerootingUtils;
 import jloda.graph.*;
@@ -144,37 +145,20 @@ public class ClusterNetwork {
 
         var newEdges = new EdgeSet(tree);
 
-        var stack = new Stack<Node>();
-        var visited = new NodeSet(tree);
+        // add edges of the cover relation, each cluster below the minimal clusters that contain it:
+        var parents = HasseDiagram.computeParents(clusters, true);
         for (var i = 0; i < clusters.length; i++) {
-            var node = nodes[i];
-            var cluster = clusters[i];
-            visited.clear();
-            stack.push(root);
-            visited.add(root);
-            while (stack.size() > 0) {
-                var v = stack.pop();
-                var isBelow = false;
-                for (var e : v.outEdges()) {
-                    if (newEdges.contains(e)) {
-                        var w = e.getTarget();
-                        var j = node2id.getInt(w);
-                        if (Cluster.contains(clusters[j], cluster)) {
-                            isBelow = true;
-                            if (!visited.contains(w)) {
-                                visited.add(w);
-                                stack.push(w);
-                            }
-                        }
-                    }
-                    }
-                if (!isBelow) {
-                    Edge e = tree.newEdge(v, node);
-                    newEdges.add(e);
-                }
+            if (parents[i].length == 0)
+                newEdges.add(tree.newEdge(root, nodes[i]));
+            else {
+                for (var p : parents[i])
+                    newEdges.add(tree.newEdge(nodes[p], nodes[i]));
             }
         }
 
+        var stack = new Stack<Node>();
+        var visited = new NodeSet(tree);
+
         // set labels:
         stack.push(root);
         visited.clear();
@@ -20,6 +20,7 @@ package dendroscope.algorithms.gallnet;
 
 import dendroscope.algorithms.clusternet.ClusterNetwork;
 import dendroscope.algorithms.utils.Compact;
+import dendroscope.algorithms.utils.IncompatibilityGraph;
 import dendroscope.consensus.Cluster;
 import dendroscope.consensus.Split;
 import dendroscope.consensus.SplitSystem;
@@ -166,17 +167,10 @@ public class ComputeGalledNetwork {
         progressListener.setTasks("Computing optimal galled network", "initialization");
         progressListener.setMaximum(-1);
 
-        // compute incompatibility graph:
-        boolean[][] incompatible = new boolean[clusters.length][clusters.length];
-        for (int i = 0; i < clusters.length; i++) {
-            for (int j = i + 1; j < clusters.length; j++) {
-                incompatible[i][j] = incompatible[j][i] = Cluster.incompatible(clusters[i], clusters[j]);
-            }
-        }
-
         int totalReticulate = 0; // total number of reticulate nodes
 
-        BitSet[] components = computeComponents(incompatible);
+        // compute incompatibility components:
+        BitSet[] components = IncompatibilityGraph.computeComponents(clusters);
         int numberOfNonTrivialComponents = 0;
         for (BitSet component : components)
             if (component.cardinality() > 1)
@@ -385,42 +379,4 @@ public class ComputeGalledNetwork {
             }
         }
     }
-
-    /**
-     * determines incompatibity components
-     *
-     * @return all incompatibity components
-     */
-    private static BitSet[] computeComponents(boolean[][] incompatible) {
-        int[] componentNumber = new int[incompatible.length];
-		Arrays.fill(componentNumber, -1);
-
-        int number = 0;
-        for (int i = 0; i < incompatible.length; i++) {
-            if (componentNumber[i] == -1)
-                computeComponentsRec(incompatible, i, number++, componentNumber);
-        }
-
-        BitSet[] components = new BitSet[number];
-        for (int i = 0; i < components.length; i++)
-            components[i] = new BitSet();
-
-        for (int c = 0; c < incompatible.length; c++) {
-            components[componentNumber[c]].set(c);
-        }
-        return components;
-    }
-
-    /**
-     * recursively does the work
-     *
-	 */
-    private static void computeComponentsRec(boolean[][] incompatible, int i, int number, int[] componentNumber) {
-        componentNumber[i] = number;
-        for (int j = 0; j < incompatible.length; j++) {
-            if (i != j && incompatible[i][j] && componentNumber[j] == -1) {
-                computeComponentsRec(incompatible, j, number, componentNumber);
-            }
-        }
-    }
 }
@@ -39,6 +39,7 @@ import dendroscope.algorithms.clusternet.ClusterNetwork;
 import dendroscope.algorithms.levelknet.cass.CassAlgorithm;
 import dendroscope.algorithms.utils.Compact;
 import dendroscope.algorithms.utils.HasseDiagram;
+import dendroscope.algorithms.utils.IncompatibilityGraph;
 import dendroscope.consensus.Cluster;
 import dendroscope.consensus.Split;
 import dendroscope.consensus.SplitSystem;
@@ -122,15 +123,8 @@ public class LevelKNetwork {
 
 		System.err.println("Clusters: " + clusters.length);
 
-		// compute incompatibility graph:
-		boolean[][] incompatible = new boolean[clusters.length][clusters.length];
-		for (int i = 0; i < clusters.length; i++) {
-			for (int j = i + 1; j < clusters.length; j++) {
-				incompatible[i][j] = incompatible[j][i] = Cluster.incompatible(clusters[i], clusters[j]);
-			}
-		}
-
-		BitSet[] components = computeComponents(incompatible);
+		// compute incompatibility components:
+		BitSet[] components = IncompatibilityGraph.computeComponents(clusters);
 		BitSet[] component2taxa = new BitSet[components.length];
 		Cluster[][] component2clusters = new Cluster[components.length][];
 		Cluster[] component2representative = new Cluster[components.length];
@@ -260,45 +254,6 @@ public class LevelKNetwork {
 	}
 
 
-	/**
-	 * determines incompatibility components
-	 *
-	 * @return all incompatibity components
-	 */
-	public static BitSet[] computeComponents(boolean[][] incompatible) {
-		int[] componentNumber = new int[incompatible.length];
-		Arrays.fill(componentNumber, -1);
-
-		int number = 0;
-		for (int i = 0; i < incompatible.length; i++) {
-			if (componentNumber[i] == -1)
-				computeComponentsRec(incompatible, i, number++, componentNumber);
-		}
-
-		BitSet[] components = new BitSet[number];
-		for (int i = 0; i < components.length; i++)
-			components[i] = new BitSet();
-
-		for (int c = 0; c < incompatible.length; c++) {
-			components[componentNumber[c]].set(c);
-		}
-		return components;
-	}
-
-	/**
-	 * recursively does the work
-	 *
-	 */
-	private static void computeComponentsRec(boolean[][] incompatible, int i, int number, int[] componentNumber) {
-		componentNumber[i] = number;
-		for (int j = 0; j < incompatible.length; j++) {
-			if (i != j && incompatible[i][j] && componentNumber[j] == -1) {
-				computeComponentsRec(incompatible, j, number, componentNumber);
-			}
-		}
-	}
-
-
 	/**
 	 * process an individual component in the incompatibility graph
 	 *
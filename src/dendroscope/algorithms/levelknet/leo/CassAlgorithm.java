@@ -41,8 +41,9 @@ import jloda.util.progress.ProgressListener;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.InputStreamReader;
-import java.util.Stack;
-import java.util.Vector;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 // todo: use these two dummy versions when used as stand-alone
 //class CanceledException extends Exception{}
@@ -139,7 +140,8 @@ public class CassAlgorithm {
 
 		// System.err.println("Collapsing");
 		// collapse all maximal ST-sets
-		Vector op = CS.collapse();
+		SearchCache cache = new SearchCache();
+		Vector op = cache.collapse(CS);
 		ClusterSet collapsed = (ClusterSet) op.elementAt(0);
 		Vector collapsedTaxa = (Vector) op.elementAt(1);
 		Vector collapsedTaxaSets = (Vector) op.elementAt(2);
@@ -147,7 +149,7 @@ public class CassAlgorithm {
 		while (!found) {
 			System.err.println("Searching level " + k);
 			progressListener.incrementProgress();
-			Vector networks = SL(collapsed, k, progressListener, isOnlyOne, checkTrees);
+			Vector networks = SL(collapsed, k, progressListener, isOnlyOne, checkTrees, cache);
 			for (int j = 0; j < networks.size(); j++) {
 				DiGraph colG = (DiGraph) networks.elementAt(j);
 				DiGraph G = uncollapse(colG, CS, collapsedTaxa, collapsedTaxaSets);
@@ -177,23 +179,25 @@ public class CassAlgorithm {
 			}
 			k++;
 		}
+		cache.report();
 		return output;
 	}
 
 	public static final int FASE1 = 0;
 	public static final int FASE2 = 1;
+	public static final int FASE1_END = 2; // marks the end of the subtree of the search below a fase 1 state
 
 	static class StackObject {
 		// the StackObject is a snapshot of the data in either fase 1 (collapse, remove leaf steps)
 		//                                              or fase 2 (hang leaf back, decollapse steps)
 
-		Vector taxa; // all the taxa.... don't really need this
 		int step; // the step we're at in the current fase
 		int type; // either fase 1 or fase 2
 		final ClusterSet[] CS; // the cluster sets after 0,1,2,... "collapse, remove leaf"-steps
 		final Vector[] collapsedTaxaSets; // the sets of taxa we collapsed in step 0,1,2,...
 		final Vector[] collapsedTaxa; // the taxa we collapsed them into in step 0,1,2,...
 		final Integer[] removedLeaves; // the leaf we've removed in step 0,1,2,...
+		final Outcome[] outcomes; // the outcomes of the fase 1 states in step 0,1,2,... that this state descends from
 
 		// only for fase 2
 		DiGraph network; // the solution in the current step of the second fase
@@ -204,16 +208,29 @@ public class CassAlgorithm {
 			collapsedTaxa = new Vector[k + 1];
 			collapsedTaxaSets = new Vector[k + 1];
 			removedLeaves = new Integer[k + 1];
+			outcomes = new Outcome[k + 1];
 		}
 	}
 
-	private static Vector SL(ClusterSet CS, int k, ProgressListener progressListener, boolean isOnlyOne, boolean checkTrees) throws CanceledException {
-		// int count = 0;
-
-		// in this vector we will put all valid networks
-		Vector networks = new Vector();
+	/**
+	 * the outcome of searching below a fase 1 state: the cluster set of the state, the number of remaining leaf
+	 * removals and whether the second fase got back to this state
+	 */
+	static class Outcome {
+		final ClusterSet.Key key;
+		final int remaining;
+		boolean reached;
+
+		Outcome(ClusterSet.Key key, int remaining) {
+			this.key = key;
+			this.remaining = remaining;
+		}
+	}
 
+	private static Vector SL(ClusterSet CS, int k, ProgressListener progressListener, boolean isOnlyOne, boolean checkTrees, SearchCache cache) throws CanceledException {
 		if (k == 0) {
+			// in this vector we will put all valid networks
+			Vector networks = new Vector();
 			// we try to create a tree
 			// construct a tree containing precisely those clusters in CSp
 			DiGraph T = buildTree(CS);
@@ -223,216 +240,387 @@ public class CassAlgorithm {
 			return networks;
 		}
 
-		Stack stack = new Stack();
-
-		StackObject so = new StackObject(k);
-		so.taxa = CS.taxa;
-		so.type = FASE1;
-		so.CS[0] = CS;
-		so.collapsedTaxa[0] = null;
-		so.collapsedTaxaSets[0] = null;
-		so.removedLeaves[0] = null;
-
-		stack.push(so);
-
-		while (stack.size() != 0) {
-
-			StackObject top = (StackObject) stack.peek();
-			stack.pop();
-
-			if (top.type == FASE1) {
-				if (top.step == k) {
-					// build a tree and start the second fase
-					// construct a tree containing precisely those clusters in top.CS[k]
-					DiGraph T = buildTree(top.CS[k]);
-					if (T != null) {
-						// add the tree to the stackobject
-						// change the fase
-						top.type = FASE2;
-						top.network = T;
-						// put the stackobject back on the stack
-						stack.push(top);
+		// the first step always removes a taxon, each choice is a branch of the search that is run as a separate task
+		// branches are listed in the order in which the depth-first search visits them
+		Vector output = cache.collapse(CS);
+		ClusterSet collapsed = (ClusterSet) output.elementAt(0);
+		Vector collapsedTaxa = (Vector) output.elementAt(1);
+		Vector collapsedTaxaSets = (Vector) output.elementAt(2);
+
+		final List<StackObject> branches = new ArrayList<>();
+		for (int i = collapsed.getNumberOfTaxa() - 1; i >= 0; i--) {
+			Integer x = collapsed.getTaxon(i);
+			StackObject so = new StackObject(k);
+			so.type = FASE1;
+			so.step = 1;
+			so.CS[0] = CS;
+			so.CS[1] = collapsed.remLeaf(x);
+			so.collapsedTaxa[1] = collapsedTaxa;
+			so.collapsedTaxaSets[1] = collapsedTaxaSets;
+			so.removedLeaves[1] = x;
+			branches.add(so);
+		}
+
+		final Search search = new Search(k, isOnlyOne, checkTrees, cache);
+		final ExecutorService executor = Executors.newWorkStealingPool(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), branches.size())));
+		try {
+			final List<Future<Vector>> futures = new ArrayList<>(branches.size());
+			for (int b = 0; b < branches.size(); b++) {
+				final int branch = b;
+				futures.add(executor.submit(() -> search.apply(branches.get(branch), branch)));
+			}
+			// merge in branch order, as a sequential search would find them, keeping only one of isomorphic networks
+			Vector networks = new Vector();
+			Set<String> seen = new HashSet<>();
+			for (Future<Vector> future : futures) {
+				for (Object network : waitFor(future, progressListener)) {
+					String canonical = getCanonicalForm((DiGraph) network);
+					if (canonical == null || seen.add(canonical)) {
+						networks.add(network);
 					}
-					continue;
 				}
+				if (isOnlyOne && networks.size() > 0) {
+					networks.setSize(1);
+					break;
+				}
+			}
+			FOUND += search.found.get();
+			return networks;
+		} finally {
+			search.firstFound.set(-1);
+			executor.shutdownNow();
+		}
+	}
 
-				// collapse all maximal ST-sets
-				// IN THE FIRST STEP THERE IS NO NEED TO COLLAPSE
-				Vector output = top.CS[top.step].collapse();
-				ClusterSet collapsed = (ClusterSet) output.elementAt(0);
-				Vector collapsedTaxa = (Vector) output.elementAt(1);
-				Vector collapsedTaxaSets = (Vector) output.elementAt(2);
-
-				// loop through all taxa
-				for (int i = 0; i < collapsed.taxa.size() + 1; i++) {
-					ClusterSet CSp;
-					Integer x;
-					if (i == collapsed.taxa.size()) {
-						if (top.step == 0) {
-							// always remove a taxon in the first step
-							break;
+	/**
+	 * waits for a branch of the search, checking for cancellation while waiting
+	 *
+	 * @return networks found in the branch
+	 */
+	private static Vector waitFor(Future<Vector> future, ProgressListener progressListener) throws CanceledException {
+		while (true) {
+			try {
+				return future.get(100, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException ex) {
+				if (progressListener != null)
+					progressListener.checkForCancel();
+			} catch (InterruptedException ex) {
+				throw new CanceledException();
+			} catch (ExecutionException ex) {
+				throw new RuntimeException(ex.getCause());
+			}
+		}
+	}
+
+	/**
+	 * the search for networks of a given level. Branches of the search are run concurrently and share the cache of
+	 * collapsed cluster sets and of cluster sets without a network. If only one network is required, a branch stops
+	 * once an earlier branch has found one, so the network returned does not depend on timing. Each branch
+	 * keeps its own set of the second-fase states that it has already searched
+	 */
+	private static class Search {
+		private final int k;
+		private final boolean isOnlyOne;
+		private final boolean checkTrees;
+		private final AtomicInteger firstFound = new AtomicInteger(Integer.MAX_VALUE); // first branch that found a network, if only one is required
+		private final AtomicInteger found = new AtomicInteger(0);
+		private final SearchCache cache;
+
+		Search(int k, boolean isOnlyOne, boolean checkTrees, SearchCache cache) {
+			this.k = k;
+			this.isOnlyOne = isOnlyOne;
+			this.checkTrees = checkTrees;
+			this.cache = cache;
+		}
+
+		/**
+		 * search one branch, depth-first
+		 *
+		 * @param branch index of the branch
+		 * @return networks found
+		 */
+		Vector apply(StackObject so, int branch) {
+			// in this vector we will put all valid networks
+			Vector networks = new Vector();
+			Set<String> visited = new HashSet<>();
+
+			Stack stack = new Stack();
+			stack.push(so);
+
+			while (stack.size() != 0) {
+
+				StackObject top = (StackObject) stack.peek();
+				stack.pop();
+
+				if (top.type == FASE1_END) {
+					// the search below the fase 1 state is complete, remember if it found no network
+					Outcome outcome = top.outcomes[top.step];
+					if (!outcome.reached) {
+						cache.setNoNetwork(outcome.key, outcome.remaining);
+					}
+				} else if (top.type == FASE1) {
+					if (top.step == k) {
+						// build a tree and start the second fase
+						// construct a tree containing precisely those clusters in top.CS[k]
+						DiGraph T = buildTree(top.CS[k]);
+						if (T != null) {
+							// add the tree to the stackobject
+							// change the fase
+							top.type = FASE2;
+							top.network = T;
+							// put the stackobject back on the stack
+							stack.push(top);
 						}
-						// don't remove a leaf
-						// do not collapse
-						CSp = top.CS[top.step];
-						x = CassAlgorithm.DUMMY_NUMBER;
-					} else {
-						// remove the taxon with index i
-						x = collapsed.taxa.elementAt(i);
-						CSp = collapsed.remLeaf(x);
+						continue;
 					}
-					// create a new stackobject
-					StackObject virgin = new StackObject(k);
-					virgin.taxa = top.taxa;
-					virgin.type = FASE1;
-					virgin.step = top.step + 1;
-					for (int c = 0; c < virgin.step; c++) {
-						virgin.CS[c] = top.CS[c];
-						virgin.collapsedTaxa[c] = top.collapsedTaxa[c];
-						virgin.collapsedTaxaSets[c] = top.collapsedTaxaSets[c];
-						virgin.removedLeaves[c] = top.removedLeaves[c];
+
+					// skip cluster sets that have already been searched without success, possibly in a lower level
+					ClusterSet.Key key = top.CS[top.step].getKey();
+					if (cache.hasNoNetwork(key, k - top.step)) {
+						continue;
 					}
-					virgin.CS[virgin.step] = CSp;
-					virgin.collapsedTaxa[virgin.step] = collapsedTaxa;
-					virgin.collapsedTaxaSets[virgin.step] = collapsedTaxaSets;
-					virgin.removedLeaves[virgin.step] = x;
-					stack.push(virgin);
-				}
-			} else {
-				// FASE 2
-				if (top.step == 0) {
-					// a solution has been found
-
-					// we remove the root only if it has outdegree 1 and after removal the network still displays all clusters
-					// NOTE: if we keep an outdegree-1 root, the output network might not be simple, but I don't think that matters
-					if (top.network.outdeg == 1) {
-						if (top.network.children.elementAt(0).displays(top.CS[0], k, checkTrees)) {
-							top.network = top.network.children.elementAt(0);
-							top.network.indeg = 0;
+					// all states searched below this one are pushed on top of this marker
+					top.outcomes[top.step] = new Outcome(key, k - top.step);
+					top.type = FASE1_END;
+					stack.push(top);
+
+					// collapse all maximal ST-sets
+					// IN THE FIRST STEP THERE IS NO NEED TO COLLAPSE
+					Vector output = cache.collapse(top.CS[top.step]);
+					ClusterSet collapsed = (ClusterSet) output.elementAt(0);
+					Vector collapsedTaxa = (Vector) output.elementAt(1);
+					Vector collapsedTaxaSets = (Vector) output.elementAt(2);
+
+					// loop through all taxa
+					for (int i = 0; i < collapsed.getNumberOfTaxa() + 1; i++) {
+						ClusterSet CSp;
+						Integer x;
+						if (i == collapsed.getNumberOfTaxa()) {
+							if (top.step == 0) {
+								// always remove a taxon in the first step
+								break;
+							}
+							// don't remove a leaf
+							// do not collapse
+							CSp = top.CS[top.step];
+							x = CassAlgorithm.DUMMY_NUMBER;
+						} else {
+							// remove the taxon with index i
+							x = collapsed.getTaxon(i);
+							CSp = collapsed.remLeaf(x);
 						}
+						// create a new stackobject
+						StackObject virgin = new StackObject(k);
+						virgin.type = FASE1;
+						virgin.step = top.step + 1;
+						for (int c = 0; c < virgin.step; c++) {
+							virgin.CS[c] = top.CS[c];
+							virgin.collapsedTaxa[c] = top.collapsedTaxa[c];
+							virgin.collapsedTaxaSets[c] = top.collapsedTaxaSets[c];
+							virgin.removedLeaves[c] = top.removedLeaves[c];
+							virgin.outcomes[c] = top.outcomes[c];
+						}
+						virgin.CS[virgin.step] = CSp;
+						virgin.collapsedTaxa[virgin.step] = collapsedTaxa;
+						virgin.collapsedTaxaSets[virgin.step] = collapsedTaxaSets;
+						virgin.removedLeaves[virgin.step] = x;
+						stack.push(virgin);
 					}
+				} else {
+					// FASE 2
+					if (top.step == 0) {
+						// a solution has been found
+
+						// we remove the root only if it has outdegree 1 and after removal the network still displays all clusters
+						// NOTE: if we keep an outdegree-1 root, the output network might not be simple, but I don't think that matters
+						if (top.network.outdeg == 1) {
+							if (top.network.children.elementAt(0).displays(top.CS[0], k, checkTrees)) {
+								top.network = top.network.children.elementAt(0);
+								top.network.indeg = 0;
+							}
+						}
 
-					// output this solution
-					networks.add(top.network);
-					FOUND++;
-					if (FOUND == 1) {
-						System.err.println("Network found");
-					}
-					if (isOnlyOne) {
-						return networks;
-					} else {
-						if (FOUND == 1) {
-							System.err.println("Starting search for alternative solutions");
+						// output this solution
+						networks.add(top.network);
+						int number = found.incrementAndGet();
+						if (number == 1) {
+							System.err.println("Network found");
+						}
+						if (isOnlyOne) {
+							firstFound.accumulateAndGet(branch, Math::min);
+							return networks;
+						} else {
+							if (number == 1) {
+								System.err.println("Starting search for alternative solutions");
+							}
+							continue;
 						}
-						continue;
 					}
-				}
-				// number all edges
-				int[] num = new int[1];
-				num[0] = 0;
-				int e = top.network.numberEdges(num);
-				top.network.cleanDiGraph();
-				Integer x = top.removedLeaves[top.step];
-				// if there are 2 cherries, we should only really sub cherries, unless the last leaf we removed was a dummy leaf, because then we haven't collapsed properly
-				// if there are more cherries we can stop, unless the last leaf we removed was a dummy leaf, because then we haven't collapsed properly
-				// if there's 1 cherry, we should sub that one and one arb other edge, unless the last leaf we removed was a dummy leaf, because then we haven't collapsed properly
-				Vector cherries = top.network.findCherries();
-				top.network.cleanDiGraph();
-				if (cherries.size() > 2 && x != CassAlgorithm.DUMMY_NUMBER) {
-					continue;
-				}
-				Vector cherry1 = new Vector();
-				if (cherries.size() > 0) {
-					cherry1 = (Vector) cherries.elementAt(0);
-				}
-				Vector cherry2 = new Vector();
-				if (cherries.size() > 1) {
-					cherry2 = (Vector) cherries.elementAt(1);
-				}
-				// loop through each pair of edges
-				for (int e1 = 0; e1 < e; e1++) {
-					Integer edge1 = e1;
-					// skip this edge if it is not a cherry-edge and there are two cherries
-					if (cherries.size() == 2 && !cherry1.contains(edge1) && !cherry2.contains(edge1) && x != CassAlgorithm.DUMMY_NUMBER) {
+					// number all edges
+					int[] num = new int[1];
+					num[0] = 0;
+					int e = top.network.numberEdges(num);
+					top.network.cleanDiGraph();
+					Integer x = top.removedLeaves[top.step];
+					// if there are 2 cherries, we should only really sub cherries, unless the last leaf we removed was a dummy leaf, because then we haven't collapsed properly
+					// if there are more cherries we can stop, unless the last leaf we removed was a dummy leaf, because then we haven't collapsed properly
+					// if there's 1 cherry, we should sub that one and one arb other edge, unless the last leaf we removed was a dummy leaf, because then we haven't collapsed properly
+					Vector cherries = top.network.findCherries();
+					top.network.cleanDiGraph();
+					if (cherries.size() > 2 && x != CassAlgorithm.DUMMY_NUMBER) {
 						continue;
 					}
-					for (int e2 = e1; e2 < e; e2++) {
-						Integer edge2 = e2;
-						// if there is a cherry we have to hit it
-						if (cherries.size() > 0 && !cherry1.contains(edge1) && !cherry1.contains(edge2) && x != CassAlgorithm.DUMMY_NUMBER) {
-							continue;
-						}
-						// if there are two cherries we have to hit both of them
-						if (cherries.size() == 2 && !cherry2.contains(edge1) && !cherry2.contains(edge2) && x != CassAlgorithm.DUMMY_NUMBER) {
+					Vector cherry1 = new Vector();
+					if (cherries.size() > 0) {
+						cherry1 = (Vector) cherries.elementAt(0);
+					}
+					Vector cherry2 = new Vector();
+					if (cherries.size() > 1) {
+						cherry2 = (Vector) cherries.elementAt(1);
+					}
+					// loop through each pair of edges
+					for (int e1 = 0; e1 < e; e1++) {
+						Integer edge1 = e1;
+						// skip this edge if it is not a cherry-edge and there are two cherries
+						if (cherries.size() == 2 && !cherry1.contains(edge1) && !cherry2.contains(edge1) && x != CassAlgorithm.DUMMY_NUMBER) {
 							continue;
 						}
-						// if e1 = e2 we subdivide this edge twice
-						// copy top.network into a new DiGraph G
-						DiGraph G = top.network.cloneDiGraph();
-						top.network.cleanDiGraph();
-						// create a new reticulation
-						DiGraph r = new DiGraph();
-						r.indeg = 2;
-						// hang this reticulation below e1 and e2
-						G.hangBelowEdges(r, e1, e2);
-						G.cleanDiGraph();
-						// create a new leaf x below this reticulation
-						r.children.add(new DiGraph(x));
-						r.children.elementAt(0).indeg = 1;
-						r.outdeg = 1;
-						// if G has cherries at this point we can forget about it
-						// but it shouldn't really have cherries if we're carefull
-						if (x != CassAlgorithm.DUMMY_NUMBER) {
-							// ONLY UNCOLAPSE IF WE HAVEN'T ADDED A DUMMY LEAF
-							// OTHERWISE THE UNCOLLAPSE FUNCTION WON'T WORK PROPERLY
-							uncollapse(G, top.CS[top.step - 1], top.collapsedTaxa[top.step], top.collapsedTaxaSets[top.step]);
-						}
-						// check if the network displays all clusters
-						// (if we just added a dummy leaf, there is no need to check this)
-						if (x == DUMMY_NUMBER || G.displays(top.CS[top.step - 1], k, checkTrees)) {
-							// create new stackobject
-							StackObject virgin = new StackObject(k);
-							virgin.taxa = top.taxa;
-							virgin.step = top.step - 1;
-							virgin.type = FASE2;
-							for (int c = 0; c < top.step; c++) {
-								virgin.CS[c] = top.CS[c];
-								virgin.collapsedTaxa[c] = top.collapsedTaxa[c];
-								virgin.collapsedTaxaSets[c] = top.collapsedTaxaSets[c];
-								virgin.removedLeaves[c] = top.removedLeaves[c];
+						for (int e2 = e1; e2 < e; e2++) {
+							Integer edge2 = e2;
+							// if there is a cherry we have to hit it
+							if (cherries.size() > 0 && !cherry1.contains(edge1) && !cherry1.contains(edge2) && x != CassAlgorithm.DUMMY_NUMBER) {
+								continue;
+							}
+							// if there are two cherries we have to hit both of them
+							if (cherries.size() == 2 && !cherry2.contains(edge1) && !cherry2.contains(edge2) && x != CassAlgorithm.DUMMY_NUMBER) {
+								continue;
+							}
+							// if e1 = e2 we subdivide this edge twice
+							// copy top.network into a new DiGraph G
+							DiGraph G = top.network.cloneDiGraph();
+							top.network.cleanDiGraph();
+							// create a new reticulation
+							DiGraph r = new DiGraph();
+							r.indeg = 2;
+							// hang this reticulation below e1 and e2
+							G.hangBelowEdges(r, e1, e2);
+							G.cleanDiGraph();
+							// create a new leaf x below this reticulation
+							r.children.add(new DiGraph(x));
+							r.children.elementAt(0).indeg = 1;
+							r.outdeg = 1;
+							// if G has cherries at this point we can forget about it
+							// but it shouldn't really have cherries if we're carefull
+							if (x != CassAlgorithm.DUMMY_NUMBER) {
+								// ONLY UNCOLAPSE IF WE HAVEN'T ADDED A DUMMY LEAF
+								// OTHERWISE THE UNCOLLAPSE FUNCTION WON'T WORK PROPERLY
+								uncollapse(G, top.CS[top.step - 1], top.collapsedTaxa[top.step], top.collapsedTaxaSets[top.step]);
+							}
+							// check if the network displays all clusters
+							// (if we just added a dummy leaf, there is no need to check this)
+							if (x == DUMMY_NUMBER || G.displays(top.CS[top.step - 1], k, checkTrees)) {
+								// create new stackobject
+								StackObject virgin = new StackObject(k);
+								virgin.step = top.step - 1;
+								virgin.type = FASE2;
+								for (int c = 0; c < top.step; c++) {
+									virgin.CS[c] = top.CS[c];
+									virgin.collapsedTaxa[c] = top.collapsedTaxa[c];
+									virgin.collapsedTaxaSets[c] = top.collapsedTaxaSets[c];
+									virgin.removedLeaves[c] = top.removedLeaves[c];
+									virgin.outcomes[c] = top.outcomes[c];
+								}
+								virgin.network = G;
+								// the fase 1 state of this step has a network
+								if (virgin.outcomes[virgin.step] != null) {
+									virgin.outcomes[virgin.step].reached = true;
+								}
+								if (isNewState(virgin, visited)) {
+									stack.push(virgin);
+								}
 							}
-							virgin.network = G;
-							stack.push(virgin);
 						}
+						//if (progressListener != null)
+						//    progressListener.checkForCancel();
 					}
-					//if (progressListener != null)
-					//    progressListener.checkForCancel();
 				}
+	            /*
+	            if (count < 80) {
+	                System.err.print(".");
+	                count++;
+	            } else {
+	                System.err.println();
+	                count = 0;
+	            }
+	            */
+
+				if (firstFound.get() < branch)
+					break;
+			}
+			return networks;
+		}
+
+		/**
+		 * is this second-fase state new? Two states are equivalent if they have removed the same leaves in the
+		 * same steps of the first fase and their networks are isomorphic, as they then lead to the same solutions
+		 *
+		 * @return true, if no equivalent state has been seen
+		 */
+		private static boolean isNewState(StackObject so, Set<String> visited) {
+			String network = getCanonicalForm(so.network);
+			if (network == null) {
+				return true;
+			}
+			StringBuilder buf = new StringBuilder();
+			for (int c = 1; c <= so.step; c++) {
+				buf.append(so.removedLeaves[c]).append(' ');
+			}
+			buf.append(':').append(network);
+			return visited.add(buf.toString());
+		}
+	}
+
+	/**
+	 * computes a string that determines the network up to isomorphism. Each node is described by the sorted
+	 * descriptions of its children, so this fails if two different nodes get the same description, e.g. two dummy leaves
+	 *
+	 * @return canonical form or null
+	 */
+	private static String getCanonicalForm(DiGraph root) {
+		Map<DiGraph, String> node2string = new IdentityHashMap<>();
+		String result = getCanonicalFormRec(root, node2string);
+		if (new HashSet<>(node2string.values()).size() < node2string.size()) {
+			return null;
+		}
+		return result;
+	}
+
+	private static String getCanonicalFormRec(DiGraph v, Map<DiGraph, String> node2string) {
+		String result = node2string.get(v);
+		if (result == null) {
+			if (v.outdeg == 0) {
+				result = String.valueOf(v.label);
+			} else {
+				String[] children = new String[v.outdeg];
+				for (int c = 0; c < v.outdeg; c++) {
+					children[c] = getCanonicalFormRec(v.children.elementAt(c), node2string);
+				}
+				Arrays.sort(children);
+				result = "(" + String.join(",", children) + ")";
 			}
-            /*
-            if (count < 80) {
-                System.err.print(".");
-                count++;
-            } else {
-                System.err.println();
-                count = 0;
-            }
-            */
-
-			if (progressListener != null)
-				progressListener.checkForCancel();
+			node2string.put(v, result);
 		}
-		return networks;
+		return result;
 	}
 
 	private static DiGraph buildTree(ClusterSet CS) {
 		// find the maximal clusters
-		Vector maxClusters = new Vector(0);
-		for (int i = 0; i < CS.clusterVec.size(); i++) {
-			Vector cluster1 = CS.clusterVec.elementAt(i);
+		Vector<BitSet> maxClusters = new Vector<>(0);
+		for (int i = 0; i < CS.size(); i++) {
+			BitSet cluster1 = CS.getCluster(i);
 			boolean max = true;
-			for (int j = 0; j < CS.clusterVec.size(); j++) {
-				Vector cluster2 = CS.clusterVec.elementAt(j);
+			for (int j = 0; j < CS.size(); j++) {
+				BitSet cluster2 = CS.getCluster(j);
 				int rel = ClusterSet.getRelation(cluster1, cluster2);
 				if (rel == 3) {
 					max = false;
@@ -451,9 +639,9 @@ public class CassAlgorithm {
 
 		// the maximal clusters become children of the root
 		for (int c = 0; c < maxClusters.size(); c++) {
-			Vector cluster = (Vector) maxClusters.elementAt(c);
-			if (cluster.size() == 1) {
-				Integer label = (Integer) cluster.elementAt(0);
+			BitSet cluster = maxClusters.elementAt(c);
+			if (cluster.cardinality() == 1) {
+				Integer label = cluster.nextSetBit(0);
 				G.outdeg++;
 				DiGraph leaf = new DiGraph(label);
 				leaf.indeg = 1;
@@ -477,8 +665,8 @@ public class CassAlgorithm {
 		// we only uncollapse the last step!
 		for (int i = 0; i < collapsedTaxa.size(); i++) {
 			Integer x = (Integer) collapsedTaxa.elementAt(i);
-			Vector cluster = (Vector) collapsedTaxaSets.elementAt(i);
-			if (cluster.size() > 1) {
+			BitSet cluster = (BitSet) collapsedTaxaSets.elementAt(i);
+			if (cluster.cardinality() > 1) {
 				// uncollapse this taxon
 				ClusterSet restrictedCS = CS.restrict(cluster);
 				DiGraph G = buildTree(restrictedCS);
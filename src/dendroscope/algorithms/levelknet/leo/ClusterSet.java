@@ -35,170 +35,202 @@
  */
 package dendroscope.algorithms.levelknet.leo;
 
-import java.util.Collection;
-import java.util.List;
-import java.util.Vector;
+import java.util.*;
 
 /**
  * a set of clusters
+ * <p/>
+ * Clusters are bit sets of taxa and are never modified once added, so they are shared between cluster sets.
+ * Membership is determined by hashing. A cloned cluster set shares its lists with the original until one of the two is
+ * modified (copy-on-write)
+ * <p/>
  * Leo j.j.v. Iersel, 2012
  */
 public class ClusterSet {
 
-	public Vector<Vector<Integer>> clusterVec; // the clusters
-	public Vector<Integer> taxa; // all taxa
-	public Vector<Vector<Integer>> taxaInTaxa; // the taxa that have been collapsed into each taxon
-	public Vector<Vector<Vector<Integer>>> treeNumberVec; // the numbers of the trees that each cluster is in
-	public Vector<Integer> allTreeNums; // all the numbers of the trees, over all clusters
+	private ArrayList<BitSet> clusters; // the clusters, in order of addition
+	private HashMap<BitSet, BitSet> cluster2trees; // the numbers of the trees that each cluster is in
+	private ArrayList<Integer> taxa; // all taxa, in order of addition
+	private BitSet taxonSet; // all taxa
+	private ArrayList<BitSet> taxaInTaxa; // the taxa that have been collapsed into each taxon
+	private boolean shared; // lists are shared with a clone and must be copied before modification
 
 	public ClusterSet() {
-		clusterVec = new Vector();
-		taxa = new Vector();
-		taxaInTaxa = new Vector();
-		treeNumberVec = new Vector();
-		allTreeNums = new Vector();
+		clusters = new ArrayList<>();
+		cluster2trees = new HashMap<>();
+		taxa = new ArrayList<>();
+		taxonSet = new BitSet();
+		taxaInTaxa = new ArrayList<>();
 	}
 
-	public Vector updateAllTreeNums() {
-		allTreeNums = new Vector<>();
-		for (int c = 0; c < clusterVec.size(); c++) {
-			Vector vec = treeNumberVec.elementAt(c);
-			for (int i = 0; i < vec.size(); i++) {
-				Integer x = (Integer) vec.elementAt(i);
-				if (!allTreeNums.contains(x)) {
-					allTreeNums.add(x);
-				}
-			}
+	/**
+	 * copy the lists, if they are shared with a clone
+	 */
+	private void ensureNotShared() {
+		if (shared) {
+			clusters = new ArrayList<>(clusters);
+			cluster2trees = new HashMap<>(cluster2trees);
+			taxa = new ArrayList<>(taxa);
+			taxonSet = (BitSet) taxonSet.clone();
+			taxaInTaxa = new ArrayList<>(taxaInTaxa);
+			shared = false;
 		}
-		return allTreeNums;
 	}
 
-	public static Vector sortCluster(Vector<Integer> cluster) {
-		for (int i = 0; i < cluster.size() - 1; i++) {
-			for (int j = i + 1; j < cluster.size(); j++) {
-				Integer x = cluster.elementAt(i);
-				Integer y = cluster.elementAt(j);
-				if (x > y) {
-					// swap
-					Integer x2 = x;
-					cluster.set(i, y);
-					cluster.set(j, x2);
-				}
-			}
+	/**
+	 * get the number of clusters
+	 *
+	 * @return number of clusters
+	 */
+	public int size() {
+		return clusters.size();
+	}
+
+	/**
+	 * get the c-th cluster. Do not modify
+	 *
+	 * @return cluster
+	 */
+	public BitSet getCluster(int c) {
+		return clusters.get(c);
+	}
+
+	/**
+	 * get the numbers of the trees that the c-th cluster is in. Do not modify
+	 *
+	 * @return tree numbers
+	 */
+	public BitSet getTreeNumbers(int c) {
+		return cluster2trees.get(clusters.get(c));
+	}
+
+	/**
+	 * get the number of taxa
+	 *
+	 * @return number of taxa
+	 */
+	public int getNumberOfTaxa() {
+		return taxa.size();
+	}
+
+	/**
+	 * get the i-th taxon
+	 *
+	 * @return taxon
+	 */
+	public int getTaxon(int i) {
+		return taxa.get(i);
+	}
+
+	/**
+	 * get the numbers of all trees, over all clusters
+	 *
+	 * @return tree numbers
+	 */
+	public BitSet getAllTreeNumbers() {
+		BitSet allTreeNums = new BitSet();
+		for (BitSet treeNums : cluster2trees.values()) {
+			allTreeNums.or(treeNums);
 		}
-		return cluster;
+		return allTreeNums;
 	}
 
 	public void print() {
 		System.err.println("Cluster Set:");
-		for (int c = 0; c < clusterVec.size(); c++) {
-			Vector cluster = clusterVec.elementAt(c);
+		for (BitSet cluster : clusters) {
 			System.err.println(cluster.toString());
 		}
 	}
 
-    /*
-    public ClusterSet remLeaf(Integer x) {
-        ClusterSet CS = this.cloneClusterSet();
-        //System.err.println("Removing element " + x);
-        Vector clusters = CS.clusterVec;
-        Vector treeNums = CS.treeNumberVec;
-        int index = CS.taxa.indexOf(x);
-        CS.taxa.removeElementAt(index);
-        CS.taxaInTaxa.removeElementAt(index);
-        for (int c = 0; c < clusters.size(); c++) {
-            //CS.print();
-            Vector cluster = (Vector) clusters.elementAt(c);
-            cluster.removeElement(x);
-            if(cluster.size() == 0) {
-                clusters.removeElementAt(c);
-                treeNums.removeElementAt(c);
-                c--;
-                continue;
-            }
-            int i = clusters.indexOf(cluster);
-            int j = clusters.lastIndexOf(cluster);
-            if(i!=c){
-                // merge the two copies of the cluster
-                Vector treesc = (Vector<Integer>) treeNums.elementAt(c);
-                Vector treesi = (Vector<Integer>) treeNums.elementAt(i);
-                for(int t = 0; t < treesc.size(); t++) {
-                    Integer treenum = (Integer) treesc.elementAt(t);
-                    if(!treesi.contains(treenum)) {
-                        treesi.add(treenum);
-                    }
-                }
-                clusters.removeElementAt(c);
-                treeNums.removeElementAt(c);
-                c--;
-                continue;
-            }
-            if (c!=j) {
-                // merge the two copies of the cluster
-                Vector treesc = (Vector<Integer>) treeNums.elementAt(c);
-                Vector treesj = (Vector<Integer>) treeNums.elementAt(j);
-                for(int t = 0; t < treesc.size(); t++) {
-                    Integer treenum = (Integer) treesc.elementAt(t);
-                    if(!treesj.contains(treenum)) {
-                        treesj.add(treenum);
-                    }
-                }
-                clusters.removeElementAt(c);
-                treeNums.removeElementAt(c);
-                c--;
-            }
-        }
-        //CS.print();
-        return CS;
-    }
-    */
-
-	public ClusterSet remLeaf(Integer x) {
+	public ClusterSet remLeaf(int x) {
 		ClusterSet CS = new ClusterSet();
-		for (int c = 0; c < clusterVec.size(); c++) {
-			Vector cluster = clusterVec.elementAt(c);
-			Vector cluster2 = new Vector(0);
-			for (int i = 0; i < cluster.size(); i++) {
-				Integer y = (Integer) cluster.elementAt(i);
-				if (!y.equals(x)) {
-					cluster2.add(y);
+		for (BitSet cluster : clusters) {
+			BitSet cluster2 = cluster;
+			if (cluster.get(x)) {
+				cluster2 = (BitSet) cluster.clone();
+				cluster2.clear(x);
+				if (cluster2.isEmpty()) {
+					continue;
 				}
 			}
-			if (cluster2.size() == 0) {
-				continue;
-			}
-			CS.addCluster(cluster2, (Vector) treeNumberVec.elementAt(c));
+			CS.addCluster(cluster2, cluster2trees.get(cluster));
 		}
 		return CS;
 	}
 
-	public boolean contains(Vector cluster) {
-		return clusterVec.contains(cluster);
+	public boolean contains(BitSet cluster) {
+		return cluster2trees.containsKey(cluster);
 	}
 
-	public boolean contains(Vector cluster, int tree) {
-		if (!clusterVec.contains(cluster)) {
-			return false;
-		}
-		int index = clusterVec.indexOf(cluster);
-		Vector treeNumbers = treeNumberVec.elementAt(index);
-		return treeNumbers.contains(tree);
+	public boolean contains(BitSet cluster, int tree) {
+		BitSet treeNumbers = cluster2trees.get(cluster);
+		return treeNumbers != null && treeNumbers.get(tree);
 	}
 
 	public ClusterSet cloneClusterSet() {
 		ClusterSet CS = new ClusterSet();
-		CS.clusterVec = (Vector) clusterVec.clone();
-		CS.treeNumberVec = (Vector) treeNumberVec.clone();
-		CS.taxa = (Vector) taxa.clone();
-		CS.taxaInTaxa = (Vector) taxaInTaxa.clone();
+		CS.clusters = clusters;
+		CS.cluster2trees = cluster2trees;
+		CS.taxa = taxa;
+		CS.taxonSet = taxonSet;
+		CS.taxaInTaxa = taxaInTaxa;
+		CS.shared = true;
+		shared = true;
 		return CS;
 	}
 
+	/**
+	 * gets a key for this cluster set. Two cluster sets have equal keys if they have the same clusters, in the same
+	 * order, in the same trees, and the same taxa, in the same order. All operations then give the same results on both
+	 *
+	 * @return key
+	 */
+	public Key getKey() {
+		return new Key(this);
+	}
+
+	/**
+	 * the key of a cluster set, its hash code is computed once
+	 */
+	public static final class Key {
+		private final BitSet[] clustersAndTrees; // each cluster followed by its tree numbers
+		private final int[] taxa;
+		private final int hashCode;
+
+		private Key(ClusterSet CS) {
+			clustersAndTrees = new BitSet[2 * CS.clusters.size()];
+			for (int c = 0; c < CS.clusters.size(); c++) {
+				clustersAndTrees[2 * c] = CS.clusters.get(c);
+				clustersAndTrees[2 * c + 1] = CS.cluster2trees.get(CS.clusters.get(c));
+			}
+			taxa = new int[CS.taxa.size()];
+			for (int i = 0; i < taxa.length; i++) {
+				taxa[i] = CS.taxa.get(i);
+			}
+			hashCode = 31 * Arrays.hashCode(clustersAndTrees) + Arrays.hashCode(taxa);
+		}
+
+		public int hashCode() {
+			return hashCode;
+		}
+
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key that = (Key) other;
+			return hashCode == that.hashCode && Arrays.equals(taxa, that.taxa) && Arrays.equals(clustersAndTrees, that.clustersAndTrees);
+		}
+	}
+
 	public Vector collapse() {
 		Vector output = new Vector();
 		ClusterSet CS = cloneClusterSet();
-		Vector collapsedTaxa = new Vector();
-		Vector collapsedTaxaSets = new Vector();
+		Vector<Integer> collapsedTaxa = new Vector<>();
+		Vector<BitSet> collapsedTaxaSets = new Vector<>();
 		boolean suc = true;
 		while (suc) {
 			suc = false;
@@ -206,28 +238,23 @@ public class ClusterSet {
 			int i = 0;
 			int j = 1;
 			while (i < CS.taxa.size() - 1) {
-				Integer x = CS.taxa.elementAt(i);
-				Integer y = CS.taxa.elementAt(j);
+				Integer x = CS.taxa.get(i);
+				Integer y = CS.taxa.get(j);
 				if (!CS.separated(x, y)) {
 					int ix = collapsedTaxa.indexOf(x);
 					int iy = collapsedTaxa.indexOf(y);
-					Vector setx;
-					Vector sety;
+					BitSet setx = new BitSet();
 					if (ix != -1) {
-						setx = (Vector) collapsedTaxaSets.elementAt(ix);
+						setx.or(collapsedTaxaSets.elementAt(ix));
 					} else {
-						setx = new Vector();
-						setx.add(x);
+						setx.set(x);
 					}
 					if (iy != -1) {
-						sety = (Vector) collapsedTaxaSets.elementAt(iy);
+						setx.or(collapsedTaxaSets.elementAt(iy));
 					} else {
-						sety = new Vector();
-						sety.add(y);
+						setx.set(y);
 					}
-					setx.addAll(sety);
 					if (ix != -1) {
-						// shouldn't be necessary
 						collapsedTaxaSets.setElementAt(setx, ix);
 					} else {
 						collapsedTaxa.add(x);
@@ -239,28 +266,28 @@ public class ClusterSet {
 					}
 					// collapse x and y
 					suc = true;
-					Vector z1 = CS.taxaInTaxa.elementAt(i);
-					Vector z2 = (Vector) z1.clone();
-					Vector z3 = CS.taxaInTaxa.elementAt(j);
-					Collection z4 = (Collection) z3.clone();
-					z2.addAll(z4);
-					CS.taxaInTaxa.set(i, z2);
-					CS.taxa.removeElementAt(j);
-					CS.taxaInTaxa.removeElementAt(j);
+					CS.ensureNotShared();
+					BitSet z = (BitSet) CS.taxaInTaxa.get(i).clone();
+					z.or(CS.taxaInTaxa.get(j));
+					CS.taxaInTaxa.set(i, z);
+					CS.taxa.remove(j);
+					CS.taxonSet.clear(y);
+					CS.taxaInTaxa.remove(j);
 					// remove y from each cluster
 					int c = 0;
-					while (c < CS.clusterVec.size()) {
-						Vector cluster = CS.clusterVec.elementAt(c);
-						if (cluster.contains(y)) {
+					while (c < CS.clusters.size()) {
+						BitSet cluster = CS.clusters.get(c);
+						if (cluster.get(y)) {
 							// remove y from cluster
-							Vector cluster2 = (Vector) cluster.clone();
-							cluster2.remove(y);
-							if (cluster2.size() == 0 | CS.contains(cluster2)) {
+							BitSet cluster2 = (BitSet) cluster.clone();
+							cluster2.clear(y);
+							BitSet treeNums = CS.cluster2trees.remove(cluster);
+							if (cluster2.isEmpty() || CS.contains(cluster2)) {
 								// remove cluster
-								CS.clusterVec.removeElementAt(c);
-								CS.treeNumberVec.removeElementAt(c);
+								CS.clusters.remove(c);
 							} else {
-								CS.clusterVec.set(c, cluster2);
+								CS.clusters.set(c, cluster2);
+								CS.cluster2trees.put(cluster2, treeNums);
 								c++;
 							}
 						} else {
@@ -282,28 +309,20 @@ public class ClusterSet {
 		return output;
 	}
 
-	public boolean separated(Integer x, Integer y) {
-		boolean sep = false;
-		for (int c = 0; c < clusterVec.size(); c++) {
-			Vector cluster = clusterVec.elementAt(c);
-			if (cluster.size() == 1) {
-				continue;
-			}
-			boolean a = cluster.contains(x);
-			boolean b = cluster.contains(y);
-			if ((a && !b) || (b && !a)) {
-				sep = true;
+	public boolean separated(int x, int y) {
+		for (BitSet cluster : clusters) {
+			if (cluster.get(x) != cluster.get(y) && cluster.cardinality() > 1) {
+				return true;
 			}
 		}
-		return sep;
+		return false;
 	}
 
-	public ClusterSet restrict(Vector cluster) {
+	public ClusterSet restrict(BitSet cluster) {
 		ClusterSet C = new ClusterSet();
-		for (int c = 0; c < clusterVec.size(); c++) {
-			Vector cluster2 = clusterVec.elementAt(c);
+		for (BitSet cluster2 : clusters) {
 			if (ClusterSet.getRelation(cluster, cluster2) == 4) {
-				C.addCluster(cluster2, (Vector) treeNumberVec.elementAt(c));
+				C.addCluster(cluster2, cluster2trees.get(cluster2));
 			}
 		}
 		return C;
@@ -311,89 +330,70 @@ public class ClusterSet {
 
 	// only for stand alone version
 	public void addCluster(Vector cluster) {
-		for (int i = 0; i < cluster.size(); i++) {
-			Vector singleton = new Vector(0);
-			Integer taxon = (Integer) cluster.elementAt(i);
-			singleton.add(taxon);
-			if (!taxa.contains(taxon)) {
-				clusterVec.add(singleton);
-				treeNumberVec.add(new Vector());
-				taxa.add(taxon);
-				taxaInTaxa.add(singleton);
-			}
-		}
-		cluster = ClusterSet.sortCluster(cluster);
-		if (!clusterVec.contains(cluster)) {
-			clusterVec.add(cluster);
-			treeNumberVec.add(new Vector());
-		}
+		addCluster(toBitSet(cluster), new BitSet());
 	}
 
 	public void addCluster(Vector cluster, List<Integer> treeNumbers) {
-
-		// add tree numbers to allTreeNumbers
-		Vector numVec = new Vector();
+		BitSet treeNums = new BitSet();
 		for (Integer treeNumber : treeNumbers) {
-			Integer treenum = treeNumber;
-			numVec.add(treenum);
-			if (!allTreeNums.contains(treenum)) {
-				allTreeNums.add(treenum);
-			}
+			treeNums.set(treeNumber);
 		}
+		addCluster(toBitSet(cluster), treeNums);
+	}
 
-		for (int i = 0; i < cluster.size(); i++) {
-			Vector singleton = new Vector(0);
-			Integer taxon = (Integer) cluster.elementAt(i);
-			singleton.add(taxon);
-			if (!taxa.contains(taxon)) {
-				clusterVec.add(singleton);
-				treeNumberVec.add(new Vector());
-				taxa.add(taxon);
-				taxaInTaxa.add(singleton);
+	/**
+	 * adds a cluster, and a singleton cluster for each new taxon. If the cluster is already present, only its tree
+	 * numbers are updated. The cluster and tree numbers are not copied and must not be modified afterwards
+	 */
+	public void addCluster(BitSet cluster, BitSet treeNumbers) {
+		ensureNotShared();
+		for (int taxon = cluster.nextSetBit(0); taxon != -1; taxon = cluster.nextSetBit(taxon + 1)) {
+			if (taxonSet.get(taxon)) {
+				continue;
+			}
+			BitSet singleton = new BitSet();
+			singleton.set(taxon);
+			if (!cluster2trees.containsKey(singleton)) {
+				clusters.add(singleton);
+				cluster2trees.put(singleton, new BitSet());
 			}
+			taxa.add(taxon);
+			taxonSet.set(taxon);
+			taxaInTaxa.add(singleton);
 		}
-		cluster = ClusterSet.sortCluster(cluster);
-		if (!clusterVec.contains(cluster)) {
+		BitSet treeNums = cluster2trees.get(cluster);
+		if (treeNums == null) {
 			// add the cluster
-			clusterVec.add(cluster);
-			treeNumberVec.add(numVec);
-		} else {
+			clusters.add(cluster);
+			cluster2trees.put(cluster, treeNumbers);
+		} else if (!containsAll(treeNums, treeNumbers)) {
 			// only add the tree numbers of the new cluster to the existing cluster
-			int index = clusterVec.indexOf(cluster);
-			Vector treenums = treeNumberVec.elementAt(index);
-			for (int i = 0; i < numVec.size(); i++) {
-				Integer treenum = (Integer) numVec.elementAt(i);
-				if (!treenums.contains(treenum)) {
-					treenums.add(treenum);
-				}
-			}
+			BitSet union = (BitSet) treeNums.clone();
+			union.or(treeNumbers);
+			cluster2trees.put(cluster, union);
 		}
+	}
 
+	private static BitSet toBitSet(Vector cluster) {
+		BitSet result = new BitSet();
+		for (Object taxon : cluster) {
+			result.set((Integer) taxon);
+		}
+		return result;
 	}
 
-    /*
-    public void addCluster(Integer cluster[]) {
-        Vector vecCluster = new Vector();
-        for (int i = 0; i < cluster.length; i++) {
-            vecCluster.add(cluster[i]);
-            Vector singleton = new Vector(0);
-            singleton.add(cluster[i]);
-            if (!taxa.contains(cluster[i])) {
-                clusterVec.add(singleton);
-                taxa.add(cluster[i]);
-                taxaInTaxa.add(singleton);
-                numClusters++;
-            }
-        }
-        vecCluster = ClusterSet.sortCluster(vecCluster);
-        if (!clusterVec.contains(vecCluster)) {
-            clusterVec.add(vecCluster);
-            numClusters++;
-        }
-    }
-    */
+	/**
+	 * does a contain all elements of b?
+	 *
+	 * @return true, if b is a subset of a
+	 */
+	private static boolean containsAll(BitSet a, BitSet b) {
+		BitSet difference = (BitSet) b.clone();
+		difference.andNot(a);
+		return difference.isEmpty();
+	}
 
-	public static int getRelation(Vector c1, Vector c2) {
+	public static int getRelation(BitSet c1, BitSet c2) {
 		// 1 = disjoint
 		// 2 = incompatible
 		// 3 = c1 strictly included in c2
@@ -402,16 +402,14 @@ public class ClusterSet {
 		if (c1.equals(c2)) {
 			return 5;
 		}
-		if (c1.containsAll(c2)) {
+		if (containsAll(c1, c2)) {
 			return 4;
 		}
-		if (c2.containsAll(c1)) {
+		if (containsAll(c2, c1)) {
 			return 3;
 		}
-		for (int i = 0; i < c1.size(); i++) {
-			if (c2.contains(c1.elementAt(i))) {
-				return 2;
-			}
+		if (c1.intersects(c2)) {
+			return 2;
 		}
 		return 1;
 	}
@@ -35,6 +35,7 @@
  */
 package dendroscope.algorithms.levelknet.leo;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Vector;
 
@@ -53,7 +54,7 @@ public class DiGraph {
 	public final int[] edgenumber;
 	public int retnumber;
 	public final int[] retside; // 0 = this is the left parent of the reticulation, 1 = right parent, 2 = this child is not a reticulation
-	public Vector<Vector<Integer>>[] clusters;
+	public Vector<BitSet>[] clusters;
 	public int number;
 	public int outdeg;
 	public int indeg;
@@ -201,8 +202,8 @@ public class DiGraph {
 			}
 			boolean suppress = true;
 			for (int i = 0; i < clusters[c].size(); i++) {
-				Vector cluster = clusters[c].elementAt(i);
-				if (cluster.size() > 1) {
+				BitSet cluster = clusters[c].elementAt(i);
+				if (cluster.cardinality() > 1) {
 					suppress = false;
 				}
 			}
@@ -323,8 +324,8 @@ public class DiGraph {
 		switchAllOn();
 		cleanDiGraph();
 		// check if all clusters are displayed
-		for (int c = 0; c < CS.clusterVec.size(); c++) {
-			Vector cluster = CS.clusterVec.elementAt(c);
+		for (int c = 0; c < CS.size(); c++) {
+			BitSet cluster = CS.getCluster(c);
 			if (!clusterDisplayed(cluster)) {
 				disp = false;
 			}
@@ -335,7 +336,7 @@ public class DiGraph {
 
 	public boolean displaysTrees(ClusterSet CS, int k) {
 
-		Vector allTreeNums = CS.updateAllTreeNums();
+		BitSet allTreeNums = CS.getAllTreeNumbers();
 		// number all reticulation edges
 		int[] num = new int[1];
 		num[0] = 0;
@@ -343,8 +344,7 @@ public class DiGraph {
 		cleanDiGraph();
 
 		// loop through all trees
-		for (int t = 0; t < allTreeNums.size(); t++) {
-			int treenum = (Integer) allTreeNums.elementAt(t);
+		for (int treenum = allTreeNums.nextSetBit(0); treenum != -1; treenum = allTreeNums.nextSetBit(treenum + 1)) {
 
 			// recursively loop through parent maps and check if at least one of the parent maps displays the tree
 			boolean[] retOn = new boolean[k];
@@ -387,14 +387,14 @@ public class DiGraph {
 		}
 	}
 
-	public Vector updateClustersTree(ClusterSet CS, int tree) {
+	public BitSet updateClustersTree(ClusterSet CS, int tree) {
 		// returns the cluster displayed by the incoming edge
-		Vector cluster = new Vector();
+		BitSet cluster = new BitSet();
 		if (outdeg == 0) {
 			// this is a leaf
 			// return a singleton cluster
 			if (label != DUMMY_NUMBER) {
-				cluster.add(label);
+				cluster.set(label);
 			}
 			return cluster;
 		}
@@ -403,8 +403,7 @@ public class DiGraph {
 				// this reticulation edge has not been switched on
 				continue;
 			}
-			Vector childCluster = children.elementAt(c).updateClustersTree(CS, tree);
-			childCluster = ClusterSet.sortCluster(childCluster);
+			BitSet childCluster = children.elementAt(c).updateClustersTree(CS, tree);
 			// check that this is not a reticulation edge
 			// abd that this cluster is contained in CS and comes from the specified tree
 			if (children.elementAt(c).indeg < 2 & CS.contains(childCluster, tree)) {
@@ -412,9 +411,7 @@ public class DiGraph {
 				clusters[c].add(childCluster);
 			}
 			// add the elements to cluster displayed by the incoming edge
-			for (int i = 0; i < childCluster.size(); i++) {
-				cluster.add(childCluster.elementAt(i));
-			}
+			cluster.or(childCluster);
 		}
 		return cluster;
 	}
@@ -432,15 +429,14 @@ public class DiGraph {
 	}
 
 	public boolean displaysClustersTree(ClusterSet CS, int tree) {
-		for (int c = 0; c < CS.clusterVec.size(); c++) {
-			Vector cluster = CS.clusterVec.elementAt(c);
+		for (int c = 0; c < CS.size(); c++) {
+			BitSet cluster = CS.getCluster(c);
 
 			// singletons are always displayed
-			if (cluster.size() < 2) continue;
+			if (cluster.cardinality() < 2) continue;
 
 			// only check clusters that come from the given tree
-			Vector treeNums = CS.treeNumberVec.elementAt(c);
-			if (!treeNums.contains(tree)) continue;
+			if (!CS.getTreeNumbers(c).get(tree)) continue;
 
 			boolean cd = clusterDisplayed(cluster);
 			cleanDiGraph();
@@ -451,13 +447,13 @@ public class DiGraph {
 		return true;
 	}
 
-	public boolean clusterDisplayed(Vector cluster) {
+	public boolean clusterDisplayed(BitSet cluster) {
 		// returns true if this cluster is displayed by the digraph and false otherwise
 		if (visited) {
 			return false;
 		}
 		visited = true;
-		if (cluster.size() == 1) {
+		if (cluster.cardinality() == 1) {
 			return true;
 		}
 		for (int c = 0; c < outdeg; c++) {
@@ -517,14 +513,14 @@ public class DiGraph {
 		}
 	}
 
-	public Vector updateClusters(ClusterSet CS) {
+	public BitSet updateClusters(ClusterSet CS) {
 		// returns the cluster displayed by the incoming edge
-		Vector cluster = new Vector();
+		BitSet cluster = new BitSet();
 		if (outdeg == 0) {
 			// this is a leaf
 			// return a singleton cluster
 			if (label != DUMMY_NUMBER) {
-				cluster.add(label);
+				cluster.set(label);
 			}
 			return cluster;
 		}
@@ -533,8 +529,7 @@ public class DiGraph {
 				// this reticulation edge has not been switched on
 				continue;
 			}
-			Vector childCluster = children.elementAt(c).updateClusters(CS);
-			childCluster = ClusterSet.sortCluster(childCluster);
+			BitSet childCluster = children.elementAt(c).updateClusters(CS);
 			// check if this is not a reticulation edge
 			// and that this cluster is not yet in the cluster set of the edge
 			// and that this cluster is contained in CS
@@ -543,9 +538,7 @@ public class DiGraph {
 				clusters[c].add(childCluster);
 			}
 			// add the elements to cluster displayed by the incoming edge
-			for (int i = 0; i < childCluster.size(); i++) {
-				cluster.add(childCluster.elementAt(i));
-			}
+			cluster.or(childCluster);
 		}
 		return cluster;
 	}
@@ -641,17 +634,16 @@ public class DiGraph {
 			String edgeLabel = "";
 			boolean notEmpty = false;
 			for (int j = 0; j < clusters[c].size(); j++) {
-				Vector cluster = clusters[c].elementAt(j);
-				if (cluster.size() > 1) {
+				BitSet cluster = clusters[c].elementAt(j);
+				if (cluster.cardinality() > 1) {
 					if (notEmpty) {
 						edgeLabel = edgeLabel + ", ";
 					}
 					String clusterString = "[";
-					for (int i = 0; i < cluster.size(); i++) {
-						Integer taxon = (Integer) cluster.elementAt(i);
+					for (int taxon = cluster.nextSetBit(0); taxon != -1; taxon = cluster.nextSetBit(taxon + 1)) {
 						String taxonString = (String) CassAlgorithm.stringTaxa.elementAt(taxon - 1);
 						clusterString = clusterString + taxonString;
-						if (i < cluster.size() - 1) {
+						if (cluster.nextSetBit(taxon + 1) != -1) {
 							clusterString = clusterString + ",";
 						} else {
 							clusterString = clusterString + "]";
@@ -0,0 +1,148 @@
+/*
+ * SearchCache.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.algorithms.levelknet.leo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * caches used by the Cass search, shared by all branches and levels of one computation.
+ * <p/>
+ * The same reduced cluster set is reached by removing the same leaves in different orders. The first cache stores the
+ * result of collapsing all maximal ST-sets of a cluster set. The second stores the reduced cluster sets for which the
+ * search found no network with a given number of remaining leaf removals, which only depends on the cluster set and that
+ * number, so the search does not explore such a cluster set again, neither at the same level nor at higher levels.
+ * Both caches hold a bounded number of entries and discard the least recently used one when full
+ */
+class SearchCache {
+	public static final int MAX_COLLAPSED = 10000;
+	public static final int MAX_NO_NETWORK = 100000;
+
+	private final Map<ClusterSet.Key, Vector> collapsed = new LruMap<>(MAX_COLLAPSED);
+	private final Map<NoNetworkKey, Boolean> noNetwork = new LruMap<>(MAX_NO_NETWORK);
+
+	private final AtomicLong collapseHits = new AtomicLong();
+	private final AtomicLong collapseMisses = new AtomicLong();
+	private final AtomicLong noNetworkHits = new AtomicLong();
+	private final AtomicLong noNetworkLookups = new AtomicLong();
+
+	/**
+	 * collapses all maximal ST-sets of the given cluster set, or gets the result from the cache. Do not modify the result
+	 *
+	 * @return vector containing the collapsed cluster set, the taxa collapsed into and the sets of collapsed taxa
+	 */
+	Vector collapse(ClusterSet CS) {
+		ClusterSet.Key key = CS.getKey();
+		Vector output;
+		synchronized (collapsed) {
+			output = collapsed.get(key);
+		}
+		if (output != null) {
+			collapseHits.incrementAndGet();
+			return output;
+		}
+		collapseMisses.incrementAndGet();
+		output = CS.collapse();
+		synchronized (collapsed) {
+			collapsed.put(key, output);
+		}
+		return output;
+	}
+
+	/**
+	 * has the search found that the given cluster set has no network with the given number of remaining leaf removals?
+	 *
+	 * @return true, if known to have no network
+	 */
+	boolean hasNoNetwork(ClusterSet.Key key, int remaining) {
+		noNetworkLookups.incrementAndGet();
+		boolean result;
+		synchronized (noNetwork) {
+			result = noNetwork.get(new NoNetworkKey(key, remaining)) != null; // get, not containsKey, so that the entry counts as recently used
+		}
+		if (result) {
+			noNetworkHits.incrementAndGet();
+		}
+		return result;
+	}
+
+	/**
+	 * record that the given cluster set has no network with the given number of remaining leaf removals
+	 */
+	void setNoNetwork(ClusterSet.Key key, int remaining) {
+		synchronized (noNetwork) {
+			noNetwork.put(new NoNetworkKey(key, remaining), Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * reports the hit statistics
+	 */
+	void report() {
+		int noNetworkSize;
+		synchronized (noNetwork) {
+			noNetworkSize = noNetwork.size();
+		}
+		System.err.println("Collapse cache: " + collapseHits.get() + " hits, " + collapseMisses.get() + " misses");
+		System.err.println("No-network cache: " + noNetworkHits.get() + " hits, " + noNetworkLookups.get() + " lookups, " + noNetworkSize + " entries");
+	}
+
+	/**
+	 * a cluster set together with the number of remaining leaf removals
+	 */
+	private static final class NoNetworkKey {
+		private final ClusterSet.Key key;
+		private final int remaining;
+
+		NoNetworkKey(ClusterSet.Key key, int remaining) {
+			this.key = key;
+			this.remaining = remaining;
+		}
+
+		public int hashCode() {
+			return 31 * key.hashCode() + remaining;
+		}
+
+		public boolean equals(Object other) {
+			if (!(other instanceof NoNetworkKey)) {
+				return false;
+			}
+			NoNetworkKey that = (NoNetworkKey) other;
+			return remaining == that.remaining && key.equals(that.key);
+		}
+	}
+
+	/**
+	 * a map that discards the least recently used entry when it exceeds the given size
+	 */
+	private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+		private final int maxSize;
+
+		LruMap(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > maxSize;
+		}
+	}
+}
@@ -22,16 +22,22 @@ import dendroscope.consensus.Cluster;
 import jloda.graph.Node;
 import jloda.phylo.PhyloTree;
 
-import java.util.BitSet;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * compute a Hasse diagram
  * Daniel Huson, 4.2009
  */
 public class HasseDiagram {
+    /**
+     * below this number of clusters, the cover relation is computed in the calling thread
+     */
+    private static final int MIN_CLUSTERS_FOR_PARALLEL = 1000;
+
     /**
      * construct the Hasse diagram for a set of clusters
      *
@@ -51,36 +57,184 @@ public class HasseDiagram {
         tree.setLabel(root, "" + new Cluster(Cluster.extractTaxa(clusters)));
         tree.setInfo(root, new Cluster());
 
-        int[] cardinality = new int[clusters.length];
         Node[] nodes = new Node[clusters.length];
 
         for (int i = 0; i < clusters.length; i++) {
-            cardinality[i] = clusters[i].cardinality();
             nodes[i] = tree.newNode();
             tree.setLabel(nodes[i], "" + clusters[i]);
             tree.setInfo(nodes[i], clusters[i]);
         }
 
+        int[][] parents = computeParents(clusters, true);
         for (int i = 0; i < clusters.length; i++) {
-            BitSet cluster = clusters[i];
-
-            if (nodes[i].getInDegree() == 0) {
+            if (parents[i].length == 0)
                 tree.newEdge(root, nodes[i]);
+            else {
+                for (int p : parents[i])
+                    tree.newEdge(nodes[p], nodes[i]);
             }
+        }
+        return tree;
+    }
+
+    /**
+     * computes the cover relation of clusters that are sorted by decreasing cardinality. The parents of a cluster are
+     * the minimal clusters that contain it and appear earlier in the array. Equal clusters are placed one below the other,
+     * in the order of the array.
+     * <p>
+     * The clusters containing a given cluster are found by scanning the clusters that contain its least frequent taxon.
+     * The parents are then obtained by visiting the containing clusters from smallest to largest and skipping any that is
+     * already known to lie above a previously found parent. The clusters above a parent are found by following the
+     * parents computed for larger clusters, so only the diagram itself is kept. Clusters of the same cardinality
+     * do not depend on each other and are processed together
+     *
+     * @param clusters clusters sorted by decreasing cardinality
+     * @param parallel use all available cores, if there are many clusters
+     * @return for each cluster, the indices of its parents in increasing order. An empty array means that the cluster is
+     * not contained in any other cluster
+     */
+    public static int[][] computeParents(BitSet[] clusters, boolean parallel) {
+        final int n = clusters.length;
+
+        // for each taxon, the clusters that contain it, in increasing order of index:
+        int maxTaxon = -1;
+        for (BitSet cluster : clusters)
+            maxTaxon = Math.max(maxTaxon, cluster.length() - 1);
+        final int[] count = new int[maxTaxon + 1];
+        final int[] cardinality = new int[n];
+        for (int i = 0; i < n; i++) {
+            for (int t = clusters[i].nextSetBit(0); t != -1; t = clusters[i].nextSetBit(t + 1))
+                count[t]++;
+            cardinality[i] = clusters[i].cardinality();
+        }
+        final int[][] taxon2clusters = new int[maxTaxon + 1][];
+        for (int t = 0; t <= maxTaxon; t++)
+            taxon2clusters[t] = new int[count[t]];
+        Arrays.fill(count, 0);
+        for (int i = 0; i < n; i++) {
+            for (int t = clusters[i].nextSetBit(0); t != -1; t = clusters[i].nextSetBit(t + 1))
+                taxon2clusters[t][count[t]++] = i;
+        }
+
+        final int[][] parents = new int[n][];
+        final BlockTask task = (first, last) -> {
+            final BitSet covered = new BitSet();
+            for (int k = first; k < last; k++)
+                parents[k] = computeParents(k, clusters, cardinality, taxon2clusters, parents, covered);
+        };
+
+        final int numberOfThreads = (parallel ? Math.min(Runtime.getRuntime().availableProcessors(), 1 + n / MIN_CLUSTERS_FOR_PARALLEL) : 1);
+        final ExecutorService executor = (numberOfThreads > 1 ? Executors.newFixedThreadPool(numberOfThreads) : null);
+        try {
+            for (int first = 0; first < n; ) {
+                int last = first + 1;
+                while (last < n && cardinality[last] == cardinality[first])
+                    last++;
+                runInParallel(executor, numberOfThreads, first, last, task);
+                first = last;
+            }
+        } finally {
+            if (executor != null)
+                executor.shutdownNow();
+        }
+        return parents;
+    }
 
-            BitSet covered = new BitSet();
+    /**
+     * computes the parents of one cluster, assuming that the parents of all larger clusters are known
+     *
+     * @param covered empty bit set, which is empty again on return
+     * @return indices of parents in increasing order
+     */
+    private static int[] computeParents(int k, BitSet[] clusters, int[] cardinality, int[][] taxon2clusters, int[][] parents, BitSet covered) {
+        final BitSet cluster = clusters[k];
+        final int[] candidates;
+        if (cluster.isEmpty()) { // contained in all clusters
+            candidates = new int[k];
+            for (int i = 0; i < k; i++)
+                candidates[i] = i;
+        } else {
+            int best = cluster.nextSetBit(0);
+            for (int t = cluster.nextSetBit(best + 1); t != -1; t = cluster.nextSetBit(t + 1)) {
+                if (taxon2clusters[t].length < taxon2clusters[best].length)
+                    best = t;
+            }
+            candidates = taxon2clusters[best];
+        }
 
-            for (int j = i + 1; j < clusters.length; j++) {
-                if (cardinality[j] < cardinality[i]) {
-                    BitSet subCluster = clusters[j];
-                    if (Cluster.contains(cluster, subCluster) && !Cluster.contains(covered, subCluster)) {
-                        tree.newEdge(nodes[i], nodes[j]);
-                        covered.or(subCluster);
-                        // if (covered.cardinality() == cardinality[i]) break;
+        // the containing clusters, from smallest to largest, are candidates before index k in reverse order:
+        int end = 0;
+        while (end < candidates.length && candidates[end] < k)
+            end++;
+        final int[] found = new int[end];
+        final int[] stack = new int[end];
+        int size = 0;
+        int top = 0;
+        int marked = 0;
+        for (int a = end - 1; a >= 0; a--) {
+            final int i = candidates[a];
+            if (covered.get(i) || !Cluster.contains(clusters[i], cluster))
+                continue;
+            if (cardinality[i] == cardinality[k]) { // equal cluster, which lies below all other containing clusters
+                found[size++] = i;
+                break;
+            }
+            found[size++] = i;
+            // mark all clusters above i, each of which contains the cluster and is thus a candidate:
+            for (int p : parents[i]) {
+                if (!covered.get(p)) {
+                    covered.set(p);
+                    stack[top++] = p;
+                }
+            }
+            while (top > marked) {
+                final int j = stack[marked++];
+                for (int p : parents[j]) {
+                    if (!covered.get(p)) {
+                        covered.set(p);
+                        stack[top++] = p;
                     }
                 }
             }
         }
-        return tree;
+        for (int a = 0; a < top; a++)
+            covered.clear(stack[a]);
+
+        final int[] result = new int[size];
+        for (int a = 0; a < size; a++)
+            result[a] = found[size - 1 - a];
+        return result;
+    }
+
+    /**
+     * applies the given task to blocks of the range first..last-1, using the executor, if given and worthwhile
+     */
+    private static void runInParallel(ExecutorService executor, int numberOfThreads, int first, int last, BlockTask task) {
+        final int n = last - first;
+        if (executor == null || n < MIN_CLUSTERS_FOR_PARALLEL / 4) {
+            task.apply(first, last);
+            return;
+        }
+        final int blockSize = Math.max(MIN_CLUSTERS_FOR_PARALLEL / 4, n / (8 * numberOfThreads));
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int start = first; start < last; start += blockSize) {
+            final int from = start;
+            final int to = Math.min(last, start + blockSize);
+            futures.add(executor.submit(() -> task.apply(from, to)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * a task applied to a range of indices
+     */
+    private interface BlockTask {
+        void apply(int first, int last);
     }
 }
@@ -0,0 +1,222 @@
+/*
+ * IncompatibilityGraph.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.algorithms.utils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * the incompatibility graph of a set of clusters. Two clusters are incompatible, if they intersect and neither
+ * contains the other. Each cluster is stored as an array of words, together with the range of words that are non-zero,
+ * so that pairs of clusters whose ranges do not overlap are skipped immediately. The graph is stored as one bit set per
+ * cluster, computed in parallel, and its connected components are computed using union-find
+ */
+public class IncompatibilityGraph {
+    /**
+     * below this number of clusters, the graph is computed in the calling thread
+     */
+    private static final int MIN_CLUSTERS_FOR_PARALLEL = 500;
+
+    private final BitSet[] rows;
+
+    /**
+     * constructs the incompatibility graph of the given clusters
+     */
+    public IncompatibilityGraph(BitSet[] clusters) {
+        final int n = clusters.length;
+        final long[][] words = new long[n][];
+        final int[] firstWord = new int[n];
+        for (int i = 0; i < n; i++) {
+            words[i] = clusters[i].toLongArray(); // trailing zero words are dropped
+            firstWord[i] = (clusters[i].isEmpty() ? 0 : clusters[i].nextSetBit(0) >>> 6);
+        }
+
+        // each task computes the incompatible pairs i<j for a range of i, the rows are completed afterwards:
+        rows = new BitSet[n];
+        final Runnable[] tasks = new Runnable[(n + 63) / 64];
+        for (int b = 0; b < tasks.length; b++) {
+            final int first = 64 * b;
+            final int last = Math.min(n, first + 64);
+            tasks[b] = () -> {
+                for (int i = first; i < last; i++) {
+                    final BitSet row = new BitSet();
+                    for (int j = i + 1; j < n; j++) {
+                        // skip pairs whose ranges of non-zero words do not overlap, such clusters are disjoint:
+                        if (firstWord[j] < words[i].length && firstWord[i] < words[j].length
+                            && incompatible(words[i], words[j], firstWord[i], firstWord[j]))
+                            row.set(j);
+                    }
+                    rows[i] = row;
+                }
+            };
+        }
+        run(tasks, n >= MIN_CLUSTERS_FOR_PARALLEL);
+
+        for (int i = 0; i < n; i++) {
+            for (int j = rows[i].nextSetBit(i + 1); j != -1; j = rows[i].nextSetBit(j + 1))
+                rows[j].set(i);
+        }
+    }
+
+    /**
+     * computes the incompatibility components of the given clusters
+     *
+     * @return components, each a set of cluster indices, numbered by their smallest member
+     */
+    public static BitSet[] computeComponents(BitSet[] clusters) {
+        return new IncompatibilityGraph(clusters).getComponents();
+    }
+
+    /**
+     * get the number of clusters
+     *
+     * @return number of clusters
+     */
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * are the two clusters incompatible?
+     *
+     * @return true, if incompatible
+     */
+    public boolean isIncompatible(int i, int j) {
+        return rows[i].get(j);
+    }
+
+    /**
+     * gets the indices of all clusters incompatible with the given one. Do not modify
+     *
+     * @return incompatible clusters
+     */
+    public BitSet getIncompatible(int i) {
+        return rows[i];
+    }
+
+    /**
+     * computes the connected components of the graph
+     *
+     * @return components, each a set of cluster indices, numbered by their smallest member
+     */
+    public BitSet[] getComponents() {
+        final int n = rows.length;
+        final int[] parent = new int[n];
+        for (int i = 0; i < n; i++)
+            parent[i] = i;
+        for (int i = 0; i < n; i++) {
+            for (int j = rows[i].nextSetBit(i + 1); j != -1; j = rows[i].nextSetBit(j + 1)) {
+                final int a = find(parent, i);
+                final int b = find(parent, j);
+                if (a != b) {
+                    if (a < b)
+                        parent[b] = a;
+                    else
+                        parent[a] = b;
+                }
+            }
+        }
+
+        final int[] component = new int[n];
+        final List<BitSet> components = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            final int root = find(parent, i);
+            if (root == i) { // roots are the smallest members of their components
+                component[i] = components.size();
+                components.add(new BitSet());
+            } else
+                component[i] = component[root];
+            components.get(component[i]).set(i);
+        }
+        return components.toArray(new BitSet[0]);
+    }
+
+    /**
+     * find with path halving
+     *
+     * @return representative
+     */
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * are the two non-empty clusters incompatible?
+     *
+     * @param firstA index of first non-zero word of a
+     * @param firstB index of first non-zero word of b
+     * @return true, if they intersect and neither contains the other
+     */
+    private static boolean incompatible(long[] a, long[] b, int firstA, int firstB) {
+        boolean intersects = false;
+        boolean aNotInB = (firstA < firstB);
+        boolean bNotInA = (firstB < firstA);
+
+        final int end = Math.max(a.length, b.length);
+        for (int w = Math.max(firstA, firstB); w < end; w++) {
+            final long x = (w < a.length ? a[w] : 0L);
+            final long y = (w < b.length ? b[w] : 0L);
+            if ((x & y) != 0)
+                intersects = true;
+            if ((x & ~y) != 0)
+                aNotInB = true;
+            if ((y & ~x) != 0)
+                bNotInA = true;
+            if (intersects && aNotInB && bNotInA)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * runs the tasks, using all available cores, if requested
+     */
+    private static void run(Runnable[] tasks, boolean parallel) {
+        final int numberOfThreads = Math.min(Runtime.getRuntime().availableProcessors(), tasks.length);
+        if (!parallel || numberOfThreads <= 1) {
+            for (Runnable task : tasks)
+                task.run();
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>(tasks.length);
+            for (Runnable task : tasks)
+                futures.add(executor.submit(task));
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
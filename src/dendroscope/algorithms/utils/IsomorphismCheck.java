@@ -34,14 +34,13 @@
  */
 package dendroscope.algorithms.utils;
 
-import jloda.graph.Node;
+import dendroscope.util.CanonicalTopology;
 import jloda.phylo.PhyloTree;
 
-import java.io.IOException;
-import java.util.*;
+import java.util.HashSet;
 
 /**
- * Given two rooted, bifurcating phylogenetic trees T1 and T2, this function
+ * Given two rooted phylogenetic trees T1 and T2, this function
  * checks whether T1 and T2 are isomorphic.
  *
  * @author Benjamin Albrecht, 6.2010
@@ -49,110 +48,32 @@ import java.util.*;
 
 public class IsomorphismCheck {
 	public Boolean run(PhyloTree tree1, PhyloTree tree2) {
+		if (!areSingleLabeledTreesWithSameTaxa(tree1, tree2))
+			return false;
 
-		try {
-
-			PhyloTree t1 = new PhyloTree();
-			t1.parseBracketNotation(tree1.toBracketString(), true);
-			PhyloTree t2 = new PhyloTree();
-			t2.parseBracketNotation(tree2.toBracketString(), true);
-
-			if (!areSingleLabeledTreesWithSameTaxa(t1, t2))
-				return false;
-
-			var isBifurcatingTree1 = !t1.isReticulated() && t1.isBifurcating();
-			var isBifurcatingTree2 = !t2.isReticulated() && t2.isBifurcating();
-
-			if (isBifurcatingTree1 != isBifurcatingTree2)
-				return false;
-
-			if (t1.getNumberOfNodes() != t2.getNumberOfNodes())
-				return false;
-
-			if (isBifurcatingTree1)
-				return treeIsomorphism(t1, t2);
-			else
-				return (networkIsomorphism(t1, t2));
-
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-
-		return null;
-
-	}
+		if (tree1.getNumberOfNodes() != tree2.getNumberOfNodes())
+			return false;
 
-	private boolean networkIsomorphism(PhyloTree t1, PhyloTree t2) {
-		String s1 = getIsoString(t1);
-		String s2 = getIsoString(t2);
-		return s1.equals(s2);
+		return CanonicalTopology.getInstance().getForm(tree1).equals(CanonicalTopology.getInstance().getForm(tree2));
 	}
 
+	/**
+	 * gets a string that is the same for two networks if they are isomorphic. Unlike earlier versions, this does not
+	 * modify the labels of the network
+	 *
+	 * @return canonical string
+	 */
 	public String getIsoString(PhyloTree tree) {
-
-		Vector<String> idString = new Vector<>();
-		Hashtable<String, Node> idToNode = new Hashtable<>();
-		Vector<Node> idNodes = new Vector<>();
-
-		Vector<String> idSet = new Vector<>();
-		for (Node v : tree.computeSetOfLeaves()) {
-			idSet.add(tree.getLabel(v));
-			idToNode.put(tree.getLabel(v), v);
-			idString.add("[" + tree.getLabel(v) + "]");
-		}
-		Collections.sort(idSet);
-		for (String s : idSet)
-			idNodes.add(idToNode.get(s));
-
-		Vector<Node> visited = new Vector<>();
-		int id = 1;
-		while (!idNodes.isEmpty()) {
-			Node v = idNodes.firstElement();
-			visited.add(v);
-			idNodes.remove(0);
-
-			String newID = null;
-			Vector<String> pIDs = new Vector<>();
-			for (Node p : v.parents()) {
-				if (tree.getLabel(p) == null && newID == null) {
-					newID = String.valueOf(id);
-					while (idSet.contains(newID)) {
-						id++;
-						newID = String.valueOf(id);
-					}
-					idSet.add(newID);
-					tree.setLabel(p, newID);
-				} else if (tree.getLabel(p) == null && newID != null)
-					tree.setLabel(p, newID);
-				pIDs.add(tree.getLabel(p));
-				if (!visited.contains(p) && !idNodes.contains(p))
-					idNodes.add(p);
-			}
-			if (!pIDs.isEmpty()) {
-				Collections.sort(pIDs);
-				idString.add(pIDs.toString());
-			}
-		}
-
-		Collections.sort(idString);
-		return idString.toString();
-
-	}
-
-	private boolean treeIsomorphism(PhyloTree t1, PhyloTree t2) {
-		String s1 = getTreeString(t1);
-		String s2 = getTreeString(t2);
-		return s1.equals(s2);
+		return CanonicalTopology.getInstance().getForm(tree).toString();
 	}
 
+	/**
+	 * gets a string that is the same for two trees if they are isomorphic
+	 *
+	 * @return canonical string
+	 */
 	public String getTreeString(PhyloTree t) {
-		Set<Set<String>> clusters = dendroscope.util.PhyloTreeUtils.collectAllHardwiredClusters(t);
-		Vector<String> treeString = new Vector<>();
-		for (Set<String> o : clusters)
-			treeString.add(o.toString());
-		Collections.sort(treeString);
-		return treeString.toString();
+		return CanonicalTopology.getInstance().getForm(t).toString();
 	}
 
 
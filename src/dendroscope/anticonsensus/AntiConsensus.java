@@ -19,17 +19,28 @@
 package dendroscope.anticonsensus;
 
 import dendroscope.core.TreeData;
-import dendroscope.util.LCA_LSACalculation;
+import dendroscope.core.TreeIndex;
+import dendroscope.util.EulerTourLCA;
 import jloda.graph.Edge;
 import jloda.graph.Node;
-import jloda.graph.NodeSet;
 import jloda.phylo.PhyloTree;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * this class calculates the anti-consensus for a given set of trees
  * <p/>
+ * Each tree is indexed once: nodes are numbered in pre-order, leaves are listed in depth-first order and each node knows
+ * the interval of leaves below it. The lowest common ancestor of any set of taxa is the lowest common ancestor of its
+ * leftmost and rightmost leaf. The LCA structure and leaf intervals are kept with each tree, see TreeData.getIndex(),
+ * so repeated runs on the same trees do not recompute them. Clusters and witnesses are represented as sets of taxon ids, so that they need not be mapped between trees.
+ * The clusters of the different trees are processed in parallel and each cluster is evaluated independently of all others
+ * <p/>
  * thomas bonfert, 11.2009
  */
 
@@ -45,227 +56,159 @@ public class AntiConsensus {
 
     public AntiCluster[] apply() {
         long startTime = new Date().getTime();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), trees.length)));
         try {
+            // assign taxon ids:
+            final Map<String, Integer> taxon2id = new HashMap<>();
+            for (TreeData tree : trees) {
+                for (Node v : tree.nodes()) {
+                    if (v.getOutDegree() == 0)
+                        taxon2id.putIfAbsent(tree.getLabel(v), taxon2id.size());
+                }
+            }
+
+            // index all trees:
+            final TaxonIndex[] indices = new TaxonIndex[trees.length];
+            {
+                final List<Future<TaxonIndex>> futures = new ArrayList<>(trees.length);
+                for (TreeData tree : trees)
+                    futures.add(executor.submit(() -> new TaxonIndex(tree, taxon2id)));
+                for (int i = 0; i < trees.length; i++)
+                    indices[i] = waitFor(futures.get(i));
+            }
             //check if all inputed trees are on the same set of taxa
-            if (!checkTaxasets())
-                throw new Exception("ERROR: trees are not on the same set of taxa");
-            //determine all clusters of each tree
-            Vector<AntiClusterSet> clusters = new Vector<>(this.trees.length);
-            Vector<Hashtable<String, Node>> leaves = new Vector<>(this.trees.length);
-            Vector<LCA_LSACalculation> lcaCalculations = new Vector<>(this.trees.length);
-            for (int i = 0; i < this.trees.length; i++) {
-                PhyloTree tmpTree = this.trees[i];
-                tmpTree.setName(Integer.toString(i));
-                clusters.add(determineClusters(tmpTree));
-                leaves.add(collectLeaves(tmpTree));
-                lcaCalculations.add(new LCA_LSACalculation(tmpTree));
+            for (int i = 1; i < trees.length; i++) {
+                if (!indices[i].taxa.equals(indices[0].taxa))
+                    throw new IOException("ERROR: trees are not on the same set of taxa");
             }
             long seconds = (new Date().getTime() - startTime);
             System.err.println("Preprocessing required " + seconds / 1000.0 + " seconds");
-            //now iterate over all trees
+
+            //now iterate over all trees, the clusters of each tree are processed as one task
+            final List<Future<List<AntiCluster>>> futures = new ArrayList<>(trees.length);
             for (int i = 0; i < trees.length; i++) {
-                PhyloTree tree_1 = this.trees[i];
-                LCA_LSACalculation lcaCalculation_1 = lcaCalculations.get(i);
-                AntiClusterSet clusterSet = clusters.get(i);
-                //iterate over all clusters contained in the current tree
-                Iterator<AntiCluster> clusterSetIt = clusterSet.getClusters();
-                while (clusterSetIt.hasNext()) {
-                    AntiCluster cluster = clusterSetIt.next();
-                    cluster.addTreeToP1(tree_1);
-                    Node v_T1 = calculateV_T(lcaCalculation_1, cluster.getNodes(), true);
-                    Node v_T1_Plus = calculateV_T_Plus(v_T1);
-                    HashSet<Node> witness = getLeavesBelow(v_T1_Plus);
-                    witness.removeAll(cluster.getNodes());
-                    cluster.setWitness(witness);
-                    for (int j = 0; j < this.trees.length; j++) {
-                        PhyloTree tree_2 = this.trees[j];
-                        if (!tree_2.equals(tree_1)) {
-                            HashSet<Node> witness_T2 = getNodesInOtherTree(tree_1, cluster.getWitness(), leaves, j);
-                            HashSet<Node> cluster_T2 = getNodesInOtherTree(tree_1, cluster.getNodes(), leaves, j);
-                            LCA_LSACalculation lcaCalculation_2 = lcaCalculations.get(j);
-                            Node lcaWitness_T2 = lcaCalculation_2.getLca(witness_T2, false);
-                            AntiClusterSet clusterSet_T2 = clusters.get(j);
-                            boolean isCluster = clusterSet_T2.contains(cluster);
-                            Node v_T2 = calculateV_T(lcaCalculation_2, cluster_T2, isCluster);
-                            Node lca = lcaCalculation_2.getLCA(lcaWitness_T2, v_T2);
-                            if (!(lca.equals(lcaWitness_T2) || lca.equals(v_T2))) {
-                                cluster.addTreeToP2(tree_2);
-                            } else {
-                                if (!isCluster) {
-                                    cluster.getP2().clear();
-                                    cluster.getWitness().clear();
-                                    removeNeedlessCluster(clusters, cluster);
-                                    break;
-                                }
-                                cluster.addTreeToP1(tree_2);
-                                Node v_T2_Plus = calculateV_T_Plus(v_T2);
-                                HashSet<Node> leavesBelow = getLeavesBelow(v_T2_Plus);
-                                leavesBelow.removeAll(cluster_T2);
-                                witness_T2.addAll(leavesBelow);
-                                cluster.setWitness(getNodesInOtherTree(tree_2, witness_T2, leaves, i));
-                                Vector<PhyloTree> q = cluster.getP2();
-                                boolean processNewCluster = false;
-                                while (!q.isEmpty()) {
-                                    PhyloTree tree_3 = q.get(0);
-									int treeNumber = Integer.parseInt(tree_3.getName());
-                                    q.remove(0);
-                                    HashSet<Node> witness_T3 = getNodesInOtherTree(tree_1, cluster.getWitness(), leaves, treeNumber);
-                                    HashSet<Node> cluster_T3 = getNodesInOtherTree(tree_1, cluster.getNodes(), leaves, treeNumber);
-                                    LCA_LSACalculation lcaCalculation_3 = lcaCalculations.get(treeNumber);
-                                    AntiClusterSet clusterSet_T3 = clusters.get(treeNumber);
-                                    isCluster = clusterSet_T3.contains(cluster);
-                                    Node lcaWitness_T3 = lcaCalculation_3.getLca(witness_T3, false);
-                                    Node v_T3 = calculateV_T(lcaCalculation_3, cluster_T3, isCluster);
-                                    Node v_T3_Plus = calculateV_T_Plus(v_T3);
-                                    lca = lcaCalculation_3.getLCA(lcaWitness_T3, v_T3);
-                                    if (lcaWitness_T3.getId() == 1 || v_T3.getId() == 1 || lca.getId() != 1) {
-                                        if (!clusters.get(treeNumber).contains(cluster)) {
-                                            processNewCluster = true;
-                                            break;
-                                        }
-                                        cluster.addTreeToP1(tree_3);
-                                        cluster.removeTreeFromP2(tree_3);
-                                        leavesBelow = getLeavesBelow(v_T3_Plus);
-                                        leavesBelow.removeAll(cluster_T3);
-                                        witness_T3.addAll(leavesBelow);
-                                        cluster.setWitness(getNodesInOtherTree(tree_3, witness_T3, leaves, i));
-                                        q = cluster.getP2();
-                                    }
-                                }
-                                if (processNewCluster) {
-                                    cluster.getP2().clear();
-                                    cluster.getWitness().clear();
-                                    removeNeedlessCluster(clusters, cluster);
-                                    break;
-                                }
-                            }
-
-                        }
-                    }
-                    //the current cluster is an anti-cluster
-                    if (cluster.getP2().size() > 0) {
-                        antiClusters.add(cluster);
-
-                        //this can be deleted
-                        System.out.println("found the following anti-cluster: ");
-                        System.out.println("cluster: " + cluster.getConcatenatedTaxa());
-                        System.out.println("trees in P1: " + cluster.getP1().size());
-                        Vector<PhyloTree> p1 = cluster.getP1();
-                        for (PhyloTree aP1 : p1) {
-                            System.out.println(aP1.getName());
-                        }
-                        System.out.println("trees in P2: " + cluster.getP2().size());
-                        Vector<PhyloTree> p2 = cluster.getP2();
-                        for (PhyloTree aP2 : p2) {
-                            System.out.println(aP2.getName());
-                        }
-                        System.out.println("witness:");
-                        HashSet<Node> tmpWitness = cluster.getWitness();
-                        for (Node tmpNode : tmpWitness) {
-                            System.out.println(tree_1.getLabel(tmpNode));
-                        }
-                        System.out.println();
+                final int which = i;
+                futures.add(executor.submit(() -> {
+                    final List<AntiCluster> found = new ArrayList<>();
+                    final TaxonIndex index = indices[which];
+                    for (int v = 1; v < index.getNumberOfNodes(); v++) { // node 0 is the root
+                        AntiCluster cluster = evaluateCluster(indices, which, v);
+                        if (cluster != null)
+                            found.add(cluster);
                     }
+                    return found;
+                }));
+            }
+            for (int i = 0; i < trees.length; i++) {
+                for (AntiCluster cluster : waitFor(futures.get(i))) {
+                    antiClusters.add(cluster);
+                    report(cluster);
                 }
             }
             seconds = (new Date().getTime() - startTime);
             System.err.println("Algorithm required " + seconds / 1000.0 + " seconds");
         } catch (Exception e) {
             System.err.println(e.getMessage());
+        } finally {
+            executor.shutdownNow();
         }
 
-		return antiClusters.toArray(new AntiCluster[0]);
+        return antiClusters.toArray(new AntiCluster[0]);
     }
 
-    private boolean checkTaxasets() {
-        for (int i = 0; i < this.trees.length; i++) {
-            for (int j = i + 1; j < this.trees.length; j++) {
-                PhyloTree tmpTree_1 = this.trees[i];
-                PhyloTree tmpTree_2 = this.trees[j];
-                NodeSet set1 = tmpTree_1.computeSetOfLeaves();
-                NodeSet set2 = tmpTree_2.computeSetOfLeaves();
-                for (Node tmpNode_1 : set1) {
-                    Iterator<Node> setIt2 = set2.iterator();
-                    boolean contains = false;
-                    while (setIt2.hasNext()) {
-                        Node tmpNode_2 = setIt2.next();
-                        if (tmpTree_1.getLabel(tmpNode_1).equals(tmpTree_2.getLabel(tmpNode_2))) {
-                            contains = true;
-                            break;
-                        }
+    /**
+     * determines whether the cluster below node v of tree i is an anti-cluster
+     *
+     * @return the anti-cluster, or null
+     */
+    private AntiCluster evaluateCluster(TaxonIndex[] indices, int i, int v) {
+        final TaxonIndex index_1 = indices[i];
+        final BitSet cluster = index_1.getTaxaBelow(v);
+
+        final List<Integer> p1 = new ArrayList<>();
+        final LinkedList<Integer> p2 = new LinkedList<>();
+        p1.add(i);
+
+        int v_T1 = index_1.calculateV_T(cluster, true);
+        BitSet witness = index_1.getTaxaBelow(index_1.calculateV_T_Plus(v_T1));
+        witness.andNot(cluster);
+        if (witness.isEmpty())
+            return null;
+
+        for (int j = 0; j < indices.length; j++) {
+            if (j == i)
+                continue;
+            final TaxonIndex index_2 = indices[j];
+            final int lcaWitness_T2 = index_2.getLCA(witness);
+            boolean isCluster = index_2.isCluster(cluster);
+            final int v_T2 = index_2.calculateV_T(cluster, isCluster);
+            final int lca = index_2.getLCA(lcaWitness_T2, v_T2);
+            if (!(lca == lcaWitness_T2 || lca == v_T2)) {
+                p2.add(j);
+            } else {
+                if (!isCluster)
+                    return null;
+                p1.add(j);
+                witness.or(index_2.getTaxaBelow(index_2.calculateV_T_Plus(v_T2)));
+                witness.andNot(cluster);
+
+                // re-examine the trees that seemed to separate cluster and witness:
+                while (!p2.isEmpty()) {
+                    final int k = p2.removeFirst();
+                    final TaxonIndex index_3 = indices[k];
+                    isCluster = index_3.isCluster(cluster);
+                    final int lcaWitness_T3 = index_3.getLCA(witness);
+                    final int v_T3 = index_3.calculateV_T(cluster, isCluster);
+                    final int lca_T3 = index_3.getLCA(lcaWitness_T3, v_T3);
+                    if (lcaWitness_T3 == 0 || v_T3 == 0 || lca_T3 != 0) {
+                        if (!isCluster)
+                            return null;
+                        p1.add(k);
+                        witness.or(index_3.getTaxaBelow(index_3.calculateV_T_Plus(v_T3)));
+                        witness.andNot(cluster);
                     }
-                    if (!contains)
-                        return false;
                 }
             }
         }
-        return true;
-    }
+        if (p2.isEmpty())
+            return null;
 
-    private AntiClusterSet determineClusters(PhyloTree tree) {
-        AntiClusterSet clusterSet = new AntiClusterSet();
-        for (Node n = tree.getFirstNode(); n != null; n = tree.getNextNode(n)) {
-            if (!n.equals(tree.getRoot())) {
-                AntiCluster cluster = new AntiCluster(tree, n);
-                if (n.getOutDegree() == 0)
-                    cluster.add(n);
-                else
-                    determineClusterRec(n, cluster);
-                cluster.setConcatenatedTaxa();
-                clusterSet.add(cluster);
-            }
-        }
-        return clusterSet;
+        //the current cluster is an anti-cluster
+        final PhyloTree tree_1 = trees[i];
+        final AntiCluster result = new AntiCluster(tree_1, index_1.getNode(v));
+        for (int t = cluster.nextSetBit(0); t != -1; t = cluster.nextSetBit(t + 1))
+            result.add(index_1.getLeaf(t));
+        result.setConcatenatedTaxa();
+        for (int k : p1)
+            result.addTreeToP1(trees[k]);
+        for (int k : p2)
+            result.addTreeToP2(trees[k]);
+        final HashSet<Node> witnessNodes = new HashSet<>();
+        for (int t = witness.nextSetBit(0); t != -1; t = witness.nextSetBit(t + 1))
+            witnessNodes.add(index_1.getLeaf(t));
+        result.setWitness(witnessNodes);
+        return result;
     }
 
-    private void determineClusterRec(Node n, AntiCluster cluster) {
-        for (Edge f = n.getFirstOutEdge(); f != null; f = n.getNextOutEdge(f)) {
-            Node w = f.getTarget();
-            if (w.getOutDegree() == 0) {
-                cluster.add(w);
-            } else
-                determineClusterRec(w, cluster);
+    /**
+     * reports an anti-cluster
+     */
+    private void report(AntiCluster cluster) {
+        System.out.println("found the following anti-cluster: ");
+        System.out.println("cluster: " + cluster.getConcatenatedTaxa());
+        System.out.println("trees in P1: " + cluster.getP1().size());
+        for (PhyloTree aP1 : cluster.getP1()) {
+            System.out.println(aP1.getName());
         }
-    }
-
-    private void removeNeedlessCluster(Vector<AntiClusterSet> clusters, AntiCluster cluster) {
-        for (AntiClusterSet tmpSet : clusters) {
-            tmpSet.remove(cluster);
+        System.out.println("trees in P2: " + cluster.getP2().size());
+        for (PhyloTree aP2 : cluster.getP2()) {
+            System.out.println(aP2.getName());
         }
-    }
-
-    private Hashtable<String, Node> collectLeaves(PhyloTree tree) {
-        Hashtable<String, Node> leaves = new Hashtable<>();
-        for (Node n : tree.computeSetOfLeaves()) {
-            leaves.put(tree.getLabel(n), n);
+        System.out.println("witness:");
+        for (Node tmpNode : cluster.getWitness()) {
+            System.out.println(cluster.getTree().getLabel(tmpNode));
         }
-        return leaves;
-    }
-
-    /**
-     * calculates v_T(C) for any set of nodes
-     *
-     * @return v_T(nodes)
-     */
-    private Node calculateV_T(LCA_LSACalculation lcaCalculation, HashSet<Node> nodes, boolean isCluster) {
-        if (isCluster) {
-            Node returnValue = lcaCalculation.getLca(nodes, false);
-            if (returnValue.getFirstInEdge() != null)
-                returnValue = returnValue.getFirstInEdge().getSource();
-            return returnValue;
-        } else
-            return (lcaCalculation.getLca(nodes, false));
-
-    }
-
-    private Node calculateV_T_Plus(Node v_T) {
-        if (v_T.getOutDegree() >= 3)
-            return v_T;
-        else if (v_T.getFirstInEdge() != null)
-            return v_T.getFirstInEdge().getSource();
-
-        else
-            return v_T;
+        System.out.println();
     }
 
     /**
@@ -292,21 +235,162 @@ public class AntiConsensus {
         }
     }
 
-
     /**
-     * the given nodes have to be leaves in the given tree.
-     * the function collects these nodes in the tree with index 'treeIndex'
+     * waits for the given future
      *
-	 */
+     * @return its value
+     */
+    private static <T> T waitFor(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
 
-    private HashSet<Node> getNodesInOtherTree(PhyloTree tree, HashSet<Node> nodes, Vector<Hashtable<String, Node>> leaves,
-                                              int treeIndex) {
+    /**
+     * a tree together with the taxon ids of this computation. The LCA structure and the leaf intervals are taken from
+     * the index that is kept with the tree, so they are only computed once per version of the tree. Nodes are numbered
+     * in pre-order, so the root is 0, and leaves are numbered in depth-first order and the leaves below v are
+     * firstLeaf[v]..lastLeaf[v]
+     */
+    private static class TaxonIndex {
+        private final EulerTourLCA lca;
+        private final int[] firstLeaf;
+        private final int[] lastLeaf;
+        private final int[] leaf2node;
+        private final int[] leaf2taxon;
+        private final int[] taxon2leaf;
+        private final BitSet taxa = new BitSet();
 
-        HashSet<Node> newNodes = new HashSet<>();
-        Hashtable<String, Node> leaveNodes = leaves.get(treeIndex);
-        for (Node nextNode : nodes) {
-            newNodes.add(leaveNodes.get(tree.getLabel(nextNode)));
+        TaxonIndex(TreeData tree, Map<String, Integer> taxon2id) throws IOException {
+            for (Node v : tree.nodes()) {
+                if (v.getInDegree() > 1)
+                    throw new IOException("ERROR: anti-consensus requires trees, not networks");
+            }
+            final TreeIndex index = tree.getIndex();
+            lca = index.getLCA();
+            final int n = lca.getNumberOfNodes();
+            if (n < tree.getNumberOfNodes())
+                throw new IOException("ERROR: anti-consensus requires connected trees");
+
+            firstLeaf = new int[n];
+            lastLeaf = new int[n];
+            for (int v = 0; v < n; v++) {
+                firstLeaf[v] = index.getFirstLeaf(v);
+                lastLeaf[v] = index.getLastLeaf(v);
+            }
+            final int leaves = index.getNumberOfLeaves();
+            leaf2node = new int[leaves];
+            leaf2taxon = new int[leaves];
+            taxon2leaf = new int[taxon2id.size()];
+            Arrays.fill(taxon2leaf, -1);
+            for (int leaf = 0; leaf < leaves; leaf++) {
+                leaf2node[leaf] = index.getLeafIndex(leaf);
+                final int taxon = taxon2id.get(tree.getLabel(lca.getNode(leaf2node[leaf])));
+                leaf2taxon[leaf] = taxon;
+                taxon2leaf[taxon] = leaf;
+                taxa.set(taxon);
+            }
+        }
+
+        /**
+         * get the number of nodes
+         *
+         * @return number of nodes
+         */
+        int getNumberOfNodes() {
+            return lca.getNumberOfNodes();
+        }
+
+        /**
+         * gets the node of the given number
+         *
+         * @return node
+         */
+        Node getNode(int v) {
+            return lca.getNode(v);
+        }
+
+        /**
+         * gets the leaf node labeled by the given taxon
+         *
+         * @return leaf
+         */
+        Node getLeaf(int taxon) {
+            return lca.getNode(leaf2node[taxon2leaf[taxon]]);
+        }
+
+        /**
+         * gets the taxa below the given node
+         *
+         * @return taxa
+         */
+        BitSet getTaxaBelow(int v) {
+            final BitSet result = new BitSet();
+            for (int p = firstLeaf[v]; p <= lastLeaf[v]; p++)
+                result.set(leaf2taxon[p]);
+            return result;
+        }
+
+        /**
+         * gets the lowest common ancestor of a non-empty set of taxa, which is the lowest common ancestor of its
+         * leftmost and rightmost leaf
+         *
+         * @return node
+         */
+        int getLCA(BitSet taxa) {
+            int first = Integer.MAX_VALUE;
+            int last = -1;
+            for (int t = taxa.nextSetBit(0); t != -1; t = taxa.nextSetBit(t + 1)) {
+                final int p = taxon2leaf[t];
+                first = Math.min(first, p);
+                last = Math.max(last, p);
+            }
+            return lca.getLCA(leaf2node[first], leaf2node[last]);
+        }
+
+        /**
+         * gets the lowest common ancestor of two nodes
+         *
+         * @return node
+         */
+        int getLCA(int a, int b) {
+            return lca.getLCA(a, b);
+        }
+
+        /**
+         * is the set of taxa a cluster of a non-root node in this tree?
+         *
+         * @return true, if cluster
+         */
+        boolean isCluster(BitSet cluster) {
+            final int v = getLCA(cluster);
+            return v != 0 && lastLeaf[v] - firstLeaf[v] + 1 == cluster.cardinality();
+        }
+
+        /**
+         * calculates v_T(C) for a set of taxa
+         *
+         * @return v_T(C)
+         */
+        int calculateV_T(BitSet cluster, boolean isCluster) {
+            final int v = getLCA(cluster);
+            if (isCluster && lca.getParent(v) != -1)
+                return lca.getParent(v);
+            else
+                return v;
+        }
+
+        int calculateV_T_Plus(int v_T) {
+            if (lca.getNode(v_T).getOutDegree() >= 3)
+                return v_T;
+            else if (lca.getParent(v_T) != -1)
+                return lca.getParent(v_T);
+            else
+                return v_T;
         }
-        return newNodes;
     }
 }
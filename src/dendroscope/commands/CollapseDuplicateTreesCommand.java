@@ -0,0 +1,169 @@
+/*
+ * CollapseDuplicateTreesCommand.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.commands;
+
+import dendroscope.core.Director;
+import dendroscope.core.Document;
+import dendroscope.core.TreeData;
+import dendroscope.util.CanonicalTopology;
+import dendroscope.window.MultiViewer;
+import jloda.swing.commands.ICommand;
+import jloda.swing.director.IDirector;
+import jloda.util.ProgramProperties;
+import jloda.util.parse.NexusStreamParser;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * keeps only one tree or network of each topology, useful for large posterior samples. Each remaining tree is
+ * labeled by the number of trees that it represents
+ */
+public class CollapseDuplicateTreesCommand extends CommandBaseMultiViewer implements ICommand {
+    /**
+     * get the name to be used as a menu label
+     *
+     * @return name
+     */
+    public String getName() {
+        return "Collapse Duplicate Trees";
+    }
+
+    /**
+     * get description to be used as a tooltip
+     *
+     * @return description
+     */
+    public String getDescription() {
+        return "Open a new document that contains one tree or network per topology, ignoring edge lengths and internal labels";
+    }
+
+    /**
+     * get icon to be used in menu or button
+     *
+     * @return icon
+     */
+    public ImageIcon getIcon() {
+        return null;
+    }
+
+    /**
+     * gets the accelerator key to be used in menu
+     *
+     * @return accelerator key
+     */
+    public KeyStroke getAcceleratorKey() {
+        return null;
+    }
+
+    /**
+     * parses the given command and executes it
+     */
+    public void apply(NexusStreamParser np) throws Exception {
+        np.matchIgnoreCase("collapse duplicateTrees;");
+
+        Document doc = getDir().getDocument();
+        multiViewer.getTreeGrid().syncCurrentViewers2Document(doc, true);
+
+        TreeData[] trees = doc.getTrees();
+        int[] first = CanonicalTopology.getInstance().computeFirstOccurrences(trees);
+
+        int[] count = new int[trees.length];
+        for (int i = 0; i < trees.length; i++)
+            count[first[i]]++;
+
+        List<TreeData> result = new ArrayList<>();
+        for (int i = 0; i < trees.length; i++) {
+            if (first[i] == i)
+                result.add(new TreeData(doc.getName(i) + " [" + count[i] + "]", trees[i]));
+        }
+        System.err.println("Distinct topologies: " + result.size() + " of " + trees.length);
+
+        Director theDir;
+        MultiViewer theMultiViewer;
+        Document theDoc;
+
+        if (ProgramProperties.isUseGUI()) {
+            theDir = Director.newProject(1, 1);
+            theMultiViewer = (MultiViewer) theDir.getViewerByClass(MultiViewer.class);
+            theDoc = theDir.getDocument();
+        } else // in commandline mode we recycle the existing document:
+        {
+            theDir = getDir();
+            theMultiViewer = (MultiViewer) getViewer();
+            theDoc = theDir.getDocument();
+            theDoc.setTrees(new TreeData[0]);
+        }
+
+        theDoc.appendTrees(result.toArray(new TreeData[0]));
+        theDoc.setTitle(doc.getTitle() + "-distinct");
+        theMultiViewer.loadTrees(null);
+        theMultiViewer.setMustRecomputeEmbedding(true);
+        theMultiViewer.updateView(IDirector.ALL);
+        theMultiViewer.getFrame().toFront();
+        theDoc.setDocumentIsDirty(true);
+        theMultiViewer.updateView(IDirector.TITLE);
+    }
+
+    /**
+     * action to be performed
+     */
+    public void actionPerformed(ActionEvent ev) {
+        execute("collapse duplicateTrees;");
+    }
+
+    /**
+     * is this a critical command that can only be executed when no other
+     * command is running?
+     *
+     * @return true, if critical
+     */
+    public boolean isCritical() {
+        return true;
+    }
+
+    /**
+     * get command-line usage description
+     *
+     * @return usage
+     */
+    public String getSyntax() {
+        return "collapse duplicateTrees;";
+    }
+
+    /**
+     * is the command currently applicable? Used to set enable state of command
+     *
+     * @return true, if command can be applied
+     */
+    public boolean isApplicable() {
+        return multiViewer != null && getDir().getDocument().getNumberOfTrees() > 1;
+    }
+
+    /**
+     * gets the command needed to undo this command
+     *
+     * @return undo command
+     */
+    public String getUndo() {
+        return null;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * ComputeDTLReconciliationReportCommand.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.commands.compute;
+
+import dendroscope.commands.CommandBaseMultiViewer;
+import dendroscope.core.Document;
+import dendroscope.dtl.DTLEngine;
+import dendroscope.dtl.SpeciesSubdivision;
+import dendroscope.window.TreeViewer;
+import jloda.phylo.PhyloTree;
+import jloda.swing.commands.ICommand;
+import jloda.swing.util.Alert;
+import jloda.swing.util.ChooseFileDialog;
+import jloda.swing.util.TextFileFilter;
+import jloda.util.FileUtils;
+import jloda.util.ProgramProperties;
+import jloda.util.parse.NexusStreamParser;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * reconciles all trees in the document with one species tree and writes the costs and event counts to a
+ * tab-separated file
+ */
+public class ComputeDTLReconciliationReportCommand extends CommandBaseMultiViewer implements ICommand {
+
+    public void apply(NexusStreamParser np) throws Exception {
+        np.matchIgnoreCase("compute DTL_reconciliationReport species=");
+        Document doc = getDir().getDocument();
+        int species = np.getInt(1, doc.getNumberOfTrees());
+        np.matchIgnoreCase("file=");
+        String fileName = np.getWordFileNamePunctuation();
+        int dupCost = 1;
+        int transCost = 1;
+        int lossCost = 1;
+        int numberOfThreads = 0;
+        if (np.peekMatchIgnoreCase("dupcost")) {
+            np.matchIgnoreCase("dupcost=");
+            dupCost = np.getInt(1, Integer.MAX_VALUE);
+        }
+        if (np.peekMatchIgnoreCase("transcost")) {
+            np.matchIgnoreCase("transcost=");
+            transCost = np.getInt(1, Integer.MAX_VALUE);
+        }
+        if (np.peekMatchIgnoreCase("losscost")) {
+            np.matchIgnoreCase("losscost=");
+            lossCost = np.getInt(1, Integer.MAX_VALUE);
+        }
+        if (np.peekMatchIgnoreCase("threads")) {
+            np.matchIgnoreCase("threads=");
+            numberOfThreads = np.getInt(0, 1024);
+        }
+        np.matchIgnoreCase(";");
+
+        if (multiViewer != null)
+            multiViewer.getTreeGrid().syncCurrentViewers2Document(doc, true);
+
+        PhyloTree[] trees = doc.getTrees();
+        PhyloTree[] geneTrees = new PhyloTree[trees.length - 1];
+        String[] names = new String[trees.length - 1];
+        for (int i = 0, count = 0; i < trees.length; i++) {
+            if (i != species - 1) {
+                geneTrees[count] = trees[i];
+                names[count++] = doc.getName(i);
+            }
+        }
+
+        // the species tree is subdivided and indexed only once, for all gene trees:
+        DTLEngine engine = new DTLEngine(new SpeciesSubdivision(trees[species - 1]), dupCost, transCost, lossCost);
+
+        long start = System.currentTimeMillis();
+        int slowest;
+        try (Writer w = new BufferedWriter(new FileWriter(fileName))) {
+            slowest = engine.writeReport(doc.getProgressListener(), geneTrees, names, numberOfThreads, w);
+        } catch (IOException ex) {
+            new Alert(getViewer().getFrame(), "Write failed: " + ex.getMessage());
+            throw ex;
+        } finally {
+            doc.getProgressListener().close();
+        }
+        System.err.println("DTL reconciliations of " + geneTrees.length + " gene trees with species tree " + doc.getName(species - 1)
+                           + " written to: " + fileName + " (" + (System.currentTimeMillis() - start) + " ms)");
+        if (slowest != -1)
+            System.err.println("Slowest: " + names[slowest]);
+    }
+
+    public String getSyntax() {
+        return "compute DTL_reconciliationReport species=<number> file=<filename> [dupcost=<positive-integer>] [transcost=<positive-integer>] [losscost=<positive-integer>] [threads=<number>];";
+    }
+
+    public void actionPerformed(ActionEvent ev) {
+        TreeViewer speciesViewer = multiViewer.getTreeGrid().getLastSelected();
+        Integer species = (speciesViewer != null ? multiViewer.getTreeGrid().getNumberOfViewerInDocument(speciesViewer) : null);
+        if (species == null) {
+            new Alert(getViewer().getFrame(), "DTL reconciliation report requires a selected species tree\n");
+            return;
+        }
+
+        Document doc = getDir().getDocument();
+        String name = (doc.getFile() != null ? doc.getFile().getPath() : "Untitled");
+        File lastOpenFile = new File(FileUtils.replaceFileSuffix(name, "-dtl.tsv"));
+        String lastSaveDir = ProgramProperties.get(ProgramProperties.SAVEFILE, "");
+        if (lastSaveDir.length() != 0)
+            lastOpenFile = new File((new File(lastSaveDir)).getParent(), lastOpenFile.getName());
+
+        File file = ChooseFileDialog.chooseFileToSave(getViewer().getFrame(), lastOpenFile, new TextFileFilter(), new TextFileFilter(), ev, "Save DTL reconciliation report", ".tsv");
+        if (file != null)
+            execute("compute DTL_reconciliationReport species=" + (species + 1) + " file='" + file.getPath() + "';");
+    }
+
+    public KeyStroke getAcceleratorKey() {
+        return null;
+    }
+
+    public String getDescription() {
+        return "Reconcile all gene trees with the selected species tree and save the costs and event counts as a table";
+    }
+
+    public ImageIcon getIcon() {
+        return null;
+    }
+
+    public String getName() {
+        return "DTL Reconciliation Report...";
+    }
+
+    public String getUndo() {
+        return null;
+    }
+
+    public boolean isApplicable() {
+        return getDir().getDocument().getNumberOfTrees() > 1 && multiViewer.getTreeGrid().getNumberOfSelectedViewers() == 1;
+    }
+
+    public boolean isCritical() {
+        return true;
+    }
+}
@@ -19,7 +19,7 @@
 package dendroscope.commands.compute;
 
 import dendroscope.commands.CommandBaseMultiViewer;
-import dendroscope.util.DistanceMethods;
+import dendroscope.util.NetworkProperties;
 import dendroscope.window.MultiViewer;
 import dendroscope.window.TreeViewer;
 import jloda.phylo.PhyloTree;
@@ -41,25 +41,27 @@ public class ComputeNetworkProperties extends CommandBaseMultiViewer
         np.matchIgnoreCase(getSyntax());
 
         List<PhyloTree> trees = new LinkedList<>();
+        List<String> names = new LinkedList<>();
         for (Iterator<TreeViewer> it = multiViewer.getTreeGrid()
                 .getSelectedOrAllIterator(); it.hasNext(); ) {
             TreeViewer viewer = it.next();
             PhyloTree tree = viewer.getPhyloTree();
+            names.add(viewer.getName());
             trees.add(tree);
         }
 
         if (trees.size() == 1) {
-            Message.show(getViewer().getFrame(), "Tree-child property: "
-												 + DistanceMethods.hasTreeChildProperty(trees.get(0)) + "\n" + "Tree-sibling property: "
-												 + DistanceMethods.hasTreeSiblingProperty(trees.get(0)) + "\n" + "Time-consistent property: "
-												 + DistanceMethods.hasTimeConsistentProperty(trees.get(0)));
-            System.out.println("Tree-child property: "
-                    + DistanceMethods.hasTreeChildProperty(trees.get(0)) + "\n" + "Tree-sibling property: "
-                    + DistanceMethods.hasTreeSiblingProperty(trees.get(0)) + "\n" + "Time-consistent property: "
-                    + DistanceMethods.hasTimeConsistentProperty(trees.get(0)));
+            NetworkProperties properties = NetworkProperties.compute(trees.get(0));
+            Message.show(getViewer().getFrame(), properties.toString());
+            System.out.println(properties);
+        } else if (trees.size() > 1) {
+            NetworkProperties[] properties = NetworkProperties.compute(getDir().getDocument().getProgressListener(), trees.toArray(new PhyloTree[0]));
+            getDir().getDocument().getProgressListener().close();
+            executeImmediately("show messageWindow;");
+            System.out.print(NetworkProperties.toSummaryTable(names.toArray(new String[0]), properties));
         } else {
             new Alert(getViewer().getFrame(),
-                    "Calculation of properties requires only one network.");
+                    "Calculation of properties requires at least one network.");
         }
     }
 
@@ -76,7 +78,7 @@ public class ComputeNetworkProperties extends CommandBaseMultiViewer
     }
 
     public String getDescription() {
-        return "Calculate properties of one network";
+        return "Calculate properties of one or more networks";
     }
 
     public ImageIcon getIcon() {
@@ -92,7 +94,7 @@ public class ComputeNetworkProperties extends CommandBaseMultiViewer
     }
 
     public boolean isApplicable() {
-        return multiViewer.getTreeGrid().getNumberSelectedOrAllViewers() == 1
+        return multiViewer.getTreeGrid().getNumberSelectedOrAllViewers() >= 1
                 && ((MultiViewer) getViewer()).getDir().getDocument()
                 .getNumberOfTrees() > 0;
     }
@@ -0,0 +1,125 @@
+/*
+ * ComputeNetworkPropertiesReportCommand.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.commands.compute;
+
+import dendroscope.commands.CommandBaseMultiViewer;
+import dendroscope.core.Document;
+import dendroscope.util.NetworkProperties;
+import jloda.phylo.PhyloTree;
+import jloda.swing.commands.ICommand;
+import jloda.swing.util.Alert;
+import jloda.swing.util.ChooseFileDialog;
+import jloda.swing.util.TextFileFilter;
+import jloda.util.FileUtils;
+import jloda.util.ProgramProperties;
+import jloda.util.parse.NexusStreamParser;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * computes the properties of all trees and networks in the document and writes them to a tab-separated file
+ */
+public class ComputeNetworkPropertiesReportCommand extends CommandBaseMultiViewer implements ICommand {
+
+    public void apply(NexusStreamParser np) throws Exception {
+        np.matchIgnoreCase("compute networkPropertiesReport file=");
+        String fileName = np.getWordFileNamePunctuation();
+        int numberOfThreads = 0;
+        if (np.peekMatchIgnoreCase("threads")) {
+            np.matchIgnoreCase("threads=");
+            numberOfThreads = np.getInt(0, 1024);
+        }
+        np.matchIgnoreCase(";");
+
+        Document doc = getDir().getDocument();
+        if (multiViewer != null)
+            multiViewer.getTreeGrid().syncCurrentViewers2Document(doc, true);
+
+        PhyloTree[] networks = doc.getTrees();
+        String[] names = new String[networks.length];
+        for (int i = 0; i < networks.length; i++)
+            names[i] = doc.getName(i);
+
+        long start = System.currentTimeMillis();
+        int slowest;
+        try (Writer w = new BufferedWriter(new FileWriter(fileName))) {
+            slowest = NetworkProperties.writeReport(doc.getProgressListener(), networks, names, numberOfThreads, w);
+        } catch (IOException ex) {
+            new Alert(getViewer().getFrame(), "Write failed: " + ex.getMessage());
+            throw ex;
+        } finally {
+            doc.getProgressListener().close();
+        }
+        System.err.println("Network properties of " + networks.length + " trees or networks written to: " + fileName
+                           + " (" + (System.currentTimeMillis() - start) + " ms)");
+        if (slowest != -1)
+            System.err.println("Slowest: " + names[slowest]);
+    }
+
+    public String getSyntax() {
+        return "compute networkPropertiesReport file=<filename> [threads=<number>];";
+    }
+
+    public void actionPerformed(ActionEvent ev) {
+        Document doc = getDir().getDocument();
+        String name = (doc.getFile() != null ? doc.getFile().getPath() : "Untitled");
+        File lastOpenFile = new File(FileUtils.replaceFileSuffix(name, "-properties.tsv"));
+        String lastSaveDir = ProgramProperties.get(ProgramProperties.SAVEFILE, "");
+        if (lastSaveDir.length() != 0)
+            lastOpenFile = new File((new File(lastSaveDir)).getParent(), lastOpenFile.getName());
+
+        File file = ChooseFileDialog.chooseFileToSave(getViewer().getFrame(), lastOpenFile, new TextFileFilter(), new TextFileFilter(), ev, "Save network properties report", ".tsv");
+        if (file != null)
+            execute("compute networkPropertiesReport file='" + file.getPath() + "';");
+    }
+
+    public KeyStroke getAcceleratorKey() {
+        return null;
+    }
+
+    public String getDescription() {
+        return "Calculate properties of all trees and networks in the document and save them as a table";
+    }
+
+    public ImageIcon getIcon() {
+        return null;
+    }
+
+    public String getName() {
+        return "Network Properties Report...";
+    }
+
+    public String getUndo() {
+        return null;
+    }
+
+    public boolean isApplicable() {
+        return getDir().getDocument().getNumberOfTrees() > 0;
+    }
+
+    public boolean isCritical() {
+        return true;
+    }
+}
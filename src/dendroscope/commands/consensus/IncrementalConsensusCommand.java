@@ -0,0 +1,135 @@
+/*
+ * IncrementalConsensusCommand.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.commands.consensus;
+
+import dendroscope.commands.CommandBaseMultiViewer;
+import dendroscope.consensus.*;
+import dendroscope.core.Director;
+import dendroscope.core.Document;
+import dendroscope.core.TreeData;
+import dendroscope.window.MultiViewer;
+import jloda.phylo.PhyloTree;
+import jloda.swing.commands.ICommand;
+import jloda.swing.director.IDirector;
+import jloda.util.ProgramProperties;
+import jloda.util.parse.NexusStreamParser;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+
+/**
+ * computes the consensus of all trees in the document, using cluster frequencies that are kept up-to-date as trees
+ * are appended to the document, so that repeated calls do not reprocess previous trees. The frequencies are
+ * recomputed from scratch if trees were modified or removed in the meantime.
+ * <p/>
+ * Syntax: compute incrementalConsensus method={Strict|Majority|Loose|PercentThreshold} [threshold=number];
+ * <p/>
+ * The first loose consensus compares all pairs of distinct clusters, later ones only compare the new clusters.
+ * In the GUI the consensus is opened in a new window, in commandline mode it is printed in Newick format
+ */
+public class IncrementalConsensusCommand extends CommandBaseMultiViewer implements ICommand {
+    public void apply(NexusStreamParser np) throws Exception {
+        np.matchIgnoreCase("compute incrementalConsensus method=");
+        String method = np.getWordMatchesIgnoringCase(StrictConsensus.NAME + " " + MajorityConsensus.NAME + " " + LooseConsensus.NAME
+                                                      + " " + StreamingConsensus.PERCENT_THRESHOLD);
+        double threshold = 50;
+        if (np.peekMatchIgnoreCase("threshold=")) {
+            np.matchIgnoreCase("threshold=");
+            threshold = np.getDouble(0, 100);
+        }
+        np.matchIgnoreCase(";");
+
+        Document doc = getDir().getDocument();
+        multiViewer.getTreeGrid().syncCurrentViewers2Document(doc, true);
+
+        long start = System.currentTimeMillis();
+        IncrementalConsensus incrementalConsensus = IncrementalConsensus.attach(doc);
+        PhyloTree result;
+        try {
+            result = incrementalConsensus.getConsensus(method, threshold, doc.getProgressListener());
+        } finally {
+            doc.getProgressListener().close();
+        }
+        System.err.println("Consensus of " + incrementalConsensus.getNumberOfTrees() + " trees (" + (System.currentTimeMillis() - start) + " ms)");
+
+        Director theDir;
+        MultiViewer theMultiViewer;
+        Document theDoc;
+
+        if (ProgramProperties.isUseGUI()) {
+            theDir = Director.newProject(1, 1);
+            theMultiViewer = (MultiViewer) theDir.getViewerByClass(MultiViewer.class);
+            theDoc = theDir.getDocument();
+        } else // in commandline mode we keep the trees of the document, which may still grow, and print the consensus
+        {
+            System.out.println(result.toBracketString() + ";");
+            return;
+        }
+
+        theDoc.appendTree(result);
+        theDoc.setTitle(doc.getTitle() + "-" + method.toLowerCase());
+        theMultiViewer.loadTrees(null);
+        theMultiViewer.setMustRecomputeEmbedding(true);
+        theMultiViewer.updateView(IDirector.ALL);
+        theMultiViewer.getFrame().toFront();
+        theDoc.setDocumentIsDirty(true);
+        theMultiViewer.updateView(IDirector.TITLE);
+    }
+
+    public String getSyntax() {
+        return "compute incrementalConsensus method={" + StrictConsensus.NAME + "|" + MajorityConsensus.NAME + "|" + LooseConsensus.NAME
+               + "|" + StreamingConsensus.PERCENT_THRESHOLD + "} [threshold=<number>];";
+    }
+
+    public void actionPerformed(ActionEvent ev) {
+        String[] choices = new String[]{MajorityConsensus.NAME, StrictConsensus.NAME, LooseConsensus.NAME};
+        String method = (String) JOptionPane.showInputDialog(getViewer().getFrame(), "Choose consensus method", "Incremental consensus",
+                JOptionPane.QUESTION_MESSAGE, null, choices, choices[0]);
+        if (method != null)
+            execute("compute incrementalConsensus method=" + method + ";");
+    }
+
+    public KeyStroke getAcceleratorKey() {
+        return null;
+    }
+
+    public String getDescription() {
+        return "Compute the consensus of all trees, updating it efficiently as new trees are added to the document";
+    }
+
+    public ImageIcon getIcon() {
+        return null;
+    }
+
+    public String getName() {
+        return "Incremental Consensus...";
+    }
+
+    public String getUndo() {
+        return null;
+    }
+
+    public boolean isApplicable() {
+        return getDir().getDocument().getNumberOfTrees() > 0;
+    }
+
+    public boolean isCritical() {
+        return true;
+    }
+}
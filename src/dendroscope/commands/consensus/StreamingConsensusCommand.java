@@ -0,0 +1,131 @@
+/*
+ * StreamingConsensusCommand.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.commands.consensus;
+
+import dendroscope.commands.CommandBaseMultiViewer;
+import dendroscope.consensus.MajorityConsensus;
+import dendroscope.consensus.StreamingConsensus;
+import dendroscope.consensus.StrictConsensus;
+import dendroscope.core.Director;
+import dendroscope.core.Document;
+import dendroscope.core.TreeData;
+import dendroscope.io.IOManager;
+import dendroscope.window.MultiViewer;
+import jloda.phylo.PhyloTree;
+import jloda.swing.commands.ICommand;
+import jloda.swing.director.IDirector;
+import jloda.swing.util.ChooseFileDialog;
+import jloda.util.FileUtils;
+import jloda.util.ProgramProperties;
+import jloda.util.parse.NexusStreamParser;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.io.File;
+
+/**
+ * computes the strict or majority consensus of all trees in a file, reading the trees one at a time
+ */
+public class StreamingConsensusCommand extends CommandBaseMultiViewer implements ICommand {
+    public void apply(NexusStreamParser np) throws Exception {
+        np.matchIgnoreCase("compute streamingConsensus file=");
+        String fileName = np.getWordFileNamePunctuation();
+        np.matchIgnoreCase("method=");
+        String method = np.getWordMatchesIgnoringCase(StrictConsensus.NAME + " " + MajorityConsensus.NAME);
+        np.matchIgnoreCase(";");
+
+        Document doc = getDir().getDocument();
+        PhyloTree result;
+        try {
+            result = StreamingConsensus.apply(doc.getProgressListener(), new File(fileName), method);
+        } finally {
+            doc.getProgressListener().close();
+        }
+
+        Director theDir;
+        MultiViewer theMultiViewer;
+        Document theDoc;
+
+        if (ProgramProperties.isUseGUI()) {
+            theDir = Director.newProject(1, 1);
+            theMultiViewer = (MultiViewer) theDir.getViewerByClass(MultiViewer.class);
+            theDoc = theDir.getDocument();
+        } else // in commandline mode we recycle the existing document:
+        {
+            theDir = getDir();
+            theMultiViewer = (MultiViewer) getViewer();
+            theDoc = theDir.getDocument();
+            theDoc.setTrees(new TreeData[0]);
+        }
+
+        theDoc.appendTree(result);
+        theDoc.setTitle(FileUtils.replaceFileSuffix(new File(fileName).getName(), "") + "-" + method.toLowerCase());
+        theMultiViewer.loadTrees(null);
+        theMultiViewer.setMustRecomputeEmbedding(true);
+        theMultiViewer.updateView(IDirector.ALL);
+        theMultiViewer.getFrame().toFront();
+        theDoc.setDocumentIsDirty(true);
+        theMultiViewer.updateView(IDirector.TITLE);
+    }
+
+    public String getSyntax() {
+        return "compute streamingConsensus file=<filename> method={" + StrictConsensus.NAME + "|" + MajorityConsensus.NAME + "};";
+    }
+
+    public void actionPerformed(ActionEvent ev) {
+        File lastOpenFile = ProgramProperties.getFile(ProgramProperties.OPENFILE);
+
+        File file = ChooseFileDialog.chooseFileToOpen(getViewer().getFrame(), lastOpenFile, IOManager.getFileFilter(), IOManager.getFilenameFilter(), ev, "Open file of trees");
+        if (file != null) {
+            String[] choices = new String[]{MajorityConsensus.NAME, StrictConsensus.NAME};
+            String method = (String) JOptionPane.showInputDialog(getViewer().getFrame(), "Choose consensus method", "Streaming consensus",
+                    JOptionPane.QUESTION_MESSAGE, null, choices, choices[0]);
+            if (method != null)
+                execute("compute streamingConsensus file='" + file.getPath() + "' method=" + method + ";");
+        }
+    }
+
+    public KeyStroke getAcceleratorKey() {
+        return null;
+    }
+
+    public String getDescription() {
+        return "Compute the strict or majority consensus of a large file of trees, without loading the trees";
+    }
+
+    public ImageIcon getIcon() {
+        return null;
+    }
+
+    public String getName() {
+        return "Consensus From File...";
+    }
+
+    public String getUndo() {
+        return null;
+    }
+
+    public boolean isApplicable() {
+        return true;
+    }
+
+    public boolean isCritical() {
+        return true;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * MUL2NetworkBatchCommand.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.commands.mul;
+
+import dendroscope.commands.CommandBaseMultiViewer;
+import dendroscope.core.Director;
+import dendroscope.core.Document;
+import dendroscope.core.TreeData;
+import dendroscope.multnet.MultiLabeledTreeProcessor;
+import dendroscope.window.MultiViewer;
+import jloda.swing.commands.ICommand;
+import jloda.swing.director.IDirector;
+import jloda.swing.util.ResourceManager;
+import jloda.util.FileUtils;
+import jloda.util.ProgramProperties;
+import jloda.util.parse.NexusStreamParser;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * computes networks for all multi-labeled trees in the document, processing the trees concurrently. The networks are
+ * either written to a file or shown in a new document, in input order
+ */
+public class MUL2NetworkBatchCommand extends CommandBaseMultiViewer implements ICommand {
+
+    public void apply(NexusStreamParser np) throws Exception {
+        np.matchIgnoreCase("compute mult2netBatch method=");
+        String method = np.getWordMatchesIgnoringCase("holm cluster levelk contracted");
+        int numberOfThreads = 0;
+        if (np.peekMatchIgnoreCase("threads")) {
+            np.matchIgnoreCase("threads=");
+            numberOfThreads = np.getInt(0, 1024);
+        }
+        String fileName = null;
+        if (np.peekMatchIgnoreCase("file")) {
+            np.matchIgnoreCase("file=");
+            fileName = np.getWordFileNamePunctuation();
+        }
+        np.matchIgnoreCase(";");
+
+        Document doc = getDir().getDocument();
+        if (multiViewer != null)
+            multiViewer.getTreeGrid().syncCurrentViewers2Document(doc, true);
+        TreeData[] trees = doc.getTrees();
+
+        long start = System.currentTimeMillis();
+        int count;
+        if (fileName != null) {
+            try (Writer w = new BufferedWriter(new FileWriter(fileName))) {
+                count = MultiLabeledTreeProcessor.applyAll(doc.getProgressListener(), trees, method, numberOfThreads, tree -> {
+                    tree.write(w, true, true);
+                    w.write(";\n");
+                    w.flush();
+                });
+            } finally {
+                doc.getProgressListener().close();
+            }
+            System.err.println("Networks for " + count + " of " + trees.length + " trees written to: " + fileName
+                               + " (" + (System.currentTimeMillis() - start) + " ms)");
+        } else {
+            List<TreeData> results = new ArrayList<>();
+            try {
+                count = MultiLabeledTreeProcessor.applyAll(doc.getProgressListener(), trees, method, numberOfThreads, results::add);
+            } finally {
+                doc.getProgressListener().close();
+            }
+            System.err.println("Networks computed for " + count + " of " + trees.length + " trees"
+                               + " (" + (System.currentTimeMillis() - start) + " ms)");
+
+            Director theDir;
+            MultiViewer theMultiViewer;
+            Document theDoc;
+
+            if (ProgramProperties.isUseGUI()) {
+                theDir = Director.newProject(1, 1);
+                theMultiViewer = (MultiViewer) theDir.getViewerByClass(MultiViewer.class);
+                theDoc = theDir.getDocument();
+            } else // in commandline mode we recycle the existing document:
+            {
+                theDir = getDir();
+                theMultiViewer = (MultiViewer) getViewer();
+                theDoc = theDir.getDocument();
+                theDoc.setTrees(new TreeData[0]);
+            }
+
+            theDoc.setTitle(FileUtils.getFileBaseName(doc.getTitle()) + "-networks");
+            for (TreeData tree : results)
+                theDoc.appendTree(tree);
+            theMultiViewer.loadTrees(null);
+            theMultiViewer.chooseGridSize();
+            theMultiViewer.setMustRecomputeEmbedding(true);
+            theMultiViewer.updateView(IDirector.ALL);
+            theMultiViewer.getFrame().toFront();
+            theDoc.setDocumentIsDirty(true);
+            theMultiViewer.updateView(IDirector.TITLE);
+        }
+    }
+
+    public String getSyntax() {
+        return "compute mult2netBatch method={HOLM|cluster|levelk|contracted} [threads=<number>] [file=<filename>];";
+    }
+
+    public void actionPerformed(ActionEvent ev) {
+        String[] choices = new String[]{"HOLM", "Cluster", "LevelK", "Contracted"};
+        Object reply = JOptionPane.showInputDialog(getViewer().getFrame(), "Choose method to convert all multi-labeled trees to networks:", "Choose Method", JOptionPane.QUESTION_MESSAGE,
+                null, choices, choices[1]);
+        if (reply != null)
+            execute("compute mult2netBatch method=" + reply + ";");
+    }
+
+    public KeyStroke getAcceleratorKey() {
+        return null;
+    }
+
+    public String getDescription() {
+        return "Compute networks for all multi-labeled trees in the document, processing the trees concurrently";
+    }
+
+    public ImageIcon getIcon() {
+        return ResourceManager.getIcon("Empty16.gif");
+    }
+
+    public String getName() {
+        return "MUL to Network, All Trees...";
+    }
+
+    public String getUndo() {
+        return null;
+    }
+
+    public boolean isApplicable() {
+        return getDir().getDocument().getNumberOfTrees() > 0;
+    }
+
+    public boolean isCritical() {
+        return true;
+    }
+}
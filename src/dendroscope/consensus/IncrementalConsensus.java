@@ -0,0 +1,149 @@
+/*
+ * IncrementalConsensus.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.consensus;
+
+import dendroscope.core.Document;
+import dendroscope.core.ITreesListener;
+import dendroscope.core.TreeData;
+import jloda.phylo.PhyloTree;
+import jloda.util.CanceledException;
+import jloda.util.progress.ProgressListener;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * maintains the cluster frequencies of all trees in a document and updates them when trees are appended, so that
+ * the strict, majority, loose or percent-threshold consensus can be obtained without reprocessing previous trees.
+ * Incompatibilities between clusters, needed only by the loose consensus, are determined when it is first requested
+ * and then only for clusters that are new since the previous request.
+ * If a tree of the document is modified, or trees are removed, then the frequencies are recomputed from scratch
+ */
+public class IncrementalConsensus implements ITreesListener {
+    private final Document doc;
+    private StreamingConsensus consensus;
+    private final Map<TreeData, Integer> tree2version = new IdentityHashMap<>();
+    private String error;
+
+    /**
+     * constructor, call attach() to obtain an instance
+     */
+    private IncrementalConsensus(Document doc) {
+        this.doc = doc;
+        treesReplaced(doc.getTrees());
+    }
+
+    /**
+     * gets the incremental consensus attached to the given document, attaching a new one, if necessary
+     *
+     * @return incremental consensus
+     */
+    public static IncrementalConsensus attach(Document doc) {
+        for (ITreesListener listener : doc.getTreesListeners()) {
+            if (listener instanceof IncrementalConsensus)
+                return (IncrementalConsensus) listener;
+        }
+        IncrementalConsensus incrementalConsensus = new IncrementalConsensus(doc);
+        doc.addTreesListener(incrementalConsensus);
+        return incrementalConsensus;
+    }
+
+    /**
+     * detach from the document
+     */
+    public void detach() {
+        doc.removeTreesListener(this);
+    }
+
+    public synchronized void treesAppended(TreeData[] trees) {
+        for (TreeData tree : trees)
+            add(tree);
+    }
+
+    public synchronized void treesReplaced(TreeData[] trees) {
+        consensus = new StreamingConsensus();
+        tree2version.clear();
+        error = null;
+        if (trees != null) {
+            for (TreeData tree : trees)
+                add(tree);
+        }
+    }
+
+    /**
+     * add a tree to the cluster table
+     */
+    private void add(TreeData tree) {
+        tree2version.put(tree, tree.getVersion());
+        if (error == null) {
+            try {
+                consensus.add(tree);
+            } catch (IOException ex) {
+                error = ex.getMessage();
+            }
+        }
+    }
+
+    /**
+     * gets the current consensus tree. If trees of the document have been modified or removed since they were
+     * added, recomputes the cluster table first
+     *
+     * @param method           strict, majority, loose or percent threshold
+     * @param percentThreshold threshold used by percent-threshold consensus
+     * @return consensus tree
+     * @throws IOException if the trees are not all on the same taxon set
+     */
+    public synchronized PhyloTree getConsensus(String method, double percentThreshold, ProgressListener progressListener) throws IOException, CanceledException {
+        if (!isUpToDate()) {
+            System.err.println("Trees have changed, recomputing cluster frequencies");
+            treesReplaced(doc.getTrees());
+        }
+        if (error != null)
+            throw new IOException(error);
+        return consensus.getConsensus(method, percentThreshold, progressListener);
+    }
+
+    /**
+     * gets the number of trees currently represented
+     *
+     * @return number of trees
+     */
+    public synchronized int getNumberOfTrees() {
+        return consensus.getNumberOfTrees();
+    }
+
+    /**
+     * does the table still represent exactly the current trees of the document?
+     *
+     * @return true, if up-to-date
+     */
+    private boolean isUpToDate() {
+        if (doc.getNumberOfTrees() != tree2version.size())
+            return false;
+        if (doc.getNumberOfTrees() == 0)
+            return true;
+        for (TreeData tree : doc.getTrees()) {
+            Integer version = tree2version.get(tree);
+            if (version == null || version != tree.getVersion())
+                return false;
+        }
+        return true;
+    }
+}
@@ -24,14 +24,18 @@ import dendroscope.core.TreeData;
 import jloda.graph.Edge;
 import jloda.graph.Node;
 import jloda.graph.NodeDoubleArray;
+import jloda.graph.NodeSet;
 import jloda.phylo.PhyloTree;
 import jloda.util.CanceledException;
-import jloda.util.StringUtils;
 import jloda.util.Triplet;
 import jloda.util.progress.ProgressListener;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * computes the primordial consensus supertree of a set of gene trees
@@ -42,8 +46,6 @@ public class PrimordialConsensus implements IConsensusTreeMethod {
     public static final String NAME = "Primordial";
     private static final boolean verbose = false;
 
-    private final static QuartetTopology unresolved = new QuartetTopology(0, 0, 0, 0);  // just used to signal that topology is unresolved
-
     /**
      * compute the consensus
      *
@@ -56,11 +58,9 @@ public class PrimordialConsensus implements IConsensusTreeMethod {
         progressListener.setMaximum(trees.length);
         progressListener.setProgress(0);
 
-        // compute address of all taxa in all trees:
-        TaxId2Address[] taxId2Address = new TaxId2Address[trees.length];
+        // determine all taxa:
         Taxa taxa = new Taxa();
-        for (int t = 0; t < trees.length; t++) {
-            PhyloTree tree = trees[t];
+        for (PhyloTree tree : trees) {
             for (Node v = tree.getFirstNode(); v != null; v = v.getNext()) {
                 if (v.getOutDegree() == 0) {
                     String name = tree.getLabel(v);
@@ -68,9 +68,6 @@ public class PrimordialConsensus implements IConsensusTreeMethod {
                         taxa.add(name);
                 }
             }
-            taxId2Address[t] = new TaxId2Address();
-            computeLabel2AddressRec(tree, taxa, tree.getRoot(), "", taxId2Address[t]);
-            progressListener.incrementProgress();
         }
         if (verbose)
             System.err.println("Total number of taxa: " + taxa.size());
@@ -80,35 +77,57 @@ public class PrimordialConsensus implements IConsensusTreeMethod {
                 System.err.println(taxa.getLabel(i) + " -> " + i);
         }
 
-        progressListener.setSubtask("Computing active rooted triples");
-        progressListener.setMaximum(trees.length);
-        progressListener.setProgress(taxa.size());
+        final int numberOfThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
 
-        // computing all active triplets:
-        Map<FourTaxa, QuartetTopology> four2topology = new HashMap<>();
+        final QuartetTable four2topology;
+        final SortedSet<Triplet<Integer, Integer, Integer>> missingTriplets = new TreeSet<>();
+        BitSet taxaBits = taxa.getBits();
 
-        SortedSet<Triplet<Integer, Integer, Integer>> missingTriplets = new TreeSet<>();
+        try {
+            // compute the depths of the lowest common ancestors of all pairs of taxa, in parallel per tree:
+            final TreeAddresses[] addresses = new TreeAddresses[trees.length];
+            {
+                final List<Future<?>> futures = new ArrayList<>(trees.length);
+                for (int t = 0; t < trees.length; t++) {
+                    final int which = t;
+                    futures.add(executor.submit(() -> addresses[which] = new TreeAddresses(trees[which], taxa)));
+                }
+                for (Future<?> future : futures) {
+                    waitFor(future);
+                    progressListener.incrementProgress();
+                }
+            }
 
-        BitSet taxaBits = taxa.getBits();
-        for (int a = taxaBits.nextSetBit(0); a != -1; a = taxaBits.nextSetBit(a + 1)) {
-            for (int b = taxaBits.nextSetBit(a + 1); b != -1; b = taxaBits.nextSetBit(b + 1)) {
-                for (int c = taxaBits.nextSetBit(b + 1); c != -1; c = taxaBits.nextSetBit(c + 1)) {
-                    QuartetTopology topology = computeTopology(a, b, c, taxId2Address);
-                    if (topology == null) {
-                        missingTriplets.add(new Triplet<>(a, b, c));
-                    } else if (topology != unresolved) {
-                        FourTaxa four = new FourTaxa(0, a, b, c);
-                        four2topology.put(four, topology);
-                        if (verbose)
-                            System.err.println("Four: " + StringUtils.toString(four) + " Quartet: " + topology);
-                    } else {
-                        FourTaxa four = new FourTaxa(0, a, b, c);
-                        if (verbose)
-                            System.err.println("Four: " + StringUtils.toString(four) + " Quartet: unresolved");
-                    }
+            progressListener.setSubtask("Computing active rooted triples");
+            progressListener.setMaximum(taxa.size());
+            progressListener.setProgress(0);
+
+            // computing all active triplets, in parallel for the first taxon:
+            final List<Future<TripletBlock>> futures = new ArrayList<>();
+            for (int a = taxaBits.nextSetBit(0); a != -1; a = taxaBits.nextSetBit(a + 1)) {
+                final int first = a;
+                futures.add(executor.submit(() -> computeTopologies(first, taxaBits, addresses)));
+            }
+            long total = 0;
+            final List<TripletBlock> blocks = new ArrayList<>(futures.size());
+            for (Future<TripletBlock> future : futures) {
+                final TripletBlock block = waitFor(future);
+                blocks.add(block);
+                total += block.size;
+                progressListener.incrementProgress();
+            }
+            four2topology = new QuartetTable(total);
+            for (TripletBlock block : blocks) {
+                for (int i = 0; i < block.size; i++) {
+                    four2topology.put(block.keys[i], block.outliers[i]);
+                    if (verbose)
+                        System.err.println("Triple: " + QuartetTable.toString(block.keys[i], block.outliers[i]));
                 }
+                missingTriplets.addAll(block.missing);
             }
-            progressListener.incrementProgress();
+        } finally {
+            executor.shutdownNow();
         }
         if (verbose)
             System.err.println("Total number of rooted triples: " + four2topology.size());
@@ -141,22 +160,36 @@ public class PrimordialConsensus implements IConsensusTreeMethod {
         }
 
         progressListener.setSubtask("Building clusters");
-        progressListener.setMaximum(trees.length);
-        progressListener.setProgress(taxa.size());
+        progressListener.setMaximum(taxa.size());
+        progressListener.setProgress(0);
 
         // build splits from the triplets:
         LinkedList<Split> splits = new LinkedList<>();
         LinkedList<Split> nextSplits = new LinkedList<>();
 
+        if (four2topology.size() == 0)
+            throw new IOException("Primordial consensus not applicable. There are no resolved triplets");
+
         BitSet addedTaxa = new BitSet();
-        // process the first quartet:
-        QuartetTopology initialTopology = four2topology.values().iterator().next();
-        addedTaxa.or(initialTopology.getAll());
-        splits.add(initialTopology.asSplit());
-        splits.add(initialTopology.asSplit(0));
-        splits.add(initialTopology.asSplit(1));
-        splits.add(initialTopology.asSplit(2));
-        splits.add(initialTopology.asSplit(3));
+        // process the first rooted triple p,q|r, which is the quartet p,q|r,0, using 0 as formal root:
+        final long initialKey = four2topology.getSmallestKey();
+        final int r = four2topology.get(initialKey);
+        final int[] four = new int[4]; // p,q|r,0
+        int k = 0;
+        for (int x : QuartetTable.getTaxa(initialKey)) {
+            if (x != r)
+                four[k++] = x;
+        }
+        four[2] = r;
+        four[3] = 0;
+        for (int x : four)
+            addedTaxa.set(x);
+        splits.add(new Split(asBitSet(four[0], four[1]), asBitSet(four[2], four[3])));
+        for (int i = 0; i < 4; i++) {
+            BitSet B = (BitSet) addedTaxa.clone();
+            B.set(four[i], false);
+            splits.add(new Split(asBitSet(four[i]), B));
+        }
 
         if (verbose) {
             System.err.println("Initial splits:");
@@ -176,11 +209,7 @@ public class PrimordialConsensus implements IConsensusTreeMethod {
                     for (int a = split.getA().nextSetBit(0); ok && a != -1; a = split.getA().nextSetBit(a + 1)) {
                         for (int b1 = split.getB().nextSetBit(0); ok && b1 != -1; b1 = split.getB().nextSetBit(b1 + 1)) {
                             for (int b2 = split.getB().nextSetBit(b1 + 1); ok && b2 != -1; b2 = split.getB().nextSetBit(b2 + 1)) {
-                                FourTaxa four = new FourTaxa(x, a, b1, b2);
-                                QuartetTopology topology = four2topology.get(four);
-                                if (verbose)
-                                    System.err.println("Four: " + StringUtils.toString(four) + " Quartet: " + topology);
-                                if (topology == null || !topology.separates(a, b1, b2))
+                                if (!four2topology.separates(x, a, b1, b2))
                                     ok = false;
                             }
                             if (b1 == 0)
@@ -205,8 +234,7 @@ public class PrimordialConsensus implements IConsensusTreeMethod {
                     for (int a1 = split.getA().nextSetBit(0); ok && a1 != -1; a1 = split.getA().nextSetBit(a1 + 1)) {
                         for (int a2 = split.getA().nextSetBit(a1 + 1); ok && a2 != -1; a2 = split.getA().nextSetBit(a2 + 1)) {
                             for (int b = split.getB().nextSetBit(0); ok && b != -1; b = split.getB().nextSetBit(b + 1)) {
-                                QuartetTopology topology = four2topology.get(new FourTaxa(x, b, a1, a2));
-                                if (topology == null || !topology.separates(b, a1, a2))
+                                if (!four2topology.separates(x, b, a1, a2))
                                     ok = false;
                                 if (b == 0)
                                     break;
@@ -291,183 +319,338 @@ public class PrimordialConsensus implements IConsensusTreeMethod {
 
 
     /**
-     * determines which triplet topology is the majority topology   and returns it as a quartet (including 0 as formal root)
+     * for all taxa b and c larger than a, determines the majority topology of the rooted triple a, b, c
      *
-     * @return majority topology
+     * @return resolved and missing triples
      */
-    private QuartetTopology computeTopology(int a, int b, int c, TaxId2Address[] taxId2Address) {
-        int count_ab_c = 0;
-        int count_ac_b = 0;
-        int count_bc_a = 0;
-        boolean seen = false;
-
-        for (TaxId2Address map : taxId2Address) {
-            String addressA = map.get(a);
-            String addressB = map.get(b);
-            String addressC = map.get(c);
-            if (addressA == null || addressB == null || addressC == null)  // taxon not present in this tree
-                continue;
-            seen = true;
-
-            int prefixLengthAB = getCommonPrefix(new String[]{addressA, addressB}).length();
-            int prefixLengthAC = getCommonPrefix(new String[]{addressA, addressC}).length();
-            int prefixLengthBC = getCommonPrefix(new String[]{addressB, addressC}).length();
-            if (prefixLengthAB > prefixLengthAC)
-                count_ab_c++;
-            else if (prefixLengthAC > prefixLengthBC)
-                count_ac_b++;
-            else if (prefixLengthBC > prefixLengthAC)
-                count_bc_a++;
+    private static TripletBlock computeTopologies(int a, BitSet taxaBits, TreeAddresses[] addresses) {
+        final TripletBlock block = new TripletBlock();
+        for (int b = taxaBits.nextSetBit(a + 1); b != -1; b = taxaBits.nextSetBit(b + 1)) {
+            for (int c = taxaBits.nextSetBit(b + 1); c != -1; c = taxaBits.nextSetBit(c + 1)) {
+                int count_ab_c = 0;
+                int count_ac_b = 0;
+                int count_bc_a = 0;
+                boolean seen = false;
+
+                for (TreeAddresses tree : addresses) {
+                    if (!tree.contains(a) || !tree.contains(b) || !tree.contains(c))  // taxon not present in this tree
+                        continue;
+                    seen = true;
+
+                    int depthAB = tree.getLCADepth(a, b);
+                    int depthAC = tree.getLCADepth(a, c);
+                    int depthBC = tree.getLCADepth(b, c);
+                    if (depthAB > depthAC)
+                        count_ab_c++;
+                    else if (depthAC > depthBC)
+                        count_ac_b++;
+                    else if (depthBC > depthAC)
+                        count_bc_a++;
+                }
+
+                if (count_ab_c > count_ac_b && count_ab_c > count_bc_a)
+                    block.add(QuartetTable.pack(a, b, c), c);
+                else if (count_ac_b > count_ab_c && count_ac_b > count_bc_a)
+                    block.add(QuartetTable.pack(a, b, c), b);
+                else if (count_bc_a > count_ab_c && count_bc_a > count_ac_b)
+                    block.add(QuartetTable.pack(a, b, c), a);
+                else if (!seen)
+                    block.missing.add(new Triplet<>(a, b, c));
+            }
         }
+        return block;
+    }
 
-        if (count_ab_c > count_ac_b && count_ab_c > count_bc_a)
-            return new QuartetTopology(a, b, c, 0);
-        else if (count_ac_b > count_ab_c && count_ac_b > count_bc_a)
-            return new QuartetTopology(a, c, b, 0);
-        else if (count_bc_a > count_ab_c && count_bc_a > count_ac_b)
-            return new QuartetTopology(b, c, a, 0);
-        if (!seen)
-            return null;
-        return unresolved;
+    /**
+     * gets the set containing the given taxa
+     *
+     * @return bit set
+     */
+    private static BitSet asBitSet(int... values) {
+        BitSet set = new BitSet();
+        for (int value : values)
+            set.set(value);
+        return set;
     }
 
     /**
-     * computes the label2address mapping
+     * waits for the given future
      *
-	 */
-    private void computeLabel2AddressRec(PhyloTree tree, Taxa taxa, Node v, String path, TaxId2Address taxId2Address) {
-        if (v.getOutDegree() == 0) {
-            Integer taxId = taxa.indexOf(tree.getLabel(v));
-            taxId2Address.put(taxId, path);
-        } else {
-            char count = 0;
-            for (Edge f = v.getFirstOutEdge(); f != null; f = v.getNextOutEdge(f)) {
-                count++;
-                computeLabel2AddressRec(tree, taxa, f.getTarget(), path + count, taxId2Address);
-            }
+     * @return its value
+     */
+    private static <T> T waitFor(Future<T> future) throws CanceledException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new CanceledException();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
         }
     }
 
     /**
-     * given a set of addresses, returns the common prefix
-     *
-     * @return prefix
+     * for one tree, the positions of the taxa in a depth-first listing of the leaves, together with a sparse table
+     * over the depths of the lowest common ancestors of consecutive leaves, so that the depth of the lowest common
+     * ancestor of any two taxa is obtained in constant time. This replaces the string addresses used previously, whose
+     * common prefix length is the same depth. Leaves whose labels are not taxa are skipped. In a network, each node is
+     * only visited along the first path that reaches it
      */
-    public String getCommonPrefix(String[] addresses) {
-        if (addresses.length == 0)
-            return "";
-        else if (addresses.length == 1)
-            return addresses[0];
-
-        for (int i = 0; ; i++) {
-            int alive = 0;
-            String first = null;
-            for (String address : addresses) {
-                if (i < address.length()) {
-                    alive++;
-                    if (first == null)
-                        first = address;
-                    else {
-                        if (first.charAt(i) != address.charAt(i))
-                            return address.substring(0, i);
-                    }
+    private static class TreeAddresses {
+        private final int[] taxon2position; // -1, if taxon not present
+        private final int[][] minDepth; // minDepth[k][i] is the minimum of the depths i..i+2^k-1
+
+        private int numberOfLeaves;
+        private int[] gapDepth; // depth of lowest common ancestor of leaf i and leaf i+1
+        private int currentMin;
+
+        TreeAddresses(PhyloTree tree, Taxa taxa) {
+            taxon2position = new int[taxa.maxId() + 1];
+            Arrays.fill(taxon2position, -1);
+            int leaves = 0;
+            for (Node v = tree.getFirstNode(); v != null; v = v.getNext()) {
+                if (v.getOutDegree() == 0)
+                    leaves++;
+            }
+            gapDepth = new int[Math.max(0, leaves - 1)];
+            if (tree.getRoot() != null)
+                computeRec(tree, taxa, tree.getRoot(), 0, new NodeSet(tree));
+            if (gapDepth.length > Math.max(0, numberOfLeaves - 1)) // some leaves skipped
+                gapDepth = Arrays.copyOf(gapDepth, Math.max(0, numberOfLeaves - 1));
+
+            final int n = gapDepth.length;
+            final int levels = (n == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(n));
+            minDepth = new int[levels][];
+            if (levels > 0) {
+                minDepth[0] = gapDepth;
+                for (int k = 1; k < levels; k++) {
+                    final int half = 1 << (k - 1);
+                    final int[] previous = minDepth[k - 1];
+                    final int[] current = new int[n - (1 << k) + 1];
+                    for (int i = 0; i < current.length; i++)
+                        current[i] = Math.min(previous[i], previous[i + half]);
+                    minDepth[k] = current;
                 }
             }
-            if (alive < 2) {
-                assert first != null;
-                if (i > 0)
-                    return first.substring(0, i - 1);
-                else
-                    return "";
+            gapDepth = null;
+        }
+
+        /**
+         * visits the leaves in depth-first order and records the minimum depth visited between consecutive leaves.
+         * Nodes already visited are skipped, so that each leaf of a network is recorded only once
+         */
+        private void computeRec(PhyloTree tree, Taxa taxa, Node v, int depth, NodeSet visited) {
+            if (visited.contains(v))
+                return;
+            visited.add(v);
+            if (v.getOutDegree() == 0) {
+                final String label = tree.getLabel(v);
+                final int taxon = (label != null ? taxa.indexOf(label) : -1);
+                if (taxon >= 0 && taxon < taxon2position.length) {
+                    if (numberOfLeaves > 0)
+                        gapDepth[numberOfLeaves - 1] = currentMin;
+                    taxon2position[taxon] = numberOfLeaves++;
+                    currentMin = Integer.MAX_VALUE;
+                }
+            } else {
+                for (Edge f = v.getFirstOutEdge(); f != null; f = v.getNextOutEdge(f)) {
+                    computeRec(tree, taxa, f.getTarget(), depth + 1, visited);
+                    currentMin = Math.min(currentMin, depth);
+                }
             }
         }
+
+        boolean contains(int taxon) {
+            return taxon2position[taxon] != -1;
+        }
+
+        /**
+         * gets the depth of the lowest common ancestor of two taxa. Both taxa must be contained in the tree, see
+         * contains(int). Different taxa always have different positions, also if a taxon labels more than one leaf,
+         * as only its last leaf is kept
+         *
+         * @return depth, with the root at depth 0, or Integer.MAX_VALUE, if a equals b
+         */
+        int getLCADepth(int a, int b) {
+            int i = taxon2position[a];
+            int j = taxon2position[b];
+            if (i > j) {
+                int tmp = i;
+                i = j;
+                j = tmp;
+            }
+            if (i == j) // a equals b
+                return Integer.MAX_VALUE;
+            final int k = 31 - Integer.numberOfLeadingZeros(j - i);
+            return Math.min(minDepth[k][i], minDepth[k][j - (1 << k)]);
+        }
     }
 
     /**
-     * gets the sorted triplet
-     *
-     * @return sorted triplet
+     * rooted triples computed for one value of the first taxon
      */
-    private Triplet<Integer, Integer, Integer> getSortedTriplet(int a, int b, int c) {
-        int min = Math.min(a, Math.min(b, c));
-        int max = Math.max(a, Math.max(b, c));
-        int mid = a;
-        if (mid == min || mid == max)
-            mid = c;
-        if (mid == min || mid == max)
-            mid = b;
-        return new Triplet<>(min, mid, max);
+    private static class TripletBlock {
+        private long[] keys = new long[16];
+        private int[] outliers = new int[16];
+        private int size;
+        private final List<Triplet<Integer, Integer, Integer>> missing = new ArrayList<>();
+
+        void add(long key, int outlier) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+                outliers = Arrays.copyOf(outliers, 2 * size);
+            }
+            keys[size] = key;
+            outliers[size++] = outlier;
+        }
     }
 
-	static class TaxId2Address extends HashMap<Integer, String> {
-	}
-
-	static class FourTaxa extends BitSet {
-		public FourTaxa(int a, int b, int c, int d) {
-			super();
-			set(a);
-			set(b);
-			set(c);
-			set(d);
-		}
-	}
-
-    static class QuartetTopology {
-        final private Integer[] data;
-        final private BitSet all;
-        final private Split split;
-
-        public QuartetTopology(int a, int b, int c, int d) {
-            data = new Integer[]{a, b, c, d};
-
-            all = new BitSet();
-            for (int x : data)
-                all.set(x);
-
-            BitSet A = new BitSet();
-            A.set(data[0]);
-            A.set(data[1]);
-            BitSet B = new BitSet();
-            B.set(data[2]);
-            B.set(data[3]);
-            split = new Split(A, B);
+    /**
+     * maps resolved rooted triples to the taxon that is separated from the other two. A rooted triple a,b|c is the
+     * quartet a,b|c,0, where 0 is a formal root. Triples are packed into longs, using 21 bits per taxon, and stored in
+     * an open addressing table with linear probing
+     */
+    static class QuartetTable {
+        private static final int BITS_PER_TAXON = 21;
+        private static final long TAXON_MASK = (1L << BITS_PER_TAXON) - 1;
+
+        private final long[] keys; // 0 indicates an empty slot
+        private final int[] values;
+        private final int shift;
+        private int size;
+        private long smallestKey = Long.MAX_VALUE;
+
+        /**
+         * constructor
+         *
+         * @param expectedSize number of triples that will be added
+         */
+        QuartetTable(long expectedSize) {
+            int bits = 4;
+            while ((1L << bits) < expectedSize + expectedSize / 3 + 1)
+                bits++;
+            if (bits > 30)
+                throw new IllegalArgumentException("Too many triples: " + expectedSize);
+            keys = new long[1 << bits];
+            values = new int[1 << bits];
+            shift = 64 - bits;
+        }
+
+        /**
+         * packs three distinct taxa into a long, independent of their order
+         *
+         * @return key
+         */
+        static long pack(int a, int b, int c) {
+            if (a > b) {
+                int tmp = a;
+                a = b;
+                b = tmp;
+            }
+            if (b > c) {
+                int tmp = b;
+                b = c;
+                c = tmp;
+            }
+            if (a > b) {
+                int tmp = a;
+                a = b;
+                b = tmp;
+            }
+            if (c > TAXON_MASK)
+                throw new IllegalArgumentException("Taxon id too large: " + c);
+            return ((long) a << (2 * BITS_PER_TAXON)) | ((long) b << BITS_PER_TAXON) | c;
         }
 
-        public String toString() {
-            return data[0] + " " + data[1] + " | " + data[2] + " " + data[3];
+        /**
+         * gets the three taxa of a key
+         *
+         * @return taxa in increasing order
+         */
+        static int[] getTaxa(long key) {
+            return new int[]{(int) (key >>> (2 * BITS_PER_TAXON)), (int) ((key >>> BITS_PER_TAXON) & TAXON_MASK), (int) (key & TAXON_MASK)};
         }
 
-        public int get(int i) {
-            return data[i];
+        private int slot(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
         }
 
-        public int hashCode() {
-            return Arrays.hashCode(data);
+        void put(long key, int value) {
+            final int mask = keys.length - 1;
+            int i = slot(key);
+            while (keys[i] != 0 && keys[i] != key)
+                i = (i + 1) & mask;
+            if (keys[i] == 0) {
+                keys[i] = key;
+                size++;
+                if (key < smallestKey)
+                    smallestKey = key;
+            }
+            values[i] = value;
         }
 
-        public BitSet getAll() {
-            return (BitSet) all.clone();
+        /**
+         * gets the taxon separated from the other two
+         *
+         * @return taxon, or 0, if triple is not resolved
+         */
+        int get(long key) {
+            final int mask = keys.length - 1;
+            int i = slot(key);
+            while (keys[i] != 0) {
+                if (keys[i] == key)
+                    return values[i];
+                i = (i + 1) & mask;
+            }
+            return 0;
         }
 
-        public Split asSplit() {
-            return (Split) split.clone();
+        int size() {
+            return size;
         }
 
-        public Split asSplit(int i) {
-            BitSet A = new BitSet();
-            A.set(data[i]);
-            BitSet B = getAll();
-            B.set(data[i], false);
-            return new Split(A, B);
+        /**
+         * gets the key of the lexicographically smallest triple
+         *
+         * @return smallest key
+         */
+        long getSmallestKey() {
+            return smallestKey;
         }
 
         /**
-         * does split separate a from b1 and b2?
+         * does the quartet on the four given taxa, one of which must be the formal root 0, separate a from b1 and b2?
          *
-         * @return true, if split separates a from b1, b2
+         * @return true, if quartet is resolved and separates a from b1, b2
          */
-        public boolean separates(int a, int b1, int b2) {
-            return (split.getA().get(a) != split.getA().get(b1)) && (split.getA().get(b1) == split.getA().get(b2));
+        boolean separates(int x, int a, int b1, int b2) {
+            final long key;
+            if (x == 0)
+                key = pack(a, b1, b2);
+            else if (a == 0)
+                key = pack(x, b1, b2);
+            else if (b1 == 0)
+                key = pack(x, a, b2);
+            else if (b2 == 0)
+                key = pack(x, a, b1);
+            else
+                return false;
+            final int outlier = get(key);
+            if (outlier == 0)
+                return false;
+            final boolean aInFirstPart = (a != 0 && a != outlier);
+            final boolean b1InFirstPart = (b1 != 0 && b1 != outlier);
+            final boolean b2InFirstPart = (b2 != 0 && b2 != outlier);
+            return aInFirstPart != b1InFirstPart && b1InFirstPart == b2InFirstPart;
+        }
+
+        static String toString(long key, int outlier) {
+            final int[] taxa = getTaxa(key);
+            final StringBuilder buf = new StringBuilder();
+            for (int t : taxa) {
+                if (t != outlier)
+                    buf.append(t).append(" ");
+            }
+            return buf.append("| ").append(outlier).append(" 0").toString();
         }
     }
 }
@@ -18,6 +18,7 @@
  */
 package dendroscope.consensus;
 
+import dendroscope.algorithms.utils.IncompatibilityGraph;
 import jloda.graph.Edge;
 import jloda.swing.util.ProgressDialog;
 import jloda.util.CanceledException;
@@ -46,12 +47,7 @@ public class ReticulateNetwork {
         this.progressListener = new ProgressDialog("Computing reduced network", "Initializing", null);
         progressListener.setMaximum(-1);
 
-        boolean[][] incompatible = new boolean[clusters.length][clusters.length];
-        for (int i = 0; i < clusters.length; i++) {
-            for (int j = i + 1; j < clusters.length; j++)
-                incompatible[i][j] = incompatible[j][i] = Cluster.incompatible(clusters[i], clusters[j]);
-        }
-        BitSet[] components = computeComponents(incompatible);
+        BitSet[] components = IncompatibilityGraph.computeComponents(clusters);
         System.err.println("Components: " + components.length);
         for (BitSet component1 : components) System.err.println(component1);
 
@@ -381,47 +377,6 @@ public class ReticulateNetwork {
         return co;
     }
 
-    /**
-     * determines incompatibity components
-     *
-     * @return all incompatibity components
-     */
-    private BitSet[] computeComponents(boolean[][] incompatible) {
-        int[] componentNumber = new int[incompatible.length];
-		Arrays.fill(componentNumber, -1);
-
-        int number = 0;
-        for (int i = 0; i < incompatible.length; i++) {
-            if (componentNumber[i] == -1)
-                computeComponentsRec(incompatible, i, number++, componentNumber);
-        }
-
-        System.err.println("Components: " + number);
-
-        BitSet[] components = new BitSet[number];
-        for (int i = 0; i < components.length; i++)
-            components[i] = new BitSet();
-
-        for (int c = 0; c < incompatible.length; c++) {
-            components[componentNumber[c]].set(c);
-        }
-        return components;
-    }
-
-    /**
-     * recursively does the work
-     *
-	 */
-    private void computeComponentsRec(boolean[][] incompatible, int i, int number, int[] componentNumber) {
-        componentNumber[i] = number;
-        for (int j = 0; j < incompatible.length; j++) {
-            if (i != j && incompatible[i][j] && componentNumber[j] == -1) {
-                computeComponentsRec(incompatible, j, number, componentNumber);
-            }
-        }
-    }
-
-
     /**
      * reduces the input clusters using a given choice of optional taxa or taxon groups
      *
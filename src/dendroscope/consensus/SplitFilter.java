@@ -18,6 +18,9 @@
  */
 package dendroscope.consensus;
 
+import dendroscope.util.PhyloTreeUtils;
+import jloda.graph.Node;
+import jloda.graph.NodeIntArray;
 import jloda.phylo.PhyloTree;
 import jloda.phylo.algorithms.Distortion;
 import jloda.util.Basic;
@@ -25,10 +28,12 @@ import jloda.util.CanceledException;
 import jloda.util.progress.ProgressListener;
 
 import java.io.IOException;
-import java.util.BitSet;
-import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 /**
  * filters splits
@@ -82,54 +87,47 @@ public class SplitFilter {
     }
 
     /**
-     * todo: needs testing
-     * filter the splits by total score. All splits are removed whose total distortion score exceeds the value of maxDistortion
+     * filter the splits by total score. All splits are removed whose total distortion score exceeds the value of maxDistortion.
+     * Splits are processed in parallel, using immutable snapshots of the trees
      *
      * @return filtered splits
      */
     public static SplitSystem filterByTotalScore(ProgressListener progressListener, Taxa taxa, BitSet[] tree2taxa, PhyloTree[] trees, SplitSystem splits, int maxDistortion) throws CanceledException {
         progressListener.setTasks("Filter by total distortion", "Processing splits");
         progressListener.setMaximum(splits.size());
+        progressListener.setProgress(0);
 
-        for (PhyloTree tree1 : trees) Utilities.setNode2Taxa(taxa, tree1);
-
-        SplitSystem result = new SplitSystem();
+        final TreeSnapshot[] snapshots = createSnapshots(taxa, trees);
 
         System.err.println("Filtering splits:");
-        for (Iterator it = splits.iterator(); it.hasNext(); ) {
-            Split split = (Split) it.next();
+        final Split[] input = splits.asArray();
+        final Split[] output = applyInParallel(progressListener, input, split -> {
             int totalScore = 0;
-            BitSet A = split.getA();
-            BitSet B = split.getB();
-            for (int t = 0; t <= trees.length; t++) {
-                BitSet treeTaxa = tree2taxa[t];
-                BitSet treeTaxaAndA = (BitSet) (treeTaxa.clone());
-                treeTaxaAndA.and(A);
-                BitSet treeTaxaAndB = (BitSet) (treeTaxa.clone());
-                treeTaxaAndB.and(B);
-
-                if (treeTaxaAndA.cardinality() > 1 && treeTaxaAndB.cardinality() > 1) {
+            final BitSet A = split.getA();
+            final BitSet B = split.getB();
+            for (int t = 0; t < snapshots.length; t++) {
+                if (countIntersection(tree2taxa[t], A) > 1 && countIntersection(tree2taxa[t], B) > 1) {
                     try {
-                        PhyloTree tree = trees[t];
-                        totalScore += Distortion.computeDistortionForSplit(tree, A, B);
+                        totalScore += snapshots[t].computeDistortionForSplit(A, B);
                     } catch (IOException ex) {
                         Basic.caught(ex);
                     }
                 }
             }
-            if (totalScore <= maxDistortion)
+            return totalScore <= maxDistortion ? split : null;
+        });
+
+        final SplitSystem result = new SplitSystem();
+        for (Split split : output) {
+            if (split != null)
                 result.addSplit(split);
-            progressListener.incrementProgress();
         }
-        for (PhyloTree tree : trees)
-            tree.clearTaxa();
-
         return result;
     }
 
     /**
      * filters splits by distortion, allowing a split to pass only if there exists minNumberTrees for which
-     * the distortion of the split is at most maxDistortion
+     * the distortion of the split is at most maxDistortion. Splits are processed in parallel, using immutable snapshots of the trees
      *
      * @return filtered splits
 	 */
@@ -137,58 +135,193 @@ public class SplitFilter {
                                                  int minNumberTrees, boolean allTrivial) throws CanceledException {
         progressListener.setTasks("Filter by distortion", "Processing splits");
         progressListener.setMaximum(splits.size());
+        progressListener.setProgress(0);
 
-        for (PhyloTree tree1 : trees) Utilities.setNode2Taxa(taxa, tree1);
-
-        SplitSystem result = new SplitSystem();
+        final TreeSnapshot[] snapshots = createSnapshots(taxa, trees);
 
         System.err.println("Filtering splits:");
-        for (Iterator it = splits.iterator(); it.hasNext(); ) {
-            Split split = (Split) it.next();
-            BitSet A = split.getA();
-            BitSet B = split.getB();
+        final Split[] input = splits.asArray();
+        final Split[] output = applyInParallel(progressListener, input, split -> {
+            final BitSet A = split.getA();
+            final BitSet B = split.getB();
             int count = 0;
-            for (int t = 0; t < trees.length; t++) {
-                BitSet treeTaxa = tree2taxa[t];
-                BitSet treeTaxaAndA = (BitSet) (treeTaxa.clone());
-                treeTaxaAndA.and(A);
-                BitSet treeTaxaAndB = (BitSet) (treeTaxa.clone());
-                treeTaxaAndB.and(B);
-
-                if (treeTaxaAndA.cardinality() > 1 && treeTaxaAndB.cardinality() > 1) {
+            for (int t = 0; t < snapshots.length; t++) {
+                final int treeTaxaAndA = countIntersection(tree2taxa[t], A);
+                final int treeTaxaAndB = countIntersection(tree2taxa[t], B);
+
+                if (treeTaxaAndA > 1 && treeTaxaAndB > 1) {
                     try {
-                        PhyloTree tree = trees[t];
-                        int score = Distortion.computeDistortionForSplit(tree, A, B);
-                        //System.err.print(" " + score);
+                        int score = snapshots[t].computeDistortionForSplit(A, B);
                         if (score <= maxDistortion)
                             count++;
-                        if (count + (trees.length - t) < minNumberTrees)
+                        if (count + (snapshots.length - t) < minNumberTrees)
                             break; // no hope to get above threshold
                     } catch (IOException e) {
                         Basic.caught(e);
                     }
                 } else if ((A.cardinality() == 1 || B.cardinality() == 1)
-                        && treeTaxaAndB.cardinality() > 0 && treeTaxaAndB.cardinality() > 0) {
+                        && treeTaxaAndB > 0 && treeTaxaAndB > 0) {
                     count++; // is confirmed split
-                    //System.err.print(" +");
-                } else {
-                    //System.err.print(" .");
                 }
             }
-            //System.err.println(" sum=" + count);
             if ((allTrivial && (A.cardinality() == 1 || B.cardinality() == 1))
                     || count >= minNumberTrees) {
                 Split newSplit = (Split) split.clone();
-                newSplit.setConfidence((float) count / (float) trees.length);
-                result.addSplit(newSplit);
+                newSplit.setConfidence((float) count / (float) snapshots.length);
+                return newSplit;
+            } else
+                return null;
+        });
+
+        final SplitSystem result = new SplitSystem();
+        for (Split split : output) {
+            if (split != null)
+                result.addSplit(split);
+        }
+        return result;
+    }
+
+    /**
+     * applies the given function to all splits, using all available cores. The result of the function for
+     * input[i] is stored in output[i]
+     *
+     * @return output array
+     */
+    private static Split[] applyInParallel(ProgressListener progressListener, Split[] input, Function<Split, Split> function) throws CanceledException {
+        final Split[] output = new Split[input.length];
+        if (input.length == 0)
+            return output;
+
+        final int numberOfThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), input.length));
+        final int blockSize = Math.max(1, Math.min(256, input.length / (4 * numberOfThreads)));
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int start = 0; start < input.length; start += blockSize) {
+                final int first = start;
+                final int last = Math.min(input.length, start + blockSize);
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < last; i++)
+                        output[i] = function.apply(input[i]);
+                }));
             }
-            progressListener.incrementProgress();
+            // wait for blocks in order:
+            for (int b = 0; b < futures.size(); b++) {
+                try {
+                    futures.get(b).get();
+                } catch (InterruptedException | ExecutionException e) {
+                    Basic.caught(e);
+                }
+                progressListener.setProgress(Math.min(input.length, (long) (b + 1) * blockSize));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return output;
+    }
+
+    /**
+     * creates immutable snapshots of all trees
+     *
+     * @return snapshots
+     */
+    private static TreeSnapshot[] createSnapshots(Taxa taxa, PhyloTree[] trees) {
+        final TreeSnapshot[] snapshots = new TreeSnapshot[trees.length];
+        for (int t = 0; t < trees.length; t++)
+            snapshots[t] = new TreeSnapshot(taxa, trees[t]);
+        return snapshots;
+    }
+
+    /**
+     * counts the number of elements in the intersection of two sets
+     *
+     * @return size of intersection
+     */
+    private static int countIntersection(BitSet a, BitSet b) {
+        int count = 0;
+        for (int t = a.nextSetBit(0); t != -1; t = a.nextSetBit(t + 1)) {
+            if (b.get(t))
+                count++;
         }
+        return count;
+    }
 
-        for (PhyloTree tree : trees)
-            tree.clearTaxa();
+    /**
+     * an immutable snapshot of a tree, in which nodes are numbered in post order and each node knows its parent
+     * and taxon. The distortion of a split is computed as the minimum number of state changes required to
+     * explain the two split parts on the tree, minus one. Networks are kept as private copies and are passed to
+     * Distortion.computeDistortionForSplit, one call at a time
+     */
+    private static class TreeSnapshot {
+        private final int[] parent; // parent of each node in post order, or -1
+        private final int[] taxon; // taxon of each node in post order, or -1
+        private final PhyloTree network;
+
+        TreeSnapshot(Taxa taxa, PhyloTree tree) {
+            boolean isNetwork = false;
+            for (Node v : tree.nodes()) {
+                if (v.getInDegree() > 1) {
+                    isNetwork = true;
+                    break;
+                }
+            }
+            if (isNetwork) {
+                network = new PhyloTree();
+                network.copy(tree);
+                Utilities.setNode2Taxa(taxa, network);
+                parent = null;
+                taxon = null;
+            } else {
+                network = null;
+                final Node[] order = PhyloTreeUtils.computeTopologicalOrder(tree);
+                final int n = order.length;
+                final NodeIntArray node2index = new NodeIntArray(tree);
+                for (int i = 0; i < n; i++)
+                    node2index.set(order[i], n - 1 - i); // children come before their parents
+                parent = new int[n];
+                taxon = new int[n];
+                for (int i = 0; i < n; i++) {
+                    final Node v = order[n - 1 - i];
+                    parent[i] = (v.getInDegree() == 0 ? -1 : node2index.getInt(v.getFirstInEdge().getSource()));
+                    final String label = tree.getLabel(v);
+                    taxon[i] = (label != null ? taxa.indexOf(label) : -1);
+                }
+            }
+        }
 
-        return result;
+        /**
+         * computes the distortion of the split A|B on this tree. Thread safe
+         *
+         * @return distortion
+         */
+        int computeDistortionForSplit(BitSet A, BitSet B) throws IOException {
+            if (network != null) {
+                synchronized (network) {
+                    return Distortion.computeDistortionForSplit(network, A, B);
+                }
+            }
+            final int n = parent.length;
+            final int infinity = n + 1;
+            final int[] costA = new int[n]; // number of changes in subtree, if node is in state A
+            final int[] costB = new int[n]; // number of changes in subtree, if node is in state B
+            int total = 0;
+            for (int i = 0; i < n; i++) {
+                if (taxon[i] != -1) {
+                    if (A.get(taxon[i]))
+                        costB[i] += infinity;
+                    else if (B.get(taxon[i]))
+                        costA[i] += infinity;
+                }
+                final int p = parent[i];
+                if (p == -1)
+                    total += Math.min(costA[i], costB[i]);
+                else {
+                    costA[p] += Math.min(costA[i], costB[i] + 1);
+                    costB[p] += Math.min(costB[i], costA[i] + 1);
+                }
+            }
+            return total - 1;
+        }
     }
 
     /**
@@ -26,13 +26,15 @@ import jloda.graph.Edge;
 import jloda.graph.Node;
 import jloda.graph.NodeArray;
 import jloda.phylo.PhyloTree;
-import jloda.swing.util.ProgramProperties;
 import jloda.util.CanceledException;
+import jloda.util.ProgramProperties;
 import jloda.util.progress.ProgressListener;
 import jloda.util.progress.ProgressSilent;
 
 import javax.swing.*;
+import java.awt.*;
 import java.io.IOException;
+import java.util.List;
 import java.util.*;
 
 /**
@@ -40,6 +42,10 @@ import java.util.*;
  * Daniel Huson, 6.2007
  */
 public class SplitSystem {
+    private static final String MINIMAL_NETWORK = "Minimal Level-k Network";
+    private static final String CLUSTER_NETWORK = "Cluster Network";
+    private static final String GALLED_NETWORK = "Galled Network";
+
     private int nsplits;
 
     final private Map<Integer, Split> index2split;
@@ -228,30 +234,23 @@ public class SplitSystem {
         PhyloTree tree;
         if (taxa.size() == 0)
             return new PhyloTree();
+
+        final Split[] taxon2trivial = computeTrivialSplits(taxa.maxId());
+
+        tree = createTreeFromCompatibleClusters(taxa, taxon2trivial);
+        if (tree != null)
+            return tree;
+
         if (containsPairWithAllFourIntersections()) {
             System.err.println("not compatible");
-            String MINIMAL_NETWORK = "Minimal Level-k Network";
-            String CLUSTER_NETWORK = "Cluster Network";
-            String GALLED_NETWORK = "Galled Network";
-            int choice = -1;
-            String[] options;
-            if (DendroscopeProperties.ALLOW_MINIMAL_NETWORKS)
-                options = new String[]{MINIMAL_NETWORK, GALLED_NETWORK, CLUSTER_NETWORK};
-            else
-                options = new String[]{GALLED_NETWORK, CLUSTER_NETWORK};
-
-            String defaultChoice = DendroscopeProperties.ALLOW_MINIMAL_NETWORKS ? MINIMAL_NETWORK : CLUSTER_NETWORK;
-
-            if (DendroscopeProperties.ALLOW_OPTIMIZE_NETWORKS && askToOptimize)
-                choice = JOptionPane.showOptionDialog(null, "Choose network type:", "Choose network algorithm - Dendroscope",
-                        JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, ProgramProperties.getProgramIcon(), options, defaultChoice);
-            if (choice >= 0 && options[choice].equals(MINIMAL_NETWORK)) {
+            final String algorithm = chooseNetworkAlgorithm(askToOptimize);
+            if (algorithm.equals(MINIMAL_NETWORK)) {
                 LevelKNetwork network = new LevelKNetwork(taxa, this);
                 network.setComputeOnlyOne(true);
                 network.setCheckTrees(true);
                 tree = network.apply(progressListener).get(0);
                 tree.setName("minimum-network");
-            } else if (choice >= 0 && options[choice].equals(GALLED_NETWORK)) {
+            } else if (algorithm.equals(GALLED_NETWORK)) {
                 ComputeGalledNetwork network = new ComputeGalledNetwork(taxa, this);
                 tree = network.apply(progressListener);
                 tree.setName("galled-network");
@@ -261,6 +260,7 @@ public class SplitSystem {
                 tree.setName("cluster-network");
             }
         } else {
+            // compatible, but not all splits are full splits containing the outgroup, insert one by one
             tree = new PhyloTree();
             NodeArray<BitSet> node2taxa = new NodeArray<>(tree); // map each node to the taxa beyond it
 
@@ -281,7 +281,7 @@ public class SplitSystem {
                     BitSet set = new BitSet();
                     set.set(t);
                     node2taxa.put(v, set);
-                    Split split = getTrivial(t);
+                    Split split = taxon2trivial[t];
                     if (split != null) {
                         tree.setWeight(e, split.getWeight());
                         usedSplits.add(split);
@@ -305,6 +305,150 @@ public class SplitSystem {
         return tree;
     }
 
+    /**
+     * determines which network algorithm to use for an incompatible set of splits. Only asks the user when running
+     * with a GUI, otherwise returns the default choice
+     *
+     * @return name of network algorithm
+     */
+    private static String chooseNetworkAlgorithm(boolean askToOptimize) {
+        String[] options;
+        if (DendroscopeProperties.ALLOW_MINIMAL_NETWORKS)
+            options = new String[]{MINIMAL_NETWORK, GALLED_NETWORK, CLUSTER_NETWORK};
+        else
+            options = new String[]{GALLED_NETWORK, CLUSTER_NETWORK};
+
+        String defaultChoice = DendroscopeProperties.ALLOW_MINIMAL_NETWORKS ? MINIMAL_NETWORK : CLUSTER_NETWORK;
+
+        if (DendroscopeProperties.ALLOW_OPTIMIZE_NETWORKS && askToOptimize && ProgramProperties.isUseGUI() && !GraphicsEnvironment.isHeadless()) {
+            int choice = JOptionPane.showOptionDialog(null, "Choose network type:", "Choose network algorithm - Dendroscope",
+                    JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, jloda.swing.util.ProgramProperties.getProgramIcon(), options, defaultChoice);
+            if (choice >= 0)
+                return options[choice];
+        }
+        return CLUSTER_NETWORK;
+    }
+
+    /**
+     * for each taxon, determines the first trivial split that separates it from all other taxa, in the same order as getTrivial()
+     *
+     * @return array mapping each taxon id to its trivial split, or null
+     */
+    private Split[] computeTrivialSplits(int maxId) {
+        final Split[] taxon2trivial = new Split[maxId + 1];
+        for (Iterator<Split> it = iterator(); it.hasNext(); ) {
+            final Split split = it.next();
+            if (split.getA().cardinality() == 1) {
+                final int t = split.getA().nextSetBit(0);
+                if (t <= maxId && taxon2trivial[t] == null)
+                    taxon2trivial[t] = split;
+            }
+            if (split.getB().cardinality() == 1) {
+                final int t = split.getB().nextSetBit(0);
+                if (t <= maxId && taxon2trivial[t] == null)
+                    taxon2trivial[t] = split;
+            }
+        }
+        return taxon2trivial;
+    }
+
+    /**
+     * builds the tree for a compatible set of full splits. The side of each split that does not contain the outgroup
+     * is a cluster. Clusters are processed by decreasing cardinality and each is attached below the smallest cluster
+     * processed so far that contains it, which is found via a pointer from each taxon to the smallest cluster
+     * containing it. This takes time proportional to the total size of all clusters and also verifies
+     * compatibility: if the taxa of a cluster do not all point to the same parent, then the clusters are not nested
+     *
+     * @return tree, or null, if splits are not compatible or not all are full splits that contain the outgroup
+     */
+    private PhyloTree createTreeFromCompatibleClusters(Taxa taxa, Split[] taxon2trivial) {
+        final int outGroupTaxonId = taxa.maxId();
+
+        final BitSet leafTaxa = new BitSet();
+        for (Iterator it = taxa.iterator(); it.hasNext(); ) {
+            int t = taxa.indexOf((String) it.next());
+            if (t != outGroupTaxonId)
+                leafTaxa.set(t);
+        }
+
+        final Set<Split> usedSplits = new HashSet<>();
+        for (int t = leafTaxa.nextSetBit(0); t != -1; t = leafTaxa.nextSetBit(t + 1)) {
+            if (taxon2trivial[t] != null)
+                usedSplits.add(taxon2trivial[t]);
+        }
+
+        final List<Split> clusterSplits = new ArrayList<>();
+        final List<BitSet> clusters = new ArrayList<>();
+        for (Iterator<Split> it = iterator(); it.hasNext(); ) {
+            final Split split = it.next();
+            if (usedSplits.contains(split))
+                continue;
+            if (split.getSplitSize() == 1) {
+                System.err.println("problem: " + split);
+                continue;
+            }
+            if (split.getA().get(outGroupTaxonId) == split.getB().get(outGroupTaxonId))
+                return null; // not a split of the outgroup versus a cluster
+            final BitSet cluster = split.getPartNotContainingTaxon(outGroupTaxonId);
+            final BitSet other = (BitSet) cluster.clone();
+            other.andNot(leafTaxa);
+            if (!other.isEmpty())
+                return null; // cluster contains unknown taxa
+            clusterSplits.add(split);
+            clusters.add(cluster);
+        }
+
+        // sort by decreasing cardinality, stable so that equal clusters are nested in order of iteration:
+        final int[] cardinality = new int[clusters.size()];
+        final Integer[] order = new Integer[clusters.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            cardinality[i] = clusters.get(i).cardinality();
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(cardinality[b], cardinality[a]));
+
+        // compute parent of each cluster, -1 indicates the center:
+        final int[] parent = new int[order.length];
+        final int[] taxon2smallest = new int[outGroupTaxonId + 1];
+        Arrays.fill(taxon2smallest, -1);
+        for (int i : order) {
+            final BitSet cluster = clusters.get(i);
+            final int p = taxon2smallest[cluster.nextSetBit(0)];
+            for (int t = cluster.nextSetBit(0); t != -1; t = cluster.nextSetBit(t + 1)) {
+                if (taxon2smallest[t] != p)
+                    return null; // not nested, so not compatible
+                taxon2smallest[t] = i;
+            }
+            parent[i] = p;
+        }
+
+        final PhyloTree tree = new PhyloTree();
+        final Node center = tree.newNode();
+        tree.setRoot(center);
+
+        final Node[] nodes = new Node[order.length];
+        for (int i : order) {
+            final Node v = tree.newNode();
+            nodes[i] = v;
+            final Edge e = tree.newEdge(parent[i] == -1 ? center : nodes[parent[i]], v);
+            tree.setWeight(e, clusterSplits.get(i).getWeight());
+        }
+
+        for (Iterator it = taxa.iterator(); it.hasNext(); ) {
+            final String name = (String) it.next();
+            final int t = taxa.indexOf(name);
+            if (t != outGroupTaxonId) {
+                final Node v = tree.newNode();
+                final Edge e = tree.newEdge(taxon2smallest[t] == -1 ? center : nodes[taxon2smallest[t]], v);
+                tree.setLabel(v, name);
+                if (taxon2trivial[t] != null)
+                    tree.setWeight(e, taxon2trivial[t].getWeight());
+            }
+        }
+        tree.setName("");
+        return tree;
+    }
+
     /**
      * inserts a split into a tree
      *
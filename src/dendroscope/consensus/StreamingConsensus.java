@@ -0,0 +1,301 @@
+/*
+ * StreamingConsensus.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.consensus;
+
+import dendroscope.io.IOFormat;
+import dendroscope.io.ITreeConsumer;
+import dendroscope.io.IOManager;
+import dendroscope.io.Newick;
+import dendroscope.io.Nexus;
+import dendroscope.util.PhyloTreeUtils;
+import jloda.graph.Edge;
+import jloda.graph.Node;
+import jloda.graph.NodeArray;
+import jloda.phylo.PhyloTree;
+import jloda.util.CanceledException;
+import jloda.util.progress.ProgressListener;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * computes the strict, majority, loose or percent-threshold consensus of a sequence of trees in one pass, without
+ * keeping the trees. Each tree is reduced to its clusters, which are counted in a hash table together with the sum of the
+ * corresponding edge lengths, so memory is proportional to the number of distinct clusters, not trees.
+ * Trees can be added at any time and the consensus can be requested at any time.
+ * All trees must be on the same taxon set
+ */
+public class StreamingConsensus {
+    public static final String PERCENT_THRESHOLD = "PercentThreshold";
+
+    private final Taxa taxa = new Taxa();
+    private BitSet treeTaxa;
+    private final Map<BitSet, ClusterCount> cluster2count = new HashMap<>();
+    private final List<BitSet> clusters = new ArrayList<>(); // all distinct clusters, in order of first occurrence
+    private int numberOfCheckedClusters = 0; // clusters that have been compared with all previous ones
+    private int numberOfTrees = 0;
+    private int numberOfNetworks = 0;
+
+    /**
+     * is the named method supported?
+     *
+     * @return true, if supported
+     */
+    public static boolean isSupportedMethod(String method) {
+        return method.equalsIgnoreCase(StrictConsensus.NAME) || method.equalsIgnoreCase(MajorityConsensus.NAME)
+               || method.equalsIgnoreCase(LooseConsensus.NAME) || method.equalsIgnoreCase(PERCENT_THRESHOLD);
+    }
+
+    /**
+     * reads all trees from a Newick or Nexus file and computes their consensus
+     *
+     * @return consensus tree
+     */
+    public static PhyloTree apply(ProgressListener progressListener, File file, String method) throws IOException, CanceledException {
+        final IOFormat format = IOManager.createIOFormatForFile(file);
+        final StreamingConsensus consensus = new StreamingConsensus();
+
+        progressListener.setTasks(method + " consensus", "Reading trees");
+        progressListener.setMaximum(-1);
+        progressListener.setCancelable(true);
+
+        final ITreeConsumer consumer = tree -> {
+            consensus.add(tree);
+            progressListener.setProgress(consensus.getNumberOfTrees());
+        };
+        if (format instanceof Nexus)
+            ((Nexus) format).read(new FileReader(file), consumer);
+        else if (format instanceof Newick)
+            ((Newick) format).read(new FileReader(file), consumer);
+        else
+            throw new IOException("Streaming consensus requires a Newick or Nexus file: " + file.getPath());
+
+        System.err.println(method + " consensus input trees: " + consensus.getNumberOfTrees()
+                           + (consensus.getNumberOfNetworks() > 0 ? " (skipped networks: " + consensus.getNumberOfNetworks() + ")" : ""));
+        System.err.println("Distinct clusters: " + consensus.getNumberOfDistinctClusters());
+        return consensus.getConsensus(method, 0, progressListener);
+    }
+
+    /**
+     * adds the clusters of a tree to the table. Networks are skipped. If the tree is not valid, an exception is thrown
+     * and the table is not changed
+     */
+    public void add(PhyloTree tree) throws IOException {
+        if (tree.getNumberReticulateEdges() > 0) {
+            numberOfNetworks++;
+            return;
+        }
+        if (tree.getRoot() == null)
+            return;
+
+        final int treeId = numberOfTrees;
+        final BitSet taxaInTree = new BitSet();
+
+        final List<BitSet> treeClusters = new ArrayList<>();
+        final List<Double> treeWeights = new ArrayList<>();
+
+        final NodeArray<BitSet> node2cluster = new NodeArray<>(tree);
+        final Node[] order = PhyloTreeUtils.computeTopologicalOrder(tree);
+        for (int i = order.length - 1; i >= 0; i--) {
+            final Node v = order[i];
+            final BitSet cluster = new BitSet();
+            final String label = tree.getLabel(v);
+            if (label != null && label.length() > 0 && !PhyloTree.isBootstrapValue(label)) {
+                int t = taxa.indexOf(label);
+                if (t == -1) {
+                    if (treeTaxa != null)
+                        throw new IOException("tree[" + (treeId + 1) + "]: taxon not contained in first tree: " + label);
+                    t = taxa.add(label);
+                }
+                if (taxaInTree.get(t))
+                    throw new IOException("tree[" + (treeId + 1) + "]: contains multiple copies of label: " + label);
+                taxaInTree.set(t);
+                cluster.set(t);
+            } else if (v.getOutDegree() == 0)
+                throw new IOException("tree[" + (treeId + 1) + "]: leaf has invalid label: " + label);
+
+            for (Edge f = v.getFirstOutEdge(); f != null; f = v.getNextOutEdge(f)) {
+                final Node w = f.getTarget();
+                final BitSet below = node2cluster.get(w);
+                cluster.or(below);
+                treeClusters.add(below);
+                treeWeights.add(tree.getWeight(f));
+            }
+            node2cluster.put(v, cluster);
+            // children are no longer needed:
+            for (Node w : v.children())
+                node2cluster.put(w, null);
+        }
+
+        if (treeTaxa == null)
+            treeTaxa = taxaInTree;
+        else if (!treeTaxa.equals(taxaInTree))
+            throw new IOException("tree[" + (treeId + 1) + "]: taxon set differs from first tree");
+
+        for (int i = 0; i < treeClusters.size(); i++) {
+            ClusterCount count = cluster2count.get(treeClusters.get(i));
+            if (count == null)
+                count = addCluster(treeClusters.get(i));
+            count.add(treeId, treeWeights.get(i));
+        }
+        numberOfTrees++;
+    }
+
+    /**
+     * adds a new cluster to the table
+     *
+     * @return the new count
+     */
+    private ClusterCount addCluster(BitSet cluster) {
+        final ClusterCount count = new ClusterCount();
+        clusters.add(cluster);
+        cluster2count.put(cluster, count);
+        return count;
+    }
+
+    /**
+     * determines which clusters are incompatible with some tree, as required for the loose consensus. Only clusters
+     * added since the last call are compared with all previous ones, so the quadratic cost is only paid when the
+     * loose consensus is requested
+     */
+    private void updateIncompatibleClusters() {
+        for (int i = numberOfCheckedClusters; i < clusters.size(); i++) {
+            final BitSet cluster = clusters.get(i);
+            final ClusterCount count = cluster2count.get(cluster);
+            for (int j = 0; j < i; j++) {
+                final BitSet other = clusters.get(j);
+                if (cluster.intersects(other) && !Cluster.contains(cluster, other) && !Cluster.contains(other, cluster)) {
+                    count.incompatible = true;
+                    cluster2count.get(other).incompatible = true;
+                }
+            }
+        }
+        numberOfCheckedClusters = clusters.size();
+    }
+
+    /**
+     * computes the consensus tree from all trees added so far
+     *
+     * @param method           the consensus method, strict, majority, loose or percent threshold
+     * @param percentThreshold only used by percent threshold, clusters contained in more than this percentage of trees are used
+     * @return consensus tree
+     */
+    public PhyloTree getConsensus(String method, double percentThreshold, ProgressListener progressListener) throws CanceledException {
+        if (!isSupportedMethod(method))
+            throw new IllegalArgumentException("Unsupported consensus method: " + method);
+        if (numberOfTrees == 0)
+            return new PhyloTree();
+        if (method.equalsIgnoreCase(LooseConsensus.NAME))
+            updateIncompatibleClusters();
+
+        final Taxa allTaxa = new Taxa();
+        for (int t = 1; t <= taxa.maxId(); t++)
+            allTaxa.add(taxa.getLabel(t));
+        final int outgroupId = allTaxa.add("__outgroup__");
+        final BitSet all = allTaxa.getBits();
+
+        progressListener.setSubtask("Processing clusters");
+        progressListener.setMaximum(cluster2count.size());
+        progressListener.setProgress(0);
+
+        final SplitSystem splits = new SplitSystem();
+        for (Map.Entry<BitSet, ClusterCount> entry : cluster2count.entrySet()) {
+            final ClusterCount count = entry.getValue();
+            if (accept(method, percentThreshold, count)) {
+                final BitSet complement = (BitSet) all.clone();
+                complement.andNot(entry.getKey());
+                splits.addSplit(new Split(entry.getKey(), complement, count.weightSum / count.count, (double) count.count / numberOfTrees));
+            }
+            progressListener.incrementProgress();
+        }
+        final BitSet outgroup = new BitSet();
+        outgroup.set(outgroupId);
+        final BitSet ingroup = (BitSet) all.clone();
+        ingroup.set(outgroupId, false);
+        splits.addSplit(new Split(ingroup, outgroup, 0));
+
+        System.err.println(method + " consensus splits: " + splits.size());
+        final PhyloTree tree = splits.createTreeFromSplits(allTaxa, false, progressListener);
+        tree.setName(method.toLowerCase() + "-consensus");
+        return tree;
+    }
+
+    /**
+     * does the given method accept a cluster with the given count?
+     *
+     * @return true, if cluster is part of consensus
+     */
+    private boolean accept(String method, double percentThreshold, ClusterCount count) {
+        if (method.equalsIgnoreCase(StrictConsensus.NAME))
+            return count.count == numberOfTrees;
+        else if (method.equalsIgnoreCase(MajorityConsensus.NAME))
+            return 2 * count.count > numberOfTrees;
+        else if (method.equalsIgnoreCase(LooseConsensus.NAME))
+            return !count.incompatible;
+        else
+            return 100.0 * count.count / numberOfTrees > percentThreshold;
+    }
+
+    /**
+     * get the number of trees added so far
+     *
+     * @return number of trees
+     */
+    public int getNumberOfTrees() {
+        return numberOfTrees;
+    }
+
+    /**
+     * get the number of networks that were skipped
+     *
+     * @return number of networks
+     */
+    public int getNumberOfNetworks() {
+        return numberOfNetworks;
+    }
+
+    /**
+     * get the number of distinct clusters seen so far
+     *
+     * @return number of clusters
+     */
+    public int getNumberOfDistinctClusters() {
+        return cluster2count.size();
+    }
+
+    /**
+     * number of trees containing a cluster and sum of the corresponding edge lengths
+     */
+    private static class ClusterCount {
+        int count;
+        double weightSum;
+        int lastTree = -1;
+        boolean incompatible; // incompatible with some other cluster and thus with some tree
+
+        void add(int treeId, double weight) {
+            if (treeId != lastTree) { // count each cluster only once per tree, e.g. in the presence of unary nodes
+                lastTree = treeId;
+                count++;
+                weightSum += weight;
+            }
+        }
+    }
+}
@@ -30,12 +30,17 @@ import jloda.swing.util.Message;
 import jloda.util.Basic;
 import jloda.util.CanceledException;
 import jloda.util.Pair;
+import jloda.util.ProgramProperties;
 import jloda.util.progress.ProgressListener;
 
 import java.awt.*;
 import java.io.IOException;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * some utilities
@@ -76,8 +81,12 @@ public class Utilities {
                     BitSet tree0MinusTreeI = Cluster.setminus(tree2taxa[0], tree2taxa[i]);
                     int diff = treeIMinusTree0.cardinality() + tree0MinusTreeI.cardinality();
                     if (equalSets) {
-                        Message.show(owner, "Unequal taxon content: For example: tree[" + (i + 1) + "] differs from tree[1] by " + diff + " taxa\n" +
-											"Will use Z-closure to extend trees to full taxon set");
+                        String message = "Unequal taxon content: For example: tree[" + (i + 1) + "] differs from tree[1] by " + diff + " taxa\n" +
+                                         "Will use Z-closure to extend trees to full taxon set";
+                        if (ProgramProperties.isUseGUI())
+                            Message.show(owner, message);
+                        else
+                            System.err.println(message);
                         equalSets = false;
                     }
                     System.err.println("--- Taxa contained in tree[1], not contained in tree[" + (i + 1) + "]:");
@@ -98,33 +107,23 @@ public class Utilities {
         // add an artifical outgroup:
         boolean warned = false;
         int outgroupId = allTaxa.add("__outgroup__");
+        boolean[] isNetwork = new boolean[trees.length];
 
         for (int i = 0; i < trees.length; i++) {
-            if (trees[i].getNumberReticulateEdges() == 0) {
-				tree2taxa[i].set(outgroupId);
-				tree2splits[i] = SplitSystem.getSplitsFromTree(allTaxa, tree2taxa[i], trees[i]);
-
-				for (Iterator it = tree2splits[i].iterator(); it.hasNext(); ) {
-					Split split = (Split) it.next();
-					double weight = split.getWeight();
-					int p = allSplits.indexOf(split);
-					if (p == -1) {
-						allSplits.addSplit(split);
-					} else
-                        split = allSplits.getSplit(p);
-                    split.addTreeNumber(i);
-                    split.addToWeightList(weight);
-                }
-            } else {
+            tree2taxa[i].set(outgroupId);
+            if (trees[i].getNumberReticulateEdges() > 0) {
+                isNetwork[i] = true;
                 System.err.println("Tree[" + i + "] is network, can't extract splits");
                 if (!warned) {
                     new Alert(owner, "Input contains one or more networks, these will be skipped");
                     warned = true;
                 }
-                tree2taxa[i].set(outgroupId);
                 tree2splits[i] = new SplitSystem();
             }
         }
+
+        harvestSplits(progressListener, trees, isNetwork, allTaxa, outgroupId, equalSets, tree2taxa, tree2splits, allSplits);
+
         //System.err.println("compute splits:");
         //System.err.println(allTaxa);
         //System.err.println(allSplits);
@@ -140,6 +139,145 @@ public class Utilities {
         return equalSets;
     }
 
+    /**
+     * extracts the splits of all trees in parallel and adds them to allSplits. Trees are processed in consecutive
+     * blocks, each with its own table of splits keyed by the part not containing the outgroup and, if the trees have
+     * different taxon sets, also by the taxa of the split, so that partial splits are only merged if both sides are
+     * equal, as in Split.equals(). The tables are merged
+     * in block order, so the result is the same as when processing the trees one by one: each split of allSplits is the
+     * object obtained from the first tree containing it and lists all trees and weights in tree order
+     */
+    private static void harvestSplits(ProgressListener progressListener, PhyloTree[] trees, boolean[] isNetwork, Taxa allTaxa, int outgroupId, boolean equalSets, BitSet[] tree2taxa,
+                                      SplitSystem[] tree2splits, SplitSystem allSplits) throws CanceledException {
+        final int numberOfThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), trees.length));
+        final int numberOfBlocks = Math.min(trees.length, 4 * numberOfThreads);
+
+        progressListener.setMaximum(numberOfBlocks);
+        progressListener.setProgress(0);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            final List<Future<Map<SplitKey, HarvestedSplit>>> futures = new ArrayList<>(numberOfBlocks);
+            for (int b = 0; b < numberOfBlocks; b++) {
+                final int start = (int) ((long) b * trees.length / numberOfBlocks);
+                final int end = (int) ((long) (b + 1) * trees.length / numberOfBlocks);
+                futures.add(executor.submit(() -> {
+                    final Map<SplitKey, HarvestedSplit> table = new LinkedHashMap<>();
+                    for (int i = start; i < end; i++) {
+                        if (isNetwork[i])
+                            continue;
+                        tree2splits[i] = SplitSystem.getSplitsFromTree(allTaxa, tree2taxa[i], trees[i]);
+                        for (Iterator<Split> it = tree2splits[i].iterator(); it.hasNext(); ) {
+                            final Split split = it.next();
+                            final BitSet splitTaxa;
+                            if (equalSets)
+                                splitTaxa = null;
+                            else {
+                                splitTaxa = (BitSet) split.getA().clone();
+                                splitTaxa.or(split.getB());
+                            }
+                            final SplitKey key = new SplitKey(split.getPartNotContainingTaxon(outgroupId), splitTaxa);
+                            HarvestedSplit harvested = table.get(key);
+                            if (harvested == null) {
+                                harvested = new HarvestedSplit(split);
+                                table.put(key, harvested);
+                            }
+                            harvested.add(i, split.getWeight());
+                        }
+                    }
+                    return table;
+                }));
+            }
+
+            final Map<SplitKey, HarvestedSplit> merged = new HashMap<>();
+            for (Future<Map<SplitKey, HarvestedSplit>> future : futures) {
+                final Map<SplitKey, HarvestedSplit> table;
+                try {
+                    table = future.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new RuntimeException(e);
+                }
+                for (Map.Entry<SplitKey, HarvestedSplit> entry : table.entrySet()) {
+                    final HarvestedSplit harvested = entry.getValue();
+                    final HarvestedSplit first = merged.get(entry.getKey());
+                    if (first == null) {
+                        merged.put(entry.getKey(), harvested);
+                        allSplits.addSplit(harvested.split);
+                        harvested.copyTo(harvested.split);
+                    } else
+                        harvested.copyTo(first.split);
+                }
+                progressListener.incrementProgress();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * hash key for a split, given by the words of the part that does not contain the outgroup and, for partial splits,
+     * the words of the set of all taxa of the split, which determines the other part
+     */
+    private static class SplitKey {
+        private final long[] words;
+        private final long[] taxaWords;
+        private final int hashCode;
+
+        /**
+         * constructor
+         *
+         * @param part  the part not containing the outgroup
+         * @param taxa  the taxa of the split, or null, if all splits are on the same taxa
+         */
+        SplitKey(BitSet part, BitSet taxa) {
+            words = part.toLongArray();
+            taxaWords = (taxa != null ? taxa.toLongArray() : null);
+            hashCode = 31 * Arrays.hashCode(words) + Arrays.hashCode(taxaWords);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object other) {
+            if (!(other instanceof SplitKey))
+                return false;
+            final SplitKey that = (SplitKey) other;
+            return hashCode == that.hashCode && Arrays.equals(words, that.words) && Arrays.equals(taxaWords, that.taxaWords);
+        }
+    }
+
+    /**
+     * split found in a block of trees, together with the trees containing it and the corresponding weights
+     */
+    private static class HarvestedSplit {
+        private final Split split;
+        private int[] treeNumbers = new int[4];
+        private double[] weights = new double[4];
+        private int size = 0;
+
+        HarvestedSplit(Split split) {
+            this.split = split;
+        }
+
+        void add(int treeNumber, double weight) {
+            if (size == treeNumbers.length) {
+                treeNumbers = Arrays.copyOf(treeNumbers, 2 * size);
+                weights = Arrays.copyOf(weights, 2 * size);
+            }
+            treeNumbers[size] = treeNumber;
+            weights[size] = weight;
+            size++;
+        }
+
+        void copyTo(Split target) {
+            for (int k = 0; k < size; k++) {
+                target.addTreeNumber(treeNumbers[k]);
+                target.addToWeightList(weights[k]);
+            }
+        }
+    }
+
     /**
      * extract all taxa from the given tree and add all new ones to the set of all taxa
      *
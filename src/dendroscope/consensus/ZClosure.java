@@ -21,23 +21,22 @@ package dendroscope.consensus;
 import jloda.phylo.PhyloTree;
 import jloda.util.Basic;
 import jloda.util.CanceledException;
-import jloda.util.progress.ProgressCmdLine;
 import jloda.util.progress.ProgressListener;
 
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.Future;
 
 /**
  * computes the Z-closure of a set of splits
  * Daniel Huson, 7.2007
  */
 public class ZClosure {
-    final int optionSeed = 666;
-    final int optionNumberOfRuns = 10;
-    Random rand = null;
+    private long optionSeed = 666;
+    private int optionNumberOfRuns = 10;
+    private int optionNumberOfThreads = 0; // 0: use all available cores
 
     Taxa taxa;
 
@@ -73,7 +72,6 @@ public class ZClosure {
      * @param trees            @return full splits obtained by Z-closure
      */
     public SplitSystem apply(ProgressListener progressListener, PhyloTree[] trees) throws CanceledException {
-        this.rand = new Random(this.optionSeed);
         taxa = new Taxa();
         BitSet[] tree2taxa = new BitSet[trees.length];
         SplitSystem[] tree2splits = new SplitSystem[trees.length];
@@ -91,55 +89,30 @@ public class ZClosure {
             progressListener.setMaximum(optionNumberOfRuns);
             progressListener.setProgress(0);
 
-            // parallel implementation!
-            ExecutorService executor = Executors.newCachedThreadPool();
+            // each run gets its own random number generator, split off in run order, so that the result only depends on the seed:
+            final SplittableRandom seedRandom = new SplittableRandom(optionSeed);
+            final Split[] inputArray = inputSplits.asArray();
+
+            int numberOfThreads = (optionNumberOfThreads > 0 ? optionNumberOfThreads : Runtime.getRuntime().availableProcessors());
+            numberOfThreads = Math.max(1, Math.min(numberOfThreads, optionNumberOfRuns));
+            final ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
             try {
-                progressListener.setCancelable(false);
-
-                int numberOfThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), this.optionNumberOfRuns));
-                final SynchronousQueue<Integer> queue = new SynchronousQueue<>();
-                final CountDownLatch countDownLatch = new CountDownLatch(this.optionNumberOfRuns);
-                final ProgressCmdLine progress = new ProgressCmdLine();
-
-                for (int i = 1; i <= numberOfThreads; i++) {
-					executor.execute(() -> {
-						while (true) {
-							try {
-								int i1 = queue.take(); // ignore the value
-
-								List<Split> splitsInRandomOrder = inputSplits.asList();
-								Collections.shuffle(splitsInRandomOrder, rand);
-								SplitSystem result = null;
-								try {
-									result = computeClosure(progress, splitsInRandomOrder);
-								} catch (CanceledException ignored) {
-								}
-								synchronized (finalSplits) {
-									finalSplits.addAll(result);
-								}
-							} catch (InterruptedException e) {
-								return;
-							} finally {
-								countDownLatch.countDown();
-							}
-						}
-					});
+                final List<Future<List<Split>>> futures = new ArrayList<>(optionNumberOfRuns);
+                for (int run = 0; run < optionNumberOfRuns; run++) {
+                    final SplittableRandom random = seedRandom.split();
+                    futures.add(executor.submit(() -> computeClosure(shuffle(inputArray, random))));
                 }
-
-                for (int i = 1; i <= this.optionNumberOfRuns; i++) {
+                // merge results in run order:
+                for (Future<List<Split>> future : futures) {
                     try {
-                        queue.put(i);
-                        if (i == 1)
-                            progressListener.setCancelable(true);
-                        progressListener.setProgress(i);
-                    } catch (InterruptedException e) {
+                        for (Split split : future.get()) {
+                            if (!finalSplits.contains(split))
+                                finalSplits.addSplit(split);
+                        }
+                    } catch (InterruptedException | ExecutionException e) {
                         Basic.caught(e);
                     }
-                }
-                try {
-                    countDownLatch.await();
-                } catch (InterruptedException e) {
-                    Basic.caught(e);
+                    progressListener.incrementProgress();
                 }
             } catch (CanceledException ex) {
                 System.err.println("CANCELED");
@@ -206,96 +179,134 @@ public class ZClosure {
     }
 
     /**
-     * computes the "in place" Z-closure
+     * returns a copy of the array in random order
      *
-     * @param progressListener the progressListenerument
-	 */
-    private SplitSystem computeClosure(ProgressListener progressListener, Collection<Split> inputSplits) throws CanceledException {
-        Set<Integer> seniorSplits = new HashSet<>();
-        Set<Integer> activeSplits = new HashSet<>();
-        Set<Integer> newSplits = new HashSet<>();
+     * @return shuffled copy
+     */
+    private static Split[] shuffle(Split[] array, SplittableRandom random) {
+        Split[] result = array.clone();
+        for (int i = result.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Split tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return result;
+    }
+
+    /**
+     * computes the "in place" Z-closure. Works on copies of the split parts, which are modified in place, and keeps
+     * track of senior, active and new splits using bit sets of positions
+     *
+     * @return resulting splits
+     */
+    private static List<Split> computeClosure(Split[] inputSplits) throws CanceledException {
+        final int n = inputSplits.length;
 
         // setup "in place" array
-        Split[] splits = new Split[inputSplits.size()];
-        {
-            int pos = 0;
-            for (Split inputSplit : inputSplits) {
-                splits[pos] = inputSplit;
-                seniorSplits.add(pos);
-                progressListener.setProgress(-1);
-                pos++;
-            }
-        }
+        final BitSet[][] splits = new BitSet[n][];
+        for (int pos = 0; pos < n; pos++)
+            splits[pos] = new BitSet[]{(BitSet) inputSplits[pos].getA().clone(), (BitSet) inputSplits[pos].getB().clone()};
+
+        final BitSet seniorSplits = new BitSet();
+        seniorSplits.set(0, n);
+        BitSet activeSplits = new BitSet();
+        BitSet newSplits = new BitSet();
 
         // init:
-        {
-            for (int pos1 = 0; pos1 < splits.length; pos1++) {
-
-                for (int pos2 = pos1 + 1; pos2 < splits.length; pos2++) {
-                    Split ps1 = splits[pos1];
-                    Split ps2 = splits[pos2];
-                    Split qs1 = new Split();
-                    Split qs2 = new Split();
-                    if (applyZRule(ps1, ps2, qs1, qs2)) {
-                        splits[pos1] = qs1;
-                        splits[pos2] = qs2;
-                        newSplits.add(pos1);
-                        newSplits.add(pos2);
-                    }
-                    progressListener.setProgress(-1);
+        for (int pos1 = 0; pos1 < n; pos1++) {
+            for (int pos2 = pos1 + 1; pos2 < n; pos2++) {
+                if (applyZRule(splits[pos1], splits[pos2])) {
+                    newSplits.set(pos1);
+                    newSplits.set(pos2);
                 }
             }
+            checkForInterrupt();
         }
 
         // main loop:
-        {
-            while (newSplits.size() != 0) {
-                seniorSplits.addAll(activeSplits);
-                activeSplits = newSplits;
-                newSplits = new HashSet<>();
-
-                for (Integer seniorSplit : seniorSplits) {
-
-                    for (Integer activeSplit : activeSplits) {
-                        Split ps1 = splits[(seniorSplit)];
-                        Split ps2 = splits[(activeSplit)];
-                        Split qs1 = new Split();
-                        Split qs2 = new Split();
-                        if (applyZRule(ps1, ps2, qs1, qs2)) {
-                            splits[(seniorSplit)] = qs1;
-                            splits[(activeSplit)] = qs2;
-                            newSplits.add((seniorSplit));
-                            newSplits.add((activeSplit));
-                        }
-                        progressListener.setProgress(-1);
+        while (newSplits.cardinality() != 0) {
+            seniorSplits.or(activeSplits);
+            activeSplits = newSplits;
+            newSplits = new BitSet();
+
+            for (int pos1 = seniorSplits.nextSetBit(0); pos1 != -1; pos1 = seniorSplits.nextSetBit(pos1 + 1)) {
+                for (int pos2 = activeSplits.nextSetBit(0); pos2 != -1; pos2 = activeSplits.nextSetBit(pos2 + 1)) {
+                    if (applyZRule(splits[pos1], splits[pos2])) {
+                        newSplits.set(pos1);
+                        newSplits.set(pos2);
                     }
                 }
-                for (Integer pos1 : activeSplits) {
-                    for (Integer pos2 : activeSplits) {
-                        Split ps1 = splits[pos1];
-                        Split ps2 = splits[pos2];
-                        Split qs1 = new Split();
-                        Split qs2 = new Split();
-                        if (applyZRule(ps1, ps2, qs1, qs2)) {
-                            splits[pos1] = qs1;
-                            splits[pos2] = qs2;
-                            newSplits.add(pos1);
-                            newSplits.add(pos2);
-                        }
-                        progressListener.setProgress(-1);
+                checkForInterrupt();
+            }
+            for (int pos1 = activeSplits.nextSetBit(0); pos1 != -1; pos1 = activeSplits.nextSetBit(pos1 + 1)) {
+                for (int pos2 = activeSplits.nextSetBit(0); pos2 != -1; pos2 = activeSplits.nextSetBit(pos2 + 1)) {
+                    if (applyZRule(splits[pos1], splits[pos2])) {
+                        newSplits.set(pos1);
+                        newSplits.set(pos2);
                     }
                 }
+                checkForInterrupt();
             }
         }
 
-        SplitSystem result = new SplitSystem();
-        for (Integer pos1 : seniorSplits) {
-            result.addSplit(splits[pos1]);
+        final BitSet result = (BitSet) seniorSplits.clone();
+        result.or(activeSplits);
+        final List<Split> list = new ArrayList<>(result.cardinality());
+        for (int pos = result.nextSetBit(0); pos != -1; pos = result.nextSetBit(pos + 1))
+            list.add(new Split(splits[pos][0], splits[pos][1]));
+        return list;
+    }
+
+    /**
+     * throws a CanceledException if the current thread has been interrupted, e.g. because the computation was canceled
+     */
+    private static void checkForInterrupt() throws CanceledException {
+        if (Thread.currentThread().isInterrupted())
+            throw new CanceledException();
+    }
+
+    /**
+     * apply the Z rule in place, if applicable. That is, replaces A1/B1 and A2/B2
+     * by  A1/(B1uB2)  and (A1uA2)/B2
+     *
+     * @param ps1 the two parts of partial split 1, modified in place
+     * @param ps2 the two parts of partial split 2, modified in place
+     * @return true, if rule was applied and resulting splits differ from the original
+     * ones
+     */
+    static boolean applyZRule(BitSet[] ps1, BitSet[] ps2) {
+        for (int i = 0; i <= 1; i++) {
+            BitSet A1 = ps1[i];
+            BitSet B1 = ps1[1 - i];
+            for (int j = 0; j <= 1; j++) {
+                BitSet A2 = ps2[j];
+                BitSet B2 = ps2[1 - j];
+
+                if (A1.intersects(A2) && A2.intersects(B1) && B1.intersects(B2) && !A1.intersects(B2)) {
+                    // the splits only change if B2 is not contained in B1 or A1 is not contained in A2
+                    if (isSubset(B2, B1) && isSubset(A1, A2))
+                        return false;
+                    B1.or(B2);
+                    A2.or(A1);
+                    return true;
+                }
+            }
         }
-        for (Integer pos1 : activeSplits) {
-            result.addSplit(splits[pos1]);
+        return false;
+    }
+
+    /**
+     * is A a subset of B?
+     *
+     * @return true, if A is contained in B
+     */
+    private static boolean isSubset(BitSet A, BitSet B) {
+        for (int t = A.nextSetBit(0); t != -1; t = A.nextSetBit(t + 1)) {
+            if (!B.get(t))
+                return false;
         }
-        return result;
+        return true;
     }
 
     /**
@@ -525,6 +536,34 @@ public class ZClosure {
         this.optionPercentThreshold = optionPercentThreshold;
     }
 
+    public long getOptionSeed() {
+        return optionSeed;
+    }
+
+    public void setOptionSeed(long optionSeed) {
+        this.optionSeed = optionSeed;
+    }
+
+    public int getOptionNumberOfRuns() {
+        return optionNumberOfRuns;
+    }
+
+    public void setOptionNumberOfRuns(int optionNumberOfRuns) {
+        this.optionNumberOfRuns = optionNumberOfRuns;
+    }
+
+    public int getOptionNumberOfThreads() {
+        return optionNumberOfThreads;
+    }
+
+    /**
+     * set the number of threads used to compute the Z-closure runs, 0 means use all available cores.
+     * The result does not depend on the number of threads
+     */
+    public void setOptionNumberOfThreads(int optionNumberOfThreads) {
+        this.optionNumberOfThreads = optionNumberOfThreads;
+    }
+
     /**
      * gets the set of taxa generated by the apply method
      *
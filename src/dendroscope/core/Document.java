@@ -26,7 +26,9 @@ import jloda.util.progress.ProgressCmdLine;
 import jloda.util.progress.ProgressListener;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -46,6 +48,8 @@ public class Document {
     private ProgressListener progressListener;
     private File file;
 
+    private final List<ITreesListener> treesListeners = new ArrayList<>();
+
     /**
      * constructor
      */
@@ -214,6 +218,7 @@ public class Document {
             trees = new TreeData[1];
             trees[0] = new TreeData(name, newTree);
             current = 0;
+            fireTreesAppended(trees[0]);
             return 0;
         } else {
             if (pos > current)
@@ -226,6 +231,7 @@ public class Document {
                 newTrees[i + 1].setName(trees[i].getName());
             }
             trees = newTrees;
+            fireTreesAppended(trees[pos + 1]);
             return pos + 1;
         }
     }
@@ -241,6 +247,7 @@ public class Document {
             trees = new TreeData[1];
             trees[0] = newTree;
             current = 0;
+            fireTreesAppended(newTree);
             return 0;
         } else {
             if (pos > current)
@@ -253,6 +260,7 @@ public class Document {
                 newTrees[i + 1].setName(trees[i].getName());
             }
             trees = newTrees;
+            fireTreesAppended(newTree);
             return pos + 1;
         }
     }
@@ -278,6 +286,7 @@ public class Document {
             trees = new TreeData[newTrees.length];
             System.arraycopy(newTrees, 0, trees, 0, newTrees.length);
             current = 0;
+            fireTreesAppended(newTrees);
             return 0;
         } else {
             if (pos > current)
@@ -301,6 +310,7 @@ public class Document {
 				System.arraycopy(trees, pos + 1, allTrees, newTrees.length + pos + 1, trees.length - (pos + 1));
 
 			trees = allTrees;
+			fireTreesAppended(newTrees);
 			return pos + 1;
 		}
     }
@@ -464,6 +474,39 @@ public class Document {
             current = 0;
             //System.err.println("Set trees: "+newTrees.length);
         }
+        for (ITreesListener listener : treesListeners)
+            listener.treesReplaced(trees);
+    }
+
+    /**
+     * add a listener that is notified when trees are appended or replaced
+     */
+    public void addTreesListener(ITreesListener listener) {
+        treesListeners.add(listener);
+    }
+
+    /**
+     * remove a trees listener
+     */
+    public void removeTreesListener(ITreesListener listener) {
+        treesListeners.remove(listener);
+    }
+
+    /**
+     * gets all trees listeners
+     *
+     * @return listeners
+     */
+    public List<ITreesListener> getTreesListeners() {
+        return treesListeners;
+    }
+
+    /**
+     * notify all listeners that trees have been appended
+     */
+    private void fireTreesAppended(TreeData... newTrees) {
+        for (ITreesListener listener : treesListeners)
+            listener.treesAppended(newTrees);
     }
 
     /**
@@ -0,0 +1,38 @@
+/*
+ * ITreesListener.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.core;
+
+/**
+ * listens for trees being added to or replaced in a document
+ */
+public interface ITreesListener {
+	/**
+	 * called after trees have been appended to the document
+	 *
+	 * @param trees the new trees
+	 */
+	void treesAppended(TreeData[] trees);
+
+	/**
+	 * called after all trees of the document have been replaced
+	 *
+	 * @param trees the trees now contained in the document
+	 */
+	void treesReplaced(TreeData[] trees);
+}
@@ -28,6 +28,7 @@ import jloda.swing.graphview.Transform;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * a tree and its properties
@@ -48,6 +49,10 @@ public class TreeData extends PhyloTree {
 
     private boolean disabled;
 
+    private int version;
+
+    private TreeIndex index;
+
     /**
      * constructor
      */
@@ -95,8 +100,12 @@ public class TreeData extends PhyloTree {
         EdgeArray<Edge> oldEdge2NewEdge = new EdgeArray<Edge>(srcTree);
 
         PhyloTree targetTree = this;
+        final int oldVersion = version;
         targetTree.clear();
         targetTree.copy(srcTree, oldNode2NewNode, oldEdge2NewEdge);
+        version = oldVersion; // copying sets labels and root, but the tree only changes if the view is dirty
+        if (currentViewDirty) // otherwise, the viewer shows the tree as it was synced from this data
+            incrementVersion();
 
         // copy lsa information
         if (srcTree.getNumberReticulateEdges() > 0) {
@@ -374,6 +383,82 @@ public class TreeData extends PhyloTree {
         this.dirty = dirty;
     }
 
+    /**
+     * gets the version of this tree, which is used to invalidate data computed from the tree. The version is
+     * incremented when the tree is synced from a modified viewer or parsed, when a node label or the root changes, when
+     * the tree is rerooted and when children are reordered using rearrangeAdjacentEdges(Node,List). Other changes made
+     * in place, such as adding or removing nodes and edges, or reordering edges directly at a node, must be followed by
+     * a call of incrementVersion()
+     *
+     * @return version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * increment the version, to be called after modifying the tree in place
+     */
+    public void incrementVersion() {
+        version++;
+    }
+
+    /**
+     * sets the label of a node and increments the version, if the label changes
+     */
+    public void setLabel(Node v, String label) {
+        if (!Objects.equals(getLabel(v), label)) {
+            super.setLabel(v, label);
+            incrementVersion();
+        }
+    }
+
+    /**
+     * sets the root and increments the version, if the root changes
+     */
+    public void setRoot(Node root) {
+        if (root != getRoot()) {
+            super.setRoot(root);
+            incrementVersion();
+        }
+    }
+
+    /**
+     * reroots the tree on the given edge and increments the version
+     */
+    public void setRoot(Edge e, EdgeArray<String> edgeLabels) {
+        super.setRoot(e, edgeLabels);
+        incrementVersion();
+    }
+
+    /**
+     * redirects all edges away from the root and increments the version
+     */
+    public void redirectEdgesAwayFromRoot() {
+        super.redirectEdgesAwayFromRoot();
+        incrementVersion();
+    }
+
+    /**
+     * reorders the adjacent edges of a node, and thus its children, and increments the version
+     */
+    public void rearrangeAdjacentEdges(Node v, List<Edge> edges) {
+        v.rearrangeAdjacentEdges(edges);
+        incrementVersion();
+    }
+
+    /**
+     * gets the index of LCA, LSA, leaf interval and taxon structures of this tree, computing a new one, if the tree
+     * has changed since the index was computed
+     *
+     * @return index
+     */
+    public synchronized TreeIndex getIndex() {
+        if (index == null || !index.isValid())
+            index = new TreeIndex(this);
+        return index;
+    }
+
     /**
      * get a node view
      *
@@ -540,6 +625,7 @@ public class TreeData extends PhyloTree {
 	 */
     public void parseBracketNotation(String str, boolean rooted, boolean doClear) throws IOException {
         super.parseBracketNotation(str, rooted, doClear);
+        incrementVersion();
         // clean all single quotes from taxon labels:
         boolean changed = false;
         for (Node v = getFirstNode(); v != null; v = v.getNext()) {
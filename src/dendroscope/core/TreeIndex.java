@@ -0,0 +1,219 @@
+/*
+ * TreeIndex.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.core;
+
+import dendroscope.consensus.Taxa;
+import dendroscope.util.EulerTourLCA;
+import dendroscope.util.PhyloTreeUtils;
+import jloda.graph.Edge;
+import jloda.graph.Node;
+import jloda.graph.NodeArray;
+
+import java.util.BitSet;
+
+/**
+ * structures derived from a tree or network of the document, obtained using TreeData.getIndex(), so that they are
+ * computed at most once per version of the tree. Each structure is only computed when first requested:
+ * the LCA structure over the tree edges, the LSA structure over the LSA tree (the same as the LCA structure for trees),
+ * the interval of leaves below each node of the LSA tree, and the set of taxa below each node.
+ * <p/>
+ * The index becomes invalid when the version of the tree is incremented, or its numbers of nodes or edges change,
+ * and is then replaced by TreeData.getIndex(). Do not modify the returned structures
+ */
+public class TreeIndex {
+    private final TreeData tree;
+    private final int version;
+    private final int numberOfNodes;
+    private final int numberOfEdges;
+    private final Node root;
+
+    private EulerTourLCA lca;
+    private EulerTourLCA lsa;
+    private int[] leavesBefore; // number of leaves before each node of the LSA tree, in pre-order
+    private int[] leaf2node; // the leaves, in pre-order of the LSA tree
+
+    private NodeArray<BitSet> node2taxa;
+    private Taxa taxaOfNode2Taxa;
+    private int sizeOfTaxaOfNode2Taxa;
+    private int versionOfNode2Taxa;
+
+    /**
+     * constructor, call TreeData.getIndex() to obtain an index
+     */
+    TreeIndex(TreeData tree) {
+        this.tree = tree;
+        this.version = tree.getVersion();
+        this.numberOfNodes = tree.getNumberOfNodes();
+        this.numberOfEdges = tree.getNumberOfEdges();
+        this.root = tree.getRoot();
+    }
+
+    /**
+     * does this index still describe the tree?
+     *
+     * @return true, if valid
+     */
+    boolean isValid() {
+        return version == tree.getVersion() && numberOfNodes == tree.getNumberOfNodes()
+               && numberOfEdges == tree.getNumberOfEdges() && root == tree.getRoot();
+    }
+
+    /**
+     * gets the LCA structure over the tree edges, reticulate edges are ignored
+     *
+     * @return LCA structure
+     */
+    public synchronized EulerTourLCA getLCA() {
+        if (lca == null)
+            lca = new EulerTourLCA(tree);
+        return lca;
+    }
+
+    /**
+     * gets the LCA structure over the LSA tree, in which the LCA of a set of nodes is their LSA. For a tree, this is
+     * the LCA structure
+     *
+     * @return LSA structure
+     */
+    public synchronized EulerTourLCA getLSA() {
+        if (lsa == null)
+            lsa = (tree.getNumberReticulateEdges() == 0 ? getLCA() : new EulerTourLCA(tree, true));
+        return lsa;
+    }
+
+    /**
+     * gets the depth of a node along tree edges, the root has depth 0
+     *
+     * @return depth, or -1, if the node is only reachable by reticulate edges
+     */
+    public int getDepth(Node v) {
+        final EulerTourLCA lca = getLCA();
+        final int index = lca.getIndex(v);
+        return (index == -1 ? -1 : lca.getDepth(index));
+    }
+
+    /**
+     * gets the number of leaves
+     *
+     * @return number of leaves
+     */
+    public synchronized int getNumberOfLeaves() {
+        computeLeafIntervals();
+        return leaf2node.length;
+    }
+
+    /**
+     * gets the leaf of the given rank, leaves are ranked in pre-order of the LSA tree
+     *
+     * @return leaf
+     */
+    public synchronized Node getLeaf(int rank) {
+        computeLeafIntervals();
+        return getLSA().getNode(leaf2node[rank]);
+    }
+
+    /**
+     * gets the rank of the first leaf below the node, in pre-order of the LSA tree
+     *
+     * @param index number of the node in the LSA structure
+     * @return rank of first leaf
+     */
+    public synchronized int getFirstLeaf(int index) {
+        computeLeafIntervals();
+        return leavesBefore[index];
+    }
+
+    /**
+     * gets the rank of the last leaf below the node, in pre-order of the LSA tree
+     *
+     * @param index number of the node in the LSA structure
+     * @return rank of last leaf, less than the first leaf, if there are no leaves below the node
+     */
+    public synchronized int getLastLeaf(int index) {
+        computeLeafIntervals();
+        return leavesBefore[index + getLSA().getSubtreeSize(index)] - 1;
+    }
+
+    /**
+     * gets the number of the leaf of the given rank in the LSA structure
+     *
+     * @return number of leaf
+     */
+    public synchronized int getLeafIndex(int rank) {
+        computeLeafIntervals();
+        return leaf2node[rank];
+    }
+
+    /**
+     * gets the taxa below a node, following all edges. The sets are computed for all nodes at once and are kept for
+     * the given taxa and version of the tree, until taxa are added, different taxa are requested or the tree changes.
+     * Do not modify the result
+     *
+     * @return taxa below the node
+     */
+    public synchronized BitSet getTaxa(Node v, Taxa taxa) {
+        if (node2taxa == null || taxaOfNode2Taxa != taxa || sizeOfTaxaOfNode2Taxa != taxa.size() || versionOfNode2Taxa != tree.getVersion()) {
+            final NodeArray<BitSet> map = new NodeArray<>(tree);
+            final Node[] order = PhyloTreeUtils.computeTopologicalOrder(tree);
+            for (int i = order.length - 1; i >= 0; i--) {
+                final Node w = order[i];
+                final BitSet below = new BitSet();
+                if (w.getOutDegree() == 0) {
+                    final int t = taxa.indexOf(tree.getLabel(w));
+                    if (t != -1)
+                        below.set(t);
+                } else {
+                    for (Edge e = w.getFirstOutEdge(); e != null; e = w.getNextOutEdge(e))
+                        below.or(map.get(e.getTarget()));
+                }
+                map.put(w, below);
+            }
+            node2taxa = map;
+            taxaOfNode2Taxa = taxa;
+            sizeOfTaxaOfNode2Taxa = taxa.size();
+            versionOfNode2Taxa = tree.getVersion();
+        }
+        return node2taxa.get(v);
+    }
+
+    /**
+     * computes the leaf intervals in the LSA tree
+     */
+    private void computeLeafIntervals() {
+        if (leavesBefore == null) {
+            final EulerTourLCA lsa = getLSA();
+            final int n = lsa.getNumberOfNodes();
+            final int[] before = new int[n + 1];
+            int leaves = 0;
+            for (int i = 0; i < n; i++) {
+                before[i] = leaves;
+                if (lsa.getNode(i).getOutDegree() == 0)
+                    leaves++;
+            }
+            before[n] = leaves;
+            final int[] leafNodes = new int[leaves];
+            for (int i = 0, rank = 0; i < n; i++) {
+                if (lsa.getNode(i).getOutDegree() == 0)
+                    leafNodes[rank++] = i;
+            }
+            leavesBefore = before;
+            leaf2node = leafNodes;
+        }
+    }
+}
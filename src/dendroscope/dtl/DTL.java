@@ -22,6 +22,7 @@ import jloda.phylo.PhyloTree;
 import jloda.util.Basic;
 
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 
 
@@ -136,4 +137,13 @@ public class DTL {
 
     }
 
+    /**
+     * computes the same cost as apply, using the array-based engine
+     *
+     * @param STree, GTree, event costs
+     */
+    public static int applyFast(PhyloTree STree, PhyloTree GTree, int dupCost, int transCost, int lossCost) throws IOException {
+        return new DTLEngine(new SpeciesSubdivision(STree), dupCost, transCost, lossCost).getCost(GTree);
+    }
+
 }
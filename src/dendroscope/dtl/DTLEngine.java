@@ -0,0 +1,430 @@
+/*
+ * DTLEngine.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.dtl;
+
+import dendroscope.util.ParallelComputation;
+import jloda.graph.Node;
+import jloda.graph.NodeIntArray;
+import jloda.phylo.PhyloTree;
+import jloda.util.CanceledException;
+import jloda.util.progress.ProgressListener;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * computes the DTL reconciliation cost of a gene tree and a time-subdivided species tree, using the same recurrences
+ * as Structure. The dynamic programming table is a single int array with one row per gene node, and gene and species
+ * nodes are addressed by index. For each gene node and time layer, the best and second-best receivers are determined
+ * in one pass over the layer, so that the total running time is O(|G|*|S|)
+ */
+public class DTLEngine {
+    private static final int UNSET = 999999999;
+    private static final int NO_EVENT = 214748364;
+
+    private final SpeciesSubdivision species;
+    private final int dupCost;
+    private final int transCost;
+    private final int lossCost;
+
+    /**
+     * constructor
+     *
+     * @throws IllegalArgumentException if a cost is not positive, as the traceback relies on positive costs
+     */
+    public DTLEngine(SpeciesSubdivision species, int dupCost, int transCost, int lossCost) {
+        if (dupCost <= 0 || transCost <= 0 || lossCost <= 0)
+            throw new IllegalArgumentException("DTL costs must be positive: " + dupCost + "," + transCost + "," + lossCost);
+        this.species = species;
+        this.dupCost = dupCost;
+        this.transCost = transCost;
+        this.lossCost = lossCost;
+    }
+
+    /**
+     * computes the DTL reconciliation cost of the given binary gene tree
+     *
+     * @return cost
+     */
+    public int getCost(PhyloTree geneTree) {
+        final GeneArrays gene = new GeneArrays(geneTree);
+        return getCost(gene.root, gene.degree, gene.child1, gene.child2, gene.leaf2species);
+    }
+
+    /**
+     * computes an optimal DTL reconciliation of the given binary gene tree and counts its events
+     *
+     * @return cost and event counts
+     */
+    public Reconciliation reconcile(PhyloTree geneTree) {
+        final GeneArrays gene = new GeneArrays(geneTree);
+        return reconcile(gene.root, gene.degree, gene.child1, gene.child2, gene.leaf2species);
+    }
+
+    /**
+     * reconciles each of the given gene trees, using the given number of threads, and writes one line per gene tree
+     * to a tab-separated table. The species tree is only preprocessed once, for all gene trees
+     *
+     * @param numberOfThreads number of threads, or 0 to use all available cores
+     * @return index of the gene tree that took longest, or -1
+     */
+    public int writeReport(ProgressListener progressListener, PhyloTree[] geneTrees, String[] names, int numberOfThreads, Writer w) throws IOException, CanceledException {
+        return ParallelComputation.writeReport(progressListener, "Computing DTL reconciliations", geneTrees, names, numberOfThreads,
+                Reconciliation.getTableHeader(), (geneTree, name) -> reconcile(geneTree).toTableRow(name), w);
+    }
+
+    /**
+     * computes the DTL reconciliation cost of a gene tree given as arrays. Each node must have at most two children
+     *
+     * @param leaf2species for each leaf, the species leaf it is mapped to, -1 for all other nodes
+     * @return cost
+     */
+    private int getCost(int geneRoot, int[] degree, int[] child1, int[] child2, int[] leaf2species) {
+        return computeTable(geneRoot, degree, child1, child2, leaf2species)[geneRoot * species.numberOfNodes + species.root];
+    }
+
+    /**
+     * computes an optimal DTL reconciliation of a gene tree given as arrays and counts its events, by tracing back
+     * through the dynamic programming table. Each node must have at most two children
+     *
+     * @param leaf2species for each leaf, the species leaf it is mapped to, -1 for all other nodes
+     * @return cost and event counts
+     */
+    private Reconciliation reconcile(int geneRoot, int[] degree, int[] child1, int[] child2, int[] leaf2species) {
+        final int m = species.numberOfNodes;
+        final int[] cost = computeTable(geneRoot, degree, child1, child2, leaf2species);
+        final int total = cost[geneRoot * m + species.root];
+        if (total >= NO_EVENT)
+            throw new IllegalArgumentException("Gene tree cannot be reconciled with species tree");
+
+        int speciations = 0, duplications = 0, transfers = 0, losses = 0;
+
+        // pairs of gene node and species node still to be explained, each step either reaches a gene child, a
+        // species child, or, by a transfer-loss, an entry of the same row that is cheaper by transCost+lossCost, which is
+        // positive, so the traceback terminates:
+        final IntStack stack = new IntStack();
+        stack.push(geneRoot, species.root);
+        while (!stack.isEmpty()) {
+            final int x = stack.pop();
+            final int u = stack.pop();
+            final int row = u * m;
+            final int c = cost[row + x];
+            if (x == leaf2species[u] && c == 0)
+                continue;
+
+            final boolean binary = (degree[u] == 2);
+            final int row1 = (binary ? child1[u] * m : -1);
+            final int row2 = (binary ? child2[u] * m : -1);
+            final int x1 = species.child1[x];
+            final int x2 = species.child2[x];
+
+            if (binary && species.degree[x] == 2) {
+                if (c == cost[row1 + x1] + cost[row2 + x2]) {
+                    speciations++;
+                    stack.push(child1[u], x1);
+                    stack.push(child2[u], x2);
+                    continue;
+                }
+                if (c == cost[row1 + x2] + cost[row2 + x1]) {
+                    speciations++;
+                    stack.push(child1[u], x2);
+                    stack.push(child2[u], x1);
+                    continue;
+                }
+            }
+            if (binary && c == cost[row1 + x] + cost[row2 + x] + dupCost) {
+                duplications++;
+                stack.push(child1[u], x);
+                stack.push(child2[u], x);
+                continue;
+            }
+            if (species.degree[x] == 1 && c == cost[row + x1]) {
+                stack.push(u, x1);
+                continue;
+            }
+            if (species.degree[x] == 2 && (c == cost[row + x1] + lossCost || c == cost[row + x2] + lossCost)) {
+                losses++;
+                stack.push(u, (c == cost[row + x1] + lossCost ? x1 : x2));
+                continue;
+            }
+
+            final int start = species.layerStart[species.layer[x]];
+            final int end = species.layerStart[species.layer[x] + 1];
+            boolean found = false;
+            if (binary) {
+                for (int y = start; !found && y < end; y++) {
+                    if (y != x) {
+                        if (c == cost[row1 + x] + cost[row2 + y] + transCost) {
+                            stack.push(child1[u], x);
+                            stack.push(child2[u], y);
+                            found = true;
+                        } else if (c == cost[row1 + y] + cost[row2 + x] + transCost) {
+                            stack.push(child1[u], y);
+                            stack.push(child2[u], x);
+                            found = true;
+                        }
+                    }
+                }
+                if (found) {
+                    transfers++;
+                    continue;
+                }
+            }
+            for (int y = start; !found && y < end; y++) {
+                if (y != x && c == cost[row + y] + transCost + lossCost) {
+                    stack.push(u, y);
+                    found = true;
+                }
+            }
+            if (!found)
+                throw new IllegalStateException("DTL traceback failed");
+            transfers++;
+            losses++;
+        }
+        return new Reconciliation(total, speciations, duplications, transfers, losses);
+    }
+
+    /**
+     * computes the dynamic programming table for a gene tree given as arrays
+     *
+     * @return table with one row of species nodes per gene node
+     */
+    private int[] computeTable(int geneRoot, int[] degree, int[] child1, int[] child2, int[] leaf2species) {
+        final int m = species.numberOfNodes;
+        final int[] cost = new int[degree.length * m];
+        Arrays.fill(cost, UNSET);
+
+        for (int u : computePostOrder(geneRoot, degree, child1, child2)) {
+            final int row = u * m;
+            final boolean binary = (degree[u] == 2);
+            final int row1 = (binary ? child1[u] * m : -1);
+            final int row2 = (binary ? child2[u] * m : -1);
+            final int leaf = leaf2species[u];
+
+            for (int l = 0; l < species.layerStart.length - 1; l++) {
+                final int start = species.layerStart[l];
+                final int end = species.layerStart[l + 1];
+
+                if (end - start > 1) {
+                    int best1 = start, second1 = start, best2 = start, second2 = start;
+                    if (binary) {
+                        int bestCost1 = cost[row1 + start], secondCost1 = Integer.MAX_VALUE;
+                        int bestCost2 = cost[row2 + start], secondCost2 = Integer.MAX_VALUE;
+                        for (int x = start + 1; x < end; x++) {
+                            final int c1 = cost[row1 + x];
+                            if (c1 < bestCost1) {
+                                secondCost1 = bestCost1;
+                                bestCost1 = c1;
+                                second1 = best1;
+                                best1 = x;
+                            } else if (c1 < secondCost1) {
+                                secondCost1 = c1;
+                                second1 = x;
+                            }
+                            final int c2 = cost[row2 + x];
+                            if (c2 < bestCost2) {
+                                secondCost2 = bestCost2;
+                                bestCost2 = c2;
+                                second2 = best2;
+                                best2 = x;
+                            } else if (c2 < secondCost2) {
+                                secondCost2 = c2;
+                                second2 = x;
+                            }
+                        }
+                    }
+
+                    for (int x = start; x < end; x++) {
+                        if (x == leaf)
+                            cost[row + x] = 0;
+                        else {
+                            int c = computeCost(cost, row, row1, row2, x);
+                            // transfer of one child to the best receiver other than x:
+                            if (binary) {
+                                final int receiver1 = (x == best1 ? second1 : best1);
+                                final int receiver2 = (x == best2 ? second2 : best2);
+                                final int costT1 = cost[row1 + x] + cost[row2 + receiver2];
+                                final int costT2 = cost[row1 + receiver1] + cost[row2 + x];
+                                final int costT = (costT1 < costT2 ? costT1 : costT2) + transCost;
+                                if (costT < c)
+                                    c = costT;
+                            }
+                            cost[row + x] = c;
+                        }
+                    }
+
+                    // transfer followed by loss:
+                    int best = start, second = start;
+                    int bestCost = cost[row + start], secondCost = Integer.MAX_VALUE;
+                    for (int x = start + 1; x < end; x++) {
+                        final int c = cost[row + x];
+                        if (c < bestCost) {
+                            secondCost = bestCost;
+                            bestCost = c;
+                            second = best;
+                            best = x;
+                        } else if (c < secondCost) {
+                            secondCost = c;
+                            second = x;
+                        }
+                    }
+                    for (int x = start; x < end; x++) {
+                        if (x == leaf)
+                            cost[row + x] = 0;
+                        else {
+                            final int costTL = cost[row + (x == best ? second : best)] + transCost + lossCost;
+                            if (cost[row + x] > costTL)
+                                cost[row + x] = costTL;
+                        }
+                    }
+                } else {
+                    for (int x = start; x < end; x++)
+                        cost[row + x] = computeCost(cost, row, row1, row2, x);
+                }
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * the cost of mapping a gene node to a species node by speciation, duplication, no event or speciation-loss
+     *
+     * @param row1 row of the first child, or -1, if the gene node is not binary
+     * @return cost
+     */
+    private int computeCost(int[] cost, int row, int row1, int row2, int x) {
+        int c = NO_EVENT;
+        if (row1 != -1) {
+            if (species.degree[x] == 2) {
+                final int x1 = species.child1[x];
+                final int x2 = species.child2[x];
+                c = Math.min(cost[row1 + x1] + cost[row2 + x2], cost[row1 + x2] + cost[row2 + x1]);
+            }
+            final int costD = cost[row1 + x] + cost[row2 + x] + dupCost;
+            if (costD < c)
+                c = costD;
+        }
+        if (species.degree[x] == 1) {
+            final int cost0 = cost[row + species.child1[x]];
+            if (cost0 < c)
+                c = cost0;
+        } else if (species.degree[x] == 2) {
+            final int cost1 = cost[row + species.child1[x]];
+            final int cost2 = cost[row + species.child2[x]];
+            final int costSL = (cost1 < cost2 ? cost1 : cost2) + lossCost;
+            if (costSL < c)
+                c = costSL;
+        }
+        return c;
+    }
+
+    /**
+     * computes the post-order of the gene nodes
+     *
+     * @return post-order
+     */
+    private static int[] computePostOrder(int root, int[] degree, int[] child1, int[] child2) {
+        final List<Integer> order = new ArrayList<>();
+        final int[] stack = new int[degree.length];
+        final boolean[] expanded = new boolean[degree.length];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            final int u = stack[top - 1];
+            if (!expanded[u] && degree[u] > 0) {
+                expanded[u] = true;
+                if (degree[u] == 2)
+                    stack[top++] = child2[u];
+                stack[top++] = child1[u];
+            } else {
+                top--;
+                order.add(u);
+            }
+        }
+        final int[] result = new int[order.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = order.get(i);
+        return result;
+    }
+
+    /**
+     * a binary gene tree in the form of arrays
+     */
+    private class GeneArrays {
+        final int root;
+        final int[] degree;
+        final int[] child1;
+        final int[] child2;
+        final int[] leaf2species;
+
+        GeneArrays(PhyloTree geneTree) {
+            int n = geneTree.getNumberOfNodes();
+            NodeIntArray node2index = new NodeIntArray(geneTree);
+            int count = 0;
+            for (Node v : geneTree.nodes())
+                node2index.set(v, count++);
+
+            degree = new int[n];
+            child1 = new int[n];
+            child2 = new int[n];
+            leaf2species = new int[n];
+            for (Node v : geneTree.nodes()) {
+                int u = node2index.getInt(v);
+                if (v.getOutDegree() > 2)
+                    throw new IllegalArgumentException("Gene tree is not binary");
+                degree[u] = v.getOutDegree();
+                child1[u] = (v.getOutDegree() > 0 ? node2index.getInt(v.getFirstOutEdge().getTarget()) : -1);
+                child2[u] = (v.getOutDegree() > 0 ? node2index.getInt(v.getLastOutEdge().getTarget()) : -1);
+                if (v.getOutDegree() == 0) {
+                    leaf2species[u] = species.getLeaf(geneTree.getLabel(v));
+                    if (leaf2species[u] == -1)
+                        throw new IllegalArgumentException("Gene tree leaf not found in species tree: " + geneTree.getLabel(v));
+                } else
+                    leaf2species[u] = -1;
+            }
+            root = node2index.getInt(geneTree.getRoot());
+        }
+    }
+
+    /**
+     * a growable stack of ints, pairs are pushed and popped as two values
+     */
+    private static class IntStack {
+        private int[] values = new int[64];
+        private int top = 0;
+
+        void push(int a, int b) {
+            if (top + 2 > values.length)
+                values = Arrays.copyOf(values, 2 * values.length);
+            values[top++] = a;
+            values[top++] = b;
+        }
+
+        int pop() {
+            return values[--top];
+        }
+
+        boolean isEmpty() {
+            return top == 0;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Reconciliation.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.dtl;
+
+/**
+ * the cost of an optimal DTL reconciliation and the number of events of each type in one such reconciliation. A
+ * transfer followed by a loss counts as one transfer and one loss, and a speciation followed by a loss counts as one loss
+ */
+public class Reconciliation {
+    private final int cost;
+    private final int speciations;
+    private final int duplications;
+    private final int transfers;
+    private final int losses;
+
+    /**
+     * constructor
+     */
+    Reconciliation(int cost, int speciations, int duplications, int transfers, int losses) {
+        this.cost = cost;
+        this.speciations = speciations;
+        this.duplications = duplications;
+        this.transfers = transfers;
+        this.losses = losses;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public int getSpeciations() {
+        return speciations;
+    }
+
+    public int getDuplications() {
+        return duplications;
+    }
+
+    public int getTransfers() {
+        return transfers;
+    }
+
+    public int getLosses() {
+        return losses;
+    }
+
+    /**
+     * get the header of the reconciliation table
+     *
+     * @return tab-separated header
+     */
+    public static String getTableHeader() {
+        return "name\tcost\tspeciations\tduplications\ttransfers\tlosses";
+    }
+
+    /**
+     * get a line of the reconciliation table
+     *
+     * @return tab-separated line
+     */
+    public String toTableRow(String name) {
+        return name + "\t" + cost + "\t" + speciations + "\t" + duplications + "\t" + transfers + "\t" + losses;
+    }
+
+    public String toString() {
+        return "cost=" + cost + " speciations=" + speciations + " duplications=" + duplications + " transfers=" + transfers + " losses=" + losses;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * SpeciesSubdivision.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.dtl;
+
+import jloda.graph.Edge;
+import jloda.graph.Node;
+import jloda.graph.NodeIntArray;
+import jloda.phylo.PhyloTree;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * the time-subdivided species tree used by the DTL engine, in the form of arrays. The nodes are numbered layer by
+ * layer, starting with the deepest layer, so that the nodes of each time layer form an interval and all children of a
+ * node have smaller numbers. The subdivision only depends on the species tree, so it can be used for any number of
+ * gene trees, also concurrently
+ */
+public class SpeciesSubdivision {
+    final int numberOfNodes;
+    final int root;
+    final int[] degree; // out-degree of each node
+    final int[] child1; // first child, or -1
+    final int[] child2; // last child, or -1
+    final int[] layerStart; // the nodes of layer l are layerStart[l],...,layerStart[l+1]-1
+    final int[] layer; // the layer of each node
+    private final Map<String, Integer> label2leaf;
+
+    /**
+     * constructs the subdivision of a species tree in .sim format, as Structure does: leaves whose label contains
+     * "LABEL" are removed, and each set of nodes of the same depth forms a time layer. The given tree is not modified
+     */
+    public SpeciesSubdivision(PhyloTree speciesTree) throws IOException {
+        PhyloTree tree = (PhyloTree) speciesTree.clone();
+        List<Node> toDelete = new ArrayList<>();
+        for (Node v : tree.nodes()) {
+            String label = tree.getLabel(v);
+            if (v.getOutDegree() == 0 && label != null && label.contains("LABEL"))
+                toDelete.add(v);
+        }
+        for (Node v : toDelete) {
+            tree.deleteEdge(v.getFirstInEdge());
+            tree.deleteNode(v);
+        }
+        // reread the tree from Newick, as Structure does, so that both see the same nodes and order of children:
+        PhyloTree subdivision = new PhyloTree();
+        subdivision.read(new StringReader(tree.toBracketString()));
+
+        // layers by depth, the deepest first:
+        List<List<Node>> layers = new ArrayList<>();
+        List<Node> currentLayer = new ArrayList<>();
+        currentLayer.add(subdivision.getRoot());
+        while (!currentLayer.isEmpty()) {
+            List<Node> nextLayer = new ArrayList<>();
+            for (Node v : currentLayer) {
+                for (Edge f = v.getFirstOutEdge(); f != null; f = v.getNextOutEdge(f))
+                    nextLayer.add(f.getTarget());
+            }
+            layers.add(0, currentLayer);
+            currentLayer = nextLayer;
+        }
+
+        NodeIntArray node2index = new NodeIntArray(subdivision);
+        layerStart = new int[layers.size() + 1];
+        int count = 0;
+        for (int l = 0; l < layers.size(); l++) {
+            layerStart[l] = count;
+            for (Node v : layers.get(l))
+                node2index.set(v, count++);
+        }
+        layerStart[layers.size()] = count;
+
+        numberOfNodes = count;
+        root = node2index.getInt(subdivision.getRoot());
+        degree = new int[count];
+        child1 = new int[count];
+        child2 = new int[count];
+        label2leaf = new HashMap<>();
+        for (List<Node> layer : layers) {
+            for (Node v : layer) {
+                int x = node2index.getInt(v);
+                degree[x] = v.getOutDegree();
+                child1[x] = (v.getOutDegree() > 0 ? node2index.getInt(v.getFirstOutEdge().getTarget()) : -1);
+                child2[x] = (v.getOutDegree() > 0 ? node2index.getInt(v.getLastOutEdge().getTarget()) : -1);
+            }
+        }
+        for (Node v : subdivision.nodes()) {
+            if (v.getOutDegree() == 0)
+                label2leaf.put(subdivision.getLabel(v), node2index.getInt(v));
+        }
+        layer = computeLayers(layerStart);
+    }
+
+    /**
+     * computes the layer of each node from the layer intervals
+     *
+     * @return layer of each node
+     */
+    private static int[] computeLayers(int[] layerStart) {
+        final int[] layer = new int[layerStart[layerStart.length - 1]];
+        for (int l = 0; l < layerStart.length - 1; l++) {
+            for (int x = layerStart[l]; x < layerStart[l + 1]; x++)
+                layer[x] = l;
+        }
+        return layer;
+    }
+
+    /**
+     * get the number of nodes of the subdivision
+     *
+     * @return number of nodes
+     */
+    public int getNumberOfNodes() {
+        return numberOfNodes;
+    }
+
+    /**
+     * get the number of time layers
+     *
+     * @return number of layers
+     */
+    public int getNumberOfLayers() {
+        return layerStart.length - 1;
+    }
+
+    /**
+     * gets the leaf of the subdivision that has the given label
+     *
+     * @return leaf, or -1
+     */
+    public int getLeaf(String label) {
+        Integer leaf = label2leaf.get(label);
+        return (leaf != null ? leaf : -1);
+    }
+}
@@ -430,11 +430,12 @@ public class Structure {
     //compute costs for transfer-loss events
     private void tl(Node u, Node spec, int bestId, int secondId) {
         int uId = u.getId();
-        if (uId == bestId) {
+        int xId = spec.getId();
+        //the receiver must differ from the donor
+        if (xId == bestId) {
             bestId = secondId;
         }
         int costTL = this.costMatrix[uId - 1][bestId - 1] + this.transCost + this.lossCost;
-        int xId = spec.getId();
         if (this.costMatrix[uId - 1][xId - 1] > costTL) {
             this.costMatrix[uId - 1][xId - 1] = costTL;
         }
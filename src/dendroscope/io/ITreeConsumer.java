@@ -0,0 +1,35 @@
+/*
+ * ITreeConsumer.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.io;
+
+import dendroscope.core.TreeData;
+import jloda.util.CanceledException;
+
+import java.io.IOException;
+
+/**
+ * receives trees one at a time while a file is being read, so that files with very many trees can be processed
+ * without holding all trees in memory
+ */
+public interface ITreeConsumer {
+	/**
+	 * process the next tree read from the input
+	 */
+	void accept(TreeData tree) throws IOException, CanceledException;
+}
@@ -19,6 +19,7 @@
 package dendroscope.io;
 
 import dendroscope.core.TreeData;
+import jloda.util.CanceledException;
 import jloda.util.FileUtils;
 import jloda.util.StringUtils;
 
@@ -65,9 +66,24 @@ public class Newick extends IOBase implements IOFormat {
      * @return trees
 	 */
     public TreeData[] read(Reader r0) throws IOException {
+        final List<TreeData> list = new LinkedList<>();
+        try {
+            read(r0, list::add);
+        } catch (CanceledException e) {
+            throw new IOException(e);
+        }
+        return list.toArray(new TreeData[0]);
+    }
+
+    /**
+     * read trees and pass each tree to the consumer as soon as it has been parsed
+     *
+     * @return number of trees read
+     */
+    public int read(Reader r0, ITreeConsumer consumer) throws IOException, CanceledException {
         boolean warned = false;
+        int count = 0;
         try (BufferedReader r = new BufferedReader(r0)) {
-            final List<TreeData> list = new LinkedList<>();
             final StringBuilder buf = new StringBuilder();
             String aLine;
             while ((aLine = r.readLine()) != null) {
@@ -85,7 +101,8 @@ public class Newick extends IOBase implements IOFormat {
                     }
                     tmpTreeData.parseBracketNotation(buf.toString(), true);
                     buf.delete(0, buf.length());
-                    list.add(tmpTreeData);
+                    consumer.accept(tmpTreeData);
+                    count++;
                 }
             }
             if (!buf.isEmpty()) {
@@ -93,10 +110,11 @@ public class Newick extends IOBase implements IOFormat {
                 tree.parseBracketNotation(buf.toString(), true);
                 tree.setName(createNewTreeName());
                 buf.delete(0, buf.length());
-                list.add(tree);
+                consumer.accept(tree);
+                count++;
             }
-            return list.toArray(new TreeData[0]);
         }
+        return count;
     }
 
 
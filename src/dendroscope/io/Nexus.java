@@ -22,6 +22,7 @@ import dendroscope.core.TreeData;
 import jloda.graph.Node;
 import jloda.graph.NotOwnerException;
 import jloda.phylo.PhyloTree;
+import jloda.util.CanceledException;
 import jloda.util.FileUtils;
 import jloda.util.parse.NexusStreamParser;
 import jloda.util.parse.NexusStreamTokenizer;
@@ -77,7 +78,21 @@ public class Nexus extends IOBase implements IOFormat {
 	 */
     public TreeData[] read(Reader r0) throws IOException {
         final var treesList = new ArrayList<TreeData>(); // list of phylotrees
-        TreeData[] trees;
+        try {
+            read(r0, treesList::add);
+        } catch (CanceledException e) {
+            throw new IOException(e);
+        }
+        return treesList.toArray(new TreeData[0]);
+    }
+
+    /**
+     * read trees and pass each tree to the consumer as soon as it has been parsed
+     *
+     * @return number of trees read
+     */
+    public int read(Reader r0, ITreeConsumer consumer) throws IOException, CanceledException {
+        int count = 0;
 
         try (BufferedReader r = new BufferedReader(r0)) {
              NexusStreamParser np = new NexusStreamParser(r);
@@ -168,7 +183,9 @@ public class Nexus extends IOBase implements IOFormat {
                     buf.append(np.getWordRespectCase());
                 np.matchIgnoreCase(";");
                 TreeData tree = new TreeData(PhyloTree.valueOf(buf.toString()));
-                addTree(name, tree, treesList);
+                addTree(name, tree);
+                consumer.accept(tree);
+                count++;
 
                 /*
                 np.pushPunctuationCharacters(NexusStreamTokenizer.SEMICOLON_PUNCTUATION);
@@ -187,9 +204,8 @@ public class Nexus extends IOBase implements IOFormat {
                 */
             }
             np.matchEndBlock();
-            trees = treesList.toArray(new TreeData[0]);
         }
-        return trees;
+        return count;
     }
 
 
@@ -218,17 +234,13 @@ public class Nexus extends IOBase implements IOFormat {
     }
 
     /**
-     * Adds a tree to the list of trees. If this is called to add the first
-     * tree to the trees block, then the tree nodes must be labeled with
-     * taxon names or integers 1..ntax. If this is not the case, then use
-     * the other addTree method described below. Subsequent trees can be
-     * added by this method regardless of which labels are used for nodes,
-     * as long as they are compatible with the initial translation table.
+     * prepares a tree that has just been read: replaces node labels by their entries in the translate table, if
+     * there is one, leaving labels that are not in the table unchanged, and sets the name of the tree
      *
-     * @param name      the name of the tree
-     * @param tree      the phylogenetic tree
+     * @param name the name of the tree
+     * @param tree the phylogenetic tree
      */
-    private void addTree(String name, TreeData tree, List<TreeData> treesList)
+    private void addTree(String name, TreeData tree)
             throws IOException, NotOwnerException {
 
         // apply translation, if necessary
@@ -242,7 +254,6 @@ public class Nexus extends IOBase implements IOFormat {
                 }
             }
         }
-        treesList.add(tree);
         tree.setName(name);
     }
 
@@ -22,9 +22,9 @@ import jloda.graph.Edge;
 import jloda.graph.Node;
 import jloda.phylo.PhyloTree;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * constructs an exact network for a given multi-labeled tree.
@@ -46,42 +46,37 @@ public class ExactNetFromMultree {
         long startTime = new Date().getTime();
         MultilabeledTree t = new MultilabeledTree(this.tree);
         //this map contains for every height in the tree a HeightList. Each of this lists contains the multisets of nodes
-        //with equivalent heights. the map is sorted after decreasing heights and initialized with the root's heightlist.
+        //with equivalent heights. the map is initialized with the root's heightlist.
         HashMap<Integer, HeightList> h_max = new HashMap<>();
         Node root = t.getRoot();
         int rootHeight = t.getHeight(root);
         HeightList h = new HeightList();
-        h.addSorted(root, t.getMultiset(root));
+        h.add(root, t.getMultiset(root));
         h_max.put(rootHeight, h);
 
-        //we iterate through h_max till we have reached the heightlist containing nodes of height 1.
+        //we iterate through h_max by decreasing heights. all nodes of height i are added before the heightlist of
+        //height i is processed, as they are children of nodes of larger heights.
         for (int i = rootHeight; i >= 0; i--) {
             HeightList l_h = h_max.get(i);
-            while (!l_h.isEmpty()) {
-				//take the first tree T(t_max) of the current heightlist and add all children of height j (j < i) to
-				//the map h_max for later iterations.
-				Node t_max = (Node) l_h.get(0);
-				for (Edge edge : t_max.outEdges()) {
-					Node target = edge.getTarget();
-					int targetHeight = t.getHeight(target);
-					HeightList targetList = h_max.get(targetHeight);
-					if (targetList == null) {
-						targetList = new HeightList();
-						h_max.put(targetHeight, targetList);
-					}
-					targetList.addSorted(target, t.getMultiset(target));
-				}
-				//now check if the current heightlist contains isomorphs to T(t_max).
-				ArrayList<Node> isomorphs = new ArrayList<>();
-				for (int j = 1; j < l_h.size(); j++) {
-					Node w = (Node) l_h.get(j);
-					//found isomorph subtrees
-					if (t.getMultiset(t_max).equals(t.getMultiset(w))) {
-						isomorphs.add(w);
-					} else break;
-				}
-				//found one or more isomorph subtree(s) to T(t_max).
-                if (!isomorphs.isEmpty()) {
+            if (l_h == null)
+                continue;
+            //each group contains a tree T(t_max) and all isomorphs to T(t_max) in the current heightlist.
+            for (List<Node> group : l_h.getIsomorphGroups()) {
+                //take the first tree T(t_max) of the group and add all children of height j (j < i) to
+                //the map h_max for later iterations.
+                Node t_max = group.get(0);
+                for (Edge edge : t_max.outEdges()) {
+                    Node target = edge.getTarget();
+                    int targetHeight = t.getHeight(target);
+                    HeightList targetList = h_max.get(targetHeight);
+                    if (targetList == null) {
+                        targetList = new HeightList();
+                        h_max.put(targetHeight, targetList);
+                    }
+                    targetList.add(target, t.getMultiset(target));
+                }
+                //found one or more isomorph subtree(s) to T(t_max).
+                if (group.size() > 1) {
                     //insert in the incoming edge of T(t_max) a new node u.
                     Edge toDel = t_max.getFirstInEdge();
                     Node source = toDel.getSource();
@@ -89,23 +84,21 @@ public class ExactNetFromMultree {
                     t.deleteEdge(toDel);
                     Edge reticulation1 = t.newEdge(source, u);
                     t.setReticulate(reticulation1, true);
-					t.setWeight(reticulation1, 0);
+                    t.setWeight(reticulation1, 0);
 
                     t.newEdge(u, t_max);
                     //now delete the isomorph subtrees and add new edges to the new generated node u.
-                    for (Node w : isomorphs) {
+                    for (Node w : group.subList(1, group.size())) {
                         Node w_father = w.getFirstInEdge().getSource();
                         t.deleteSubtree(w);
                         Edge reticulation2;
-						reticulation2 = t.newEdge(w_father, u);
-						t.setReticulate(reticulation2, true);
-						t.setWeight(reticulation2, 0);
+                        reticulation2 = t.newEdge(w_father, u);
+                        t.setReticulate(reticulation2, true);
+                        t.setWeight(reticulation2, 0);
                     }
-                    //finally remove T(t_max) and the associated iosomorphs from the heightlist.
-                    for (Node isomorph : isomorphs) l_h.remove(isomorph);
                 }
-                l_h.remove(t_max);
             }
+            h_max.remove(i);
         }
         long seconds = (new Date().getTime() - startTime);
 		System.err.println("Algorithm required " + seconds / 1000.0 + " seconds");
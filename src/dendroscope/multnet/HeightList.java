@@ -21,51 +21,56 @@ package dendroscope.multnet;
 import jloda.graph.Node;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
 
 /**
- * A HeightList contains only nodes of the same height. The elements are always sorted by their nested labels.
- * For finding the insertion point of a new element we use binary search. -> O(log n) for inserting a new node.
+ * A HeightList contains only nodes of the same height, together with their multisets. Once all nodes have been added,
+ * they are sorted by their multisets, in O(n log n), so that nodes with isomorphic subtrees are adjacent.
  *
  * @author thomas bonfert, 6.2009
  */
 
-public class HeightList extends ArrayList {
+public class HeightList {
 
-    final HashMap<Integer, Multiset> multisets;
+    private final ArrayList<Node> nodes;
+    private final ArrayList<Multiset> multisets;
 
     public HeightList() {
-        super();
-        this.multisets = new HashMap<>();
+        this.nodes = new ArrayList<>();
+        this.multisets = new ArrayList<>();
     }
 
+    public void add(Node n, Multiset multiset) {
+        this.nodes.add(n);
+        this.multisets.add(multiset);
+    }
 
-    public void addSorted(Node n, Multiset multiset) {
-        this.multisets.put(n.getId(), multiset);
-        final class MultisetComparator implements Comparator {
-            final HashMap<Integer, Multiset> multisets;
+    public int size() {
+        return this.nodes.size();
+    }
 
-            public MultisetComparator(HashMap<Integer, Multiset> multisets) {
-                super();
-                this.multisets = multisets;
-            }
+    public boolean isEmpty() {
+        return this.nodes.isEmpty();
+    }
 
-            public int compare(Object o1, Object o2) {
-                Node n1 = (Node) o1;
-                Node n2 = (Node) o2;
+    /**
+     * sorts the nodes by their multisets and groups nodes with equal multisets, that is, with isomorphic subtrees
+     *
+     * @return the groups, in order of their multisets, each containing at least one node
+     */
+    public List<List<Node>> getIsomorphGroups() {
+        Integer[] order = new Integer[this.nodes.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (i, j) -> this.multisets.get(i).compareTo(this.multisets.get(j)));
 
-                String concatenatedElements1 = this.multisets.get(n1.getId()).getConcatenatedElements();
-                String concatenatedElements2 = this.multisets.get(n2.getId()).getConcatenatedElements();
-                return concatenatedElements1.compareTo(concatenatedElements2);
-            }
+        List<List<Node>> groups = new ArrayList<>();
+        for (int k = 0; k < order.length; k++) {
+            if (k == 0 || !this.multisets.get(order[k]).equals(this.multisets.get(order[k - 1])))
+                groups.add(new ArrayList<>());
+            groups.get(groups.size() - 1).add(this.nodes.get(order[k]));
         }
-
-        MultisetComparator comparator = new MultisetComparator(this.multisets);
-        int insertionPoint = Collections.binarySearch(this, n, comparator);
-        if (insertionPoint < 0) insertionPoint = -1 * insertionPoint - 1;
-        this.add(insertionPoint, n);
+        return groups;
     }
-
 }
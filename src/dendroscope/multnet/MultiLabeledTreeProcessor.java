@@ -19,20 +19,47 @@
 package dendroscope.multnet;
 
 import dendroscope.core.TreeData;
+import dendroscope.io.ITreeConsumer;
 import jloda.graph.Node;
 import jloda.phylo.PhyloTree;
 import jloda.swing.graphview.PhyloGraphView;
+import jloda.util.CanceledException;
 import jloda.util.NumberUtils;
+import jloda.util.progress.ProgressListener;
+import jloda.util.progress.ProgressSilent;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.HashSet;
+import java.util.Locale;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * processes a multilabeled tree
  * Daniel Huson, 10.2009
  */
 public class MultiLabeledTreeProcessor {
+    /**
+     * number of trees that may be submitted to the pool per worker thread, before the first result is consumed
+     */
+    private static final int TREES_IN_FLIGHT_PER_THREAD = 4;
+
     public static TreeData apply(TreeData tree, String method) {
+        return apply(tree, method, null);
+    }
+
+    /**
+     * processes a multilabeled tree
+     *
+     * @param progressListener used by the level-k method, or null, to open a progress dialog
+     * @return the network, or null, if the method is unknown
+     */
+    public static TreeData apply(TreeData tree, String method, ProgressListener progressListener) {
         PhyloTree network = null;
         if (method.equalsIgnoreCase("cluster")) {
             ClusterNetFromMultree clusternetFromMultree = new ClusterNetFromMultree(tree);
@@ -41,7 +68,7 @@ public class MultiLabeledTreeProcessor {
 
         } else if (method.equalsIgnoreCase("levelk")) {
             LevelkNetFromMultree levelKnetFromMultree = new LevelkNetFromMultree(tree);
-            network = levelKnetFromMultree.apply();
+            network = (progressListener == null ? levelKnetFromMultree.apply() : levelKnetFromMultree.apply(progressListener));
             network.setName(tree.getName() + "-multnet-levelk");
         } else if (method.equalsIgnoreCase("exact") || method.equalsIgnoreCase("HOLM")) {
             ExactNetFromMultree multibuildnetFromMultree = new ExactNetFromMultree(tree);
@@ -57,6 +84,81 @@ public class MultiLabeledTreeProcessor {
             return null;
     }
 
+    /**
+     * processes all given trees concurrently, using a bounded number of threads. The results are passed to the consumer
+     * in input order, each as soon as it and all previous results are available, and at most a few trees per thread
+     * are held in memory. For each tree, the time taken or the error is reported. A tree whose processing fails is
+     * skipped and does not stop the run
+     *
+     * @param numberOfThreads number of worker threads, or 0 to use all available processors
+     * @return the number of trees processed successfully
+     */
+    public static int applyAll(ProgressListener progressListener, TreeData[] trees, String method, int numberOfThreads, ITreeConsumer consumer) throws IOException, CanceledException {
+        if (numberOfThreads <= 0)
+            numberOfThreads = Runtime.getRuntime().availableProcessors();
+        numberOfThreads = Math.max(1, Math.min(numberOfThreads, trees.length));
+
+        progressListener.setSubtask("Processing multi-labeled trees");
+        progressListener.setMaximum(trees.length);
+        progressListener.setProgress(0);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        int count = 0;
+        try {
+            final Queue<Future<Outcome>> futures = new ArrayDeque<>();
+            int next = 0;
+            for (int i = 0; i < trees.length; i++) {
+                while (next < trees.length && futures.size() < TREES_IN_FLIGHT_PER_THREAD * numberOfThreads) {
+                    final TreeData tree = trees[next++];
+                    futures.add(executor.submit(() -> {
+                        final long start = System.nanoTime();
+                        try {
+                            final TreeData result = apply(tree, method, new ProgressSilent());
+                            if (result == null)
+                                return new Outcome(null, "unknown method: " + method, System.nanoTime() - start);
+                            return new Outcome(result, null, System.nanoTime() - start);
+                        } catch (Exception ex) {
+                            return new Outcome(null, ex.toString(), System.nanoTime() - start);
+                        }
+                    }));
+                }
+
+                Outcome outcome;
+                try {
+                    outcome = futures.remove().get();
+                } catch (InterruptedException | ExecutionException e) {
+                    outcome = new Outcome(null, e.toString(), 0);
+                }
+                final String milliseconds = String.format(Locale.ROOT, "%.3f", outcome.nanoTime / 1000000.0);
+                if (outcome.result != null) {
+                    System.err.println("tree[" + (i + 1) + "] " + trees[i].getName() + ": " + milliseconds + " ms");
+                    consumer.accept(outcome.result);
+                    count++;
+                } else
+                    System.err.println("tree[" + (i + 1) + "] " + trees[i].getName() + ": failed after " + milliseconds + " ms: " + outcome.error);
+                progressListener.incrementProgress();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return count;
+    }
+
+    /**
+     * outcome of processing one tree in a batch
+     */
+    private static class Outcome {
+        final TreeData result;
+        final String error;
+        final long nanoTime;
+
+        Outcome(TreeData result, String error, long nanoTime) {
+            this.result = result;
+            this.error = error;
+            this.nanoTime = nanoTime;
+        }
+    }
+
     /**
      * collapse multi-labeled to labeled
      *
@@ -20,12 +20,22 @@ package dendroscope.multnet;
 
 import dendroscope.consensus.SplitSystem;
 import dendroscope.consensus.Taxa;
+import dendroscope.util.PhyloTreeUtils;
 import jloda.graph.Edge;
 import jloda.graph.Node;
+import jloda.graph.NodeArray;
+import jloda.graph.NodeIntArray;
 import jloda.graph.NodeSet;
 import jloda.phylo.PhyloTree;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class represents MUL-trees
@@ -34,18 +44,28 @@ import java.util.HashMap;
  */
 
 public class MultilabeledTree extends PhyloTree {
+    /**
+     * below this number of nodes, multisets are computed in the calling thread
+     */
+    private static final int MIN_NODES_FOR_PARALLEL = 5000;
+    /**
+     * number of nodes of the same height whose multisets are computed by one task
+     */
+    private static final int NODES_PER_TASK = 1000;
 
+    protected NodeArray<Multiset> allMultisets;
+    protected NodeIntArray allNodeHeights;
 
-    protected HashMap<Integer, Multiset> allMultisets;
-    protected HashMap<Integer, Integer> allNodeHeights;
+    //labels and multisets are coded by consecutive numbers, the codes of labels and of multisets are distinct.
+    private final HashMap<String, Integer> label2code = new HashMap<>();
+    private final HashMap<Multiset, Integer> multiset2code = new HashMap<>();
 
 
     public MultilabeledTree(PhyloTree t) {
         super();
         this.copy(t);
         this.adaptLabeling();
-        this.allMultisets = collectAllMultisets();
-        this.allNodeHeights = collectAllNodeHeights();
+        this.collectAllMultisetsAndNodeHeights();
 
     }
 
@@ -87,109 +107,181 @@ public class MultilabeledTree extends PhyloTree {
 
 
     /**
-     * makes a depth-first search starting at node v.
-     * if the multi-labeled tree has no reticulation, the nested labels of v and all descending nodes of v will be calculated.
-     * otherwise the multiset for v and for the descending nodes will be calculated. these multisets can contain
-     * nested labels of descending nodes of v several times because of the reticulation edges. -> could be used to calculate
-     * the nested labeled distance between networks and multi-labeled trees.
+     * calculates the multiset of the nested labels of v and of all descending nodes of v.
+     * if the multi-labeled tree has reticulations, a nested label is contained once for each path from v to the
+     * corresponding node. nodes of outdegree 1 that only have reticulate in-edges are skipped. -> could be used to
+     * calculate the nested labeled distance between networks and multi-labeled trees.
      */
     public Multiset getMultisets(Node v) {
-        Multiset clusterSet = new Multiset();
-        getMultisetsRec(v, clusterSet);
-        return clusterSet;
-    }
-
-    private Multiset getMultisetsRec(Node v, Multiset clusterSet) {
-        //reached a leave
-        if (this.computeSetOfLeaves().contains(v)) {
-            Multiset cluster = new Multiset();
-            cluster.setConcatenatedElements(this.getLabel(v));
-            cluster.add(this.getLabel(v));
-            clusterSet.addSorted(cluster);
-            return cluster;
+        Node[] order = PhyloTreeUtils.computeTopologicalOrder(this);
+
+        //the code of the nested label of every node, a skipped node has the nested label of its child.
+        NodeIntArray codes = new NodeIntArray(this);
+        for (int i = order.length - 1; i >= 0; i--) {
+            Node u = order[i];
+            if (u.getOutDegree() == 0)
+                codes.set(u, getCode(getLeafMultiset(u)));
+            else if (isSkipped(u))
+                codes.set(u, codes.getInt(u.getFirstOutEdge().getTarget()));
+            else {
+                int[] elements = new int[u.getOutDegree()];
+                int c = 0;
+                for (Edge f = u.getFirstOutEdge(); f != null; f = u.getNextOutEdge(f))
+                    elements[c++] = codes.getInt(f.getTarget());
+                codes.set(u, getCode(new Multiset(elements)));
+            }
         }
 
-		boolean hasNormalEdge = false;
-        for (Edge e : v.inEdges()) {
-            if (!this.isReticulateEdge(e)) {
-				hasNormalEdge = true;
-				break;
-			}
-        }
-        if (v.getOutDegree() == 1 && !hasNormalEdge) {
-            Node w = this.getTarget(v.getFirstOutEdge());
-            return (getMultisetsRec(w, clusterSet));
+        //count the paths from v to every node.
+        NodeIntArray numberOfPaths = new NodeIntArray(this);
+        for (Node u : order)
+            numberOfPaths.set(u, 0);
+        numberOfPaths.set(v, 1);
+        int size = 0;
+        for (Node u : order) {
+            int paths = numberOfPaths.getInt(u);
+            if (paths > 0) {
+                if (!isSkipped(u))
+                    size += paths;
+                for (Edge f = u.getFirstOutEdge(); f != null; f = u.getNextOutEdge(f)) {
+                    Node w = f.getTarget();
+                    numberOfPaths.set(w, numberOfPaths.getInt(w) + paths);
+                }
+            }
         }
 
-        //recursion
-        else {
-            Multiset cluster = new Multiset();
-            for (Edge f = v.getFirstOutEdge(); f != null; f = v.getNextOutEdge(f)) {
-                Node w = f.getTarget();
-                cluster.addSorted(getMultisetsRec(w, clusterSet));
+        int[] elements = new int[size];
+        int c = 0;
+        for (Node u : order) {
+            if (!isSkipped(u)) {
+                for (int paths = numberOfPaths.getInt(u); paths > 0; paths--)
+                    elements[c++] = codes.getInt(u);
             }
-            cluster.setConcatenatedElements();
-            clusterSet.addSorted(cluster);
-            return cluster;
         }
+        return new Multiset(elements);
     }
 
     /**
-     * calculates for every node in the tree its nested label.
+     * is v a node of outdegree 1 that has no normal in-edge?
      */
-    protected HashMap<Integer, Multiset> collectAllMultisets() {
-        HashMap<Integer, Multiset> allMultisets = new HashMap<>(this.getNumberOfNodes());
-        collectAllMultisetsRec(this.getRoot(), allMultisets);
-        return allMultisets;
+    private boolean isSkipped(Node v) {
+        if (v.getOutDegree() != 1)
+            return false;
+        for (Edge e : v.inEdges()) {
+            if (!this.isReticulateEdge(e))
+                return false;
+        }
+        return true;
     }
 
-    private Multiset collectAllMultisetsRec(Node v, HashMap<Integer, Multiset> allMultisets) {
-        //reached a leave
-        if (this.computeSetOfLeaves().contains(v)) {
-            Multiset cluster = new Multiset();
-            cluster.setConcatenatedElements(this.getLabel(v));
-            cluster.add(this.getLabel(v));
-            allMultisets.put(this.getId(v), cluster);
-            return cluster;
+    /**
+     * calculates for every node in the tree its nested label and its height. the nodes are processed bottom-up, height
+     * by height, and the multisets of nodes of the same height are computed in parallel. the codes are then assigned in
+     * node order, so they do not depend on the number of threads.
+     */
+    protected void collectAllMultisetsAndNodeHeights() {
+        Node[] order = PhyloTreeUtils.computeTopologicalOrder(this);
+
+        this.allNodeHeights = new NodeIntArray(this);
+        List<List<Node>> nodesOfHeight = new ArrayList<>();
+        for (int i = order.length - 1; i >= 0; i--) {
+            Node v = order[i];
+            int height = 0;
+            for (Edge f = v.getFirstOutEdge(); f != null; f = v.getNextOutEdge(f))
+                height = Math.max(height, 1 + this.allNodeHeights.getInt(f.getTarget()));
+            this.allNodeHeights.set(v, height);
+            while (nodesOfHeight.size() <= height)
+                nodesOfHeight.add(new ArrayList<>());
+            nodesOfHeight.get(height).add(v);
+        }
+
+        //assign the label codes first, the tasks only look them up.
+        if (!nodesOfHeight.isEmpty()) {
+            for (Node v : nodesOfHeight.get(0))
+                getLabelCode(this.getLabel(v));
         }
-        //recursion
-        else {
-            Multiset cluster = new Multiset();
-            for (Edge f = v.getFirstOutEdge(); f != null; f = v.getNextOutEdge(f)) {
-                Node w = f.getTarget();
-                cluster.addSorted(collectAllMultisetsRec(w, allMultisets));
+
+        this.allMultisets = new NodeArray<>(this);
+        NodeIntArray codes = new NodeIntArray(this);
+        int numberOfThreads = Math.min(Runtime.getRuntime().availableProcessors(), order.length / NODES_PER_TASK);
+        ExecutorService executor = (order.length >= MIN_NODES_FOR_PARALLEL && numberOfThreads > 1 ? Executors.newFixedThreadPool(numberOfThreads) : null);
+        try {
+            for (List<Node> nodes : nodesOfHeight) {
+                Multiset[] multisets = new Multiset[nodes.size()];
+                List<Runnable> tasks = new ArrayList<>();
+                for (int first = 0; first < nodes.size(); first += NODES_PER_TASK) {
+                    int start = first;
+                    int end = Math.min(nodes.size(), first + NODES_PER_TASK);
+                    tasks.add(() -> {
+                        for (int i = start; i < end; i++) {
+                            Node v = nodes.get(i);
+                            if (v.getOutDegree() == 0) {
+                                multisets[i] = getLeafMultiset(v);
+                            } else {
+                                int[] elements = new int[v.getOutDegree()];
+                                int c = 0;
+                                for (Edge f = v.getFirstOutEdge(); f != null; f = v.getNextOutEdge(f))
+                                    elements[c++] = codes.getInt(f.getTarget());
+                                multisets[i] = new Multiset(elements);
+                            }
+                        }
+                    });
+                }
+                run(executor, tasks);
+                for (int i = 0; i < multisets.length; i++) {
+                    this.allMultisets.put(nodes.get(i), multisets[i]);
+                    codes.set(nodes.get(i), getCode(multisets[i]));
+                }
             }
-            cluster.setConcatenatedElements();
-            allMultisets.put(this.getId(v), cluster);
-            return cluster;
+        } finally {
+            if (executor != null)
+                executor.shutdownNow();
         }
     }
 
     /**
-     * collects the height of every node in the tree
+     * gets the multiset of a leaf, which contains the code of its label.
      */
-    protected HashMap<Integer, Integer> collectAllNodeHeights() {
-        HashMap<Integer, Integer> heights = new HashMap<>();
-        collectAllNodeHeightsRec(this.getRoot(), heights);
-        return heights;
+    private Multiset getLeafMultiset(Node v) {
+        return new Multiset(new int[]{getLabelCode(this.getLabel(v))});
     }
 
-    private Integer collectAllNodeHeightsRec(Node v, HashMap<Integer, Integer> heights) {
-        if (this.computeSetOfLeaves().contains(v)) {
-            heights.put(v.getId(), 0);
-            return 0;
+    private int getLabelCode(String label) {
+        Integer code = this.label2code.get(label);
+        if (code == null) {
+            code = this.label2code.size() + this.multiset2code.size();
+            this.label2code.put(label, code);
         }
-        //recursion
-        else {
-            int maxHeight = 0;
-            for (Edge f = v.getFirstOutEdge(); f != null; f = v.getNextOutEdge(f)) {
-                Node w = f.getTarget();
-                int currentHeight = 1 + collectAllNodeHeightsRec(w, heights);
-                if (currentHeight > maxHeight) maxHeight = currentHeight;
+        return code;
+    }
+
+    private int getCode(Multiset multiset) {
+        Integer code = this.multiset2code.get(multiset);
+        if (code == null) {
+            code = this.label2code.size() + this.multiset2code.size();
+            this.multiset2code.put(multiset, code);
+        }
+        return code;
+    }
+
+    /**
+     * runs the tasks, using the executor, if given and there is more than one task
+     */
+    private static void run(ExecutorService executor, List<Runnable> tasks) {
+        if (executor == null || tasks.size() <= 1) {
+            for (Runnable task : tasks)
+                task.run();
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks)
+            futures.add(executor.submit(task));
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
             }
-            int heightV = maxHeight;
-            heights.put(v.getId(), heightV);
-            return heightV;
         }
     }
 
@@ -244,16 +336,19 @@ public class MultilabeledTree extends PhyloTree {
     public NodeSet getDescendingNodes(Node v) {
         NodeSet nodes = new NodeSet(this);
         nodes.add(v);
-        getDescendingNodesRec(v, nodes);
-        return nodes;
-    }
-
-    private void getDescendingNodesRec(Node v, NodeSet nodes) {
-        for (Edge f = v.getFirstOutEdge(); f != null; f = v.getNextOutEdge(f)) {
-            Node w = f.getTarget();
-            nodes.add(w);
-            getDescendingNodesRec(w, nodes);
+        Stack<Node> stack = new Stack<>();
+        stack.push(v);
+        while (!stack.isEmpty()) {
+            Node u = stack.pop();
+            for (Edge f = u.getFirstOutEdge(); f != null; f = u.getNextOutEdge(f)) {
+                Node w = f.getTarget();
+                if (!nodes.contains(w)) {
+                    nodes.add(w);
+                    stack.push(w);
+                }
+            }
         }
+        return nodes;
     }
 
     /**
@@ -279,11 +374,11 @@ public class MultilabeledTree extends PhyloTree {
      * only use this method with a network generated by the exact method.
      */
     public Multiset getMultiset(Node n) {
-        return this.allMultisets.get(n.getId());
+        return this.allMultisets.get(n);
     }
 
     public int getHeight(Node n) {
-        return this.allNodeHeights.get(n.getId());
+        return this.allNodeHeights.getInt(n);
     }
 
     public int getNumberOfSpecialNodes() {
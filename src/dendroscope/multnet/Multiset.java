@@ -18,43 +18,88 @@
  */
 package dendroscope.multnet;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 
-public class Multiset extends ArrayList {
+/**
+ * a multiset of int codes, stored as a sorted array. The nested label of a node of a multi-labeled tree is the multiset
+ * of the codes of the nested labels of its children, or, for a leaf, the multiset containing the code of its label.
+ * The codes are assigned by the tree, so multisets of different trees cannot be compared
+ *
+ * @author thomas bonfert, 6.2009
+ */
+public class Multiset implements Comparable<Multiset> {
 
-    private String concatenatedElements;
+    private final int[] elements;
+    private final int hashCode;
 
-    public Multiset() {
-        super();
-        this.concatenatedElements = null;
+    /**
+     * constructor
+     *
+     * @param elements the elements, in any order, the array is sorted and kept
+     */
+    public Multiset(int[] elements) {
+        Arrays.sort(elements);
+        this.elements = elements;
+        this.hashCode = Arrays.hashCode(elements);
     }
 
-    public void setConcatenatedElements(String el) {
-        this.concatenatedElements = el;
+    /**
+     * get the number of elements, counting multiplicities
+     *
+     * @return size
+     */
+    public int size() {
+        return elements.length;
     }
 
-    public void setConcatenatedElements() {
-        String concatenatedElements = "";
-        for (Multiset tmpSet : (Iterable<Multiset>) this) {
-            concatenatedElements += tmpSet.getConcatenatedElements() + tmpSet.size();
-        }
-        this.concatenatedElements = concatenatedElements;
+    /**
+     * get the i-th smallest element
+     *
+     * @return element
+     */
+    public int get(int i) {
+        return elements[i];
     }
 
-    public String getConcatenatedElements() {
-        return this.concatenatedElements;
+    /**
+     * get the number of times that the given element is contained
+     *
+     * @return multiplicity
+     */
+    public int getMultiplicity(int element) {
+        int i = Arrays.binarySearch(elements, element);
+        if (i < 0)
+            return 0;
+        int first = i;
+        while (first > 0 && elements[first - 1] == element)
+            first--;
+        int last = i;
+        while (last + 1 < elements.length && elements[last + 1] == element)
+            last++;
+        return last - first + 1;
     }
 
-    public void addSorted(Multiset toAdd) {
-		Comparator<Multiset> comparator = (m1, m2) -> {
-			String concatenatedElements1 = m1.getConcatenatedElements();
-			String concatenatedElements2 = m2.getConcatenatedElements();
-			return concatenatedElements1.compareTo(concatenatedElements2);
-		};
-		int insertionPoint = Collections.binarySearch(this, toAdd, comparator);
-		if (insertionPoint < 0) insertionPoint = -1 * insertionPoint - 1;
-		this.add(insertionPoint, toAdd);
-	}
+    public int hashCode() {
+        return hashCode;
+    }
+
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof Multiset))
+            return false;
+        Multiset that = (Multiset) other;
+        return hashCode == that.hashCode && Arrays.equals(elements, that.elements);
+    }
+
+    /**
+     * compares lexicographically
+     */
+    public int compareTo(Multiset that) {
+        return Arrays.compare(elements, that.elements);
+    }
+
+    public String toString() {
+        return Arrays.toString(elements);
+    }
 }
@@ -23,6 +23,7 @@ import jloda.graph.Node;
 import jloda.phylo.PhyloTree;
 
 import java.util.HashMap;
+import java.util.List;
 
 /*
  * tries to delete redundant informations in the given tree. given node v we collect all children n_1,n_2,...,n_l of v and
@@ -53,28 +54,22 @@ public class TreeReduction {
 				targetList = new HeightList();
 				childrenHeightlists.put(targetHeight, targetList);
 			}
-			targetList.addSorted(target, reducedTree.getMultiset(target));
+			targetList.add(target, reducedTree.getMultiset(target));
 		}
 
 		for (HeightList h : childrenHeightlists.values()) {
-			while (!h.isEmpty()) {
-				Node v = (Node) h.get(0);
-				//now check if the current heightlist contains isomorphs to T(t_max).
-				for (int i = 1; i < h.size(); i++) {
-					Node w = (Node) h.get(i);
-					//found isomorph subtrees
-					if (reducedTree.getMultiset(v).equals(reducedTree.getMultiset(w))) {
-						Node w_father = w.getFirstInEdge().getSource();
-                        reducedTree.deleteSubtree(w);
-                        checkTreeStructure(reducedTree, w_father);
-                        h.remove(w);
-                    } else break;
-                }
-                applyRec(reducedTree, v);
-                h.remove(v);
-            }
-        }
-    }
+			//each group contains a tree T(v) and all isomorphs to T(v).
+			for (List<Node> group : h.getIsomorphGroups()) {
+				Node v = group.get(0);
+				for (Node w : group.subList(1, group.size())) {
+					Node w_father = w.getFirstInEdge().getSource();
+					reducedTree.deleteSubtree(w);
+					checkTreeStructure(reducedTree, w_father);
+				}
+				applyRec(reducedTree, v);
+			}
+		}
+	}
 
     //checks if we have generated a node n with out- and indegree 1. in this case we want to delete this node.
     private void checkTreeStructure(MultilabeledTree t, Node n) {
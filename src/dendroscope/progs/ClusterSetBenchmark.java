@@ -0,0 +1,170 @@
+/*
+ * ClusterSetBenchmark.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.progs;
+
+import dendroscope.algorithms.levelknet.leo.ClusterSet;
+import jloda.swing.util.CommandLineOptions;
+import jloda.util.ProgramProperties;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * times the operations of the cluster set used by the Cass algorithm, on clusters read from a file, for the previous
+ * vector-based implementation and the current bit set implementation, and checks that both give the same results.
+ * The file contains one cluster per line, given as a list of taxon names separated by spaces, as read by the
+ * stand-alone Cass algorithm
+ */
+public class ClusterSetBenchmark {
+    /**
+     * run the benchmark
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        options.setDescription("clusterset-benchmark - time the operations of the Cass cluster set, old and new");
+        String inputFile = options.getMandatoryOption("-i", "input file of clusters", "");
+        int runs = options.getOption("-r", "number of runs", 100);
+        options.done();
+
+        ProgramProperties.setUseGUI(false);
+
+        LegacyClusterSet oldSet = new LegacyClusterSet();
+        ClusterSet newSet = new ClusterSet();
+        Map<String, Integer> taxon2id = new HashMap<>();
+        try (BufferedReader r = new BufferedReader(new FileReader(inputFile))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("//") || line.startsWith("#"))
+                    continue;
+                if (line.startsWith("."))
+                    break;
+                Vector<Integer> cluster = new Vector<>();
+                for (String taxon : line.split("\\s+")) {
+                    taxon2id.putIfAbsent(taxon, taxon2id.size() + 1);
+                    cluster.add(taxon2id.get(taxon));
+                }
+                oldSet.addCluster(new Vector<>(cluster));
+                newSet.addCluster(cluster);
+            }
+        }
+        System.err.printf("taxa=%d clusters=%d runs=%d%n", newSet.getNumberOfTaxa(), newSet.size(), runs);
+        System.err.printf("%-10s %10s %10s%n", "", "old", "new");
+
+        long[] checksum = new long[2];
+        long[] time = new long[2];
+
+        // collapse:
+        time[0] = System.currentTimeMillis();
+        for (int run = 0; run < runs; run++)
+            checksum[0] += ((LegacyClusterSet) oldSet.collapse().elementAt(0)).clusterVec.size();
+        time[0] = System.currentTimeMillis() - time[0];
+        time[1] = System.currentTimeMillis();
+        for (int run = 0; run < runs; run++)
+            checksum[1] += ((ClusterSet) newSet.collapse().elementAt(0)).size();
+        time[1] = System.currentTimeMillis() - time[1];
+        report("collapse", time, checksum);
+
+        // remLeaf:
+        time[0] = System.currentTimeMillis();
+        for (int run = 0; run < runs; run++) {
+            for (int i = 0; i < oldSet.taxa.size(); i++)
+                checksum[0] += oldSet.remLeaf(oldSet.taxa.elementAt(i)).clusterVec.size();
+        }
+        time[0] = System.currentTimeMillis() - time[0];
+        time[1] = System.currentTimeMillis();
+        for (int run = 0; run < runs; run++) {
+            for (int i = 0; i < newSet.getNumberOfTaxa(); i++)
+                checksum[1] += newSet.remLeaf(newSet.getTaxon(i)).size();
+        }
+        time[1] = System.currentTimeMillis() - time[1];
+        report("remLeaf", time, checksum);
+
+        // restrict:
+        time[0] = System.currentTimeMillis();
+        for (int run = 0; run < runs; run++) {
+            for (int c = 0; c < oldSet.clusterVec.size(); c++)
+                checksum[0] += oldSet.restrict(oldSet.clusterVec.elementAt(c)).clusterVec.size();
+        }
+        time[0] = System.currentTimeMillis() - time[0];
+        time[1] = System.currentTimeMillis();
+        for (int run = 0; run < runs; run++) {
+            for (int c = 0; c < newSet.size(); c++)
+                checksum[1] += newSet.restrict(newSet.getCluster(c)).size();
+        }
+        time[1] = System.currentTimeMillis() - time[1];
+        report("restrict", time, checksum);
+
+        // separated:
+        time[0] = System.currentTimeMillis();
+        for (int run = 0; run < runs; run++) {
+            for (int i = 0; i < oldSet.taxa.size(); i++) {
+                for (int j = i + 1; j < oldSet.taxa.size(); j++) {
+                    if (oldSet.separated(oldSet.taxa.elementAt(i), oldSet.taxa.elementAt(j)))
+                        checksum[0]++;
+                }
+            }
+        }
+        time[0] = System.currentTimeMillis() - time[0];
+        time[1] = System.currentTimeMillis();
+        for (int run = 0; run < runs; run++) {
+            for (int i = 0; i < newSet.getNumberOfTaxa(); i++) {
+                for (int j = i + 1; j < newSet.getNumberOfTaxa(); j++) {
+                    if (newSet.separated(newSet.getTaxon(i), newSet.getTaxon(j)))
+                        checksum[1]++;
+                }
+            }
+        }
+        time[1] = System.currentTimeMillis() - time[1];
+        report("separated", time, checksum);
+
+        // contains:
+        time[0] = System.currentTimeMillis();
+        for (int run = 0; run < runs; run++) {
+            for (int c = 0; c < oldSet.clusterVec.size(); c++) {
+                if (oldSet.contains(oldSet.clusterVec.elementAt(c)))
+                    checksum[0]++;
+            }
+        }
+        time[0] = System.currentTimeMillis() - time[0];
+        time[1] = System.currentTimeMillis();
+        for (int run = 0; run < runs; run++) {
+            for (int c = 0; c < newSet.size(); c++) {
+                if (newSet.contains(newSet.getCluster(c)))
+                    checksum[1]++;
+            }
+        }
+        time[1] = System.currentTimeMillis() - time[1];
+        report("contains", time, checksum);
+
+        System.err.println("checksum: old=" + checksum[0] + " new=" + checksum[1]);
+        if (checksum[0] != checksum[1])
+            System.err.println("Error: old and new implementations give different results");
+    }
+
+    /**
+     * report the times of one operation
+     */
+    private static void report(String operation, long[] time, long[] checksum) {
+        System.err.printf("%-10s %8dms %8dms%s%n", operation + ":", time[0], time[1], (checksum[0] != checksum[1] ? " (results differ)" : ""));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * DTLBenchmark.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.progs;
+
+import dendroscope.dtl.DTL;
+import dendroscope.dtl.DTLEngine;
+import dendroscope.dtl.Reconciliation;
+import dendroscope.dtl.SpeciesSubdivision;
+import jloda.phylo.PhyloTree;
+import jloda.swing.util.CommandLineOptions;
+import jloda.util.ProgramProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * times the DTL reconciliation of Structure against the array-based DTLEngine on random pairs of species and gene
+ * trees with random event costs, and reports each pair for which the costs differ, or for which the traceback of the
+ * engine does not explain the cost
+ */
+public class DTLBenchmark {
+    /**
+     * run the benchmark
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        options.setDescription("dtl-benchmark - compare Structure and DTLEngine on random trees");
+        int runs = options.getOption("-r", "number of random tree pairs", 1000);
+        int maxDepth = options.getOption("-d", "maximum depth of species trees", 8);
+        int maxGeneLeaves = options.getOption("-g", "maximum number of leaves of gene trees", 20);
+        int maxCost = options.getOption("-c", "maximum event cost", 4);
+        int seed = options.getOption("-s", "random seed", 666);
+        options.done();
+
+        ProgramProperties.setUseGUI(false);
+
+        Random random = new Random(seed);
+        long structureTime = 0;
+        long engineTime = 0;
+        int mismatches = 0;
+        int tracebackErrors = 0;
+
+        for (int run = 0; run < runs; run++) {
+            List<String> speciesLabels = new ArrayList<>();
+            String species = createRandomSpeciesTree(random, 1 + random.nextInt(maxDepth), speciesLabels) + ";";
+            String gene = createRandomGeneTree(random, 1 + random.nextInt(maxGeneLeaves), speciesLabels) + ";";
+            int dupCost = 1 + random.nextInt(maxCost);
+            int transCost = 1 + random.nextInt(maxCost);
+            int lossCost = 1 + random.nextInt(maxCost);
+
+            PhyloTree speciesTree = new PhyloTree();
+            speciesTree.parseBracketNotation(species, true);
+            PhyloTree geneTree = new PhyloTree();
+            geneTree.setAllowMultiLabeledNodes(true);
+            geneTree.parseBracketNotation(gene, true);
+
+            long start = System.nanoTime();
+            int structureCost = DTL.apply(speciesTree, geneTree, dupCost, transCost, lossCost);
+            structureTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            DTLEngine engine = new DTLEngine(new SpeciesSubdivision(speciesTree), dupCost, transCost, lossCost);
+            int engineCost = engine.getCost(geneTree);
+            engineTime += System.nanoTime() - start;
+
+            if (engineCost != structureCost) {
+                mismatches++;
+                System.err.println("Cost differs: Structure=" + structureCost + " DTLEngine=" + engineCost + " costs=" + dupCost + "," + transCost + "," + lossCost);
+                System.err.println("Species: " + species);
+                System.err.println("Gene:    " + gene);
+            } else {
+                Reconciliation reconciliation;
+                try {
+                    reconciliation = engine.reconcile(geneTree);
+                } catch (IllegalArgumentException ex) { // gene tree cannot be reconciled, and both agree on that
+                    continue;
+                }
+                if (reconciliation.getCost() != engineCost || dupCost * reconciliation.getDuplications() + transCost * reconciliation.getTransfers()
+                                                               + lossCost * reconciliation.getLosses() != engineCost) {
+                    tracebackErrors++;
+                    System.err.println("Traceback does not explain cost " + engineCost + ": " + reconciliation);
+                    System.err.println("Species: " + species);
+                    System.err.println("Gene:    " + gene);
+                }
+            }
+        }
+        System.err.printf("runs=%d%n", runs);
+        System.err.printf("Structure: %8dms%n", structureTime / 1000000);
+        System.err.printf("DTLEngine: %8dms%n", engineTime / 1000000);
+        if (mismatches > 0 || tracebackErrors > 0)
+            System.err.println("Error: costs differ for " + mismatches + " pairs, traceback fails for " + tracebackErrors + " pairs");
+    }
+
+    /**
+     * creates a random species tree with leaves s0, s1,..., in which nodes have one or two children, so that the time
+     * layers contain nodes of degree one
+     *
+     * @return tree in Newick format, without semicolon
+     */
+    private static String createRandomSpeciesTree(Random random, int depth, List<String> labels) {
+        final double p = random.nextDouble();
+        if (depth == 0 || p < 0.2) {
+            final String label = "s" + labels.size();
+            labels.add(label);
+            return label;
+        } else if (p < 0.55)
+            return "(" + createRandomSpeciesTree(random, depth - 1, labels) + ")";
+        else
+            return "(" + createRandomSpeciesTree(random, depth - 1, labels) + "," + createRandomSpeciesTree(random, depth - 1, labels) + ")";
+    }
+
+    /**
+     * creates a random binary gene tree whose leaves are labeled by random species, which may occur more than once
+     *
+     * @return tree in Newick format, without semicolon
+     */
+    private static String createRandomGeneTree(Random random, int numberOfLeaves, List<String> labels) {
+        if (numberOfLeaves == 1)
+            return labels.get(random.nextInt(labels.size()));
+        final int left = 1 + random.nextInt(numberOfLeaves - 1);
+        return "(" + createRandomGeneTree(random, left, labels) + "," + createRandomGeneTree(random, numberOfLeaves - left, labels) + ")";
+    }
+}
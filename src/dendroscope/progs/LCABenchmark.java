@@ -0,0 +1,148 @@
+/*
+ * LCABenchmark.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.progs;
+
+import dendroscope.util.EulerTourLCA;
+import dendroscope.util.LCA_LSACalculation;
+import jloda.graph.Node;
+import jloda.phylo.PhyloTree;
+import jloda.swing.util.CommandLineOptions;
+import jloda.util.ProgramProperties;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * times construction, memory and queries of the Euler-tour LCA structure against LCA_LSACalculation, on a tree read
+ * from a file or on a random binary tree, and checks that both give the same answers
+ */
+public class LCABenchmark {
+    /**
+     * run the benchmark
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        options.setDescription("lca-benchmark - time LCA structures on a tree");
+        String inputFile = options.getOption("-i", "input file containing a tree in Newick format (default: random tree)", "");
+        int numberOfTaxa = options.getOption("-n", "number of taxa of random tree", 100000);
+        int numberOfQueries = options.getOption("-q", "number of queries", 1000000);
+        int seed = options.getOption("-s", "random seed", 666);
+        options.done();
+
+        ProgramProperties.setUseGUI(false);
+
+        Random random = new Random(seed);
+        PhyloTree tree = new PhyloTree();
+        if (inputFile.length() > 0) {
+            StringBuilder buf = new StringBuilder();
+            try (BufferedReader r = new BufferedReader(new FileReader(inputFile))) {
+                String line;
+                while ((line = r.readLine()) != null && !buf.toString().contains(";"))
+                    buf.append(line.trim());
+            }
+            tree.parseBracketNotation(buf.substring(0, buf.indexOf(";") + 1), true);
+        } else
+            tree.parseBracketNotation(createRandomTree(random, numberOfTaxa), true);
+
+        Node[] nodes = new Node[tree.getNumberOfNodes()];
+        int count = 0;
+        for (Node v : tree.nodes())
+            nodes[count++] = v;
+        Node[] a = new Node[numberOfQueries];
+        Node[] b = new Node[numberOfQueries];
+        for (int i = 0; i < numberOfQueries; i++) {
+            a[i] = nodes[random.nextInt(nodes.length)];
+            b[i] = nodes[random.nextInt(nodes.length)];
+        }
+        System.err.printf("nodes=%d queries=%d%n", nodes.length, numberOfQueries);
+
+        long memory = usedMemory();
+        long start = System.currentTimeMillis();
+        LCA_LSACalculation oldLCA = new LCA_LSACalculation(tree);
+        System.err.printf("LCA_LSACalculation: construction %6dms, memory %8dkb%n", System.currentTimeMillis() - start, (usedMemory() - memory) / 1024);
+        start = System.currentTimeMillis();
+        Node[] oldResult = new Node[numberOfQueries];
+        for (int i = 0; i < numberOfQueries; i++)
+            oldResult[i] = oldLCA.getLCA(a[i], b[i]);
+        System.err.printf("LCA_LSACalculation: queries      %6dms%n", System.currentTimeMillis() - start);
+        oldLCA = null;
+
+        memory = usedMemory();
+        start = System.currentTimeMillis();
+        EulerTourLCA newLCA = new EulerTourLCA(tree);
+        System.err.printf("EulerTourLCA:       construction %6dms, memory %8dkb%n", System.currentTimeMillis() - start, (usedMemory() - memory) / 1024);
+        start = System.currentTimeMillis();
+        Node[] newResult = new Node[numberOfQueries];
+        for (int i = 0; i < numberOfQueries; i++)
+            newResult[i] = newLCA.getLCA(a[i], b[i]);
+        System.err.printf("EulerTourLCA:       queries      %6dms%n", System.currentTimeMillis() - start);
+
+        int[] indicesA = new int[numberOfQueries];
+        int[] indicesB = new int[numberOfQueries];
+        for (int i = 0; i < numberOfQueries; i++) {
+            indicesA[i] = newLCA.getIndex(a[i]);
+            indicesB[i] = newLCA.getIndex(b[i]);
+        }
+        start = System.currentTimeMillis();
+        int[] batchResult = newLCA.getLCAs(indicesA, indicesB);
+        System.err.printf("EulerTourLCA:       batch        %6dms%n", System.currentTimeMillis() - start);
+
+        int differences = 0;
+        for (int i = 0; i < numberOfQueries; i++) {
+            if (oldResult[i] != newResult[i] || newLCA.getNode(batchResult[i]) != newResult[i])
+                differences++;
+        }
+        if (differences > 0)
+            System.err.println("Error: results differ for " + differences + " queries");
+    }
+
+    /**
+     * gets the amount of memory in use, after garbage collection
+     *
+     * @return bytes
+     */
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+
+    /**
+     * creates a random rooted binary tree on taxa t1...tn by joining random pairs of subtrees
+     *
+     * @return tree in Newick format
+     */
+    private static String createRandomTree(Random random, int numberOfTaxa) {
+        List<String> subtrees = new ArrayList<>();
+        for (int t = 1; t <= numberOfTaxa; t++)
+            subtrees.add("t" + t);
+        while (subtrees.size() > 1) {
+            int i = random.nextInt(subtrees.size());
+            String first = subtrees.get(i);
+            subtrees.set(i, subtrees.get(subtrees.size() - 1));
+            subtrees.remove(subtrees.size() - 1);
+            int j = random.nextInt(subtrees.size());
+            subtrees.set(j, "(" + first + "," + subtrees.get(j) + ")");
+        }
+        return subtrees.get(0) + ";";
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * LegacyZClosure.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.progs;
+
+import dendroscope.consensus.Split;
+import dendroscope.consensus.SplitFilter;
+import dendroscope.consensus.SplitSystem;
+import dendroscope.consensus.Taxa;
+import dendroscope.consensus.Utilities;
+import jloda.phylo.PhyloTree;
+import jloda.util.Basic;
+import jloda.util.CanceledException;
+import jloda.util.progress.ProgressCmdLine;
+import jloda.util.progress.ProgressListener;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+
+/**
+ * the previous implementation of the Z-closure in dendroscope.consensus.ZClosure, kept so that ZClosureBenchmark can
+ * compare it with the current one. Runs are handed to the threads using a synchronous queue, results are merged in
+ * a synchronized block and the closure replaces Split objects and tracks positions in hash sets, as before. Only the
+ * shuffles differ: the shared Random has been replaced by the random number generators of the current implementation,
+ * one per run, so that both shuffle the splits in the same way. The previous closure visits positions in the order
+ * of a hash set, which can lead to different splits, so it can optionally visit them in ascending order, as the current
+ * one does. Filtering and the average relative edge weights are not included
+ * Daniel Huson, 7.2007
+ */
+class LegacyZClosure {
+    private final long optionSeed;
+    private final int optionNumberOfRuns;
+    private final boolean ascendingOrder;
+
+    private Taxa taxa;
+
+    /**
+     * constructor
+     *
+     * @param ascendingOrder visit positions in ascending order, rather than in the order of a hash set
+     */
+    LegacyZClosure(long optionSeed, int optionNumberOfRuns, boolean ascendingOrder) {
+        this.optionSeed = optionSeed;
+        this.optionNumberOfRuns = optionNumberOfRuns;
+        this.ascendingOrder = ascendingOrder;
+    }
+
+    /**
+     * applies Z-closure to a collection of trees.
+     *
+     * @param trees            @return full splits obtained by Z-closure
+     */
+    public SplitSystem apply(ProgressListener progressListener, PhyloTree[] trees) throws CanceledException {
+        taxa = new Taxa();
+        BitSet[] tree2taxa = new BitSet[trees.length];
+        SplitSystem[] tree2splits = new SplitSystem[trees.length];
+        final SplitSystem inputSplits = new SplitSystem();
+        boolean inputSplitsAreAllFull = Utilities.getSplitsFromTrees(progressListener, trees, taxa, tree2taxa, tree2splits, inputSplits);  // also sets tree2taxa and tree2splits
+
+        System.err.println("Input splits from trees: " + inputSplits.size());
+
+        SplitSystem splits = new SplitSystem();
+        splits.addAll(inputSplits);
+
+        if (!inputSplitsAreAllFull) {
+            final SplitSystem finalSplits = splits;
+            progressListener.setSubtask("Computing Z-closure");
+            progressListener.setMaximum(optionNumberOfRuns);
+            progressListener.setProgress(0);
+
+            // the random number generators of the runs, split off in run order, as in the current implementation:
+            final SplittableRandom seedRandom = new SplittableRandom(optionSeed);
+            final SplittableRandom[] randoms = new SplittableRandom[optionNumberOfRuns + 1];
+            for (int run = 1; run <= optionNumberOfRuns; run++)
+                randoms[run] = seedRandom.split();
+
+            // parallel implementation!
+            ExecutorService executor = Executors.newCachedThreadPool();
+            try {
+                progressListener.setCancelable(false);
+
+                int numberOfThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), this.optionNumberOfRuns));
+                final SynchronousQueue<Integer> queue = new SynchronousQueue<>();
+                final CountDownLatch countDownLatch = new CountDownLatch(this.optionNumberOfRuns);
+                final ProgressCmdLine progress = new ProgressCmdLine();
+
+                for (int i = 1; i <= numberOfThreads; i++) {
+                    executor.execute(() -> {
+                        while (true) {
+                            try {
+                                int run = queue.take();
+
+                                List<Split> splitsInRandomOrder = Arrays.asList(shuffle(inputSplits.asArray(), randoms[run]));
+                                SplitSystem result = null;
+                                try {
+                                    result = computeClosure(progress, splitsInRandomOrder);
+                                } catch (CanceledException ignored) {
+                                }
+                                synchronized (finalSplits) {
+                                    finalSplits.addAll(result);
+                                }
+                            } catch (InterruptedException e) {
+                                return;
+                            } finally {
+                                countDownLatch.countDown();
+                            }
+                        }
+                    });
+                }
+
+                for (int i = 1; i <= this.optionNumberOfRuns; i++) {
+                    try {
+                        queue.put(i);
+                        if (i == 1)
+                            progressListener.setCancelable(true);
+                        progressListener.setProgress(i);
+                    } catch (InterruptedException e) {
+                        Basic.caught(e);
+                    }
+                }
+                try {
+                    countDownLatch.await();
+                } catch (InterruptedException e) {
+                    Basic.caught(e);
+                }
+            } catch (CanceledException ex) {
+                System.err.println("CANCELED");
+                progressListener.setUserCancelled(false);
+            } finally {
+                executor.shutdownNow();
+            }
+            progressListener.setProgress(-1);
+
+            System.err.println("After z-closure: " + finalSplits.size());
+
+            splits = SplitFilter.applyRemovePartialFilter(progressListener, taxa, finalSplits);
+            System.err.println("After removal of partial splits: " + splits.size());
+        }
+
+        // add all missing trivial splits
+        int totalTrivialAdded = 0;
+        for (Iterator it = taxa.iterator(); it.hasNext(); ) {
+            int index = taxa.indexOf((String) it.next());
+            BitSet A = new BitSet();
+            A.set(index);
+            BitSet B = (BitSet) taxa.getBits().clone();
+            B.set(index, false);
+
+            Split split = new Split(A, B);
+            if (!splits.contains(split)) {
+                splits.addSplit(split);
+                totalTrivialAdded++;
+            }
+        }
+        if (totalTrivialAdded > 0)
+            System.err.println("Trivial added: " + totalTrivialAdded);
+
+        setWeightsConfidences(progressListener, tree2taxa, tree2splits, splits);
+        return splits;
+    }
+
+    /**
+     * returns a copy of the array in random order, in the same way as the current implementation
+     *
+     * @return shuffled copy
+     */
+    private static Split[] shuffle(Split[] array, SplittableRandom random) {
+        Split[] result = array.clone();
+        for (int i = result.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Split tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return result;
+    }
+
+    /**
+     * computes the "in place" Z-closure
+     *
+     * @param progressListener the progressListenerument
+     */
+    private SplitSystem computeClosure(ProgressListener progressListener, Collection<Split> inputSplits) throws CanceledException {
+        Set<Integer> seniorSplits = createPositionSet();
+        Set<Integer> activeSplits = createPositionSet();
+        Set<Integer> newSplits = createPositionSet();
+
+        // setup "in place" array
+        Split[] splits = new Split[inputSplits.size()];
+        {
+            int pos = 0;
+            for (Split inputSplit : inputSplits) {
+                splits[pos] = inputSplit;
+                seniorSplits.add(pos);
+                progressListener.setProgress(-1);
+                pos++;
+            }
+        }
+
+        // init:
+        {
+            for (int pos1 = 0; pos1 < splits.length; pos1++) {
+
+                for (int pos2 = pos1 + 1; pos2 < splits.length; pos2++) {
+                    Split ps1 = splits[pos1];
+                    Split ps2 = splits[pos2];
+                    Split qs1 = new Split();
+                    Split qs2 = new Split();
+                    if (applyZRule(ps1, ps2, qs1, qs2)) {
+                        splits[pos1] = qs1;
+                        splits[pos2] = qs2;
+                        newSplits.add(pos1);
+                        newSplits.add(pos2);
+                    }
+                    progressListener.setProgress(-1);
+                }
+            }
+        }
+
+        // main loop:
+        {
+            while (newSplits.size() != 0) {
+                seniorSplits.addAll(activeSplits);
+                activeSplits = newSplits;
+                newSplits = createPositionSet();
+
+                for (Integer seniorSplit : seniorSplits) {
+
+                    for (Integer activeSplit : activeSplits) {
+                        Split ps1 = splits[(seniorSplit)];
+                        Split ps2 = splits[(activeSplit)];
+                        Split qs1 = new Split();
+                        Split qs2 = new Split();
+                        if (applyZRule(ps1, ps2, qs1, qs2)) {
+                            splits[(seniorSplit)] = qs1;
+                            splits[(activeSplit)] = qs2;
+                            newSplits.add((seniorSplit));
+                            newSplits.add((activeSplit));
+                        }
+                        progressListener.setProgress(-1);
+                    }
+                }
+                for (Integer pos1 : activeSplits) {
+                    for (Integer pos2 : activeSplits) {
+                        Split ps1 = splits[pos1];
+                        Split ps2 = splits[pos2];
+                        Split qs1 = new Split();
+                        Split qs2 = new Split();
+                        if (applyZRule(ps1, ps2, qs1, qs2)) {
+                            splits[pos1] = qs1;
+                            splits[pos2] = qs2;
+                            newSplits.add(pos1);
+                            newSplits.add(pos2);
+                        }
+                        progressListener.setProgress(-1);
+                    }
+                }
+            }
+        }
+
+        SplitSystem result = new SplitSystem();
+        for (Integer pos1 : seniorSplits) {
+            result.addSplit(splits[pos1]);
+        }
+        for (Integer pos1 : activeSplits) {
+            result.addSplit(splits[pos1]);
+        }
+        return result;
+    }
+
+    /**
+     * creates a set of positions
+     *
+     * @return hash set, or tree set, if positions are to be visited in ascending order
+     */
+    private Set<Integer> createPositionSet() {
+        return ascendingOrder ? new TreeSet<>() : new HashSet<>();
+    }
+
+    /**
+     * apply the Z rule, if applicable. That is, replaces A1/B1 and A2/B2
+     * by  A1/(B1uB2)  and (A1uA2)/B2
+     *
+     * @param ps1 input partial split 1
+     * @param ps2 input partial split 2
+     * @param qs1 output 1
+     * @param qs2 output2
+     * @return true, if rule was applied and resulting splits differ from the original
+     * ones
+     */
+    private static boolean applyZRule(Split ps1, Split ps2, Split qs1, Split qs2) {
+        for (int i = 0; i <= 1; i++) {
+            BitSet A1 = ps1.getSide(i);
+            BitSet B1 = ps1.getSide(1 - i);
+            for (int j = 0; j <= 1; j++) {
+                BitSet A2 = ps2.getSide(j);
+                BitSet B2 = ps2.getSide(1 - j);
+
+                if (A1.intersects(A2) && A2.intersects(B1) && B1.intersects(B2) && A1.intersects(B2) == false) {
+                    BitSet B1uB2 = getUnion(B1, B2);
+                    qs1.set(A1, B1uB2);
+
+                    BitSet A1uA2 = getUnion(A1, A2);
+                    qs2.set(A1uA2, B2);
+                    return !((ps1.equals(qs1) && ps2.equals(qs2)) || (ps1.equals(qs2) && ps2.equals(qs1)));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * gets the union of two bit sets
+     *
+     * @return union
+     */
+    private static BitSet getUnion(BitSet a, BitSet b) {
+        BitSet result = (BitSet) a.clone();
+        result.or(b);
+        return result;
+    }
+
+    /**
+     * set the weight to the mean weight of all projections of this split and confidence to
+     * the count of trees containing a projection of the split
+     *
+     * @param tree2splits i-th component contains all partial splits of i-th tree
+     * @param tree2taxa   taxa contained in i-th tree
+     * @param splits      full splits computed by z-closure
+     */
+    private void setWeightsConfidences(ProgressListener progressListener, BitSet[] tree2taxa,
+                                       SplitSystem[] tree2splits, SplitSystem splits) throws CanceledException {
+        for (Iterator it = splits.iterator(); it.hasNext(); ) {
+            Split current = (Split) it.next();
+            progressListener.setProgress(-1);
+
+            double sum = 0;
+            int total = 0;
+            for (int t = 0; t < tree2splits.length; t++) {
+                Split projection = current.getInduced(tree2taxa[t]);
+                if (projection != null)  // split cuts support set of tree t
+                {
+                    if (tree2splits[t].contains(projection)) {
+                        sum += tree2splits[t].get(projection).getWeight();
+                    }
+                    total += tree2taxa[t].cardinality();
+                }
+            }
+            current.setWeight(sum / total); // the default edge weights, TreeSizeWeightedMean
+            current.setConfidence(total);
+        }
+    }
+}
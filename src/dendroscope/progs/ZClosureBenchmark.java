@@ -0,0 +1,122 @@
+/*
+ * ZClosureBenchmark.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.progs;
+
+import dendroscope.consensus.Split;
+import dendroscope.consensus.SplitSystem;
+import dendroscope.consensus.ZClosure;
+import jloda.phylo.PhyloTree;
+import jloda.swing.util.CommandLineOptions;
+import jloda.util.ProgramProperties;
+import jloda.util.progress.ProgressSilent;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * times the Z-closure on random partial trees, using the previous implementation, and using the current one with one
+ * thread and with all threads. Checks that the current one gives the same splits with both numbers of threads as the
+ * previous one does when it visits the splits in the same order, and reports how many splits differ from those of
+ * the previous one as it was
+ */
+public class ZClosureBenchmark {
+    /**
+     * run the benchmark
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        options.setDescription("zclosure-benchmark - time Z-closure on random partial trees");
+        int numberOfTaxa = options.getOption("-n", "number of taxa", 200);
+        int numberOfTrees = options.getOption("-t", "number of trees", 50);
+        int missing = options.getOption("-m", "percent of taxa missing from each tree", 20);
+        int runs = options.getOption("-r", "number of Z-closure runs", 10);
+        int seed = options.getOption("-s", "random seed", 666);
+        options.done();
+
+        ProgramProperties.setUseGUI(false);
+
+        Random random = new Random(seed);
+        PhyloTree[] trees = new PhyloTree[numberOfTrees];
+        for (int i = 0; i < numberOfTrees; i++)
+            trees[i] = createRandomPartialTree(random, numberOfTaxa, missing);
+
+        long start = System.currentTimeMillis();
+        SplitSystem legacySplits = new LegacyZClosure(seed, runs, false).apply(new ProgressSilent(), trees);
+        long legacyTime = System.currentTimeMillis() - start;
+        System.err.printf("previous: splits=%d time=%dms%n", legacySplits.size(), legacyTime);
+        Set<Split> legacy = new HashSet<>(legacySplits.asList());
+
+        // the previous implementation, visiting the splits in the same order as the current one:
+        Set<Split> reference = new HashSet<>(new LegacyZClosure(seed, runs, true).apply(new ProgressSilent(), trees).asList());
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads : new int[]{1, cores}) {
+            ZClosure zClosure = new ZClosure();
+            zClosure.setOptionSeed(seed);
+            zClosure.setOptionNumberOfRuns(runs);
+            zClosure.setOptionNumberOfThreads(threads);
+            start = System.currentTimeMillis();
+            SplitSystem splits = zClosure.apply(new ProgressSilent(), trees);
+            long time = System.currentTimeMillis() - start;
+            System.err.printf("threads=%d splits=%d time=%dms speedup=%.2f%n", threads, splits.size(), time, legacyTime / (double) Math.max(1, time));
+
+            Set<Split> set = new HashSet<>(splits.asList());
+            if (!reference.equals(set))
+                System.err.println("Error: splits differ from those of the previous implementation in the same order");
+            if (threads == 1)
+                System.err.printf("splits not computed by the previous implementation: %d, missing: %d%n", countMissing(legacy, set), countMissing(set, legacy));
+        }
+    }
+
+    /**
+     * counts the splits of the second set that are not contained in the first
+     *
+     * @return number of splits not contained
+     */
+    private static int countMissing(Set<Split> a, Set<Split> b) {
+        int count = 0;
+        for (Split split : b) {
+            if (!a.contains(split))
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * creates a random rooted binary tree on a random subset of the taxa t1...tn
+     *
+     * @return tree
+     */
+    private static PhyloTree createRandomPartialTree(Random random, int numberOfTaxa, int percentMissing) throws IOException {
+        List<String> subtrees = new ArrayList<>();
+        for (int t = 1; t <= numberOfTaxa; t++)
+            subtrees.add("t" + t);
+        Collections.shuffle(subtrees, random);
+        int keep = Math.max(3, numberOfTaxa - (numberOfTaxa * percentMissing) / 100);
+        subtrees = new ArrayList<>(subtrees.subList(0, Math.min(keep, numberOfTaxa)));
+        while (subtrees.size() > 1) {
+            String a = subtrees.remove(random.nextInt(subtrees.size()));
+            String b = subtrees.remove(random.nextInt(subtrees.size()));
+            subtrees.add("(" + a + ":1," + b + ":1)");
+        }
+        PhyloTree tree = new PhyloTree();
+        tree.parseBracketNotation(subtrees.get(0) + ";", true);
+        return tree;
+    }
+}
@@ -109,7 +109,7 @@ public class Simplistic {
         /*System.out.println( "print list:");
         t.printList();*/
 
-        System.out.println(t.getTripVec().size() + " triplets " + " for " + allTaxa.size() + " taxa");
+        System.out.println(t.size() + " triplets " + " for " + allTaxa.size() + " taxa");
 
         int[] errorTrip = new int[3];
 
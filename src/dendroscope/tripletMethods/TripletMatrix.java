@@ -18,45 +18,34 @@
  */
 package dendroscope.tripletMethods;
 
-import java.util.Vector;
+import java.util.Arrays;
 
 /**
  * This class encode triplets
+ * <p/>
+ * Each triplet ij|z with a non-zero value is kept in a packed triplet store and the values are kept in a parallel
+ * array, so memory is proportional to the number of triplets, not to dim*dim*dim
  *
  * @author celine scornavacca, 6.2010
  */
 
 public class TripletMatrix {
 
-    private Vector<Vector<Vector<Integer>>> GroupOfTriplets;
+    private TripletStore triplets;
+    private int[] values;
     private int dim; // the dimension of the matrix dim * dim * dim
 
 
     public void setDim(int dimTrees) {
         dim = dimTrees;
-        GroupOfTriplets = new Vector<>();
-        GroupOfTriplets.setSize(dimTrees);
-        for (int i = 0; i < dimTrees; ++i) {
-            GroupOfTriplets.setElementAt(new Vector<Vector<Integer>>(), i);
-            GroupOfTriplets.get(i).setSize(dimTrees);
-            for (int j = 0; j < dimTrees; ++j) {
-                GroupOfTriplets.get(i).setElementAt(new Vector<Integer>(), j);
-                GroupOfTriplets.get(i).get(j).setSize(dimTrees);
-                for (int z = 0; z < dimTrees; ++z)
-                    GroupOfTriplets.get(i).get(j).set(z, 0);
-            }
-        }
+        triplets = new TripletStore();
+        values = new int[16];
     }
 
 
     public void deleteMatrix() {
-        for (int i = 0; i < dim; i++) {
-            for (int j = 0; j < dim; j++) {
-                (GroupOfTriplets.get(i).get(j)).removeAllElements();
-            }
-            (GroupOfTriplets.get(i)).removeAllElements();
-        }
-        (GroupOfTriplets).removeAllElements();
+        triplets = new TripletStore();
+        values = new int[16];
     }
 
 
@@ -65,17 +54,21 @@ public class TripletMatrix {
     }
 
     int getValue(int i, int j, int z) {
-        if (i <= j)
-            return GroupOfTriplets.get(i).get(j).get(z);
-        else
-            return GroupOfTriplets.get(j).get(i).get(z);
+        int index = triplets.indexOf(i, j, z);
+        return (index == -1 ? 0 : values[index]);
     }
 
     void setValue(int i, int j, int z, int value) {
-        if (i <= j)
-            GroupOfTriplets.get(i).get(j).set(z, value);
-        else
-            GroupOfTriplets.get(j).get(i).set(z, value);
+        int index = triplets.indexOf(i, j, z);
+        if (index == -1) {
+            if (value == 0)
+                return;
+            triplets.add(i, j, z);
+            index = triplets.size() - 1;
+            if (index == values.length)
+                values = Arrays.copyOf(values, 2 * values.length);
+        }
+        values[index] = value;
     }
 
 
@@ -90,31 +83,21 @@ public class TripletMatrix {
 
     void print() {
 
-        for (int i = 0; i < dim; i++) {
-            for (int j = i; j < dim; j++) {
-                for (int z = 0; z < dim; z++) {
-                    if (GroupOfTriplets.get(i).get(j).get(z) != 0) {
-                        System.out.println(i + "," + j + "|" + z);
-                    }
-                }
+        for (int[] t : triplets.getSorted()) {
+            if (getValue(t[0], t[1], t[2]) != 0) {
+                System.out.println(t[0] + "," + t[1] + "|" + t[2]);
             }
         }
     }
 
 
     void copy(TripletMatrix R) {
-        for (int i = 0; i < dim; i++) {
-            for (int j = i; j < dim; j++) {
-                for (int z = 0; z < dim; z++) {
-                    if (getValue(i, j, z) != 0)
-                        R.setValue(i, j, z, getValue(i, j, z));
-
-                }
+        for (int index = 0; index < triplets.size(); index++) {
+            if (values[index] != 0) {
+                int[] t = triplets.get(index);
+                R.setValue(t[0], t[1], t[2], values[index]);
             }
         }
     }
 
 }
-
-
-    
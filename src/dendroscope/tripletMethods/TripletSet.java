@@ -30,23 +30,23 @@ import java.util.Vector;
  * To change this template use File | Settings | File Templates.
  */
 class TripletSet {
-    private Vector tripVec;
+    private TripletStore triplets;
     private int numLeaves;
     private boolean finalised;
-    private boolean[][][] lookup;
 
     public TripletSet() {
-        tripVec = new Vector();
+        triplets = new TripletStore();
         numLeaves = 0;
         finalised = false;
     }
 
-    public Vector getTripVec() {
-        return tripVec;
-    }
-
-    public void setTripVec(Vector tripVec) {
-        this.tripVec = tripVec;
+    /**
+     * get the number of triplets
+     *
+     * @return number of triplets
+     */
+    public int size() {
+        return triplets.size();
     }
 
     public int getNumLeaves() {
@@ -65,20 +65,15 @@ class TripletSet {
         this.finalised = finalised;
     }
 
-    public boolean[][][] getLookup() {
-        return lookup;
-    }
-
-    public void setLookup(boolean[][][] lookup) {
-        this.lookup = lookup;
-    }
+    //! Use a bit set over all triplets on leaves 1..size for look-up, suitable for dense triplet sets
 
     public void initLookup(int size) {
-        this.lookup = new boolean[size + 1][size + 1][size + 1];
-    }
-
-    public Enumeration elements() {
-        return tripVec.elements();
+        TripletStore store = new TripletStore(size);
+        for (int i = 0; i < triplets.size(); i++) {
+            int[] t = triplets.get(i);
+            store.add(t[0], t[1], t[2]);
+        }
+        triplets = store;
     }
 
 
@@ -105,122 +100,28 @@ class TripletSet {
             System.exit(0);
         }
 
-        int swap;
-
-        //! swap a and b around, if necessary...
-
-        if (a > b) {
-            swap = a;
-            a = b;
-            b = swap;
-        }
-
-        if (this.containsTriplet(a, b, c)) return;
+        if (!triplets.add(a, b, c)) return;
 
         //! What is the highest leaf seen so far?
         // celine: not used anymore since numLeaves has to be known before to construct the Map<String, Integer> taxon2ID
 
-        int highest;
-
-        if ((a > b) && (a > c)) highest = a;
-        else if ((b > a) && (b > c)) highest = b;
-        else
-            highest = c;
+        int highest = Math.max(a, Math.max(b, c));
 
         if (highest > numLeaves) {
             numLeaves = highest;
         }
-
-
-        int[] myTriplet = new int[3];
-        myTriplet[0] = a;
-        myTriplet[1] = b;
-        myTriplet[2] = c;
-
-        tripVec.add(myTriplet);
-    }
-
-
-    public boolean containsTripletFast(int a, int b, int c) {
-        return (lookup[a][b][c] || lookup[b][a][c]);
-    }
-
-    public void addTripletInMatrix(int a, int b, int c) {
-
-        lookup[a][b][c] = true;
-        lookup[b][a][c] = true;
-    }
-
-
-    public void addTripletInList(int a, int b, int c) {
-
-
-        int swap;
-
-        //! swap a and b around, if necessary...
-
-        if (a > b) {
-            swap = a;
-            a = b;
-            b = swap;
-        }
-
-        if (this.containsTripletFast(a, b, c)) return;
-
-        int[] myTriplet = new int[3];
-        myTriplet[0] = a;
-        myTriplet[1] = b;
-        myTriplet[2] = c;
-
-        tripVec.add(myTriplet);
     }
 
 
     public boolean containsTriplet(int a, int b, int c) {
-        int swap;
-
-        if (finalised == true) {
-            return (lookup[a][b][c] || lookup[b][a][c]);
-        }
-
-        //! swap a and b around, if necessary...
-
-        if (a > b) {
-            swap = a;
-            a = b;
-            b = swap;
-        }
-
-        Enumeration e = tripVec.elements();
-        while (e.hasMoreElements()) {
-            int[] triplet = (int[]) e.nextElement();
-            if ((triplet[0] == a) && (triplet[1] == b) && (triplet[2] == c)) return true;
-        }
-
-        return false;
+        return triplets.contains(a, b, c);
     }
 
 
-    //! After calling this, look-up is miles faster, BUT you can't change the set anymore!!!
+    //! After calling this, you can't change the set anymore!!! Look-up is always fast now
 
     public void finaliseAndOptimise() {
         finalised = true;
-
-        lookup = new boolean[numLeaves + 1][numLeaves + 1][numLeaves + 1];
-
-        Enumeration e = this.tripVec.elements();
-
-        while (e.hasMoreElements()) {
-            int[] t = (int[]) e.nextElement();
-
-            int x = t[0];
-            int y = t[1];
-            int z = t[2];
-
-            lookup[x][y][z] = true;
-            lookup[y][x][z] = true;
-        }
-
     }
 
 
@@ -406,7 +307,7 @@ class TripletSet {
     public Vector buildSimpleNetworks(int k) {
         Vector solutions = null;
 
-        int numTrips = this.tripVec.size();
+        int numTrips = this.size();
         float maxpercentage = (float) 0.0;
 
         Stack<StackObject> stack = new Stack<>();
@@ -818,8 +719,8 @@ class TripletSet {
 
                                 int numCon = 0;
 
-                                for (int t = 0; t < tripVec.size(); t++) {
-                                    int[] trip = (int[]) tripVec.elementAt(t);
+                                for (int t = 0; t < triplets.size(); t++) {
+                                    int[] trip = triplets.get(t);
                                     if (!exploreAgain.consistent(trip[0], trip[1], trip[2])) {
                                         isConsistent = false;
                                         break;
@@ -852,10 +753,10 @@ class TripletSet {
 
                         boolean proceed = true;
 
-                        Vector zoom = oldTrips.tripVec;
+                        TripletStore zoom = oldTrips.triplets;
 
                         for (int spin = 0; spin < zoom.size(); spin++) {
-                            int[] trip = (int[]) zoom.elementAt(spin);
+                            int[] trip = zoom.get(spin);
                             if (!exploreAgain.consistent(trip[0], trip[1], trip[2])) {
                                 proceed = false;
                                 //! System.out.println("Premature departure: early non-consistency detected.");
@@ -994,8 +895,8 @@ class TripletSet {
 
         TripletSet t = new TripletSet();
 
-        for (int scan = 0; scan < tripVec.size(); scan++) {
-            int[] trip = (int[]) tripVec.elementAt(scan);
+        for (int scan = 0; scan < triplets.size(); scan++) {
+            int[] trip = triplets.get(scan);
 
             int x = trip[0];
             int y = trip[1];
@@ -1007,16 +908,10 @@ class TripletSet {
             int yp = forwardmap[y];
             int zp = forwardmap[z];
 
-            int[] fall = new int[3];
-
-            fall[0] = xp;
-            fall[1] = yp;
-            fall[2] = zp;
-
             //! No need to arrange the order of the elements:  x < y => xp < yp
             //! check this, but it should be fine...
 
-            t.tripVec.addElement(fall);
+            t.triplets.add(xp, yp, zp);
         }
 
         t.numLeaves = remains;
@@ -1030,9 +925,8 @@ class TripletSet {
 
         AhoGraph aho = new AhoGraph(numLeaves);
 
-        Enumeration e = tripVec.elements();
-        while (e.hasMoreElements()) {
-            int[] t = (int[]) e.nextElement();
+        for (int i = 0; i < triplets.size(); i++) {
+            int[] t = triplets.get(i);
 
             aho.addEdge(t[0], t[1]);
         }
@@ -1158,9 +1052,8 @@ class TripletSet {
 
             TripletSet leftBranch = new TripletSet();
 
-            Enumeration e = tripVec.elements();
-            while (e.hasMoreElements()) {
-                int[] v = (int[]) e.nextElement();
+            for (int i = 0; i < triplets.size(); i++) {
+                int[] v = triplets.get(i);
 
                 //! We want all 3 of its elements to be in the left
                 //! partition...so for each element check whether it
@@ -1240,9 +1133,8 @@ class TripletSet {
 
             TripletSet rightBranch = new TripletSet();
 
-            Enumeration e = tripVec.elements();
-            while (e.hasMoreElements()) {
-                int[] v = (int[]) e.nextElement();
+            for (int i = 0; i < triplets.size(); i++) {
+                int[] v = triplets.get(i);
 
                 //! We want all 3 of its elements to be in the left
                 //! partition...so for each element check whether it
@@ -1561,9 +1453,8 @@ class TripletSet {
 
         TripletSet tprime = new TripletSet();
 
-        Enumeration f = tripVec.elements();
-        while (f.hasMoreElements()) {
-            int[] t = (int[]) f.nextElement();
+        for (int i = 0; i < triplets.size(); i++) {
+            int[] t = triplets.get(i);
 
             int a = map[t[0]];
             int b = map[t[1]];
@@ -1601,10 +1492,8 @@ class TripletSet {
             }
         }
 
-        Enumeration e = this.tripVec.elements();
-
-        while (e.hasMoreElements()) {
-            int[] t = (int[]) e.nextElement();
+        for (int i = 0; i < triplets.size(); i++) {
+            int[] t = triplets.get(i);
 
             if (in[t[0]] && in[t[1]] && in[t[2]]) {
                 ts.addTriplet(leafMap[t[0]], leafMap[t[1]], leafMap[t[2]]);
@@ -1620,7 +1509,7 @@ class TripletSet {
         for (int i = 0; i < numLeaves; i++) {
             for (int j = i; j < numLeaves; j++) {
                 for (int z = 0; z < numLeaves; z++) {
-                    if (this.containsTripletFast(i, j, z)) {
+                    if (this.containsTriplet(i, j, z)) {
                         System.out.println(i + "," + j + "|" + z);
                     }
                 }
@@ -1630,10 +1519,8 @@ class TripletSet {
 
     void printList() {
 
-        Enumeration e = tripVec.elements();
-        //tripl
-        while (e.hasMoreElements()) {
-            int[] t = (int[]) e.nextElement();
+        for (int i = 0; i < triplets.size(); i++) {
+            int[] t = triplets.get(i);
             System.out.println(t[0] + "," + t[1] + "|" + t[2]);
 
         }
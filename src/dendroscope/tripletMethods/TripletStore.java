@@ -0,0 +1,222 @@
+/*
+ * TripletStore.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.tripletMethods;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * a set of triplets ab|c, stored in insertion order as packed longs. Membership is determined either by a bit set over
+ * the canonical indices of all triplets on leaves 1..n, which requires 3*C(n,3) bits and is used for dense sets, or by an
+ * open-addressing hash table over the packed triplets, which is used for sparse sets. A dense store switches to hashing
+ * if a triplet is added that has no canonical index
+ */
+class TripletStore {
+    private static final int BITS = 21;
+    private static final long MASK = (1L << BITS) - 1;
+
+    private long[] triplets = new long[16];
+    private int size;
+
+    private final int numberOfLeaves; // leaves of dense store, 0 if hashed
+    private BitSet dense;
+    private int[] slots; // index of triplet plus one, or 0 for empty slot
+
+    /**
+     * constructs a hashed store
+     */
+    TripletStore() {
+        this(0);
+    }
+
+    /**
+     * constructs a store for triplets on leaves 1..numberOfLeaves. If the number of leaves is too large for a
+     * bit set of all triplets, the store is hashed
+     */
+    TripletStore(int numberOfLeaves) {
+        if (numberOfLeaves >= 3 && 3 * choose3(numberOfLeaves) < Integer.MAX_VALUE) {
+            this.numberOfLeaves = numberOfLeaves;
+            dense = new BitSet();
+        } else {
+            this.numberOfLeaves = 0;
+            slots = new int[32];
+        }
+    }
+
+    /**
+     * get the number of triplets
+     *
+     * @return size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * gets the i-th triplet, in insertion order
+     *
+     * @return the triplet {a,b,c} with a<=b
+     */
+    int[] get(int i) {
+        final long key = triplets[i];
+        return new int[]{(int) (key >>> (2 * BITS)), (int) ((key >>> BITS) & MASK), (int) (key & MASK)};
+    }
+
+    /**
+     * does the store contain the triplet ab|c?
+     *
+     * @return true, if contained
+     */
+    boolean contains(int a, int b, int c) {
+        if (dense != null) {
+            final long index = getCanonicalIndex(a, b, c);
+            return index != -1 && dense.get((int) index);
+        } else
+            return indexOf(pack(a, b, c)) != -1;
+    }
+
+    /**
+     * adds the triplet ab|c, if not already contained
+     *
+     * @return true, if added
+     */
+    boolean add(int a, int b, int c) {
+        final long key = pack(a, b, c);
+        if (dense != null) {
+            final long index = getCanonicalIndex(a, b, c);
+            if (index == -1)
+                switchToHashing();
+            else if (dense.get((int) index))
+                return false;
+            else {
+                dense.set((int) index);
+                append(key);
+                return true;
+            }
+        }
+        if (indexOf(key) != -1)
+            return false;
+        append(key);
+        if (2 * size > slots.length)
+            rehash(2 * slots.length);
+        else
+            insert(key, size - 1);
+        return true;
+    }
+
+    /**
+     * gets the insertion index of the triplet ab|c. A dense store is switched to hashing
+     *
+     * @return index or -1, if not contained
+     */
+    int indexOf(int a, int b, int c) {
+        if (dense != null)
+            switchToHashing();
+        return indexOf(pack(a, b, c));
+    }
+
+    /**
+     * gets all triplets in lexicographic order
+     *
+     * @return triplets
+     */
+    int[][] getSorted() {
+        final long[] keys = Arrays.copyOf(triplets, size);
+        Arrays.sort(keys);
+        final int[][] result = new int[size][];
+        for (int i = 0; i < size; i++)
+            result[i] = new int[]{(int) (keys[i] >>> (2 * BITS)), (int) ((keys[i] >>> BITS) & MASK), (int) (keys[i] & MASK)};
+        return result;
+    }
+
+    private void append(long key) {
+        if (size == triplets.length)
+            triplets = Arrays.copyOf(triplets, 2 * triplets.length);
+        triplets[size++] = key;
+    }
+
+    private int indexOf(long key) {
+        final int mask = slots.length - 1;
+        for (int slot = hash(key) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (triplets[slots[slot] - 1] == key)
+                return slots[slot] - 1;
+        }
+        return -1;
+    }
+
+    private void insert(long key, int index) {
+        final int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        while (slots[slot] != 0)
+            slot = (slot + 1) & mask;
+        slots[slot] = index + 1;
+    }
+
+    private void rehash(int length) {
+        slots = new int[length];
+        for (int i = 0; i < size; i++)
+            insert(triplets[i], i);
+    }
+
+    private void switchToHashing() {
+        dense = null;
+        rehash(Math.max(32, Integer.highestOneBit(Math.max(1, 4 * size - 1)) << 1));
+    }
+
+    /**
+     * the canonical index of a triplet ab|c on leaves 1..n: the rank of the set {a,b,c} among all 3-subsets,
+     * times 3, plus the position of c within the sorted set
+     *
+     * @return index or -1, if the leaves are not distinct or not in range
+     */
+    private long getCanonicalIndex(int a, int b, int c) {
+        if (a == b || a == c || b == c || Math.min(a, Math.min(b, c)) < 1 || Math.max(a, Math.max(b, c)) > numberOfLeaves)
+            return -1;
+        final int x = Math.min(a, Math.min(b, c)) - 1;
+        final int z = Math.max(a, Math.max(b, c)) - 1;
+        final int y = a + b + c - 3 - x - z;
+        final int position = (c - 1 == x ? 0 : c - 1 == y ? 1 : 2);
+        return 3 * (choose3(z) + (long) y * (y - 1) / 2 + x) + position;
+    }
+
+    private static long choose3(long n) {
+        return n * (n - 1) * (n - 2) / 6;
+    }
+
+    /**
+     * packs ab|c into a long, with a<=b
+     *
+     * @return key
+     */
+    private static long pack(int a, int b, int c) {
+        if (a > b) {
+            final int swap = a;
+            a = b;
+            b = swap;
+        }
+        if (a < 0 || b > MASK || c < 0 || c > MASK)
+            throw new IllegalArgumentException("Triplet label out of range: " + a + "," + b + "|" + c);
+        return ((long) a << (2 * BITS)) | ((long) b << BITS) | c;
+    }
+
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+}
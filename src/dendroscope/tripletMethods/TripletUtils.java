@@ -153,11 +153,7 @@ public class TripletUtils {
                                     int l1 = tree.getNodeId(aSon);
                                     int l2 = tree.getNodeId(sonBi);
                                     int l3 = tree.getNodeId(aLeavesRemaining);
-                                    if (!Triplets.containsTripletFast(l1, l2, l3)) {
-                                        (Triplets).addTripletInList(l1, l2, l3);  //before adding in the list because it adds a triplet
-                                        //in the list iff it is not already in the matrix
-                                        (Triplets).addTripletInMatrix(l1, l2, l3);
-                                    }
+                                    (Triplets).addTriplet(l1, l2, l3); // only added if not already contained
                                 }
                             }
                         }
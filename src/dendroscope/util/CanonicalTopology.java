@@ -0,0 +1,425 @@
+/*
+ * CanonicalTopology.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.util;
+
+import dendroscope.core.TreeData;
+import jloda.graph.Node;
+import jloda.graph.NodeIntArray;
+import jloda.phylo.PhyloTree;
+
+import java.util.*;
+
+/**
+ * computes canonical forms of rooted trees and networks, for fast equality tests and deduplication.
+ * <p>
+ * The canonical form ignores edge weights, internal node labels and the order of children. Leaf labels are replaced by
+ * their rank among the sorted leaf labels of the same tree, and the sorted labels are part of the form, so forms of
+ * different trees can be compared and used as hash keys. Two forms are equal if and only if the topologies are isomorphic.
+ * <p>
+ * For trees, nodes are processed by height and each node receives the rank of its signature (taxon or sorted ranks of
+ * children) among all nodes of the same height. For networks, these ranks are refined using the ranks of parents and
+ * children until stable, and remaining ties are broken by trying each node of the smallest tied class in turn,
+ * keeping the smallest resulting code, so that the form is exact also for networks with symmetries.
+ * <p>
+ * Forms of TreeData objects are cached and invalidated using TreeData.getVersion()
+ */
+public class CanonicalTopology {
+    private static CanonicalTopology instance;
+
+    private final Map<PhyloTree, CachedForm> cache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * get the shared instance
+     *
+     * @return instance
+     */
+    public static synchronized CanonicalTopology getInstance() {
+        if (instance == null)
+            instance = new CanonicalTopology();
+        return instance;
+    }
+
+    /**
+     * gets the canonical form of a tree or network. If the tree is a TreeData object, the form is cached
+     *
+     * @return canonical form
+     */
+    public Form getForm(PhyloTree tree) {
+        if (tree instanceof TreeData) {
+            final int version = ((TreeData) tree).getVersion();
+            final CachedForm cached = cache.get(tree);
+            if (cached != null && cached.version == version)
+                return cached.form;
+            final Form form = computeForm(tree);
+            cache.put(tree, new CachedForm(form, version));
+            return form;
+        } else
+            return computeForm(tree);
+    }
+
+    /**
+     * computes the canonical forms of all given trees or networks and determines, for each, the index of the first tree
+     * with the same topology
+     *
+     * @return array of indices of first occurrences
+     */
+    public int[] computeFirstOccurrences(PhyloTree[] trees) {
+        final Map<Form, Integer> form2first = new HashMap<>();
+        final int[] first = new int[trees.length];
+        for (int i = 0; i < trees.length; i++) {
+            final Form form = getForm(trees[i]);
+            final Integer j = form2first.putIfAbsent(form, i);
+            first[i] = (j != null ? j : i);
+        }
+        return first;
+    }
+
+    /**
+     * computes the canonical form of a tree or network, without caching
+     *
+     * @return canonical form
+     */
+    public Form computeForm(PhyloTree tree) {
+        final Node[] order = PhyloTreeUtils.computeTopologicalOrder(tree);
+        final int n = order.length;
+        final NodeIntArray node2index = new NodeIntArray(tree);
+        for (int i = 0; i < n; i++)
+            node2index.set(order[i], i);
+
+        // leaf labels, numbered by rank:
+        final SortedSet<String> labelSet = new TreeSet<>();
+        for (Node v : order) {
+            if (v.getOutDegree() == 0 && tree.getLabel(v) != null)
+                labelSet.add(tree.getLabel(v));
+        }
+        final String[] labels = labelSet.toArray(new String[0]);
+        final int[] labelId = new int[n];
+        boolean isNetwork = false;
+        for (int i = 0; i < n; i++) {
+            final Node v = order[i];
+            labelId[i] = (v.getOutDegree() == 0 && tree.getLabel(v) != null ? Arrays.binarySearch(labels, tree.getLabel(v)) : -1);
+            if (v.getInDegree() > 1)
+                isNetwork = true;
+        }
+
+        // heights, computed bottom-up:
+        final int[] height = new int[n];
+        int maxHeight = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            for (Node w : order[i].children())
+                height[i] = Math.max(height[i], height[node2index.getInt(w)] + 1);
+            maxHeight = Math.max(maxHeight, height[i]);
+        }
+        final List<List<Integer>> byHeight = new ArrayList<>(maxHeight + 1);
+        for (int h = 0; h <= maxHeight; h++)
+            byHeight.add(new ArrayList<>());
+        for (int i = 0; i < n; i++)
+            byHeight.get(height[i]).add(i);
+
+        // signatures and ranks, height by height:
+        final int[] rank = new int[n];
+        final int[][] signature = new int[n][];
+        int nextRank = 0;
+        int length = 0;
+        final List<int[]> sortedSignatures = new ArrayList<>(n);
+
+        for (int h = 0; h <= maxHeight; h++) {
+            final List<Integer> nodes = byHeight.get(h);
+            for (int i : nodes) {
+                final Node v = order[i];
+                final int[] sig;
+                if (v.getOutDegree() == 0) {
+                    sig = new int[]{v.getInDegree(), -1, labelId[i]};
+                } else {
+                    sig = new int[2 + v.getOutDegree()];
+                    sig[0] = v.getInDegree();
+                    sig[1] = v.getOutDegree();
+                    int k = 2;
+                    for (Node w : v.children())
+                        sig[k++] = rank[node2index.getInt(w)];
+                    Arrays.sort(sig, 2, sig.length);
+                }
+                signature[i] = sig;
+            }
+            nodes.sort((a, b) -> Arrays.compare(signature[a], signature[b]));
+            int[] previous = null;
+            for (int i : nodes) {
+                if (previous == null || !Arrays.equals(previous, signature[i]))
+                    nextRank++;
+                rank[i] = nextRank - 1;
+                previous = signature[i];
+                sortedSignatures.add(signature[i]);
+                length += signature[i].length + 1;
+            }
+            length++;
+            sortedSignatures.add(null); // marks end of height
+        }
+
+        if (isNetwork) {
+            // in a network, nodes with the same signature can differ in their parents, so the ranks are only the start:
+            final int[][] children = new int[n][];
+            final int[][] parents = new int[n][];
+            for (int i = 0; i < n; i++) {
+                final Node v = order[i];
+                children[i] = new int[v.getOutDegree()];
+                int k = 0;
+                for (Node w : v.children())
+                    children[i][k++] = node2index.getInt(w);
+                Arrays.sort(children[i]);
+                parents[i] = new int[v.getInDegree()];
+                k = 0;
+                for (Node u : v.parents())
+                    parents[i][k++] = node2index.getInt(u);
+                Arrays.sort(parents[i]);
+            }
+            return new Form(new NetworkLabeling(children, parents, labelId).computeCode(rank), labels);
+        }
+
+        final int[] code = new int[length];
+        int pos = 0;
+        for (int[] sig : sortedSignatures) {
+            if (sig == null)
+                code[pos++] = Integer.MIN_VALUE;
+            else {
+                code[pos++] = sig.length;
+                System.arraycopy(sig, 0, code, pos, sig.length);
+                pos += sig.length;
+            }
+        }
+        return new Form(code, labels);
+    }
+
+    /**
+     * remove all cached forms
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * canonical form of a tree or network, encoded as an integer array and the sorted leaf labels
+     */
+    public static class Form {
+        private final int[] code;
+        private final String[] labels;
+        private final int hashCode;
+
+        private Form(int[] code, String[] labels) {
+            this.code = code;
+            this.labels = labels;
+            this.hashCode = 31 * Arrays.hashCode(code) + Arrays.hashCode(labels);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object other) {
+            if (this == other)
+                return true;
+            if (!(other instanceof Form))
+                return false;
+            final Form that = (Form) other;
+            return hashCode == that.hashCode && Arrays.equals(code, that.code) && Arrays.equals(labels, that.labels);
+        }
+
+        /**
+         * get a 64-bit fingerprint of this form
+         *
+         * @return fingerprint
+         */
+        public long getFingerprint() {
+            long h = 1125899906842597L;
+            for (String label : labels)
+                h = 31 * h + label.hashCode();
+            for (int value : code)
+                h = 31 * h + value;
+            return h;
+        }
+
+        public String toString() {
+            final StringBuilder buf = new StringBuilder();
+            for (String label : labels)
+                buf.append(label.length()).append(":").append(label);
+            buf.append("|");
+            for (int value : code) {
+                if (value == Integer.MIN_VALUE)
+                    buf.append(";");
+                else
+                    buf.append(value).append(",");
+            }
+            return buf.toString();
+        }
+    }
+
+    /**
+     * canonical labeling of a network, given as a DAG on nodes 0...n-1. The classes of the initial ranks are refined
+     * using the classes of children and parents until stable. If some class still contains more than one node, each of
+     * its nodes is made unique in turn and the smallest code obtained is used. Nodes with the same parents and children
+     * are interchangeable and only one of them is tried
+     */
+    private static class NetworkLabeling {
+        private final int n;
+        private final int[][] children;
+        private final int[][] parents;
+        private final int[] labelId;
+
+        NetworkLabeling(int[][] children, int[][] parents, int[] labelId) {
+            this.n = labelId.length;
+            this.children = children;
+            this.parents = parents;
+            this.labelId = labelId;
+        }
+
+        /**
+         * computes the canonical code, starting from the given ranks, which must not depend on the numbering of the nodes
+         *
+         * @return code
+         */
+        int[] computeCode(int[] rank) {
+            return search(rank.clone());
+        }
+
+        /**
+         * refines the classes and, if necessary, breaks ties
+         *
+         * @return smallest code
+         */
+        private int[] search(int[] color) {
+            final int numberOfColors = refine(color);
+            if (numberOfColors == n)
+                return getCode(color);
+
+            // smallest class with more than one node, the first such in order of color:
+            final int[] size = new int[numberOfColors];
+            for (int c : color)
+                size[c]++;
+            int target = -1;
+            for (int c = 0; c < numberOfColors; c++) {
+                if (size[c] > 1 && (target == -1 || size[c] < size[target]))
+                    target = c;
+            }
+
+            int[] best = null;
+            final List<Integer> tried = new ArrayList<>();
+            for (int v = 0; v < n; v++) {
+                if (color[v] == target && !hasTriedTwin(v, tried)) {
+                    tried.add(v);
+                    final int[] individualized = new int[n];
+                    for (int u = 0; u < n; u++)
+                        individualized[u] = 2 * color[u] + (u == v ? 0 : 1);
+                    final int[] code = search(individualized);
+                    if (best == null || Arrays.compare(code, best) < 0)
+                        best = code;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * does one of the tried nodes have the same parents and children as v?
+         *
+         * @return true, if v need not be tried
+         */
+        private boolean hasTriedTwin(int v, List<Integer> tried) {
+            for (int u : tried) {
+                if (Arrays.equals(children[u], children[v]) && Arrays.equals(parents[u], parents[v]))
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * refines the coloring until stable. Colors are renumbered 0...k-1 in the order of their signatures
+         *
+         * @return number of colors k
+         */
+        private int refine(int[] color) {
+            int numberOfColors = (int) Arrays.stream(color).distinct().count();
+            final int[][] key = new int[n][];
+            final Integer[] nodes = new Integer[n];
+            while (true) {
+                for (int v = 0; v < n; v++) {
+                    final int[] k = new int[3 + children[v].length + parents[v].length];
+                    k[0] = color[v];
+                    k[1] = children[v].length;
+                    for (int i = 0; i < children[v].length; i++)
+                        k[2 + i] = color[children[v][i]];
+                    Arrays.sort(k, 2, 2 + children[v].length);
+                    final int offset = 2 + children[v].length;
+                    k[offset] = parents[v].length;
+                    for (int i = 0; i < parents[v].length; i++)
+                        k[offset + 1 + i] = color[parents[v][i]];
+                    Arrays.sort(k, offset + 1, k.length);
+                    key[v] = k;
+                    nodes[v] = v;
+                }
+                Arrays.sort(nodes, (a, b) -> Arrays.compare(key[a], key[b]));
+                int count = 0;
+                for (int i = 0; i < n; i++) {
+                    if (i > 0 && !Arrays.equals(key[nodes[i - 1]], key[nodes[i]]))
+                        count++;
+                    color[nodes[i]] = count;
+                }
+                count++;
+                if (count == numberOfColors)
+                    return count;
+                numberOfColors = count;
+            }
+        }
+
+        /**
+         * gets the code of a network in which all nodes have different colors: for each node in order of color,
+         * its label id, number of children and sorted colors of children
+         *
+         * @return code
+         */
+        private int[] getCode(int[] color) {
+            final int[] node = new int[n];
+            int length = 1;
+            for (int v = 0; v < n; v++) {
+                node[color[v]] = v;
+                length += 2 + children[v].length;
+            }
+            final int[] code = new int[length];
+            int pos = 0;
+            code[pos++] = Integer.MAX_VALUE; // distinguishes network codes from tree codes
+            for (int c = 0; c < n; c++) {
+                final int v = node[c];
+                code[pos++] = labelId[v];
+                code[pos++] = children[v].length;
+                final int start = pos;
+                for (int w : children[v])
+                    code[pos++] = color[w];
+                Arrays.sort(code, start, pos);
+            }
+            return code;
+        }
+    }
+
+    private static class CachedForm {
+        final Form form;
+        final int version;
+
+        CachedForm(Form form, int version) {
+            this.form = form;
+            this.version = version;
+        }
+    }
+}
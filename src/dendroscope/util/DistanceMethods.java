@@ -18,10 +18,9 @@
  */
 package dendroscope.util;
 
-import dendroscope.algorithms.utils.IsomorphismCheck;
 import jloda.graph.Edge;
-import jloda.graph.Graph;
 import jloda.graph.Node;
+import jloda.graph.NodeIntArray;
 import jloda.phylo.PhyloTree;
 
 import java.io.IOException;
@@ -74,17 +73,17 @@ public class DistanceMethods {
             taxa.add(trees.get(0).getLabel(v));
         Collections.sort(taxa);
 
-        HashSet<String> n1PathVectors = collectPathMultiplicityVectors(
+        HashSet<PathMultiplicityVector> n1PathVectors = collectPathMultiplicityVectors(
                 trees.get(0), taxa);
-        HashSet<String> n2PathVectors = collectPathMultiplicityVectors(
+        HashSet<PathMultiplicityVector> n2PathVectors = collectPathMultiplicityVectors(
                 trees.get(1), taxa);
 
-        HashSet<String> diffVectors = new HashSet<String>();
-        for (String pV : n1PathVectors) {
+        HashSet<PathMultiplicityVector> diffVectors = new HashSet<PathMultiplicityVector>();
+        for (PathMultiplicityVector pV : n1PathVectors) {
             if (!n2PathVectors.contains(pV))
                 diffVectors.add(pV);
         }
-        for (String pV : n2PathVectors) {
+        for (PathMultiplicityVector pV : n2PathVectors) {
             if (!n1PathVectors.contains(pV))
                 diffVectors.add(pV);
         }
@@ -92,33 +91,44 @@ public class DistanceMethods {
         return ((double) diffVectors.size()) / 2;
     }
 
-    private static int numOfPaths = 0;
-
-    private static HashSet<String> collectPathMultiplicityVectors(PhyloTree t, Vector<String> taxa) {
-        HashSet<String> pathVectors = new HashSet<String>();
-        for (Node v : t.nodes()) {
-            if (v.getOutDegree() != 0) {
-                String s = "";
-                for (String taxon : taxa) {
-                    numOfPaths = 0;
-                    computeMultiplicity(t, v, taxon);
-                    s = s.concat(String.valueOf(numOfPaths));
-                }
-                pathVectors.add(s);
+    /**
+     * computes the path-multiplicity vectors of all internal nodes in one bottom-up pass. The entry of a node v for
+     * taxon x is the number of paths from v that end at the first node labeled x, so the vector of v is the sum over
+     * all children w of the vector of w, in which the entry of the label of w is replaced by 1.
+     */
+    private static HashSet<PathMultiplicityVector> collectPathMultiplicityVectors(PhyloTree t, Vector<String> taxa) {
+        Map<String, Integer> taxon2index = new HashMap<String, Integer>();
+        for (String taxon : taxa) {
+            if (taxon != null && !taxon2index.containsKey(taxon))
+                taxon2index.put(taxon, taxon2index.size());
+        }
+
+        Node[] order = PhyloTreeUtils.computeTopologicalOrder(t);
+        NodeIntArray node2index = new NodeIntArray(t);
+        int[] node2taxon = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            node2index.set(order[i], i);
+            Integer x = taxon2index.get(t.getLabel(order[i]));
+            node2taxon[i] = (x != null ? x : -1);
+        }
+
+        PathMultiplicityVector.Accumulator accumulator = new PathMultiplicityVector.Accumulator(taxon2index.size());
+        PathMultiplicityVector[] vectors = new PathMultiplicityVector[order.length];
+        HashSet<PathMultiplicityVector> pathVectors = new HashSet<PathMultiplicityVector>();
+
+        for (int i = order.length - 1; i >= 0; i--) {
+            Node v = order[i];
+            for (Node w : v.children()) {
+                int j = node2index.getInt(w);
+                accumulator.add(vectors[j], node2taxon[j]);
             }
+            vectors[i] = accumulator.harvest();
+            if (v.getOutDegree() != 0)
+                pathVectors.add(vectors[i]);
         }
         return pathVectors;
     }
 
-    private static void computeMultiplicity(PhyloTree t, Node v, String taxon) {
-        for (Node w : v.children()) {
-            if (t.getLabel(w) != null && t.getLabel(w).equals(taxon))
-                numOfPaths++;
-            else
-                computeMultiplicity(t, w, taxon);
-        }
-    }
-
     // **********************************************************************************
     // Nested-Labels Distance
     // **********************************************************************************
@@ -190,17 +200,17 @@ public class DistanceMethods {
         for (Node v : trees.get(0).computeSetOfLeaves())
             taxa.add(trees.get(0).getLabel(v));
 
-        HashSet<String> n1Tripartitions = collectTripartitions(trees.get(0),
+        HashSet<Tripartition> n1Tripartitions = collectTripartitions(trees.get(0),
                 taxa);
-        HashSet<String> n2Tripartitions = collectTripartitions(trees.get(1),
+        HashSet<Tripartition> n2Tripartitions = collectTripartitions(trees.get(1),
                 taxa);
 
-        HashSet<String> diffTripartitions = new HashSet<String>();
-        for (String trip : n1Tripartitions) {
+        HashSet<Tripartition> diffTripartitions = new HashSet<Tripartition>();
+        for (Tripartition trip : n1Tripartitions) {
             if (!n2Tripartitions.contains(trip))
                 diffTripartitions.add(trip);
         }
-        for (String trip : n2Tripartitions) {
+        for (Tripartition trip : n2Tripartitions) {
             if (!n1Tripartitions.contains(trip))
                 diffTripartitions.add(trip);
         }
@@ -208,96 +218,131 @@ public class DistanceMethods {
         return ((double) diffTripartitions.size()) / 2;
     }
 
-    private static final Hashtable<String, HashSet<HashSet<Edge>>> taxonToPaths = new Hashtable<String, HashSet<HashSet<Edge>>>();
-
-    @SuppressWarnings("unchecked")
-    private static HashSet<String> collectTripartitions(PhyloTree t,
-                                                        Vector<String> taxa) {
-
-        HashSet<String> tripartitions = new HashSet<String>();
-        taxonToPaths.clear();
-
-        initPathTable(t.getRoot(), new HashSet<Edge>(), t);
-
-        for (var e : t.edges()) {
-            if (!t.isReticulateEdge(e) && e.getTarget().getOutDegree() != 0) {
-				Vector<String> setA = new Vector<String>();
-				Vector<String> setB = new Vector<String>();
-				Vector<String> setC = (Vector<String>) taxa.clone();
-				for (String taxon : taxonToPaths.keySet()) {
-					boolean b = false;
-					for (HashSet<Edge> path : taxonToPaths.get(taxon)) {
-						if (path.contains(e)) {
-							if (setC.contains(taxon)) {
-								setC.remove(taxon);
-								setA.add(taxon);
-                            }
-                        } else
-                            b = true;
-                    }
-                    if (setA.contains(taxon) && b) {
-                        setA.remove(taxon);
-                        setB.add(taxon);
-                    }
+    /**
+     * collects the tripartitions of all tree edges leading to internal nodes. For an edge e=(u,v), set A contains
+     * the taxa all of whose paths from the root pass through e, set B contains the taxa for which only some paths
+     * pass through e, and set C (implicit) contains all remaining taxa.
+     * <p>
+     * The "all paths" sets are obtained from the dominator tree of the network, the "some paths" sets are the
+     * descendant taxa. Both are computed bottom-up once, in topological order.
+     */
+    private static HashSet<Tripartition> collectTripartitions(PhyloTree t, Vector<String> taxa) {
+        Map<String, Integer> taxon2index = new HashMap<String, Integer>();
+        for (String taxon : taxa) {
+            if (taxon != null && !taxon2index.containsKey(taxon))
+                taxon2index.put(taxon, taxon2index.size());
+        }
+
+        Node[] order = PhyloTreeUtils.computeTopologicalOrder(t);
+        NodeIntArray node2index = new NodeIntArray(t);
+        for (int i = 0; i < order.length; i++)
+            node2index.set(order[i], i);
+
+        // immediate dominators, -1 denotes the (virtual) root
+        int[] idom = new int[order.length];
+        int[] depth = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            int d = -1;
+            boolean first = true;
+            for (Node p : order[i].parents()) {
+                int pi = node2index.getInt(p);
+                d = (first ? pi : dominatorLCA(d, pi, idom, depth));
+                first = false;
+            }
+            idom[i] = d;
+            depth[i] = (d == -1 ? 0 : depth[d] + 1);
+        }
+
+        // place each taxon at the dominator-tree LCA of all leaves that carry it
+        int[] taxon2dominator = new int[taxon2index.size()];
+        Arrays.fill(taxon2dominator, -2);
+        BitSet[] some = new BitSet[order.length];
+        BitSet[] all = new BitSet[order.length];
+        for (int i = order.length - 1; i >= 0; i--) {
+            Node v = order[i];
+            some[i] = new BitSet();
+            all[i] = new BitSet();
+            if (v.getOutDegree() == 0) {
+                Integer x = taxon2index.get(t.getLabel(v));
+                if (x != null) {
+                    some[i].set(x);
+                    taxon2dominator[x] = (taxon2dominator[x] == -2 ? i : dominatorLCA(taxon2dominator[x], i, idom, depth));
                 }
-
-                String trip = "(";
-                if (setA.size() != 0) {
-                    Collections.sort(setA);
-                    trip = trip.concat("{");
-                    for (int i = 0; i < setA.size() - 1; i++)
-                        trip = trip.concat(setA.get(i) + ",");
-                    trip = trip.concat(setA.get(setA.size() - 1) + "}");
-                } else
-                    trip = trip.concat("{}");
-                if (setB.size() != 0) {
-                    Collections.sort(setB);
-                    trip = trip.concat("{");
-                    for (int i = 0; i < setB.size() - 1; i++)
-                        trip = trip.concat(setB.get(i) + ",");
-                    trip = trip.concat(setB.get(setB.size() - 1) + "}");
-                } else
-                    trip = trip.concat("{}");
-                if (setC.size() != 0) {
-                    Collections.sort(setC);
-                    trip = trip.concat("{");
-                    for (int i = 0; i < setC.size() - 1; i++)
-                        trip = trip.concat(setC.get(i) + ",");
-                    trip = trip.concat(setC.get(setC.size() - 1) + "}");
-                } else
-                    trip = trip.concat("{}");
-                trip = trip.concat(")");
-
-                tripartitions.add(trip);
+            } else {
+                for (Node w : v.children())
+                    some[i].or(some[node2index.getInt(w)]);
             }
         }
+        for (int x = 0; x < taxon2dominator.length; x++) {
+            if (taxon2dominator[x] >= 0)
+                all[taxon2dominator[x]].set(x);
+        }
+        for (int i = order.length - 1; i >= 0; i--) {
+            if (idom[i] != -1)
+                all[idom[i]].or(all[i]);
+        }
 
+        HashSet<Tripartition> tripartitions = new HashSet<Tripartition>();
+        BitSet empty = new BitSet();
+        for (var e : t.edges()) {
+            Node v = e.getTarget();
+            if (!t.isReticulateEdge(e) && v.getOutDegree() != 0) {
+                int i = node2index.getInt(v);
+                // if v has more than one parent, then every taxon below v can also be reached avoiding e
+                BitSet setA = (v.getInDegree() == 1 ? all[i] : empty);
+                BitSet setB = (BitSet) some[i].clone();
+                setB.andNot(setA);
+                tripartitions.add(new Tripartition(setA, setB));
+            }
+        }
         return tripartitions;
     }
 
-    @SuppressWarnings("unchecked")
-    private static void initPathTable(Node v, HashSet<Edge> path, PhyloTree t) {
-        if (v.getOutDegree() != 0) {
-            for (Edge e : v.outEdges()) {
-                HashSet<Edge> pathCopy = (HashSet<Edge>) path.clone();
-				if (!t.isReticulateEdge(e) && e.getTarget().getOutDegree() != 0)
-					pathCopy.add(e);
-                initPathTable(e.getTarget(), pathCopy, t);
-            }
-        } else {
-            String taxon = t.getLabel(v);
-            if (!taxonToPaths.containsKey(taxon)) {
-                HashSet<HashSet<Edge>> set = new HashSet<HashSet<Edge>>();
-                set.add(path);
-                taxonToPaths.put(taxon, set);
-            } else {
-                HashSet<HashSet<Edge>> set = (HashSet<HashSet<Edge>>) taxonToPaths
-                        .get(taxon).clone();
-				taxonToPaths.remove(taxon);
-				set.add(path);
-				taxonToPaths.put(taxon, set);
+    /**
+     * computes the lowest common ancestor of two nodes in the dominator tree
+     *
+     * @return index of lca, or -1, if only the virtual root dominates both
+     */
+    private static int dominatorLCA(int a, int b, int[] idom, int[] depth) {
+        while (a != b) {
+            if (a == -1 || b == -1)
+                return -1;
+            if (depth[a] > depth[b])
+                a = idom[a];
+            else if (depth[b] > depth[a])
+                b = idom[b];
+            else {
+                a = idom[a];
+                b = idom[b];
             }
         }
+        return a;
+    }
+
+    /**
+     * a tripartition (A,B,C) of the taxa, stored compactly by the words of A and B
+     */
+    private static class Tripartition {
+        private final long[] setA;
+        private final long[] setB;
+        private final int hashCode;
+
+        Tripartition(BitSet setA, BitSet setB) {
+            this.setA = setA.toLongArray();
+            this.setB = setB.toLongArray();
+            this.hashCode = 31 * Arrays.hashCode(this.setA) + Arrays.hashCode(this.setB);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object other) {
+            if (!(other instanceof Tripartition))
+                return false;
+            Tripartition that = (Tripartition) other;
+            return hashCode == that.hashCode && Arrays.equals(setA, that.setA) && Arrays.equals(setB, that.setB);
+        }
     }
 
     // **********************************************************************************
@@ -311,29 +356,32 @@ public class DistanceMethods {
         HashSet<PhyloTree> n2DisplayesTrees = collectDisplayedTrees(trees
                 .get(1));
 
-        Set<String> n1TreeStrings = computeTreeStrings(n1DisplayesTrees);
-        Set<String> n2TreeStrings = computeTreeStrings(n2DisplayesTrees);
+        Set<CanonicalTopology.Form> n1TreeForms = computeForms(n1DisplayesTrees);
+        Set<CanonicalTopology.Form> n2TreeForms = computeForms(n2DisplayesTrees);
 
-        HashSet<String> diffTrees = new HashSet<String>();
-        for (String s1 : n1TreeStrings) {
-            if (!n2TreeStrings.contains(s1))
-                diffTrees.add(s1);
+        HashSet<CanonicalTopology.Form> diffTrees = new HashSet<>();
+        for (CanonicalTopology.Form f1 : n1TreeForms) {
+            if (!n2TreeForms.contains(f1))
+                diffTrees.add(f1);
         }
-        for (String s2 : n2TreeStrings) {
-            if (!n1TreeStrings.contains(s2))
-                diffTrees.add(s2);
+        for (CanonicalTopology.Form f2 : n2TreeForms) {
+            if (!n1TreeForms.contains(f2))
+                diffTrees.add(f2);
         }
 
         return ((double) diffTrees.size()) / 2;
     }
 
-    private static Set<String> computeTreeStrings(HashSet<PhyloTree> trees) {
-        Set<String> treeStrings = new HashSet<String>();
-        for (PhyloTree t : trees) {
-            Set<Set<String>> clusters = PhyloTreeUtils.collectAllHardwiredClusters(t);
-            treeStrings.add(clusters.toString());
-        }
-        return treeStrings;
+    /**
+     * computes the canonical forms of the given trees or networks
+     *
+     * @return set of forms
+     */
+    private static Set<CanonicalTopology.Form> computeForms(HashSet<PhyloTree> trees) {
+        Set<CanonicalTopology.Form> forms = new HashSet<>();
+        for (PhyloTree t : trees)
+            forms.add(CanonicalTopology.getInstance().computeForm(t));
+        return forms;
     }
 
     private static final HashSet<PhyloTree> displayedTrees = new HashSet<PhyloTree>();
@@ -506,19 +554,19 @@ public class DistanceMethods {
         HashSet<PhyloTree> n1Subnetworks = collectSubnetworks(trees.get(0));
         HashSet<PhyloTree> n2Subnetworkst = collectSubnetworks(trees.get(1));
 
-        HashSet<String> n1IsoStrings = computeIsoStrings(n1Subnetworks);
-        HashSet<String> n2IsoStrings = computeIsoStrings(n2Subnetworkst);
+        Set<CanonicalTopology.Form> n1Forms = computeForms(n1Subnetworks);
+        Set<CanonicalTopology.Form> n2Forms = computeForms(n2Subnetworkst);
 
-        HashSet<String> diffIsoStrings = new HashSet<String>();
-        for (String s1 : n1IsoStrings) {
-            if (!n2IsoStrings.contains(s1))
-                diffIsoStrings.add(s1);
+        HashSet<CanonicalTopology.Form> diffForms = new HashSet<>();
+        for (CanonicalTopology.Form f1 : n1Forms) {
+            if (!n2Forms.contains(f1))
+                diffForms.add(f1);
         }
-        for (String s2 : n2IsoStrings) {
-            if (!n1IsoStrings.contains(s2))
-                diffIsoStrings.add(s2);
+        for (CanonicalTopology.Form f2 : n2Forms) {
+            if (!n1Forms.contains(f2))
+                diffForms.add(f2);
         }
-        return ((double) diffIsoStrings.size()) / 2;
+        return ((double) diffForms.size()) / 2;
     }
 
     private static final Hashtable<Node, Node> nodeToCopy = new Hashtable<Node, Node>();
@@ -563,139 +611,18 @@ public class DistanceMethods {
 
     }
 
-    private static HashSet<String> computeIsoStrings(HashSet<PhyloTree> trees) {
-        HashSet<String> isoStrings = new HashSet<String>();
-        for (PhyloTree t : trees)
-            isoStrings.add(new IsomorphismCheck().getIsoString(t));
-        return isoStrings;
-    }
-
     // **********************************************************************************
     // Galled tree - Galled network - Level-k network
     // **********************************************************************************
 
-    private static boolean isGalledTree;
-    private static boolean isGalledNetwork;
-
-    private static Hashtable<Node, HashSet<BitSet>> retToBiComponents;
-    private static Vector<Edge> edgeOrder;
-
+    /**
+     * computes whether the network is a galled tree or galled network and its level
+     *
+     * @return galled tree, galled network, level
+     */
     public static Object[] computeTreeDefinitions(PhyloTree tree) {
-
-        isGalledTree = true;
-        isGalledNetwork = true;
-        retToBiComponents = new Hashtable<Node, HashSet<BitSet>>();
-
-        edgeOrder = new Vector<Edge>();
-        for (var e : tree.edges())
-            edgeOrder.add(e);
-
-        for (Node v : tree.nodes()) {
-            if (v.getInDegree() > 1)
-                collectBiComponents(v);
-        }
-
-        int levelK = 1;
-        for (Node r1 : retToBiComponents.keySet()) {
-            int k = 1;
-            for (Node r2 : retToBiComponents.keySet()) {
-                boolean isContained = false;
-                if (!r1.equals(r2)) {
-                    for (BitSet b1 : retToBiComponents.get(r1)) {
-                        for (BitSet b2 : retToBiComponents.get(r2)) {
-                            BitSet b = (BitSet) b1.clone();
-                            b.and(b2);
-                            if (b.cardinality() > 0) {
-                                isGalledTree = false;
-                                isContained = true;
-                                break;
-                            }
-                        }
-                        if (isContained)
-                            break;
-                    }
-                }
-                if (isContained)
-                    k++;
-            }
-            if (k > levelK)
-                levelK = k;
-        }
-
-        Object[] definitions = {isGalledTree, isGalledNetwork, levelK};
-        return definitions;
-    }
-
-    private static void collectBiComponents(Node v) {
-        Vector<Edge> inEdges = new Vector<Edge>();
-        for (Edge e : v.inEdges())
-            inEdges.add(e);
-
-
-        for (int i = 0; i < inEdges.size() - 1; i++) {
-            for (int j = i + 1; j < inEdges.size(); j++)
-                computeBiComponentsStepOne(new Vector<Edge>(), inEdges.get(i), inEdges.get(j), v);
-        }
-    }
-
-    private static void computeBiComponentsStepOne(Vector<Edge> e1Edges,
-                                                   Edge e1, Edge e2, Node v) {
-        e1Edges.add(e1);
-        Node s = e1.getSource();
-        if (s.getInDegree() == 0)
-            computeBiComponentsStepTwo(e1Edges, e2, new HashSet<Edge>(), v);
-        else if (s.getInDegree() > 1) {
-            isGalledTree = false;
-            isGalledNetwork = false;
-            for (Edge e : s.inEdges()) {
-                Vector<Edge> e1EdgesCopy = (Vector<Edge>) e1Edges.clone();
-                computeBiComponentsStepOne(e1EdgesCopy, e, e2, v);
-            }
-        } else
-            computeBiComponentsStepOne(e1Edges, s.getFirstInEdge(), e2, v);
-    }
-
-    private static void computeBiComponentsStepTwo(Vector<Edge> e1Edges, Edge e2, HashSet<Edge> e2Edges, Node v) {
-        if (!e1Edges.contains(e2)) {
-            e2Edges.add(e2);
-            Node s = e2.getSource();
-            if (s.getInDegree() == 0) {
-                HashSet<Edge> biComponent = new HashSet<Edge>();
-                biComponent.addAll(e1Edges);
-                biComponent.addAll(e2Edges);
-                putRetToComponent(v, biComponent);
-            } else if (s.getInDegree() > 1) {
-                isGalledTree = false;
-                isGalledNetwork = false;
-                for (Edge e : s.inEdges()) {
-                    HashSet<Edge> e2EdgesCopy = (HashSet<Edge>) e2Edges.clone();
-                    computeBiComponentsStepTwo(e1Edges, e, e2EdgesCopy, v);
-                }
-            } else
-                computeBiComponentsStepTwo(e1Edges, s.getFirstInEdge(),
-                        e2Edges, v);
-        } else {
-            int index = e1Edges.indexOf(e2);
-            HashSet<Edge> biComponent = new HashSet<Edge>();
-            biComponent.addAll(e2Edges);
-            biComponent.addAll(e1Edges.subList(0, index));
-            putRetToComponent(v, biComponent);
-        }
-
-    }
-
-    private static void putRetToComponent(Node v, HashSet<Edge> biComponent) {
-        BitSet b = new BitSet(edgeOrder.size());
-        for (Edge e : biComponent)
-            b.set(edgeOrder.indexOf(e));
-        if (retToBiComponents.containsKey(v)) {
-            HashSet<BitSet> set = retToBiComponents.get(v);
-            set.add(b);
-        } else {
-            HashSet<BitSet> set = new HashSet<BitSet>();
-            set.add(b);
-            retToBiComponents.put(v, set);
-        }
+        NetworkProperties properties = NetworkProperties.compute(tree);
+        return new Object[]{properties.isGalledTree(), properties.isGalledNetwork(), properties.getLevel()};
     }
 
     // **********************************************************************************
@@ -754,148 +681,8 @@ public class DistanceMethods {
     // Time-consistent Property
     // **********************************************************************************
 
-    private static boolean isTimeConsistent;
-
     public static Boolean hasTimeConsistentProperty(PhyloTree tree) {
-
-        isTimeConsistent = false;
-
-        try {
-
-            PhyloTree t = new PhyloTree();
-            t.parseBracketNotation(tree.toBracketString(), true);
-
-            HashSet<HashSet<Node>> retSets = new HashSet<HashSet<Node>>();
-            Vector<Node> reticulations = new Vector<Node>();
-            for (Node v : t.nodes()) {
-                if (v.getInDegree() > 1)
-                    reticulations.add(v);
-            }
-            while (!reticulations.isEmpty()) {
-                HashSet<Node> retSet = new HashSet<Node>();
-                collectRetSet(reticulations.firstElement(), reticulations,
-                        retSet);
-                retSets.add(retSet);
-            }
-
-            Graph g = computeDependencyGraph(retSets, t);
-            if (hasSelfCycle)
-                isTimeConsistent = false;
-            else
-                isTimeConsistent = !hasDirectedCycle(g);
-
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
-        }
-
-        return isTimeConsistent;
-
-    }
-
-    private static Hashtable<Integer, Node> levelToNode;
-    private static Hashtable<Node, Integer> nodeToLevel;
-    private static boolean hasSelfCycle;
-
-    private static boolean hasDirectedCycle(Graph g) {
-
-		levelToNode = new Hashtable<Integer, Node>();
-		nodeToLevel = new Hashtable<Node, Integer>();
-
-		Node start = g.newNode();
-		for (Node v : g.nodes()) {
-			if (!v.equals(start))
-				g.newEdge(start, v);
-		}
-
-		initLevels(start, 0, new Vector<Node>());
-
-		for (int i = g.getNumberOfNodes() - 1; i >= 0; i--) {
-			Node v = levelToNode.get(i);
-			for (Node w : v.parents()) {
-				if (nodeToLevel.get(w) <= i)
-					return true;
-			}
-		}
-
-        return false;
-    }
-
-    private static int initLevels(Node v, int level, Vector<Node> visited) {
-        visited.add(v);
-        int value = level;
-        for (Node c : v.children()) {
-            if (!visited.contains(c))
-                value = initLevels(c, value, visited) + 1;
-        }
-        levelToNode.put(value, v);
-        nodeToLevel.put(v, value);
-        return value;
-    }
-
-    private static Graph computeDependencyGraph(HashSet<HashSet<Node>> retSets,
-                                                PhyloTree t) {
-        Graph g = new Graph();
-
-        int id = 1;
-        Hashtable<Integer, HashSet<Node>> idToRetSet = new Hashtable<Integer, HashSet<Node>>();
-        Hashtable<HashSet<Node>, Node> retSetToNode = new Hashtable<HashSet<Node>, Node>();
-        for (HashSet<Node> retSet : retSets) {
-            Node v = g.newNode();
-            retSetToNode.put(retSet, v);
-            idToRetSet.put(id, retSet);
-            for (Node r : retSet)
-                r.setInfo(id);
-            id++;
-        }
-
-        createEdges(t.getRoot(), g, idToRetSet, retSetToNode, (Integer) t
-                .getRoot().getInfo());
-
-        return g;
-    }
-
-    private static void createEdges(Node v, Graph g,
-                                    Hashtable<Integer, HashSet<Node>> idToRetSet,
-                                    Hashtable<HashSet<Node>, Node> retSetToNode, Integer lastID) {
-        for (Node c : v.children()) {
-            if (c.getInfo() != null) {
-                if (lastID != null) {
-                    Node v1 = retSetToNode.get(idToRetSet.get(lastID));
-                    Node v2 = retSetToNode.get(idToRetSet.get(c.getInfo()));
-                    if (c.getInDegree() == 1) {
-                        if (!v1.equals(v2) && g.findDirectedEdge(v1, v2) == null)
-                            g.newEdge(v1, v2);
-                        else if (v1.equals(v2))
-                            hasSelfCycle = true;
-                    }
-                }
-                createEdges(c, g, idToRetSet, retSetToNode,
-                        (Integer) c.getInfo());
-            } else
-                createEdges(c, g, idToRetSet, retSetToNode, lastID);
-        }
-    }
-
-    private static void collectRetSet(Node v, Vector<Node> reticulations,
-                                      HashSet<Node> reticulationSet) {
-        if (v.getInDegree() > 1) {
-			reticulations.remove(v);
-			reticulationSet.add(v);
-			for (Edge value : v.inEdges()) {
-				Node p = value.getSource();
-				reticulationSet.add(p);
-				collectRetSet(p, reticulations, reticulationSet);
-				for (Edge edge : p.outEdges()) {
-					Node c = edge.getTarget();
-					if (!c.equals(v))
-						collectRetSet(c, reticulations, reticulationSet);
-				}
-			}
-			for (Node c : v.children()) {
-				collectRetSet(c, reticulations, reticulationSet);
-			}
-		}
+        return NetworkProperties.compute(tree).isTimeConsistent();
     }
 
 }
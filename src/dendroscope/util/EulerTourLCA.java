@@ -0,0 +1,352 @@
+/*
+ * EulerTourLCA.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.util;
+
+import dendroscope.consensus.LSATree;
+import jloda.graph.Edge;
+import jloda.graph.Node;
+import jloda.graph.NodeIntArray;
+import jloda.phylo.PhyloTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * lowest common ancestor queries in constant time, using an Euler tour and a block-decomposed range-minimum structure
+ * held in primitive arrays. The nodes are numbered in pre-order, so the minimum number in a range of the tour is the
+ * node of smallest depth. The tour is cut into blocks of 32 entries: queries inside a block use a bit mask per tour
+ * position that encodes the stack of suffix minima, and queries across blocks use a sparse table over the block
+ * minima, which has only (2n/32)log(2n/32) entries, whereas LCA_LSACalculation uses a table of 2n log(2n) entries
+ */
+public class EulerTourLCA {
+    private static final int BLOCK_BITS = 5;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+
+    private final NodeIntArray node2index;
+    private final Node[] index2node; // nodes in pre-order
+    private final int[] parent; // parent in pre-order numbering, -1 for the root
+    private final int[] depth;
+    private final int[] size; // number of nodes in the subtree
+
+    private final int[] tour; // pre-order numbers of the nodes visited by the Euler tour
+    private final int[] first; // first occurrence of each node in the tour
+    private final int[] mask; // for each tour position, the suffix minima of its block up to that position
+    private final int[][] blockTable; // blockTable[k][b] is the minimum of blocks b...b+2^k-1
+
+    /**
+     * constructs the LCA structure for a tree, reticulate edges are ignored
+     */
+    public EulerTourLCA(PhyloTree tree) {
+        this(tree, false);
+    }
+
+    /**
+     * constructs the LCA structure for a tree or network. If computeLSA is true, uses the LSA tree of the network,
+     * which is computed, if not present, so that the LCA of a set of nodes in the LSA tree is the LSA
+     */
+    public EulerTourLCA(PhyloTree tree, boolean computeLSA) {
+        if (computeLSA && tree.getNumberReticulateEdges() > 0 && tree.getRoot() != null && tree.getLSAChildrenMap().get(tree.getRoot()) == null)
+            LSATree.computeNodeLSAChildrenMap(tree);
+
+        // number the nodes in pre-order:
+        final int maxNodes = tree.getNumberOfNodes();
+        node2index = new NodeIntArray(tree);
+        final Node[] nodes = new Node[maxNodes];
+        final int[] parents = new int[maxNodes];
+        final int[] depths = new int[maxNodes];
+        int count = 0;
+        if (tree.getRoot() != null) {
+            // a node with more than one tree edge into it is pushed more than once, but only numbered once:
+            final int maxPushes = Math.max(maxNodes, tree.getNumberOfEdges() + 1);
+            final Node[] stack = new Node[maxPushes];
+            final int[] stackParent = new int[maxPushes];
+            int top = 0;
+            stack[top] = tree.getRoot();
+            stackParent[top++] = -1;
+            while (top > 0) {
+                final Node v = stack[--top];
+                final int p = stackParent[top];
+                final int previous = node2index.getInt(v);
+                if (previous < count && nodes[previous] == v)
+                    continue;
+                node2index.set(v, count);
+                nodes[count] = v;
+                parents[count] = p;
+                depths[count] = (p == -1 ? 0 : depths[p] + 1);
+                final List<Node> children = getChildren(tree, v, computeLSA);
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack[top] = children.get(i);
+                    stackParent[top++] = count;
+                }
+                count++;
+            }
+        }
+        index2node = (count == maxNodes ? nodes : Arrays.copyOf(nodes, count));
+        parent = Arrays.copyOf(parents, count);
+        depth = Arrays.copyOf(depths, count);
+
+        size = new int[count];
+        for (int i = count - 1; i >= 0; i--) {
+            size[i]++;
+            if (parent[i] != -1)
+                size[parent[i]] += size[i];
+        }
+
+        // children in compressed form, in pre-order, as they were visited:
+        final int[] childStart = new int[count + 1];
+        for (int i = 1; i < count; i++)
+            childStart[parent[i] + 1]++;
+        for (int i = 0; i < count; i++)
+            childStart[i + 1] += childStart[i];
+        final int[] children = new int[Math.max(0, count - 1)];
+        final int[] next = Arrays.copyOf(childStart, count);
+        for (int i = 1; i < count; i++)
+            children[next[parent[i]]++] = i;
+
+        // Euler tour:
+        tour = new int[Math.max(0, 2 * count - 1)];
+        first = new int[count];
+        if (count > 0) {
+            System.arraycopy(childStart, 0, next, 0, count);
+            int pos = 0;
+            int v = 0;
+            tour[pos++] = 0;
+            while (true) {
+                if (next[v] < childStart[v + 1]) {
+                    final int w = children[next[v]++];
+                    first[w] = pos;
+                    tour[pos++] = w;
+                    v = w;
+                } else if (v == 0)
+                    break;
+                else {
+                    v = parent[v];
+                    tour[pos++] = v;
+                }
+            }
+        }
+
+        // in-block masks:
+        mask = new int[tour.length];
+        final int numberOfBlocks = (tour.length + BLOCK_SIZE - 1) >>> BLOCK_BITS;
+        final int[] blockMin = new int[numberOfBlocks];
+        for (int b = 0; b < numberOfBlocks; b++) {
+            final int start = b << BLOCK_BITS;
+            final int end = Math.min(tour.length, start + BLOCK_SIZE);
+            int stack = 0;
+            for (int i = start; i < end; i++) {
+                while (stack != 0 && tour[start + 31 - Integer.numberOfLeadingZeros(stack)] >= tour[i])
+                    stack ^= Integer.highestOneBit(stack);
+                stack |= 1 << (i - start);
+                mask[i] = stack;
+            }
+            blockMin[b] = tour[start + Integer.numberOfTrailingZeros(mask[end - 1])];
+        }
+
+        // sparse table over blocks:
+        final int levels = (numberOfBlocks == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(numberOfBlocks));
+        blockTable = new int[levels][];
+        if (levels > 0) {
+            blockTable[0] = blockMin;
+            for (int k = 1; k < levels; k++) {
+                final int half = 1 << (k - 1);
+                final int[] previous = blockTable[k - 1];
+                final int[] current = new int[numberOfBlocks - (1 << k) + 1];
+                for (int b = 0; b < current.length; b++)
+                    current[b] = Math.min(previous[b], previous[b + half]);
+                blockTable[k] = current;
+            }
+        }
+    }
+
+    /**
+     * gets the children of a node, in the LSA tree, or along tree edges
+     *
+     * @return children
+     */
+    private static List<Node> getChildren(PhyloTree tree, Node v, boolean computeLSA) {
+        if (computeLSA) {
+            final List<Node> lsaChildren = tree.getLSAChildrenMap().get(v);
+            if (lsaChildren != null)
+                return lsaChildren;
+        }
+        final List<Node> children = new ArrayList<>(v.getOutDegree());
+        for (Edge e = v.getFirstOutEdge(); e != null; e = v.getNextOutEdge(e)) {
+            if (!tree.isReticulateEdge(e))
+                children.add(e.getTarget());
+        }
+        return children;
+    }
+
+    /**
+     * get the number of indexed nodes
+     *
+     * @return number of nodes
+     */
+    public int getNumberOfNodes() {
+        return index2node.length;
+    }
+
+    /**
+     * gets the pre-order number of a node
+     *
+     * @return number, or -1, if the node is not reachable from the root
+     */
+    public int getIndex(Node v) {
+        final int index = node2index.getInt(v);
+        return (index < index2node.length && index2node[index] == v ? index : -1);
+    }
+
+    /**
+     * gets the node with the given pre-order number
+     *
+     * @return node
+     */
+    public Node getNode(int index) {
+        return index2node[index];
+    }
+
+    /**
+     * gets the parent of a node
+     *
+     * @return parent, or -1 for the root
+     */
+    public int getParent(int index) {
+        return parent[index];
+    }
+
+    /**
+     * gets the depth of a node, the root has depth 0
+     *
+     * @return depth
+     */
+    public int getDepth(int index) {
+        return depth[index];
+    }
+
+    /**
+     * gets the number of nodes in the subtree of a node, which are numbered index...index+size-1
+     *
+     * @return subtree size
+     */
+    public int getSubtreeSize(int index) {
+        return size[index];
+    }
+
+    /**
+     * is a an ancestor of b, or equal to b?
+     *
+     * @return true, if ancestor
+     */
+    public boolean isAncestor(int a, int b) {
+        return a <= b && b < a + size[a];
+    }
+
+    /**
+     * gets the lowest common ancestor of two nodes, given by their pre-order numbers
+     *
+     * @return pre-order number of LCA
+     */
+    public int getLCA(int a, int b) {
+        if (a == b)
+            return a;
+        return a < b ? getMinimum(first[a], first[b]) : getMinimum(first[b], first[a]);
+    }
+
+    /**
+     * gets the lowest common ancestor of two nodes
+     *
+     * @return LCA
+     */
+    public Node getLCA(Node a, Node b) {
+        return index2node[getLCA(checkedIndex(a), checkedIndex(b))];
+    }
+
+    /**
+     * gets the lowest common ancestor of a non-empty collection of nodes, using a single range-minimum query
+     *
+     * @return LCA
+     */
+    public Node getLCA(Iterable<Node> nodes) {
+        int min = Integer.MAX_VALUE;
+        int max = -1;
+        for (Node v : nodes) {
+            final int index = checkedIndex(v);
+            min = Math.min(min, index);
+            max = Math.max(max, index);
+        }
+        if (max == -1)
+            throw new IllegalArgumentException("empty set of nodes");
+        return index2node[getLCA(min, max)];
+    }
+
+    /**
+     * computes the lowest common ancestors of many pairs of nodes, given by their pre-order numbers
+     *
+     * @return for each i, the pre-order number of the LCA of a[i] and b[i]
+     */
+    public int[] getLCAs(int[] a, int[] b) {
+        final int[] result = new int[a.length];
+        for (int i = 0; i < a.length; i++)
+            result[i] = getLCA(a[i], b[i]);
+        return result;
+    }
+
+    /**
+     * the pre-order number of the node index, throwing an exception, if the node is not indexed
+     *
+     * @return index
+     */
+    private int checkedIndex(Node v) {
+        final int index = getIndex(v);
+        if (index == -1)
+            throw new IllegalArgumentException("node not reachable from root: " + v);
+        return index;
+    }
+
+    /**
+     * gets the minimum of the tour in the range l...r
+     *
+     * @return minimum
+     */
+    private int getMinimum(int l, int r) {
+        final int blockL = l >>> BLOCK_BITS;
+        final int blockR = r >>> BLOCK_BITS;
+        if (blockL == blockR)
+            return getMinimumInBlock(l, r);
+        int result = Math.min(getMinimumInBlock(l, (blockL << BLOCK_BITS) + BLOCK_SIZE - 1), getMinimumInBlock(blockR << BLOCK_BITS, r));
+        if (blockL + 1 < blockR) {
+            final int k = 31 - Integer.numberOfLeadingZeros(blockR - blockL - 1);
+            result = Math.min(result, Math.min(blockTable[k][blockL + 1], blockTable[k][blockR - (1 << k)]));
+        }
+        return result;
+    }
+
+    /**
+     * gets the minimum of the tour in the range l...r, which lie in the same block. The lowest entry on the stack of
+     * suffix minima at r that is not before l is the minimum
+     *
+     * @return minimum
+     */
+    private int getMinimumInBlock(int l, int r) {
+        final int start = r & ~(BLOCK_SIZE - 1);
+        return tour[start + Integer.numberOfTrailingZeros(mask[r] & (-1 << (l - start)))];
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ * NetworkProperties.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.util;
+
+import jloda.graph.Edge;
+import jloda.graph.Node;
+import jloda.graph.NodeIntArray;
+import jloda.phylo.PhyloTree;
+import jloda.util.CanceledException;
+import jloda.util.progress.ProgressListener;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * structural properties of a rooted network: galled tree, galled network, level, tree-child, tree-sibling and
+ * time-consistent. All properties are computed in linear time, the level using a Hopcroft-Tarjan pass
+ * over the biconnected components of the underlying undirected graph
+ */
+public class NetworkProperties {
+    private int numberOfNodes;
+    private int numberOfEdges;
+    private int numberOfReticulations;
+    private int level;
+    private boolean galledTree;
+    private boolean galledNetwork;
+    private boolean treeChild;
+    private boolean treeSibling;
+    private boolean timeConsistent;
+
+    private NetworkProperties() {
+    }
+
+    /**
+     * computes all properties of the given network
+     *
+     * @return properties
+     */
+    public static NetworkProperties compute(PhyloTree network) {
+        final NetworkProperties properties = new NetworkProperties();
+
+        final Node[] nodes = PhyloTreeUtils.computeTopologicalOrder(network);
+        final int n = nodes.length;
+        final NodeIntArray node2index = new NodeIntArray(network);
+        for (int i = 0; i < n; i++)
+            node2index.set(nodes[i], i);
+
+        // edges as index arrays and undirected adjacency in compressed form:
+        final int m = network.getNumberOfEdges();
+        final int[] source = new int[m];
+        final int[] target = new int[m];
+        final int[] adjacencyStart = new int[n + 1];
+        {
+            int e = 0;
+            for (Edge f : network.edges()) {
+                source[e] = node2index.getInt(f.getSource());
+                target[e] = node2index.getInt(f.getTarget());
+                adjacencyStart[source[e] + 1]++;
+                adjacencyStart[target[e] + 1]++;
+                e++;
+            }
+        }
+        for (int i = 0; i < n; i++)
+            adjacencyStart[i + 1] += adjacencyStart[i];
+        final int[] adjacency = new int[2 * m];
+        {
+            final int[] fill = Arrays.copyOf(adjacencyStart, n);
+            for (int e = 0; e < m; e++) {
+                adjacency[fill[source[e]]++] = e;
+                adjacency[fill[target[e]]++] = e;
+            }
+        }
+        final int[] inDegree = new int[n];
+        for (int e = 0; e < m; e++)
+            inDegree[target[e]]++;
+
+        properties.numberOfNodes = n;
+        properties.numberOfEdges = m;
+
+        // level and galled tree, from the number of reticulations per biconnected component:
+        {
+            final int[] edge2component = computeBiconnectedComponents(n, source, target, adjacencyStart, adjacency);
+            final int[] component2reticulations = new int[m + 1];
+            final int[] firstInEdge = new int[n];
+            Arrays.fill(firstInEdge, -1);
+            for (int e = 0; e < m; e++) {
+                if (firstInEdge[target[e]] == -1)
+                    firstInEdge[target[e]] = e;
+            }
+            for (int v = 0; v < n; v++) {
+                if (inDegree[v] > 1) {
+                    properties.numberOfReticulations++;
+                    int count = ++component2reticulations[edge2component[firstInEdge[v]]];
+                    properties.level = Math.max(properties.level, count);
+                }
+            }
+            properties.galledTree = (properties.level <= 1);
+        }
+
+        // galled network: every reticulation lies on a tree cycle, that is, two of its in-edges come from
+        // chains of tree nodes that end at the same top node:
+        {
+            final int[] chainTop = new int[n];
+            for (int v = 0; v < n; v++) { // parents come first in topological order
+                if (inDegree[v] == 1) {
+                    int p = source[adjacencyInEdge(v, adjacencyStart, adjacency, target)];
+                    chainTop[v] = (inDegree[p] <= 1 ? chainTop[p] : v);
+                } else
+                    chainTop[v] = v;
+            }
+            properties.galledNetwork = true;
+            for (int v = 0; v < n && properties.galledNetwork; v++) {
+                if (inDegree[v] > 1) {
+                    boolean onTreeCycle = false;
+                    final List<Integer> tops = new ArrayList<>();
+                    for (int a = adjacencyStart[v]; a < adjacencyStart[v + 1] && !onTreeCycle; a++) {
+                        int e = adjacency[a];
+                        if (target[e] == v && inDegree[source[e]] <= 1) {
+                            int top = chainTop[source[e]];
+                            if (tops.contains(top))
+                                onTreeCycle = true;
+                            else
+                                tops.add(top);
+                        }
+                    }
+                    if (!onTreeCycle)
+                        properties.galledNetwork = false;
+                }
+            }
+        }
+
+        // tree-child: every internal node has a child that is a tree node
+        // tree-sibling: every reticulation has a sibling that is a tree node
+        {
+            final boolean[] hasTreeChild = new boolean[n];
+            final boolean[] hasChild = new boolean[n];
+            for (int e = 0; e < m; e++) {
+                hasChild[source[e]] = true;
+                if (inDegree[target[e]] == 1)
+                    hasTreeChild[source[e]] = true;
+            }
+            properties.treeChild = true;
+            for (int v = 0; v < n; v++) {
+                if (hasChild[v] && !hasTreeChild[v]) {
+                    properties.treeChild = false;
+                    break;
+                }
+            }
+
+            properties.treeSibling = true;
+            for (int v = 0; v < n && properties.treeSibling; v++) {
+                if (inDegree[v] > 1) {
+                    boolean hasTreeSibling = false;
+                    for (int a = adjacencyStart[v]; a < adjacencyStart[v + 1] && !hasTreeSibling; a++) {
+                        int e1 = adjacency[a];
+                        if (target[e1] == v) {
+                            int p = source[e1];
+                            for (int b = adjacencyStart[p]; b < adjacencyStart[p + 1]; b++) {
+                                int e2 = adjacency[b];
+                                if (e2 != e1 && source[e2] == p && inDegree[target[e2]] == 1) {
+                                    hasTreeSibling = true;
+                                    break;
+                                }
+                            }
+                        }
+                    }
+                    if (!hasTreeSibling)
+                        properties.treeSibling = false;
+                }
+            }
+        }
+
+        // time-consistent: contract each reticulation with its parents, the tree edges must then induce
+        // an acyclic graph on the contracted nodes
+        {
+            final int[] classOf = new int[n];
+            for (int v = 0; v < n; v++)
+                classOf[v] = v;
+            for (int e = 0; e < m; e++) {
+                if (inDegree[target[e]] > 1)
+                    union(classOf, source[e], target[e]);
+            }
+            boolean consistent = true;
+            final int[] classInDegree = new int[n];
+            final int[] treeEdges = new int[m];
+            int numberOfTreeEdges = 0;
+            for (int e = 0; e < m && consistent; e++) {
+                if (inDegree[target[e]] == 1) {
+                    int a = find(classOf, source[e]);
+                    int b = find(classOf, target[e]);
+                    if (a == b)
+                        consistent = false;
+                    else {
+                        classInDegree[b]++;
+                        treeEdges[numberOfTreeEdges++] = e;
+                    }
+                }
+            }
+            if (consistent) {
+                // Kahn's algorithm on the contracted graph, with tree edges sorted by class of source
+                final int[] classOutStart = new int[n + 1];
+                for (int i = 0; i < numberOfTreeEdges; i++)
+                    classOutStart[find(classOf, source[treeEdges[i]]) + 1]++;
+                for (int i = 0; i < n; i++)
+                    classOutStart[i + 1] += classOutStart[i];
+                final int[] classOut = new int[numberOfTreeEdges];
+                final int[] fill = Arrays.copyOf(classOutStart, n);
+                for (int i = 0; i < numberOfTreeEdges; i++) {
+                    int e = treeEdges[i];
+                    classOut[fill[find(classOf, source[e])]++] = find(classOf, target[e]);
+                }
+                final int[] queue = new int[n];
+                int top = 0;
+                int numberOfClasses = 0;
+                for (int v = 0; v < n; v++) {
+                    if (find(classOf, v) == v) {
+                        numberOfClasses++;
+                        if (classInDegree[v] == 0)
+                            queue[top++] = v;
+                    }
+                }
+                for (int i = 0; i < top; i++) {
+                    int a = queue[i];
+                    for (int j = classOutStart[a]; j < classOutStart[a + 1]; j++) {
+                        int b = classOut[j];
+                        if (--classInDegree[b] == 0)
+                            queue[top++] = b;
+                    }
+                }
+                consistent = (top == numberOfClasses);
+            }
+            properties.timeConsistent = consistent;
+        }
+        return properties;
+    }
+
+    /**
+     * computes the properties of all given networks in parallel. Networks for which the computation fails are
+     * reported on standard error and have no properties
+     *
+     * @return properties, in the order of the input networks, null for each network for which the computation failed
+     */
+    public static NetworkProperties[] compute(ProgressListener progressListener, PhyloTree[] networks) throws CanceledException {
+        final NetworkProperties[] result = new NetworkProperties[networks.length];
+        ParallelComputation.apply(progressListener, "Computing network properties", networks, 0, NetworkProperties::compute, (i, properties, error, nanoTime) -> {
+            if (properties != null)
+                result[i] = properties;
+            else
+                System.err.println("Network properties failed for network " + (i + 1) + ": " + error);
+        });
+        return result;
+    }
+
+    /**
+     * computes the properties of all given networks in parallel and streams them, in input order, as tab-separated
+     * lines to the given writer. Each line ends on the time taken for that network, in milliseconds. Networks
+     * for which the computation fails are reported with an error message rather than stopping the run
+     *
+     * @param numberOfThreads number of worker threads, or 0 to use all available processors
+     * @return the index of the slowest network, or -1, if there are none
+     */
+    public static int writeReport(ProgressListener progressListener, PhyloTree[] networks, String[] names, int numberOfThreads, Writer w) throws IOException, CanceledException {
+        return ParallelComputation.writeReport(progressListener, "Computing network properties", networks, names, numberOfThreads,
+                getTableHeader(), (network, name) -> compute(network).toTableRow(name), w);
+    }
+
+    /**
+     * computes the biconnected components of the underlying undirected graph, using an iterative
+     * version of the Hopcroft-Tarjan algorithm
+     *
+     * @return component id for each edge
+     */
+    private static int[] computeBiconnectedComponents(int n, int[] source, int[] target, int[] adjacencyStart, int[] adjacency) {
+        final int m = source.length;
+        final int[] edge2component = new int[m];
+        final int[] discovery = new int[n];
+        final int[] low = new int[n];
+        final int[] parentEdge = new int[n];
+        final int[] next = new int[n];
+        final int[] nodeStack = new int[n];
+        final int[] edgeStack = new int[m];
+        Arrays.fill(discovery, -1);
+
+        int time = 0;
+        int components = 0;
+        int edgeTop = 0;
+
+        for (int s = 0; s < n; s++) {
+            if (discovery[s] != -1)
+                continue;
+            int nodeTop = 0;
+            nodeStack[nodeTop++] = s;
+            discovery[s] = low[s] = time++;
+            parentEdge[s] = -1;
+            next[s] = adjacencyStart[s];
+
+            while (nodeTop > 0) {
+                final int u = nodeStack[nodeTop - 1];
+                if (next[u] < adjacencyStart[u + 1]) {
+                    final int e = adjacency[next[u]++];
+                    if (e == parentEdge[u])
+                        continue;
+                    final int w = (source[e] == u ? target[e] : source[e]);
+                    if (discovery[w] == -1) {
+                        edgeStack[edgeTop++] = e;
+                        parentEdge[w] = e;
+                        discovery[w] = low[w] = time++;
+                        next[w] = adjacencyStart[w];
+                        nodeStack[nodeTop++] = w;
+                    } else if (discovery[w] < discovery[u]) {
+                        edgeStack[edgeTop++] = e;
+                        low[u] = Math.min(low[u], discovery[w]);
+                    }
+                } else {
+                    nodeTop--;
+                    if (parentEdge[u] != -1) {
+                        final int p = (source[parentEdge[u]] == u ? target[parentEdge[u]] : source[parentEdge[u]]);
+                        low[p] = Math.min(low[p], low[u]);
+                        if (low[u] >= discovery[p]) {
+                            int e;
+                            do {
+                                e = edgeStack[--edgeTop];
+                                edge2component[e] = components;
+                            } while (e != parentEdge[u]);
+                            components++;
+                        }
+                    }
+                }
+            }
+        }
+        return edge2component;
+    }
+
+    /**
+     * gets the unique in-edge of a tree node
+     */
+    private static int adjacencyInEdge(int v, int[] adjacencyStart, int[] adjacency, int[] target) {
+        for (int a = adjacencyStart[v]; a < adjacencyStart[v + 1]; a++) {
+            if (target[adjacency[a]] == v)
+                return adjacency[a];
+        }
+        return -1;
+    }
+
+    private static int find(int[] classOf, int v) {
+        while (classOf[v] != v) {
+            classOf[v] = classOf[classOf[v]];
+            v = classOf[v];
+        }
+        return v;
+    }
+
+    private static void union(int[] classOf, int a, int b) {
+        a = find(classOf, a);
+        b = find(classOf, b);
+        if (a != b)
+            classOf[Math.max(a, b)] = Math.min(a, b);
+    }
+
+    /**
+     * get the header line of the summary table
+     *
+     * @return tab-separated header
+     */
+    public static String getTableHeader() {
+        return "name\tnodes\tedges\treticulations\tlevel\tgalledTree\tgalledNetwork\ttreeChild\ttreeSibling\ttimeConsistent";
+    }
+
+    /**
+     * get a line of the summary table
+     *
+     * @return tab-separated line
+     */
+    public String toTableRow(String name) {
+        return name + "\t" + numberOfNodes + "\t" + numberOfEdges + "\t" + numberOfReticulations + "\t" + level
+               + "\t" + galledTree + "\t" + galledNetwork + "\t" + treeChild + "\t" + treeSibling + "\t" + timeConsistent;
+    }
+
+    /**
+     * get a summary table for a collection of networks, with one line per name. Networks without properties, for which
+     * the computation failed, are marked as failed
+     *
+     * @return tab-separated table
+     */
+    public static String toSummaryTable(String[] names, NetworkProperties[] properties) {
+        final StringBuilder buf = new StringBuilder(getTableHeader()).append("\n");
+        for (int i = 0; i < properties.length; i++) {
+            if (properties[i] != null)
+                buf.append(properties[i].toTableRow(names[i])).append("\n");
+            else
+                buf.append(names[i]).append("\tfailed\n");
+        }
+        return buf.toString();
+    }
+
+    public String toString() {
+        return "Galled tree: " + galledTree + "\n" +
+               "Galled network: " + galledNetwork + "\n" +
+               "Level: " + level + "\n" +
+               "Reticulations: " + numberOfReticulations + "\n" +
+               "Tree-child property: " + treeChild + "\n" +
+               "Tree-sibling property: " + treeSibling + "\n" +
+               "Time-consistent property: " + timeConsistent;
+    }
+
+    public int getNumberOfNodes() {
+        return numberOfNodes;
+    }
+
+    public int getNumberOfEdges() {
+        return numberOfEdges;
+    }
+
+    public int getNumberOfReticulations() {
+        return numberOfReticulations;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public boolean isGalledTree() {
+        return galledTree;
+    }
+
+    public boolean isGalledNetwork() {
+        return galledNetwork;
+    }
+
+    public boolean isTreeChild() {
+        return treeChild;
+    }
+
+    public boolean isTreeSibling() {
+        return treeSibling;
+    }
+
+    public boolean isTimeConsistent() {
+        return timeConsistent;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * ParallelComputation.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.util;
+
+import jloda.util.CanceledException;
+import jloda.util.progress.ProgressListener;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * applies a computation to each of a number of items, such as the trees of a document, on a fixed pool of threads,
+ * and hands the results to a consumer in input order, as soon as they are available. A failure of one item is
+ * passed on to the consumer and does not stop the computation of the other items
+ */
+public class ParallelComputation {
+    /**
+     * a computation applied to one item
+     */
+    public interface Task<T, R> {
+        R apply(T item) throws Exception;
+    }
+
+    /**
+     * receives the result of one item
+     */
+    public interface Consumer<R, E extends Exception> {
+        /**
+         * @param index    index of the item
+         * @param result   result, or null, if the computation failed
+         * @param error    error message, or null, if the computation succeeded
+         * @param nanoTime time taken by the computation, in nanoseconds
+         */
+        void accept(int index, R result, String error, long nanoTime) throws E;
+    }
+
+    /**
+     * computes the row of a report for one item
+     */
+    public interface RowTask<T> {
+        String apply(T item, String name) throws Exception;
+    }
+
+    /**
+     * applies the task to all items in parallel and passes the results to the consumer in input order
+     *
+     * @param numberOfThreads number of threads, or 0 to use all available processors
+     */
+    public static <T, R, E extends Exception> void apply(ProgressListener progressListener, String subtask, T[] items, int numberOfThreads, Task<T, R> task,
+                                                         Consumer<R, E> consumer) throws E, CanceledException {
+        if (numberOfThreads <= 0)
+            numberOfThreads = Runtime.getRuntime().availableProcessors();
+        numberOfThreads = Math.max(1, Math.min(numberOfThreads, items.length));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            progressListener.setSubtask(subtask);
+            progressListener.setMaximum(items.length);
+            progressListener.setProgress(0);
+
+            final List<Future<Outcome<R>>> futures = new ArrayList<>(items.length);
+            for (T item : items) {
+                futures.add(executor.submit(() -> {
+                    final long start = System.nanoTime();
+                    try {
+                        return new Outcome<>(task.apply(item), null, System.nanoTime() - start);
+                    } catch (Exception ex) {
+                        return new Outcome<>(null, ex.toString(), System.nanoTime() - start);
+                    }
+                }));
+            }
+            for (int i = 0; i < items.length; i++) {
+                Outcome<R> outcome;
+                try {
+                    outcome = futures.get(i).get();
+                } catch (InterruptedException e) {
+                    throw new CanceledException();
+                } catch (ExecutionException e) {
+                    outcome = new Outcome<>(null, e.getCause().toString(), 0);
+                }
+                consumer.accept(i, outcome.result, outcome.error, outcome.nanoTime);
+                progressListener.incrementProgress();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * applies the task to all items in parallel and streams a tab-separated table, in input order, to the given writer.
+     * Each line consists of the row computed for the item, or the name of the item and an error message, followed by
+     * the time taken for the item, in milliseconds
+     *
+     * @param header          header of the table, without the time column
+     * @param numberOfThreads number of threads, or 0 to use all available processors
+     * @param task            computes the row of an item from the item and its name
+     * @return the index of the slowest item, or -1, if there are none
+     */
+    public static <T> int writeReport(ProgressListener progressListener, String subtask, T[] items, String[] names, int numberOfThreads,
+                                      String header, RowTask<T> task, Writer w) throws IOException, CanceledException {
+        final Integer[] indices = new Integer[items.length];
+        for (int i = 0; i < items.length; i++)
+            indices[i] = i;
+        final long[] maxTime = {-1};
+        final int[] slowest = {-1};
+
+        w.write(header + "\tmilliseconds\n");
+        apply(progressListener, subtask, indices, numberOfThreads, i -> task.apply(items[i], names[i]), (i, row, error, nanoTime) -> {
+            final String milliseconds = String.format(Locale.ROOT, "%.3f", nanoTime / 1000000.0);
+            if (row != null)
+                w.write(row + "\t" + milliseconds + "\n");
+            else
+                w.write(names[i] + "\terror: " + error.replace('\t', ' ').replace('\n', ' ') + "\t" + milliseconds + "\n");
+            w.flush();
+            if (nanoTime > maxTime[0]) {
+                maxTime[0] = nanoTime;
+                slowest[0] = i;
+            }
+        });
+        return slowest[0];
+    }
+
+    /**
+     * outcome of the computation for one item
+     */
+    private static class Outcome<R> {
+        final R result;
+        final String error;
+        final long nanoTime;
+
+        Outcome(R result, String error, long nanoTime) {
+            this.result = result;
+            this.error = error;
+            this.nanoTime = nanoTime;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * PathMultiplicityVector.java Copyright (C) 2023 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dendroscope.util;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * sparse vector of path counts, indexed by taxon. Counts are kept as longs and only switch to BigInteger
+ * if they do not fit into a long, which can happen in highly reticulated networks
+ */
+class PathMultiplicityVector {
+    private static final PathMultiplicityVector EMPTY = new PathMultiplicityVector(new int[0], new long[0], null);
+
+    private final int[] taxa;
+    private final long[] counts;
+    private final BigInteger[] bigCounts;
+    private final int hashCode;
+
+    private PathMultiplicityVector(int[] taxa, long[] counts, BigInteger[] bigCounts) {
+        this.taxa = taxa;
+        this.counts = counts;
+        this.bigCounts = bigCounts;
+        this.hashCode = 31 * Arrays.hashCode(taxa) + (bigCounts != null ? Arrays.hashCode(bigCounts) : Arrays.hashCode(counts));
+    }
+
+    public int hashCode() {
+        return hashCode;
+    }
+
+    public boolean equals(Object other) {
+        if (!(other instanceof PathMultiplicityVector))
+            return false;
+        PathMultiplicityVector that = (PathMultiplicityVector) other;
+        return hashCode == that.hashCode && Arrays.equals(taxa, that.taxa) && Arrays.equals(counts, that.counts)
+               && Arrays.equals(bigCounts, that.bigCounts);
+    }
+
+    public String toString() {
+        StringBuilder buf = new StringBuilder("[");
+        for (int i = 0; i < taxa.length; i++) {
+            if (i > 0)
+                buf.append(",");
+            buf.append(taxa[i]).append(":").append(bigCounts != null ? bigCounts[i] : counts[i]);
+        }
+        return buf.append("]").toString();
+    }
+
+    /**
+     * dense scratch space used to sum the vectors of the children of a node
+     */
+    static class Accumulator {
+        private final long[] sum;
+        private BigInteger[] bigSum;
+        private final boolean[] touched;
+        private final int[] touchedTaxa;
+        private int numberTouched;
+
+        Accumulator(int numberOfTaxa) {
+            sum = new long[numberOfTaxa];
+            touched = new boolean[numberOfTaxa];
+            touchedTaxa = new int[numberOfTaxa];
+        }
+
+        /**
+         * adds the contribution of a child to the sum, the entry of the child's own taxon counts as a single path
+         *
+         * @param vector     the vector of the child
+         * @param childTaxon the taxon of the child, or -1
+         */
+        void add(PathMultiplicityVector vector, int childTaxon) {
+            for (int i = 0; i < vector.taxa.length; i++) {
+                if (vector.taxa[i] != childTaxon) {
+                    if (vector.bigCounts != null)
+                        add(vector.taxa[i], vector.bigCounts[i]);
+                    else
+                        add(vector.taxa[i], vector.counts[i]);
+                }
+            }
+            if (childTaxon != -1)
+                add(childTaxon, 1L);
+        }
+
+        private void add(int taxon, long count) {
+            touch(taxon);
+            if (bigSum != null)
+                bigSum[taxon] = bigSum[taxon].add(BigInteger.valueOf(count));
+            else {
+                try {
+                    sum[taxon] = Math.addExact(sum[taxon], count);
+                } catch (ArithmeticException ex) {
+                    switchToBig();
+                    bigSum[taxon] = bigSum[taxon].add(BigInteger.valueOf(count));
+                }
+            }
+        }
+
+        private void add(int taxon, BigInteger count) {
+            touch(taxon);
+            if (bigSum == null)
+                switchToBig();
+            bigSum[taxon] = bigSum[taxon].add(count);
+        }
+
+        private void touch(int taxon) {
+            if (!touched[taxon]) {
+                touched[taxon] = true;
+                touchedTaxa[numberTouched++] = taxon;
+                sum[taxon] = 0;
+                if (bigSum != null)
+                    bigSum[taxon] = BigInteger.ZERO;
+            }
+        }
+
+        private void switchToBig() {
+            bigSum = new BigInteger[sum.length];
+            for (int i = 0; i < numberTouched; i++) {
+                int taxon = touchedTaxa[i];
+                bigSum[taxon] = BigInteger.valueOf(sum[taxon]);
+            }
+            // entries touched later are initialized in touch()
+        }
+
+        /**
+         * returns the accumulated vector and resets the accumulator
+         *
+         * @return vector
+         */
+        PathMultiplicityVector harvest() {
+            if (numberTouched == 0)
+                return EMPTY;
+            int[] taxa = Arrays.copyOf(touchedTaxa, numberTouched);
+            Arrays.sort(taxa);
+
+            boolean fitsLong = true;
+            if (bigSum != null) {
+                for (int taxon : taxa) {
+                    if (bigSum[taxon].bitLength() >= 64) {
+                        fitsLong = false;
+                        break;
+                    }
+                }
+            }
+
+            PathMultiplicityVector result;
+            if (fitsLong) {
+                long[] counts = new long[taxa.length];
+                for (int i = 0; i < taxa.length; i++)
+                    counts[i] = (bigSum != null ? bigSum[taxa[i]].longValue() : sum[taxa[i]]);
+                result = new PathMultiplicityVector(taxa, counts, null);
+            } else {
+                BigInteger[] bigCounts = new BigInteger[taxa.length];
+                for (int i = 0; i < taxa.length; i++)
+                    bigCounts[i] = bigSum[taxa[i]];
+                result = new PathMultiplicityVector(taxa, null, bigCounts);
+            }
+
+            for (int taxon : taxa)
+                touched[taxon] = false;
+            numberTouched = 0;
+            bigSum = null;
+            return result;
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package dendroscope.util;
 
+import dendroscope.core.TreeData;
 import jloda.graph.*;
 import jloda.graph.algorithms.Dijkstra;
 import jloda.phylo.PhyloTree;
@@ -87,8 +88,7 @@ public class PhyloTreeUtils {
         if (network.getNumberReticulateEdges() == 0) { //tree
             subtreeRoot = findSubtreeNetworkRec(network, network.getRoot(), node2NumberInducedChildren, selected);
         } else {
-            var LSA = new LCA_LSACalculation(network, true);
-            subtreeRoot = LSA.getLca(selected, true);
+            subtreeRoot = computeLSA(network, selected);
         }
 
         if (subtreeRoot == null || subtreeRoot.getOutDegree() == 0 || (collapsed != null && collapsed.contains(subtreeRoot)))
@@ -134,9 +134,7 @@ public class PhyloTreeUtils {
         if (network.getNumberReticulateEdges() == 0) { //tree
             subtreeRoot = findSubtreeNetworkRec(network, network.getRoot(), node2NumberInducedChildren, selected);
         } else {
-            LCA_LSACalculation LSA = new LCA_LSACalculation(network, true);
-            subtreeRoot = LSA.getLca(selected, true);
-
+            subtreeRoot = computeLSA(network, selected);
         }
 
         if (subtreeRoot == null || subtreeRoot.getOutDegree() == 0 || (collapsed != null && collapsed.contains(subtreeRoot)))
@@ -169,8 +167,7 @@ public class PhyloTreeUtils {
             findInducedSubnetworkRec(network.getRoot(), node2NumberInducedChildren, new NodeSet(network), collapsed, selected);
             subtreeRoot = findSubtreeNetworkRec(network, network.getRoot(), node2NumberInducedChildren, selected);
         } else {
-            var LSA = new LCA_LSACalculation(network, true);
-            subtreeRoot = LSA.getLca(selected, true);
+            subtreeRoot = computeLSA(network, selected);
         }
 
         if (subtreeRoot == null || subtreeRoot.getOutDegree() == 0 || (collapsed != null && collapsed.contains(subtreeRoot)))
@@ -192,8 +189,7 @@ public class PhyloTreeUtils {
         if (network.getNumberReticulateEdges() == 0) { //tree
             subtreeRoot = findSubtreeNetworkRec(network, network.getRoot(), node2NumberInducedChildren, selected);
         } else {
-            var LSA = new LCA_LSACalculation(network, true);
-            subtreeRoot = LSA.getLca(selected, true);
+            subtreeRoot = computeLSA(network, selected);
         }
 
         if (subtreeRoot == null || subtreeRoot.getOutDegree() == 0 || (collapsed != null && collapsed.contains(subtreeRoot)))
@@ -389,6 +385,48 @@ public class PhyloTreeUtils {
     }
 
 
+    /**
+     * computes the LSA of a non-empty selection of nodes in a network. The LSA of a single node is the LSA of its
+     * parents. For a network of the document, the LSA structure kept with the tree is used
+     *
+     * @return LSA
+     */
+    private static Node computeLSA(PhyloTree network, NodeSet selected) {
+        final EulerTourLCA lsa = (network instanceof TreeData ? ((TreeData) network).getIndex().getLSA() : new EulerTourLCA(network, true));
+        if (selected.size() == 1) {
+            final int v = lsa.getIndex(selected.getFirstElement());
+            return (v > 0 ? lsa.getNode(lsa.getParent(v)) : network.getRoot());
+        }
+        return lsa.getLCA(selected);
+    }
+
+    /**
+     * computes a topological ordering of the nodes of a rooted network, each node is listed after all its parents
+     *
+     * @return nodes in topological order
+     */
+    public static Node[] computeTopologicalOrder(PhyloTree network) {
+        var order = new Node[network.getNumberOfNodes()];
+        var inDegree = new NodeIntArray(network);
+        var top = 0;
+        for (var v : network.nodes()) {
+            inDegree.set(v, v.getInDegree());
+            if (v.getInDegree() == 0)
+                order[top++] = v;
+        }
+        for (var i = 0; i < top; i++) {
+            for (var w : order[i].children()) {
+                var remaining = inDegree.getInt(w) - 1;
+                inDegree.set(w, remaining);
+                if (remaining == 0)
+                    order[top++] = w;
+            }
+        }
+        if (top < order.length)
+            throw new RuntimeException("computeTopologicalOrder: graph contains a directed cycle");
+        return order;
+    }
+
     /**
      * compute the number of nodes present in the shortest path for each pair of leaves, considering the graph undirected
      *
@@ -51,7 +51,7 @@ public class GUIConfiguration {
 
         menuConfig.defineMenu("Advanced Selection", "Select Subnetwork;Select Induced Network;Select LSA Induced Network;Select Spanned Edges;");
 
-        menuConfig.defineMenu("Options", "@Advanced Options;Internal Node Labels Interpreted As Edge Labels;|;Collapse;Uncollapse;Uncollapse Subtree;|;Collapse Complement;Collapse At Level...;|;" +
+        menuConfig.defineMenu("Options", "@Advanced Options;Internal Node Labels Interpreted As Edge Labels;|;Collapse;Uncollapse;Uncollapse Subtree;|;Collapse Complement;Collapse At Level...;|;Collapse Duplicate Trees;|;" +
                 (DendroscopeProperties.ALLOW_IMAGES ? "|;Load Taxon Images...;Set Image Size...;Set Image Layout...;" : "")
                 + "|;Next Tree;Next Page;Previous Tree;Previous Page;|;Go to Tree...;|;Set Tree Name...;");
         menuConfig.defineMenu("Advanced Options", "Extract Subnetwork...;Extract Induced Network...;Extract LSA Induced Network...;");
@@ -60,7 +60,7 @@ public class GUIConfiguration {
         menuConfig.defineMenu("Network Layout", "Layout Optimizer 2010;Layout Optimizer 2009;Layout Optimizer 2008;|;Layout Optimizer None;");
 
         menuConfig.defineMenu("Algorithms", "@Advanced Algorithms;@Multi-Labeled Tree To Network;|;Strict Consensus...;Loose Consensus...;" +
-                "Majority Consensus...;|;LSA Consensus...;Primordial Consensus...;|;Cluster Network Consensus...;Level-k Network Consensus...;"
+                "Majority Consensus...;Consensus From File...;Incremental Consensus...;|;LSA Consensus...;Primordial Consensus...;|;Cluster Network Consensus...;Level-k Network Consensus...;"
                 + "Galled Network Consensus...;|;Hybridization Networks...;Reroot by Hybridization Number...;"
                 + ProgramProperties.getIfEnabled("allow-hybroscale", "Reroot by Hybridization Number(Hybroscale)...;")
                 + "|;Tanglegram...;"
@@ -71,10 +71,10 @@ public class GUIConfiguration {
         menuConfig.defineMenu("Advanced Algorithms", "Hybridization Number...;|;"
                 + "|;Hardwired Cluster Distance...;Softwired Cluster Distance...;Displayed Trees Distance...;Tripartition Distance...;" +
                 "Nested Labels Distance...;Path Multiplicity Distance...;"
-                + "|;Distance To Root...;|;Topological Constraints...;Network Properties...;|;Simplistic...;");
+                + "|;Distance To Root...;|;Topological Constraints...;Network Properties...;Network Properties Report...;|;Simplistic...;");
 
         menuConfig.defineMenu("Multi-Labeled Tree To Network", "MUL to Network, Cluster-based...;MUL to Network, HOLM 2006...;" +
-                "MUL to Network, Level-k-based...;|;MUL to Contracted Tree...;");
+                "MUL to Network, Level-k-based...;|;MUL to Contracted Tree...;|;MUL to Network, All Trees...;");
 
         menuConfig.defineMenu("Layout", "Draw Rectangular Phylogram;Draw Rectangular Cladogram;|;Draw Slanted Cladogram;|;"
                 + "Draw Circular Phylogram;Draw Circular Cladogram;Draw Inner Circular Cladogram;|;" +